@@ -40,6 +40,10 @@ public class AsyncAppender extends AsyncAppenderBase<ILoggingEvent> {
     return level.toInt() <= Level.INFO_INT;
   }
 
+  protected long getTimeStamp(ILoggingEvent event) {
+    return event.getTimeStamp();
+  }
+
   protected void preprocess(ILoggingEvent eventObject) {
     eventObject.prepareForDeferredProcessing();
     if(includeCallerData)
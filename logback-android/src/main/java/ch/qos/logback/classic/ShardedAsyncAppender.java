@@ -0,0 +1,58 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.classic;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.ShardedAsyncAppenderBase;
+
+/**
+ * A sharded variant of {@link AsyncAppender}: each attached appender is fed by several queues and worker threads,
+ * and every logging thread is pinned to one of them so that its events stay in order. As with
+ * {@link AsyncAppender}, events of level TRACE, DEBUG and INFO are deemed discardable.
+ *
+ * @since 1.3.0-3
+ */
+public class ShardedAsyncAppender extends ShardedAsyncAppenderBase<ILoggingEvent> {
+
+  boolean includeCallerData = false;
+
+  /**
+   * Events of level TRACE, DEBUG and INFO are deemed to be discardable.
+   * @param event
+   * @return true if the event is of level TRACE, DEBUG or INFO false otherwise.
+   */
+  protected boolean isDiscardable(ILoggingEvent event) {
+    Level level = event.getLevel();
+    return level.toInt() <= Level.INFO_INT;
+  }
+
+  protected long getTimeStamp(ILoggingEvent event) {
+    return event.getTimeStamp();
+  }
+
+  protected void preprocess(ILoggingEvent eventObject) {
+    eventObject.prepareForDeferredProcessing();
+    if(includeCallerData)
+      eventObject.getCallerData();
+  }
+
+  public boolean isIncludeCallerData() {
+    return includeCallerData;
+  }
+
+  public void setIncludeCallerData(boolean includeCallerData) {
+    this.includeCallerData = includeCallerData;
+  }
+
+}
@@ -13,13 +13,19 @@
  */
 package ch.qos.logback.classic.android;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import android.util.Log;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.PatternLayout;
 import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.pattern.LoggerConverter;
+import ch.qos.logback.classic.pattern.NopThrowableInformationConverter;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.Layout;
 import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.util.Duration;
 
 /**
  * An appender that wraps the native Android logging mechanism (<i>logcat</i>);
@@ -32,6 +38,14 @@ import ch.qos.logback.core.UnsynchronizedAppenderBase;
  * See the Android Developer Guide for details on adjusting the <i>logcat</i> filter.
  * <p>
  * See http://developer.android.com/guide/developing/tools/adb.html#filteringoutput
+ * <p>
+ * When the tag pattern only uses the logger name (e.g., {@code %logger{23}}),
+ * tags are cached per logger. The results of {@code isLoggable()} are cached
+ * per tag and priority for {@code loggableCheckInterval}.
+ * <p>
+ * <i>Logcat</i> truncates entries longer than about 4 KB, so longer messages
+ * (e.g., with stack traces) are written as consecutive entries of at most
+ * {@code maxChunkSize} bytes, split at line breaks where possible.
  *
  * @author Fred Eisele
  * @author Anthony Trinh
@@ -42,9 +56,36 @@ public class LogcatAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
    * http://developer.android.com/reference/android/util/Log.html#isLoggable(java.lang.String, int)
    */
   private static final int MAX_TAG_LENGTH = 23;
+
+  /**
+   * The tag and {@code isLoggable()} caches are cleared when they reach this
+   * size, which bounds memory for dynamically named loggers
+   */
+  static final int MAX_CACHED_TAGS = 512;
+
+  /**
+   * Default maximum size of a <i>logcat</i> entry in UTF-8 bytes, below the
+   * payload limit of <i>logcat</i> with room for the tag
+   */
+  public static final int DEFAULT_MAX_CHUNK_SIZE = 4000;
+
+  /**
+   * Smallest chunk size, which holds any character in UTF-8
+   */
+  static final int MIN_CHUNK_SIZE = 4;
+
+  public static final Duration DEFAULT_LOGGABLE_CHECK_INTERVAL = Duration.buildBySeconds(5);
+
   private PatternLayoutEncoder encoder = null;
   private PatternLayoutEncoder tagEncoder = null;
   private boolean checkLoggable = false;
+  private Duration loggableCheckInterval = DEFAULT_LOGGABLE_CHECK_INTERVAL;
+  private int maxChunkSize = DEFAULT_MAX_CHUNK_SIZE;
+  // keeps the chunks of long messages together
+  private final Object chunkLock = new Object();
+  private boolean tagDependsOnLoggerOnly;
+  private final ConcurrentMap<String, String> tagCache = new ConcurrentHashMap<String, String>();
+  private final ConcurrentMap<String, LoggableCache> loggableCache = new ConcurrentHashMap<String, LoggableCache>();
 
   /**
    * As in most cases, the default constructor does nothing.
@@ -87,6 +128,17 @@ public class LogcatAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
       }
     }
 
+    tagDependsOnLoggerOnly = (this.tagEncoder != null) && (this.tagEncoder.getLayout() instanceof PatternLayout)
+        && ((PatternLayout) this.tagEncoder.getLayout()).isComposedOf(LoggerConverter.class,
+            NopThrowableInformationConverter.class);
+    tagCache.clear();
+    loggableCache.clear();
+
+    if (maxChunkSize != 0 && maxChunkSize < MIN_CHUNK_SIZE) {
+      addWarn("maxChunkSize [" + maxChunkSize + "] is less than " + MIN_CHUNK_SIZE + " bytes. Using " + MIN_CHUNK_SIZE + " instead.");
+      maxChunkSize = MIN_CHUNK_SIZE;
+    }
+
     super.start();
   }
 
@@ -107,32 +159,32 @@ public class LogcatAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
     switch (event.getLevel().levelInt) {
     case Level.ALL_INT:
     case Level.TRACE_INT:
-      if (!checkLoggable || Log.isLoggable(tag, Log.VERBOSE)) {
-        Log.v(tag, this.encoder.getLayout().doLayout(event));
+      if (!checkLoggable || isLoggable(tag, Log.VERBOSE)) {
+        println(Log.VERBOSE, tag, this.encoder.getLayout().doLayout(event));
       }
       break;
 
     case Level.DEBUG_INT:
-      if (!checkLoggable || Log.isLoggable(tag, Log.DEBUG)) {
-        Log.d(tag, this.encoder.getLayout().doLayout(event));
+      if (!checkLoggable || isLoggable(tag, Log.DEBUG)) {
+        println(Log.DEBUG, tag, this.encoder.getLayout().doLayout(event));
       }
       break;
 
     case Level.INFO_INT:
-      if (!checkLoggable || Log.isLoggable(tag, Log.INFO)) {
-        Log.i(tag, this.encoder.getLayout().doLayout(event));
+      if (!checkLoggable || isLoggable(tag, Log.INFO)) {
+        println(Log.INFO, tag, this.encoder.getLayout().doLayout(event));
       }
       break;
 
     case Level.WARN_INT:
-      if (!checkLoggable || Log.isLoggable(tag, Log.WARN)) {
-        Log.w(tag, this.encoder.getLayout().doLayout(event));
+      if (!checkLoggable || isLoggable(tag, Log.WARN)) {
+        println(Log.WARN, tag, this.encoder.getLayout().doLayout(event));
       }
       break;
 
     case Level.ERROR_INT:
-      if (!checkLoggable || Log.isLoggable(tag, Log.ERROR)) {
-        Log.e(tag, this.encoder.getLayout().doLayout(event));
+      if (!checkLoggable || isLoggable(tag, Log.ERROR)) {
+        println(Log.ERROR, tag, this.encoder.getLayout().doLayout(event));
       }
       break;
 
@@ -203,6 +255,7 @@ public class LogcatAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
    */
   public void setCheckLoggable(boolean enable) {
     this.checkLoggable = enable;
+    tagCache.clear();
   }
 
   /**
@@ -217,6 +270,49 @@ public class LogcatAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
     return this.checkLoggable;
   }
 
+  /**
+   * Gets how long the result of an {@code isLoggable()}-check is reused
+   *
+   * @return the interval
+   */
+  public Duration getLoggableCheckInterval() {
+    return this.loggableCheckInterval;
+  }
+
+  /**
+   * Sets how long the result of an {@code isLoggable()}-check is reused for
+   * the same tag and priority before asking Android again. Changes to the
+   * <i>logcat</i> filter settings take effect within this interval. A zero
+   * interval disables the cache. Default is 5 seconds.
+   *
+   * @param interval the interval
+   */
+  public void setLoggableCheckInterval(Duration interval) {
+    this.loggableCheckInterval = interval;
+    loggableCache.clear();
+  }
+
+  /**
+   * Gets the maximum size of a <i>logcat</i> entry
+   *
+   * @return the size in UTF-8 bytes, or 0 if messages are not split
+   */
+  public int getMaxChunkSize() {
+    return this.maxChunkSize;
+  }
+
+  /**
+   * Sets the maximum size of a <i>logcat</i> entry. Longer messages are
+   * split at line breaks into several entries, or within a line if it is
+   * longer than this size. Default is 4000 bytes.
+   *
+   * @param maxChunkSize the size in UTF-8 bytes (at least 4), or 0 to write
+   *       messages as one entry, which <i>logcat</i> may truncate
+   */
+  public void setMaxChunkSize(int maxChunkSize) {
+    this.maxChunkSize = maxChunkSize;
+  }
+
   /**
    * Gets the logcat tag string of a logging event
    * @param event logging event to evaluate
@@ -226,10 +322,141 @@ public class LogcatAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
     // format tag based on encoder layout; truncate if max length
     // exceeded (only necessary for isLoggable(), which throws
     // IllegalArgumentException)
+    String loggerName = event.getLoggerName();
+    if (!tagDependsOnLoggerOnly || loggerName == null) {
+      return formatTag(event);
+    }
+    String tag = tagCache.get(loggerName);
+    if (tag == null) {
+      tag = formatTag(event);
+      if (tagCache.size() >= MAX_CACHED_TAGS) {
+        tagCache.clear();
+      }
+      tagCache.put(loggerName, tag);
+    }
+    return tag;
+  }
+
+  private String formatTag(ILoggingEvent event) {
     String tag = (this.tagEncoder != null) ? this.tagEncoder.getLayout().doLayout(event) : event.getLoggerName();
     if (checkLoggable && (tag.length() > MAX_TAG_LENGTH)) {
       tag = tag.substring(0, MAX_TAG_LENGTH - 1) + "*";
     }
     return tag;
   }
+
+  /**
+   * Writes a message to <i>logcat</i>, split into chunks of at most
+   * {@code maxChunkSize} bytes. The chunks of a message are written under a
+   * lock, so that the chunks of long messages from several threads do not
+   * interleave. Single entries are written without it, as <i>logcat</i> is
+   * thread-safe, so they may land between chunks, but each entry carries the
+   * id of its thread.
+   */
+  private void println(int priority, String tag, String message) {
+    int length = message.length();
+    // a char takes at most 3 bytes in UTF-8
+    if (maxChunkSize <= 0 || length <= maxChunkSize / 3 || chunkEnd(message, 0, maxChunkSize) == length) {
+      Log.println(priority, tag, message);
+      return;
+    }
+
+    synchronized (chunkLock) {
+      int start = 0;
+      while (start < length) {
+        int end = chunkEnd(message, start, maxChunkSize);
+        int next = end;
+        if (end < length && message.charAt(end) == '\n') {
+          // split at a line break, which logcat adds back between entries
+          next++;
+          if (end > start && message.charAt(end - 1) == '\r') {
+            end--;
+          }
+        }
+        Log.println(priority, tag, message.substring(start, end));
+        start = next;
+      }
+    }
+  }
+
+  /**
+   * Finds the end of the chunk of a message that starts at {@code start}:
+   * the last line break that keeps the chunk within {@code maxBytes} UTF-8
+   * bytes, or the last character within that size if there is no such line
+   * break
+   *
+   * @return the end index (exclusive) of the chunk, which is the message
+   *       length if the rest of the message fits
+   */
+  static int chunkEnd(String message, int start, int maxBytes) {
+    int bytes = 0;
+    int lastBreak = -1;
+    for (int i = start; i < message.length(); i++) {
+      char c = message.charAt(i);
+      if (c < 0x80) {
+        bytes += 1;
+      } else if (c < 0x800 || Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+        // a surrogate pair takes 4 bytes
+        bytes += 2;
+      } else {
+        bytes += 3;
+      }
+      if (bytes > maxBytes) {
+        if (lastBreak > start) {
+          return lastBreak;
+        }
+        int end = i;
+        if (end > start + 1 && Character.isHighSurrogate(message.charAt(end - 1))) {
+          end--;
+        }
+        return Math.max(end, start + 1);
+      }
+      if (c == '\n') {
+        lastBreak = i;
+      }
+    }
+    return message.length();
+  }
+
+  /**
+   * Asks Android whether a tag is loggable at a priority, reusing the answer
+   * for {@code loggableCheckInterval}
+   */
+  private boolean isLoggable(String tag, int priority) {
+    long intervalMs = (loggableCheckInterval != null) ? loggableCheckInterval.getMilliseconds() : 0;
+    if (intervalMs <= 0) {
+      return Log.isLoggable(tag, priority);
+    }
+    LoggableCache cache = loggableCache.get(tag);
+    if (cache == null) {
+      if (loggableCache.size() >= MAX_CACHED_TAGS) {
+        loggableCache.clear();
+      }
+      cache = new LoggableCache();
+      LoggableCache existing = loggableCache.putIfAbsent(tag, cache);
+      if (existing != null) {
+        cache = existing;
+      }
+    }
+    return cache.isLoggable(tag, priority, intervalMs);
+  }
+
+  /**
+   * The {@code isLoggable()} results of a tag, per priority
+   */
+  private static class LoggableCache {
+    private final boolean[] checked = new boolean[Log.ASSERT + 1];
+    private final boolean[] loggable = new boolean[Log.ASSERT + 1];
+    private final long[] expiryNanos = new long[Log.ASSERT + 1];
+
+    synchronized boolean isLoggable(String tag, int priority, long intervalMs) {
+      long now = System.nanoTime();
+      if (!checked[priority] || now - expiryNanos[priority] >= 0) {
+        loggable[priority] = Log.isLoggable(tag, priority);
+        expiryNanos[priority] = now + intervalMs * 1000000L;
+        checked[priority] = true;
+      }
+      return loggable[priority];
+    }
+  }
 }
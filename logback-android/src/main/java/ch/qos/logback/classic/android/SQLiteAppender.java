@@ -15,16 +15,31 @@ package ch.qos.logback.classic.android;
 
 import java.io.File;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Locale;
 import java.util.Map.Entry;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteStatement;
 import ch.qos.logback.classic.db.SQLBuilder;
+import ch.qos.logback.classic.db.names.ColumnName;
 import ch.qos.logback.classic.db.names.DBNameResolver;
 import ch.qos.logback.classic.db.names.DefaultDBNameResolver;
+import ch.qos.logback.classic.db.names.TableName;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.IThrowableProxy;
 import ch.qos.logback.classic.spi.StackTraceElementProxy;
@@ -33,27 +48,136 @@ import ch.qos.logback.core.CoreConstants;
 import ch.qos.logback.core.UnsynchronizedAppenderBase;
 import ch.qos.logback.core.android.AndroidContextUtil;
 import ch.qos.logback.core.util.Duration;
+import ch.qos.logback.core.util.FileSize;
 
 /**
  * SQLiteAppender is a logback appender optimized for Android SQLite. It requires no JDBC
  * as it uses the built-in Android SQLite API.
+ * <p>
+ * By default each event is written in its own transaction. With a
+ * {@code batchSize} greater than 1, events are held in memory and committed
+ * together, in one transaction, on a background thread when the batch is full
+ * or {@code maxBatchDelay} has elapsed since its first event, whichever comes
+ * first. This saves a commit (and its fsync) per event at the cost of losing
+ * the pending events if the process dies. Pending events are written on
+ * {@link #stop()}.
+ * <p>
+ * Besides the age limit set by {@code maxHistory}, the database can be capped
+ * in size with {@code maxDatabaseSize}: the oldest events are then evicted in
+ * the background once the cap is exceeded, and the freed pages are returned
+ * to the file system with SQLite's incremental vacuum.
+ * <p>
+ * The SQLite settings that matter most for an append-mostly workload can be
+ * configured and are applied when the database is opened: {@code journalMode}
+ * (e.g. WAL), {@code synchronous}, {@code cacheSize}, {@code pageSize},
+ * {@code tempStore} and {@code walAutocheckpoint}. In WAL mode, the log is
+ * also checkpointed and truncated in the background every
+ * {@code checkpointInterval}, which keeps the WAL file bounded.
+ * <p>
+ * With {@code compactSchema}, logger names, thread names and caller sites are
+ * stored once in lookup tables and referenced by integer IDs, and the level is
+ * stored as its integer value, which makes event rows much smaller. The
+ * compact and the default schema cannot share a database file.
+ * <p>
+ * With {@code deduplicateExceptions}, each distinct exception trace is stored
+ * once in {@code logging_trace} with the number of events that logged it, and
+ * {@code logging_event_trace} maps events to it, instead of one
+ * {@code logging_event_exception} row per stack frame and event.
  *
  * @author Anthony Trinh
  * @since 1.0.11
  */
 public class SQLiteAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
 
+  public static final int DEFAULT_BATCH_SIZE = 1;
+  public static final Duration DEFAULT_MAX_BATCH_DELAY = Duration.buildBySeconds(1);
+
+  /**
+   * Number of full batches allowed to wait for the background writer before
+   * logging threads write them themselves.
+   */
+  static final int MAX_PENDING_BATCHES = 8;
+
+  /** Maximum number of expired events deleted per cleanup transaction */
+  static final int CLEANUP_CHUNK_SIZE = 1000;
+
+  /**
+   * Once over {@code maxDatabaseSize}, events are evicted until the database is
+   * below this percentage of it, so that eviction does not run on every check.
+   */
+  static final int EVICTION_TARGET_PERCENT = 90;
+
+  /** Number of events written between two checks of the database size */
+  static final int SIZE_CHECK_INTERVAL = 100;
+
+  /** Maximum number of free pages released per incremental vacuum step */
+  static final int VACUUM_CHUNK_PAGES = 256;
+
+  public static final Duration DEFAULT_CHECKPOINT_INTERVAL = Duration.buildByMinutes(1);
+  public static final Duration DEFAULT_MAX_MAINTENANCE_WAIT = Duration.buildBySeconds(10);
+
+  static final List<String> JOURNAL_MODES = Arrays.asList("DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+  static final List<String> SYNCHRONOUS_LEVELS = Arrays.asList("OFF", "NORMAL", "FULL", "EXTRA");
+  static final List<String> TEMP_STORES = Arrays.asList("DEFAULT", "FILE", "MEMORY");
+
+  /** {@code PRAGMA auto_vacuum} value of incremental mode */
+  private static final long AUTO_VACUUM_INCREMENTAL = 2;
+
   private SQLiteDatabase db;
+  private SQLiteStatement insertStatement;
+  private SQLiteStatement insertPropertiesStatement;
+  private SQLiteStatement insertExceptionStatement;
   private String insertPropertiesSQL;
   private String insertExceptionSQL;
   private String insertSQL;
   private String filename;
   private DBNameResolver dbNameResolver;
   private Duration maxHistory;
+  private FileSize maxDatabaseSize;
+  private boolean incrementalVacuum;
+  private int eventsSinceSizeCheck;
+  private String journalMode;
+  private String synchronous;
+  private Integer cacheSize;
+  private Integer pageSize;
+  private String tempStore;
+  private Integer walAutocheckpoint;
+  private Duration checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+  private boolean walMode;
+  private ScheduledFuture<?> checkpointFuture;
+  private boolean compactSchema;
+  private SQLiteLookupTable loggerTable;
+  private SQLiteLookupTable threadTable;
+  private SQLiteLookupTable callerTable;
+  private boolean deduplicateExceptions;
+  private SQLiteTraceTable traceTable;
   private long lastCleanupTime = 0;
   private SQLiteLogCleaner logCleaner;
   private Clock clock = new SystemClock();
 
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private Duration maxBatchDelay = DEFAULT_MAX_BATCH_DELAY;
+  private Duration maxMaintenanceWait = DEFAULT_MAX_MAINTENANCE_WAIT;
+
+  /** guards the database and the compiled statements */
+  private final Object dbLock = new Object();
+
+  /** serializes log cleanups */
+  private final Object cleanupLock = new Object();
+  /** maintenance tasks submitted and not known to be done, for stop() to wait for */
+  private final List<Future<?>> maintenanceFutures = new ArrayList<Future<?>>();
+
+  /** guards the pending events and the flush scheduling state */
+  private final Object batchLock = new Object();
+  private List<ILoggingEvent> pendingEvents = new ArrayList<ILoggingEvent>();
+  private ScheduledFuture<?> delayedFlush;
+  private boolean flushRequested;
+  private final Runnable flushTask = new Runnable() {
+    public void run() {
+      flushPendingEvents();
+    }
+  };
+
   void setClock(Clock clock) {
     this.clock = clock;
   }
@@ -95,6 +219,193 @@ public class SQLiteAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
     this.maxHistory = Duration.valueOf(maxHistory);
   }
 
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Sets the number of events committed together in one transaction. The
+   * default of 1 writes every event in its own transaction, synchronously.
+   *
+   * @param batchSize the number of events per transaction
+   */
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
+  public Duration getMaxBatchDelay() {
+    return maxBatchDelay;
+  }
+
+  /**
+   * Sets the maximum time an event may wait in an incomplete batch before the
+   * batch is written. Only used when {@code batchSize} is greater than 1.
+   *
+   * @param maxBatchDelay the maximum delay (e.g., "500 milliseconds")
+   */
+  public void setMaxBatchDelay(Duration maxBatchDelay) {
+    this.maxBatchDelay = maxBatchDelay;
+  }
+
+  public Duration getMaxMaintenanceWait() {
+    return maxMaintenanceWait;
+  }
+
+  /**
+   * Sets how long {@link #stop()} waits in total for background cleanups,
+   * evictions and vacuums to finish before closing the database. These tasks
+   * stop at their next chunk once the appender is stopped.
+   *
+   * @param maxMaintenanceWait the maximum wait (e.g., "10 seconds")
+   */
+  public void setMaxMaintenanceWait(Duration maxMaintenanceWait) {
+    this.maxMaintenanceWait = maxMaintenanceWait;
+  }
+
+  public FileSize getMaxDatabaseSize() {
+    return maxDatabaseSize;
+  }
+
+  /**
+   * Caps the size of the database. Once exceeded, the oldest events are
+   * deleted with their properties and exception lines. Eviction runs in the
+   * background, so the database may briefly grow past the cap.
+   * <p>
+   * Shrinking the file requires {@code auto_vacuum=INCREMENTAL}, which is
+   * enabled for new databases. Databases created without it reuse the
+   * space of evicted events but do not shrink.
+   *
+   * @param maxDatabaseSize the maximum size (e.g., "5 MB")
+   */
+  public void setMaxDatabaseSize(FileSize maxDatabaseSize) {
+    this.maxDatabaseSize = maxDatabaseSize;
+  }
+
+  public boolean isCompactSchema() {
+    return compactSchema;
+  }
+
+  /**
+   * Selects the compact schema, where logger, thread and caller are IDs into
+   * lookup tables and the level is an integer. Default is false.
+   *
+   * @param compactSchema true to use the compact schema
+   */
+  public void setCompactSchema(boolean compactSchema) {
+    this.compactSchema = compactSchema;
+  }
+
+  public boolean isDeduplicateExceptions() {
+    return deduplicateExceptions;
+  }
+
+  /**
+   * Stores each distinct exception trace once and lets events refer to it,
+   * which keeps repeated exceptions from filling the database. Default is false.
+   *
+   * @param deduplicateExceptions true to deduplicate exceptions
+   */
+  public void setDeduplicateExceptions(boolean deduplicateExceptions) {
+    this.deduplicateExceptions = deduplicateExceptions;
+  }
+
+  public String getJournalMode() {
+    return journalMode;
+  }
+
+  /**
+   * Sets the journal mode: DELETE, TRUNCATE, PERSIST, MEMORY, WAL or OFF. WAL
+   * is usually the fastest for logging. By default the platform's mode is kept.
+   *
+   * @param journalMode the value of {@code PRAGMA journal_mode}
+   */
+  public void setJournalMode(String journalMode) {
+    this.journalMode = journalMode;
+  }
+
+  public String getSynchronous() {
+    return synchronous;
+  }
+
+  /**
+   * Sets how often SQLite syncs to storage: OFF, NORMAL, FULL or EXTRA.
+   * NORMAL is durable in WAL mode except on power loss. By default the
+   * platform's level (usually FULL) is kept.
+   *
+   * @param synchronous the value of {@code PRAGMA synchronous}
+   */
+  public void setSynchronous(String synchronous) {
+    this.synchronous = synchronous;
+  }
+
+  public Integer getCacheSize() {
+    return cacheSize;
+  }
+
+  /**
+   * Sets the page cache size, in pages if positive or in KiB if negative.
+   *
+   * @param cacheSize the value of {@code PRAGMA cache_size}
+   */
+  public void setCacheSize(Integer cacheSize) {
+    this.cacheSize = cacheSize;
+  }
+
+  public Integer getPageSize() {
+    return pageSize;
+  }
+
+  /**
+   * Sets the page size in bytes, a power of two between 512 and 65536. Only
+   * applies to a new database.
+   *
+   * @param pageSize the value of {@code PRAGMA page_size}
+   */
+  public void setPageSize(Integer pageSize) {
+    this.pageSize = pageSize;
+  }
+
+  public String getTempStore() {
+    return tempStore;
+  }
+
+  /**
+   * Sets where temporary tables and indices are kept: DEFAULT, FILE or MEMORY.
+   *
+   * @param tempStore the value of {@code PRAGMA temp_store}
+   */
+  public void setTempStore(String tempStore) {
+    this.tempStore = tempStore;
+  }
+
+  public Integer getWalAutocheckpoint() {
+    return walAutocheckpoint;
+  }
+
+  /**
+   * Sets the number of WAL pages after which a commit checkpoints the log.
+   * Zero or a negative value disables automatic checkpoints.
+   *
+   * @param walAutocheckpoint the value of {@code PRAGMA wal_autocheckpoint}
+   */
+  public void setWalAutocheckpoint(Integer walAutocheckpoint) {
+    this.walAutocheckpoint = walAutocheckpoint;
+  }
+
+  public Duration getCheckpointInterval() {
+    return checkpointInterval;
+  }
+
+  /**
+   * Sets the period of the background checkpoint that truncates the WAL file
+   * in WAL mode. Zero disables it. Default is 1 minute.
+   *
+   * @param checkpointInterval the checkpoint period
+   */
+  public void setCheckpointInterval(Duration checkpointInterval) {
+    this.checkpointInterval = checkpointInterval;
+  }
+
   /**
    * @return the absolute path to the SQLite database
      */
@@ -134,6 +445,24 @@ public class SQLiteAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
   public void start() {
     this.started = false;
 
+    if (batchSize < 1) {
+      addError("Invalid batch size [" + batchSize + "]");
+      return;
+    }
+    if (batchSize > 1 && (maxBatchDelay == null || maxBatchDelay.getMilliseconds() <= 0)) {
+      addError("Invalid max batch delay [" + maxBatchDelay + "]");
+      return;
+    }
+    if (!isValidPragmaValue("journal mode", journalMode, JOURNAL_MODES)
+        || !isValidPragmaValue("synchronous level", synchronous, SYNCHRONOUS_LEVELS)
+        || !isValidPragmaValue("temp store", tempStore, TEMP_STORES)) {
+      return;
+    }
+    if (pageSize != null && (pageSize < 512 || pageSize > 65536 || Integer.bitCount(pageSize) != 1)) {
+      addError("Invalid page size [" + pageSize + "]");
+      return;
+    }
+
     File dbfile = getDatabaseFile(this.filename);
     if (dbfile == null) {
       addError("Cannot determine database filename");
@@ -157,18 +486,61 @@ public class SQLiteAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
 
       insertExceptionSQL = SQLBuilder.buildInsertExceptionSQL(dbNameResolver);
       insertPropertiesSQL = SQLBuilder.buildInsertPropertiesSQL(dbNameResolver);
-      insertSQL = SQLBuilder.buildInsertSQL(dbNameResolver);
+      insertSQL = compactSchema ? SQLBuilder.buildInsertCompactSQL(dbNameResolver)
+          : SQLBuilder.buildInsertSQL(dbNameResolver);
 
       try {
-        this.db.execSQL(SQLBuilder.buildCreateLoggingEventTableSQL(dbNameResolver));
+        applyPragmas();
+        if (!hasExpectedSchema()) {
+          addError("Database " + dbfile + " uses the " + (compactSchema ? "default" : "compact")
+              + " schema, which does not match compactSchema=" + compactSchema);
+          this.db.close();
+          return;
+        }
+        if (compactSchema) {
+          this.db.execSQL(SQLBuilder.buildCreateCompactLoggingEventTableSQL(dbNameResolver));
+          this.db.execSQL(SQLBuilder.buildCreateLoggerTableSQL(dbNameResolver));
+          this.db.execSQL(SQLBuilder.buildCreateThreadTableSQL(dbNameResolver));
+          this.db.execSQL(SQLBuilder.buildCreateCallerTableSQL(dbNameResolver));
+          loggerTable = new SQLiteLookupTable(db, dbNameResolver, TableName.LOGGING_LOGGER,
+              ColumnName.LOGGER_ID, ColumnName.LOGGER_NAME);
+          threadTable = new SQLiteLookupTable(db, dbNameResolver, TableName.LOGGING_THREAD,
+              ColumnName.THREAD_ID, ColumnName.THREAD_NAME);
+          callerTable = new SQLiteLookupTable(db, dbNameResolver, TableName.LOGGING_CALLER,
+              ColumnName.CALLER_ID, SQLBuilder.CALLER_COLUMNS);
+        } else {
+          this.db.execSQL(SQLBuilder.buildCreateLoggingEventTableSQL(dbNameResolver));
+        }
         this.db.execSQL(SQLBuilder.buildCreatePropertyTableSQL(dbNameResolver));
         this.db.execSQL(SQLBuilder.buildCreateExceptionTableSQL(dbNameResolver));
+        if (deduplicateExceptions) {
+          this.db.execSQL(SQLBuilder.buildCreateTraceTableSQL(dbNameResolver));
+          this.db.execSQL(SQLBuilder.buildCreateEventTraceTableSQL(dbNameResolver));
+          traceTable = new SQLiteTraceTable(db, dbNameResolver);
+        }
 
-        clearExpiredLogs(this.db);
+        insertStatement = db.compileStatement(insertSQL);
+        insertPropertiesStatement = db.compileStatement(insertPropertiesSQL);
+        insertExceptionStatement = db.compileStatement(insertExceptionSQL);
 
         super.start();
 
         this.started = true;
+
+        clearExpiredLogs(this.db);
+        submitMaintenance(new Runnable() {
+          public void run() {
+            deleteOrphanedRows();
+          }
+        });
+        scheduleCheckpoints();
+        if (maxDatabaseSize != null) {
+          submitMaintenance(new Runnable() {
+            public void run() {
+              enforceMaxDatabaseSize();
+            }
+          });
+        }
       } catch (SQLiteException e) {
         addError("Cannot create database tables", e);
       }
@@ -176,13 +548,350 @@ public class SQLiteAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
   }
 
   /**
-   * Removes expired logs from the database
+   * Checks that an existing event table has the columns of the selected schema
+   */
+  private boolean hasExpectedSchema() {
+    String probedColumn = dbNameResolver.getColumnName(ColumnName.LOGGER_ID);
+    boolean tableExists = false;
+    boolean compactTable = false;
+    Cursor c = db.rawQuery("PRAGMA table_info(" + dbNameResolver.getTableName(TableName.LOGGING_EVENT) + ")", null);
+    try {
+      int nameIndex = c.getColumnIndex("name");
+      while (c.moveToNext()) {
+        tableExists = true;
+        if (probedColumn.equals(c.getString(nameIndex))) {
+          compactTable = true;
+        }
+      }
+    } finally {
+      c.close();
+    }
+    return !tableExists || compactTable == compactSchema;
+  }
+
+  private boolean isValidPragmaValue(String name, String value, List<String> allowed) {
+    if (value != null && !allowed.contains(value.trim().toUpperCase(Locale.US))) {
+      addError("Invalid " + name + " [" + value + "], expected one of " + allowed);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Applies the configured pragmas to the newly opened database
+   */
+  private void applyPragmas() {
+    initializeNewDatabase();
+    incrementalVacuum = maxDatabaseSize != null
+        && DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) == AUTO_VACUUM_INCREMENTAL;
+    if (maxDatabaseSize != null && !incrementalVacuum) {
+      addWarn("Database was created without auto_vacuum=INCREMENTAL: space freed by "
+          + "maxDatabaseSize will be reused, but the file will not shrink");
+    }
+
+    walMode = false;
+    if (journalMode != null) {
+      String requested = journalMode.trim().toUpperCase(Locale.US);
+      String mode = DatabaseUtils.stringForQuery(db, "PRAGMA journal_mode = " + requested, null);
+      walMode = "WAL".equalsIgnoreCase(mode);
+      if (!requested.equalsIgnoreCase(mode)) {
+        addWarn("Journal mode " + requested + " not supported, using " + mode);
+      }
+    }
+    if (synchronous != null) {
+      pragma("synchronous = " + synchronous.trim().toUpperCase(Locale.US));
+    }
+    if (cacheSize != null) {
+      pragma("cache_size = " + cacheSize);
+    }
+    if (tempStore != null) {
+      pragma("temp_store = " + tempStore.trim().toUpperCase(Locale.US));
+    }
+    if (walAutocheckpoint != null) {
+      pragma("wal_autocheckpoint = " + walAutocheckpoint);
+    }
+    if (walMode && !supportsTruncateCheckpoint()) {
+      // without wal_checkpoint(TRUNCATE), bound the file when the WAL restarts
+      pragma("journal_size_limit = 0");
+    }
+  }
+
+  /**
+   * Applies {@code page_size} and, with {@code maxDatabaseSize},
+   * {@code auto_vacuum=INCREMENTAL} to a database that holds no event table
+   * yet. Android creates its metadata table on open, so both only take effect
+   * through a VACUUM, which is cheap on a file holding only that table. A
+   * populated database is never fully vacuumed.
+   */
+  private void initializeNewDatabase() {
+    boolean changePageSize = pageSize != null
+        && DatabaseUtils.longForQuery(db, "PRAGMA page_size", null) != pageSize;
+    boolean changeAutoVacuum = maxDatabaseSize != null
+        && DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) != AUTO_VACUUM_INCREMENTAL;
+    if (!changePageSize && !changeAutoVacuum) {
+      return;
+    }
+    long eventTables = DatabaseUtils.longForQuery(db,
+        "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?",
+        new String[] { dbNameResolver.getTableName(TableName.LOGGING_EVENT) });
+    if (eventTables != 0) {
+      if (changePageSize) {
+        addWarn("Page size of an existing database cannot be changed");
+      }
+      return;
+    }
+    if (changePageSize) {
+      pragma("page_size = " + pageSize);
+    }
+    if (changeAutoVacuum) {
+      pragma("auto_vacuum = INCREMENTAL");
+    }
+    db.execSQL("VACUUM");
+  }
+
+  private boolean supportsTruncateCheckpoint() {
+    String[] version = DatabaseUtils.stringForQuery(db, "SELECT sqlite_version()", null).split("\\.");
+    int major = Integer.parseInt(version[0]);
+    int minor = version.length > 1 ? Integer.parseInt(version[1]) : 0;
+    int patch = version.length > 2 ? Integer.parseInt(version[2]) : 0;
+    // TRUNCATE mode appeared in SQLite 3.8.8
+    return major > 3 || (major == 3 && (minor > 8 || (minor == 8 && patch >= 8)));
+  }
+
+  /**
+   * Runs a pragma through a cursor, since some pragmas return a row, which
+   * {@link SQLiteDatabase#execSQL(String)} rejects
+   */
+  private void pragma(String statement) {
+    Cursor c = db.rawQuery("PRAGMA " + statement, null);
+    try {
+      while (c.moveToNext()) {
+        // drain
+      }
+    } finally {
+      c.close();
+    }
+  }
+
+  /**
+   * Returns the current value of a pragma on the appender's connection
+   */
+  String queryPragma(String name) {
+    synchronized (dbLock) {
+      return DatabaseUtils.stringForQuery(db, "PRAGMA " + name, null);
+    }
+  }
+
+  private void scheduleCheckpoints() {
+    if (walMode && checkpointInterval != null && checkpointInterval.getMilliseconds() > 0) {
+      long period = checkpointInterval.getMilliseconds();
+      try {
+        checkpointFuture = getContext().getScheduledExecutorService().scheduleWithFixedDelay(new Runnable() {
+          public void run() {
+            checkpoint();
+          }
+        }, period, period, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        addWarn("Cannot schedule WAL checkpoints", e);
+      }
+    }
+  }
+
+  /**
+   * Copies the WAL into the database and truncates it. Older SQLite versions
+   * treat TRUNCATE as a passive checkpoint, after which journal_size_limit
+   * truncates the WAL when the next write restarts it.
+   */
+  void checkpoint() {
+    synchronized (dbLock) {
+      if (!isStarted() || insertStatement == null) {
+        return;
+      }
+      try {
+        pragma("wal_checkpoint(TRUNCATE)");
+      } catch (Throwable e) {
+        addError("Cannot checkpoint the write-ahead log", e);
+      }
+    }
+  }
+
+  /**
+   * Removes expired logs from the database, in the background, if
+   * {@code maxHistory} has elapsed since the last cleanup
    * @param db
    */
-  private void clearExpiredLogs(SQLiteDatabase db) {
-    if (lastCheckExpired(this.maxHistory, this.lastCleanupTime)) {
+  private void clearExpiredLogs(final SQLiteDatabase db) {
+    if (isStarted() && lastCheckExpired(this.maxHistory, this.lastCleanupTime)) {
       this.lastCleanupTime = this.clock.currentTimeMillis();
-      this.getLogCleaner().performLogCleanup(db, this.maxHistory);
+      boolean submitted = submitMaintenance(new Runnable() {
+        public void run() {
+          runLogCleanup(db);
+        }
+      });
+      if (!submitted) {
+        // try again at the next expiration
+        this.lastCleanupTime = 0;
+      }
+    }
+  }
+
+  /**
+   * Runs a maintenance task on the context's executor
+   * @return false if the executor rejected the task
+   */
+  private boolean submitMaintenance(Runnable task) {
+    synchronized (maintenanceFutures) {
+      Iterator<Future<?>> it = maintenanceFutures.iterator();
+      while (it.hasNext()) {
+        if (it.next().isDone()) {
+          it.remove();
+        }
+      }
+      try {
+        maintenanceFutures.add(getContext().getScheduledExecutorService().submit(task));
+        return true;
+      } catch (RejectedExecutionException e) {
+        // executor is shutting down
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Waits up to {@code maxMaintenanceWait} for the maintenance tasks submitted
+   * so far, which return early once the appender is stopped
+   */
+  private void awaitMaintenance() {
+    List<Future<?>> futures;
+    synchronized (maintenanceFutures) {
+      futures = new ArrayList<Future<?>>(maintenanceFutures);
+      maintenanceFutures.clear();
+    }
+    long maxWaitMs = (maxMaintenanceWait == null) ? 0 : maxMaintenanceWait.getMilliseconds();
+    long deadline = System.currentTimeMillis() + maxWaitMs;
+    for (Future<?> future : futures) {
+      try {
+        future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        addWarn("Timed out waiting for a maintenance task to finish after " + maxMaintenanceWait);
+        return;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        addError("Unexpected exception while waiting for a maintenance task to finish", e);
+      }
+    }
+  }
+
+  private void runLogCleanup(SQLiteDatabase db) {
+    synchronized (cleanupLock) {
+      if (!isStarted()) {
+        return;
+      }
+      try {
+        getLogCleaner().performLogCleanup(db, this.maxHistory);
+        if (incrementalVacuum) {
+          releaseFreePages();
+        }
+      } catch (Throwable e) {
+        addError("Cannot remove expired logs", e);
+      }
+    }
+  }
+
+  /**
+   * Evicts the oldest events while the database is larger than
+   * {@code maxDatabaseSize}, then releases the freed pages.
+   */
+  void enforceMaxDatabaseSize() {
+    synchronized (cleanupLock) {
+      if (!isStarted() || maxDatabaseSize == null) {
+        return;
+      }
+      try {
+        final long startNanos = System.nanoTime();
+        final long maxBytes = maxDatabaseSize.getSize();
+        final long targetBytes = maxBytes / 100 * EVICTION_TARGET_PERCENT;
+        final String eventTable = dbNameResolver.getTableName(TableName.LOGGING_EVENT);
+        final String eventId = dbNameResolver.getColumnName(ColumnName.EVENT_ID);
+        final String eventIdRangeSQL = "SELECT MAX(" + eventId + ") - MIN(" + eventId + ") + 1 FROM " + eventTable;
+
+        long evicted = 0;
+        boolean more = true;
+        long limitBytes = maxBytes;
+        while (more && isStarted()) {
+          synchronized (dbLock) {
+            long used = usedBytes();
+            if (used <= limitBytes) {
+              break;
+            }
+            limitBytes = targetBytes;
+            // evict the share of the events matching the excess, estimating
+            // the event count from the range of their IDs
+            long events = DatabaseUtils.longForQuery(db, eventIdRangeSQL, null);
+            long toEvict = (events * (used - targetBytes) + used - 1) / used;
+            int limit = (int) Math.max(1, Math.min(toEvict, CLEANUP_CHUNK_SIZE));
+            String oldestWhere = SQLBuilder.buildOldestEventIdsWhereSQL(dbNameResolver, limit);
+            db.beginTransaction();
+            try {
+              db.delete(dbNameResolver.getTableName(TableName.LOGGING_EVENT_PROPERTY), oldestWhere, null);
+              db.delete(dbNameResolver.getTableName(TableName.LOGGING_EVENT_EXCEPTION), oldestWhere, null);
+              if (deduplicateExceptions) {
+                db.delete(dbNameResolver.getTableName(TableName.LOGGING_EVENT_TRACE), oldestWhere, null);
+              }
+              int deleted = db.delete(eventTable, oldestWhere, null);
+              evicted += deleted;
+              more = deleted > 0;
+              db.setTransactionSuccessful();
+            } finally {
+              db.endTransaction();
+            }
+          }
+        }
+
+        if (evicted > 0) {
+          deleteUnreferencedTraces();
+        }
+        if (incrementalVacuum) {
+          releaseFreePages();
+        }
+        if (evicted > 0) {
+          long elapsedMs = (System.nanoTime() - startNanos) / 1000000;
+          addInfo("Evicted " + evicted + " event(s) to stay under " + maxDatabaseSize + " in " + elapsedMs + " ms");
+        }
+      } catch (Throwable e) {
+        addError("Cannot enforce max database size", e);
+      }
+    }
+  }
+
+  /**
+   * Bytes used by live pages, measured cheaply from the page counts
+   */
+  private long usedBytes() {
+    long pageCount = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+    long freePages = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+    return (pageCount - freePages) * db.getPageSize();
+  }
+
+  /**
+   * Returns free pages to the file system in bounded steps, so that the write
+   * lock is never held for long.
+   */
+  private void releaseFreePages() {
+    long freePages = Long.MAX_VALUE;
+    while (isStarted()) {
+      synchronized (dbLock) {
+        long remaining = DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+        if (remaining == 0 || remaining >= freePages) {
+          return;
+        }
+        freePages = remaining;
+        // incremental_vacuum frees one page per step of the statement, so it
+        // must run through a cursor rather than execSQL, which steps once
+        pragma("incremental_vacuum(" + VACUUM_CHUNK_PAGES + ")");
+      }
     }
   }
 
@@ -211,17 +920,122 @@ public class SQLiteAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
       this.logCleaner = new SQLiteLogCleaner() {
         public void performLogCleanup(SQLiteDatabase db, Duration expiry) {
           final long expiryMs = thisClock.currentTimeMillis() - expiry.getMilliseconds();
-          final String deleteExpiredLogsSQL = SQLBuilder.buildDeleteExpiredLogsSQL(dbNameResolver, expiryMs);
-          db.execSQL(deleteExpiredLogsSQL);
+          deleteExpiredLogs(db, expiryMs);
         }
       };
     }
     return this.logCleaner;
   }
 
+  /**
+   * Deletes the events logged before {@code expiryMs}, with their properties
+   * and exception lines. Rows are deleted in chunks of
+   * {@link #CLEANUP_CHUNK_SIZE} events, each in its own short transaction, so
+   * that logging is never blocked for long.
+   */
+  private void deleteExpiredLogs(SQLiteDatabase db, long expiryMs) {
+    final long startNanos = System.nanoTime();
+    final String eventTable = dbNameResolver.getTableName(TableName.LOGGING_EVENT);
+    final String propertyTable = dbNameResolver.getTableName(TableName.LOGGING_EVENT_PROPERTY);
+    final String exceptionTable = dbNameResolver.getTableName(TableName.LOGGING_EVENT_EXCEPTION);
+    final String expiredWhere = SQLBuilder.buildExpiredEventIdsWhereSQL(dbNameResolver, expiryMs, CLEANUP_CHUNK_SIZE);
+    final String eventTraceTable = dbNameResolver.getTableName(TableName.LOGGING_EVENT_TRACE);
+
+    long events = 0;
+    long properties = 0;
+    long exceptionLines = 0;
+    boolean more = true;
+    while (more && isStarted()) {
+      synchronized (dbLock) {
+        db.beginTransaction();
+        try {
+          // children first, while their events still identify them
+          properties += db.delete(propertyTable, expiredWhere, null);
+          exceptionLines += db.delete(exceptionTable, expiredWhere, null);
+          if (deduplicateExceptions) {
+            exceptionLines += db.delete(eventTraceTable, expiredWhere, null);
+          }
+          int deleted = db.delete(eventTable, expiredWhere, null);
+          events += deleted;
+          more = deleted == CLEANUP_CHUNK_SIZE;
+          db.setTransactionSuccessful();
+        } finally {
+          db.endTransaction();
+        }
+      }
+    }
+
+    if (events > 0) {
+      deleteUnreferencedTraces();
+    }
+
+    if (events > 0 || properties > 0 || exceptionLines > 0) {
+      long elapsedMs = (System.nanoTime() - startNanos) / 1000000;
+      addInfo("Deleted " + events + " expired event(s), " + properties + " property row(s) and "
+          + exceptionLines + " exception line(s) in " + elapsedMs + " ms");
+    }
+  }
+
+  /**
+   * Deletes the property and exception rows left over from events deleted
+   * without them, e.g. by a custom {@link SQLiteLogCleaner} or by an older
+   * version. Runs once at start, since cleanups delete the rows of each
+   * event along with it.
+   */
+  private void deleteOrphanedRows() {
+    synchronized (cleanupLock) {
+      try {
+        long rows = deleteOrphanedRows(TableName.LOGGING_EVENT_PROPERTY)
+            + deleteOrphanedRows(TableName.LOGGING_EVENT_EXCEPTION);
+        if (deduplicateExceptions) {
+          rows += deleteOrphanedRows(TableName.LOGGING_EVENT_TRACE);
+        }
+        if (rows > 0) {
+          addInfo("Deleted " + rows + " property and exception row(s) of deleted events");
+        }
+      } catch (Throwable e) {
+        addError("Cannot delete the rows of deleted events", e);
+      }
+    }
+  }
+
+  private long deleteOrphanedRows(TableName childTable) {
+    final String table = dbNameResolver.getTableName(childTable);
+    final String orphanedWhere = SQLBuilder.buildOrphanedRowsWhereSQL(dbNameResolver, childTable, CLEANUP_CHUNK_SIZE);
+    long rows = 0;
+    boolean more = true;
+    while (more && isStarted()) {
+      synchronized (dbLock) {
+        int deleted = db.delete(table, orphanedWhere, null);
+        rows += deleted;
+        more = deleted > 0;
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Deletes the deduplicated exception traces that no event refers to anymore
+   */
+  private void deleteUnreferencedTraces() {
+    if (!deduplicateExceptions) {
+      return;
+    }
+    synchronized (dbLock) {
+      if (db.isOpen()) {
+        db.delete(dbNameResolver.getTableName(TableName.LOGGING_TRACE),
+            SQLBuilder.buildUnreferencedTracesWhereSQL(dbNameResolver), null);
+        if (traceTable != null) {
+          traceTable.clearCache();
+        }
+      }
+    }
+  }
+
   /**
    * Sets the {@code SQLiteLogCleaner}, invoked when {@code maxHistory} is exceeded
-   * at startup and in between logging events
+   * at startup and in between logging events. The cleaner runs on a background
+   * thread of the context's executor, never on the logging thread.
    * @param logCleaner
    */
   public void setLogCleaner(SQLiteLogCleaner logCleaner) {
@@ -234,7 +1048,9 @@ public class SQLiteAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
    */
   @Override
   protected void finalize() throws Throwable {
-    this.db.close();
+    if (this.db != null) {
+      this.db.close();
+    }
   }
 
   /*
@@ -243,10 +1059,57 @@ public class SQLiteAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
    */
   @Override
   public void stop() {
-    this.db.close();
+    super.stop();
+    if (checkpointFuture != null) {
+      checkpointFuture.cancel(false);
+      checkpointFuture = null;
+    }
+    // running maintenance tasks stop at their next chunk
+    awaitMaintenance();
+    flushPendingEvents();
+    synchronized (dbLock) {
+      closeStatements();
+      if (this.db != null) {
+        this.db.close();
+      }
+    }
     this.lastCleanupTime = 0;
   }
 
+  /**
+   * Forgets cached IDs and trace hashes, e.g. after a rollback that may have
+   * undone the insertion of their rows
+   */
+  private void clearLookupCaches() {
+    if (loggerTable != null) {
+      loggerTable.clearCache();
+      threadTable.clearCache();
+      callerTable.clearCache();
+    }
+    if (traceTable != null) {
+      traceTable.clearCache();
+    }
+  }
+
+  private void closeStatements() {
+    if (loggerTable != null) {
+      loggerTable.close();
+      threadTable.close();
+      callerTable.close();
+      loggerTable = threadTable = callerTable = null;
+    }
+    if (traceTable != null) {
+      traceTable.close();
+      traceTable = null;
+    }
+    if (insertStatement != null) {
+      insertStatement.close();
+      insertPropertiesStatement.close();
+      insertExceptionStatement.close();
+      insertStatement = insertPropertiesStatement = insertExceptionStatement = null;
+    }
+  }
+
   /*
    * (non-Javadoc)
    * @see ch.qos.logback.core.UnsynchronizedAppenderBase#append(java.lang.Object)
@@ -254,28 +1117,167 @@ public class SQLiteAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
   @Override
   public void append(ILoggingEvent eventObject) {
     if (isStarted()) {
+      if (batchSize <= 1) {
+        writeEvents(Collections.singletonList(eventObject));
+      } else {
+        enqueue(eventObject);
+      }
+    }
+  }
+
+  /**
+   * Adds an event to the pending batch, and arranges for the batch to be
+   * written when it is full or has waited for {@code maxBatchDelay}.
+   */
+  private void enqueue(ILoggingEvent eventObject) {
+    // the event is written later, possibly by another thread
+    eventObject.prepareForDeferredProcessing();
+    eventObject.getCallerData();
+
+    boolean flushNow = false;
+    boolean flushHere = false;
+    synchronized (batchLock) {
+      pendingEvents.add(eventObject);
+      int pending = pendingEvents.size();
+      if (pending >= batchSize * MAX_PENDING_BATCHES) {
+        // the background writer cannot keep up
+        flushHere = true;
+      } else if (pending >= batchSize) {
+        flushNow = !flushRequested;
+        flushRequested = true;
+      } else if (pending == 1) {
+        delayedFlush = schedule(maxBatchDelay.getMilliseconds());
+      }
+    }
+
+    if (flushHere) {
+      flushPendingEvents();
+    } else if (flushNow && schedule(0) == null) {
+      flushPendingEvents();
+    }
+  }
+
+  private ScheduledFuture<?> schedule(long delayMs) {
+    try {
+      return getContext().getScheduledExecutorService().schedule(flushTask, delayMs, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // executor is shutting down: pending events get written on stop
+      return null;
+    }
+  }
+
+  /**
+   * Writes all pending events in one transaction.
+   */
+  void flushPendingEvents() {
+    synchronized (dbLock) {
+      List<ILoggingEvent> events;
+      synchronized (batchLock) {
+        if (pendingEvents.isEmpty()) {
+          return;
+        }
+        events = pendingEvents;
+        pendingEvents = new ArrayList<ILoggingEvent>(batchSize);
+        flushRequested = false;
+        if (delayedFlush != null) {
+          delayedFlush.cancel(false);
+          delayedFlush = null;
+        }
+      }
+      writeEvents(events);
+    }
+  }
+
+  /**
+   * Inserts events into the database in a single transaction, reusing the
+   * compiled statements. If the transaction fails, the events are retried one
+   * per transaction, so that only the failing events are lost.
+   */
+  private void writeEvents(List<ILoggingEvent> events) {
+    synchronized (dbLock) {
+      if (insertStatement == null) {
+        addError("Cannot append " + events.size() + " event(s): database is closed");
+        return;
+      }
       try {
         clearExpiredLogs(db);
-        SQLiteStatement stmt = db.compileStatement(insertSQL);
         try {
-          db.beginTransaction();
-          long eventId = subAppend(eventObject, stmt);
-          if (eventId != -1) {
-            secondarySubAppend(eventObject, eventId);
-            db.setTransactionSuccessful();
-          }
-        } finally {
-          if (db.inTransaction()) {
-            db.endTransaction();
+          writeInTransaction(events);
+        } catch (Throwable e) {
+          if (events.size() == 1) {
+            addError("Cannot append event", e);
+          } else {
+            for (ILoggingEvent event : events) {
+              try {
+                writeInTransaction(Collections.singletonList(event));
+              } catch (Throwable eventError) {
+                addError("Cannot append event", eventError);
+              }
+            }
           }
-          stmt.close();
         }
+        checkDatabaseSize(events.size());
       } catch (Throwable e) {
-        addError("Cannot append event", e);
+        addError("Cannot append " + events.size() + " event(s)", e);
       }
     }
   }
 
+  /**
+   * Inserts events into the database in a single transaction, which is rolled
+   * back if any of them fails
+   */
+  private void writeInTransaction(List<ILoggingEvent> events) throws SQLException {
+    db.beginTransaction();
+    boolean committed = false;
+    try {
+      boolean inserted = false;
+      for (ILoggingEvent event : events) {
+        long eventId = subAppend(event, insertStatement);
+        if (eventId != -1) {
+          secondarySubAppend(event, eventId);
+          inserted = true;
+        }
+      }
+      if (inserted) {
+        db.setTransactionSuccessful();
+        committed = true;
+      }
+    } finally {
+      try {
+        if (db.inTransaction()) {
+          db.endTransaction();
+        }
+      } catch (RuntimeException e) {
+        committed = false;
+        throw e;
+      } finally {
+        if (!committed) {
+          // the rows of IDs cached during the transaction were rolled back
+          clearLookupCaches();
+        }
+      }
+    }
+  }
+
+  /**
+   * Schedules an eviction check every {@link #SIZE_CHECK_INTERVAL} events
+   */
+  private void checkDatabaseSize(int written) {
+    if (maxDatabaseSize == null || !isStarted()) {
+      return;
+    }
+    eventsSinceSizeCheck += written;
+    if (eventsSinceSizeCheck >= SIZE_CHECK_INTERVAL) {
+      eventsSinceSizeCheck = 0;
+      submitMaintenance(new Runnable() {
+        public void run() {
+          enforceMaxDatabaseSize();
+        }
+      });
+    }
+  }
+
   /**
    * Inserts the main details of a log event into the database
    *
@@ -286,11 +1288,21 @@ public class SQLiteAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
    */
   private long subAppend(ILoggingEvent event, SQLiteStatement insertStatement) throws SQLException {
 
-    bindLoggingEvent(insertStatement, event);
+    // the statement is reused: unset the optional columns of the previous event
+    insertStatement.clearBindings();
+    if (compactSchema) {
+      bindCompactLoggingEvent(insertStatement, event);
+    } else {
+      bindLoggingEvent(insertStatement, event);
+    }
     bindLoggingEventArguments(insertStatement, event.getArgumentArray());
 
     // This is expensive... should we do it every time?
-    bindCallerData(insertStatement, event.getCallerData());
+    if (compactSchema) {
+      bindCompactCallerData(insertStatement, event.getCallerData());
+    } else {
+      bindCallerData(insertStatement, event.getCallerData());
+    }
 
     long insertId = -1;
     try {
@@ -314,7 +1326,11 @@ public class SQLiteAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
     insertProperties(mergedMap, eventId);
 
     if (event.getThrowableProxy() != null) {
-      insertThrowable(event.getThrowableProxy(), eventId);
+      if (traceTable != null) {
+        traceTable.insert(event.getThrowableProxy(), eventId);
+      } else {
+        insertThrowable(event.getThrowableProxy(), eventId);
+      }
     }
   }
 
@@ -334,6 +1350,12 @@ public class SQLiteAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
   private static final int  CALLER_LINE_INDEX = 14;
 //  private static final int  EVENT_ID_INDEX  = 15;
 
+  // compact schema: same indexes as above, except for these
+  private static final int  LOGGER_ID_INDEX = 3;
+  private static final int  LEVEL_INT_INDEX = 4;
+  private static final int  THREAD_ID_INDEX = 5;
+  private static final int  CALLER_ID_INDEX = 11;
+
   /**
    * Binds the main details of a log event to a SQLite statement's parameters
    *
@@ -350,6 +1372,40 @@ public class SQLiteAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
     stmt.bindLong(REFERENCE_FLAG_INDEX, computeReferenceMask(event));
   }
 
+  /**
+   * Binds the main details of a log event to the insert statement of the
+   * compact schema, replacing names with their lookup IDs
+   *
+   * @param stmt the SQLite statement to modify
+   * @param event the event containing the details to bind
+   * @throws SQLException
+   */
+  private void bindCompactLoggingEvent(SQLiteStatement stmt, ILoggingEvent event) throws SQLException {
+    stmt.bindLong(TIMESTMP_INDEX, event.getTimeStamp());
+    stmt.bindString(FORMATTED_MESSAGE_INDEX, event.getFormattedMessage());
+    stmt.bindLong(LOGGER_ID_INDEX, loggerTable.idOf(event.getLoggerName()));
+    stmt.bindLong(LEVEL_INT_INDEX, event.getLevel().toInt());
+    stmt.bindLong(THREAD_ID_INDEX, threadTable.idOf(event.getThreadName()));
+    stmt.bindLong(REFERENCE_FLAG_INDEX, computeReferenceMask(event));
+  }
+
+  /**
+   * Binds the lookup ID of the calling function's details to the insert
+   * statement of the compact schema
+   *
+   * @param stmt the SQLite statement to modify
+   * @param callerDataArray the caller's stack trace
+   */
+  private void bindCompactCallerData(SQLiteStatement stmt, StackTraceElement[] callerDataArray) {
+    if (callerDataArray != null && callerDataArray.length > 0) {
+      StackTraceElement callerData = callerDataArray[0];
+      if (callerData != null) {
+        stmt.bindLong(CALLER_ID_INDEX, callerTable.idOf(callerData.getFileName(), callerData.getClassName(),
+            callerData.getMethodName(), Integer.toString(callerData.getLineNumber())));
+      }
+    }
+  }
+
   /**
    * Binds a logging event's arguments (e.g., <code>logger.debug("x={} y={}", arg1, arg2)</code>)
    * to a SQLite statement's parameters
@@ -456,16 +1512,12 @@ public class SQLiteAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
    */
   private void insertProperties(Map<String, String> mergedMap, long eventId) throws SQLException {
     if (mergedMap.size() > 0) {
-      SQLiteStatement stmt = db.compileStatement(insertPropertiesSQL);
-      try {
-        for (Entry<String,String> entry : mergedMap.entrySet()) {
-          stmt.bindLong(1, eventId);
-          stmt.bindString(2, entry.getKey());
-          stmt.bindString(3, entry.getValue());
-          stmt.executeInsert();
-        }
-      } finally {
-        stmt.close();
+      SQLiteStatement stmt = insertPropertiesStatement;
+      for (Entry<String,String> entry : mergedMap.entrySet()) {
+        stmt.bindLong(1, eventId);
+        stmt.bindString(2, entry.getKey());
+        stmt.bindString(3, entry.getValue());
+        stmt.executeInsert();
       }
     }
   }
@@ -512,38 +1564,34 @@ public class SQLiteAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
 
   private void insertThrowable(IThrowableProxy tp, long eventId) throws SQLException {
 
-    SQLiteStatement stmt = db.compileStatement(insertExceptionSQL);
-    try {
-      short baseIndex = 0;
-      while (tp != null) {
-        StringBuilder buf = new StringBuilder();
-        ThrowableProxyUtil.subjoinFirstLine(buf, tp);
-        insertException(stmt, buf.toString(), baseIndex++, eventId);
-
-        int commonFrames = tp.getCommonFrames();
-        StackTraceElementProxy[] stepArray = tp.getStackTraceElementProxyArray();
-
-        for (int i = 0; i < stepArray.length - commonFrames; i++) {
-          StringBuilder sb = new StringBuilder();
-          sb.append(CoreConstants.TAB);
-          ThrowableProxyUtil.subjoinSTEP(sb, stepArray[i]);
-          insertException(stmt, sb.toString(), baseIndex++, eventId);
-        }
+    SQLiteStatement stmt = insertExceptionStatement;
+    short baseIndex = 0;
+    while (tp != null) {
+      StringBuilder buf = new StringBuilder();
+      ThrowableProxyUtil.subjoinFirstLine(buf, tp);
+      insertException(stmt, buf.toString(), baseIndex++, eventId);
 
-        if (commonFrames > 0) {
-          StringBuilder sb = new StringBuilder();
-          sb.append(CoreConstants.TAB)
-            .append("... ")
-            .append(commonFrames)
-            .append(" common frames omitted");
+      int commonFrames = tp.getCommonFrames();
+      StackTraceElementProxy[] stepArray = tp.getStackTraceElementProxyArray();
 
-          insertException(stmt, sb.toString(), baseIndex++, eventId);
-        }
+      for (int i = 0; i < stepArray.length - commonFrames; i++) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(CoreConstants.TAB);
+        ThrowableProxyUtil.subjoinSTEP(sb, stepArray[i]);
+        insertException(stmt, sb.toString(), baseIndex++, eventId);
+      }
 
-        tp = tp.getCause();
+      if (commonFrames > 0) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(CoreConstants.TAB)
+          .append("... ")
+          .append(commonFrames)
+          .append(" common frames omitted");
+
+        insertException(stmt, sb.toString(), baseIndex++, eventId);
       }
-    } finally {
-      stmt.close();
+
+      tp = tp.getCause();
     }
   }
 }
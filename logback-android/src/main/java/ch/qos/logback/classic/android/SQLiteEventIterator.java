@@ -0,0 +1,171 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.classic.android;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import android.database.Cursor;
+import ch.qos.logback.classic.Level;
+
+/**
+ * Streams the events selected by {@link SQLiteLogReader} from database
+ * cursors, in the order they were written. The event cursor and the cursors
+ * of their properties and exceptions are all ordered by event ID and read in
+ * step, so memory use does not depend on the number of events.
+ * <p>
+ * The cursors are closed once the last event is read; close the iterator to
+ * stop reading earlier.
+ */
+public class SQLiteEventIterator implements Iterator<SQLiteLoggingEvent>, Closeable {
+
+  // columns of the event cursor
+  static final int EVENT_ID = 0;
+  static final int TIMESTMP = 1;
+  static final int FORMATTED_MESSAGE = 2;
+  static final int LOGGER_NAME = 3;
+  static final int LEVEL = 4;
+  static final int THREAD_NAME = 5;
+  static final int CALLER_FILENAME = 6;
+  static final int CALLER_CLASS = 7;
+  static final int CALLER_METHOD = 8;
+  static final int CALLER_LINE = 9;
+
+  private final Cursor events;
+  private final boolean intLevels;
+  // event ID, key and value of properties
+  private final Cursor properties;
+  // event ID and line of per-line exceptions
+  private final Cursor exceptionLines;
+  // event ID and rendered trace of deduplicated exceptions, if any
+  private final Cursor traces;
+  private boolean hasNext;
+  private boolean closed;
+
+  SQLiteEventIterator(Cursor events, boolean intLevels, Cursor properties, Cursor exceptionLines, Cursor traces) {
+    this.events = events;
+    this.intLevels = intLevels;
+    this.properties = properties;
+    this.exceptionLines = exceptionLines;
+    this.traces = traces;
+    properties.moveToFirst();
+    exceptionLines.moveToFirst();
+    if (traces != null) {
+      traces.moveToFirst();
+    }
+    hasNext = events.moveToFirst();
+    if (!hasNext) {
+      close();
+    }
+  }
+
+  public boolean hasNext() {
+    return hasNext;
+  }
+
+  public SQLiteLoggingEvent next() {
+    if (!hasNext) {
+      throw new NoSuchElementException();
+    }
+    SQLiteLoggingEvent event = readEvent();
+    hasNext = events.moveToNext();
+    if (!hasNext) {
+      close();
+    }
+    return event;
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  public void close() {
+    if (!closed) {
+      closed = true;
+      hasNext = false;
+      events.close();
+      properties.close();
+      exceptionLines.close();
+      if (traces != null) {
+        traces.close();
+      }
+    }
+  }
+
+  private SQLiteLoggingEvent readEvent() {
+    SQLiteLoggingEvent event = new SQLiteLoggingEvent();
+    long eventId = events.getLong(EVENT_ID);
+    event.setEventId(eventId);
+    event.setTimeStamp(events.getLong(TIMESTMP));
+    event.setMessage(events.getString(FORMATTED_MESSAGE));
+    event.setLoggerName(events.getString(LOGGER_NAME));
+    event.setLevel(intLevels ? Level.toLevel(events.getInt(LEVEL)) : Level.toLevel(events.getString(LEVEL)));
+    event.setThreadName(events.getString(THREAD_NAME));
+    StackTraceElement caller = readCaller();
+    if (caller != null) {
+      event.setCallerData(new StackTraceElement[] { caller });
+    }
+
+    while (skipTo(properties, eventId)) {
+      event.putProperty(properties.getString(1), properties.getString(2));
+      properties.moveToNext();
+    }
+
+    List<String> lines = new ArrayList<String>();
+    while (skipTo(exceptionLines, eventId)) {
+      lines.add(exceptionLines.getString(1));
+      exceptionLines.moveToNext();
+    }
+    if (traces != null && skipTo(traces, eventId)) {
+      lines.addAll(Arrays.asList(traces.getString(1).split("\r?\n")));
+      traces.moveToNext();
+    }
+    if (!lines.isEmpty()) {
+      event.setThrowableProxy(SQLiteThrowableProxy.parse(lines));
+    }
+    return event;
+  }
+
+  /**
+   * Moves a child cursor past the rows of earlier events
+   *
+   * @return true if the cursor is on a row of the given event
+   */
+  private static boolean skipTo(Cursor cursor, long eventId) {
+    while (!cursor.isAfterLast() && cursor.getLong(0) < eventId) {
+      cursor.moveToNext();
+    }
+    return !cursor.isAfterLast() && cursor.getLong(0) == eventId;
+  }
+
+  private StackTraceElement readCaller() {
+    String declaringClass = events.getString(CALLER_CLASS);
+    if (declaringClass == null || declaringClass.length() == 0) {
+      return null;
+    }
+    String fileName = events.getString(CALLER_FILENAME);
+    int lineNumber;
+    try {
+      lineNumber = Integer.parseInt(events.getString(CALLER_LINE).trim());
+    } catch (RuntimeException e) {
+      lineNumber = -1;
+    }
+    return new StackTraceElement(declaringClass, events.getString(CALLER_METHOD),
+        fileName == null || fileName.length() == 0 ? null : fileName, lineNumber);
+  }
+}
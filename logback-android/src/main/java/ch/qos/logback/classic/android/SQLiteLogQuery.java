@@ -0,0 +1,82 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.classic.android;
+
+import ch.qos.logback.classic.Level;
+
+/**
+ * Selects the events read by {@link SQLiteLogReader}. Criteria left unset
+ * match every event.
+ */
+public class SQLiteLogQuery {
+
+  private Long fromTime;
+  private Long toTime;
+  private Level minLevel;
+  private String loggerName;
+
+  public Long getFromTime() {
+    return fromTime;
+  }
+
+  /**
+   * Selects the events logged at or after this time
+   *
+   * @param fromTime time in milliseconds since the epoch, or null for no lower bound
+   */
+  public void setFromTime(Long fromTime) {
+    this.fromTime = fromTime;
+  }
+
+  public Long getToTime() {
+    return toTime;
+  }
+
+  /**
+   * Selects the events logged before this time
+   *
+   * @param toTime time in milliseconds since the epoch, or null for no upper bound
+   */
+  public void setToTime(Long toTime) {
+    this.toTime = toTime;
+  }
+
+  public Level getMinLevel() {
+    return minLevel;
+  }
+
+  /**
+   * Selects the events of this level or higher
+   *
+   * @param minLevel the lowest level, or null for all levels
+   */
+  public void setMinLevel(Level minLevel) {
+    this.minLevel = minLevel;
+  }
+
+  public String getLoggerName() {
+    return loggerName;
+  }
+
+  /**
+   * Selects the events of this logger and its descendants, e.g.
+   * {@code com.example} matches {@code com.example} and
+   * {@code com.example.app.Main} but not {@code com.examples}.
+   *
+   * @param loggerName the logger name, or null for all loggers
+   */
+  public void setLoggerName(String loggerName) {
+    this.loggerName = loggerName;
+  }
+}
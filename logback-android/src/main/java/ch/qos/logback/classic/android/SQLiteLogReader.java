@@ -0,0 +1,401 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.classic.android;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.db.SQLBuilder;
+import ch.qos.logback.classic.db.names.ColumnName;
+import ch.qos.logback.classic.db.names.DBNameResolver;
+import ch.qos.logback.classic.db.names.DefaultDBNameResolver;
+import ch.qos.logback.classic.db.names.TableName;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+
+/**
+ * Reads back the events written by {@link SQLiteAppender}, in the order they
+ * were written, with their properties, caller data and exceptions. Both the
+ * default and the compact schema are supported, as well as deduplicated
+ * exceptions.
+ * <p>
+ * Events can be streamed with {@link #iterate}, read in pages with
+ * {@link #readPage}, or exported to a gzipped file of JSON lines with
+ * {@link #export}. All of them stream from database cursors, so memory use
+ * does not depend on the number of events. Call {@link #createIndexes()} once
+ * to speed up queries by time, level and logger.
+ */
+public class SQLiteLogReader {
+
+  private static final Level[] LEVELS = { Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR };
+
+  private final SQLiteDatabase db;
+  private final DBNameResolver dbNameResolver;
+  private final boolean compactSchema;
+  private final boolean deduplicatedExceptions;
+
+  public SQLiteLogReader(SQLiteDatabase db) {
+    this(db, new DefaultDBNameResolver());
+  }
+
+  /**
+   * @param db the database written by {@link SQLiteAppender}
+   * @param dbNameResolver the name resolver the appender was configured with
+   */
+  public SQLiteLogReader(SQLiteDatabase db, DBNameResolver dbNameResolver) {
+    this.db = db;
+    this.dbNameResolver = dbNameResolver;
+    this.compactSchema = hasColumn(TableName.LOGGING_EVENT, ColumnName.LOGGER_ID);
+    this.deduplicatedExceptions = hasTable(TableName.LOGGING_EVENT_TRACE);
+  }
+
+  /**
+   * Creates the indexes used by queries on time, level and logger, unless
+   * they exist already
+   */
+  public void createIndexes() {
+    db.execSQL(SQLBuilder.buildCreateIndexSQL(dbNameResolver, TableName.LOGGING_EVENT, ColumnName.TIMESTMP));
+    db.execSQL(SQLBuilder.buildCreateIndexSQL(dbNameResolver, TableName.LOGGING_EVENT,
+        compactSchema ? ColumnName.LEVEL_INT : ColumnName.LEVEL_STRING));
+    db.execSQL(SQLBuilder.buildCreateIndexSQL(dbNameResolver, TableName.LOGGING_EVENT,
+        compactSchema ? ColumnName.LOGGER_ID : ColumnName.LOGGER_NAME));
+  }
+
+  /**
+   * Streams the selected events. The iterator must be closed unless it is
+   * read to the end.
+   *
+   * @param query the events to select
+   * @return an iterator over the events
+   */
+  public SQLiteEventIterator iterate(SQLiteLogQuery query) {
+    return iterate(query, -1, -1);
+  }
+
+  /**
+   * Reads a page of the selected events. Pass the ID of the last event of a
+   * page to read the next one.
+   *
+   * @param query the events to select
+   * @param afterEventId the ID after which to start, or -1 to start at the first event
+   * @param limit the maximum number of events to read
+   * @return the events, fewer than {@code limit} on the last page
+   */
+  public List<SQLiteLoggingEvent> readPage(SQLiteLogQuery query, long afterEventId, int limit) {
+    List<SQLiteLoggingEvent> page = new ArrayList<SQLiteLoggingEvent>();
+    SQLiteEventIterator it = iterate(query, afterEventId, limit);
+    try {
+      while (it.hasNext()) {
+        page.add(it.next());
+      }
+    } finally {
+      it.close();
+    }
+    return page;
+  }
+
+  /**
+   * Exports the selected events to a gzipped file with one JSON object per
+   * line
+   *
+   * @param query the events to select
+   * @param file the file to create or overwrite
+   * @return the number of events exported
+   * @throws IOException if the file cannot be written
+   */
+  public long export(SQLiteLogQuery query, File file) throws IOException {
+    long count = 0;
+    Writer out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file)), "UTF-8"));
+    try {
+      SQLiteEventIterator it = iterate(query);
+      try {
+        while (it.hasNext()) {
+          writeJson(out, it.next());
+          out.write('\n');
+          count++;
+        }
+      } finally {
+        it.close();
+      }
+    } finally {
+      out.close();
+    }
+    return count;
+  }
+
+  private SQLiteEventIterator iterate(SQLiteLogQuery query, long afterEventId, int limit) {
+    List<String> args = new ArrayList<String>();
+    String eventIdsSQL = buildEventIdsSQL(query, afterEventId, limit, args);
+    String[] selectionArgs = args.toArray(new String[args.size()]);
+    String eventId = dbNameResolver.getColumnName(ColumnName.EVENT_ID);
+
+    Cursor events = null;
+    Cursor properties = null;
+    Cursor exceptionLines = null;
+    Cursor traces = null;
+    boolean opened = false;
+    try {
+      events = db.rawQuery(buildEventsSQL(eventIdsSQL), selectionArgs);
+      properties = db.rawQuery("SELECT " + eventId + ", "
+          + dbNameResolver.getColumnName(ColumnName.MAPPED_KEY) + ", "
+          + dbNameResolver.getColumnName(ColumnName.MAPPED_VALUE)
+          + " FROM " + dbNameResolver.getTableName(TableName.LOGGING_EVENT_PROPERTY)
+          + " WHERE " + eventId + " IN (" + eventIdsSQL + ") ORDER BY " + eventId, selectionArgs);
+      exceptionLines = db.rawQuery("SELECT " + eventId + ", "
+          + dbNameResolver.getColumnName(ColumnName.TRACE_LINE)
+          + " FROM " + dbNameResolver.getTableName(TableName.LOGGING_EVENT_EXCEPTION)
+          + " WHERE " + eventId + " IN (" + eventIdsSQL + ") ORDER BY " + eventId + ", "
+          + dbNameResolver.getColumnName(ColumnName.I), selectionArgs);
+      if (deduplicatedExceptions) {
+        String traceHash = dbNameResolver.getColumnName(ColumnName.TRACE_HASH);
+        traces = db.rawQuery("SELECT r." + eventId + ", t." + dbNameResolver.getColumnName(ColumnName.TRACE)
+            + " FROM " + dbNameResolver.getTableName(TableName.LOGGING_EVENT_TRACE) + " r"
+            + " JOIN " + dbNameResolver.getTableName(TableName.LOGGING_TRACE) + " t"
+            + " ON t." + traceHash + " = r." + traceHash
+            + " WHERE r." + eventId + " IN (" + eventIdsSQL + ") ORDER BY r." + eventId, selectionArgs);
+      }
+      SQLiteEventIterator it = new SQLiteEventIterator(events, compactSchema, properties, exceptionLines, traces);
+      opened = true;
+      return it;
+    } finally {
+      if (!opened) {
+        closeQuietly(events);
+        closeQuietly(properties);
+        closeQuietly(exceptionLines);
+        closeQuietly(traces);
+      }
+    }
+  }
+
+  private static void closeQuietly(Cursor cursor) {
+    if (cursor != null) {
+      cursor.close();
+    }
+  }
+
+  /**
+   * Builds the SELECT of the IDs of the selected events, from the event table
+   * aliased as {@code e}
+   */
+  private String buildEventIdsSQL(SQLiteLogQuery query, long afterEventId, int limit, List<String> args) {
+    String eventId = "e." + dbNameResolver.getColumnName(ColumnName.EVENT_ID);
+    StringBuilder sql = new StringBuilder("SELECT ").append(eventId)
+        .append(" FROM ").append(dbNameResolver.getTableName(TableName.LOGGING_EVENT)).append(" e")
+        .append(" WHERE ").append(eventId).append(" > ").append(afterEventId);
+
+    String timestmp = "e." + dbNameResolver.getColumnName(ColumnName.TIMESTMP);
+    if (query.getFromTime() != null) {
+      sql.append(" AND ").append(timestmp).append(" >= ").append(query.getFromTime().longValue());
+    }
+    if (query.getToTime() != null) {
+      sql.append(" AND ").append(timestmp).append(" < ").append(query.getToTime().longValue());
+    }
+
+    Level minLevel = query.getMinLevel();
+    if (minLevel != null) {
+      if (compactSchema) {
+        sql.append(" AND e.").append(dbNameResolver.getColumnName(ColumnName.LEVEL_INT))
+            .append(" >= ").append(minLevel.toInt());
+      } else {
+        sql.append(" AND e.").append(dbNameResolver.getColumnName(ColumnName.LEVEL_STRING)).append(" IN (");
+        String separator = "";
+        for (Level level : LEVELS) {
+          if (level.isGreaterOrEqual(minLevel)) {
+            sql.append(separator).append("'").append(level.levelStr).append("'");
+            separator = ", ";
+          }
+        }
+        sql.append(")");
+      }
+    }
+
+    String loggerName = query.getLoggerName();
+    if (loggerName != null) {
+      args.add(loggerName);
+      args.add(loggerName + ".");
+      args.add(loggerName + (char) ('.' + 1));
+      if (compactSchema) {
+        String loggerId = dbNameResolver.getColumnName(ColumnName.LOGGER_ID);
+        sql.append(" AND e.").append(loggerId).append(" IN (SELECT ").append(loggerId)
+            .append(" FROM ").append(dbNameResolver.getTableName(TableName.LOGGING_LOGGER))
+            .append(" WHERE ").append(buildLoggerCondition("")).append(")");
+      } else {
+        sql.append(" AND ").append(buildLoggerCondition("e."));
+      }
+    }
+
+    sql.append(" ORDER BY ").append(eventId);
+    if (limit >= 0) {
+      sql.append(" LIMIT ").append(limit);
+    }
+    return sql.toString();
+  }
+
+  /**
+   * Builds the condition selecting a logger or its descendants, as a range
+   * that can use an index, with the logger name column prefixed by
+   * {@code qualifier}
+   */
+  private String buildLoggerCondition(String qualifier) {
+    String nameColumn = qualifier + dbNameResolver.getColumnName(ColumnName.LOGGER_NAME);
+    return "(" + nameColumn + " = ? OR (" + nameColumn + " >= ? AND " + nameColumn + " < ?))";
+  }
+
+  /**
+   * Builds the SELECT of the events, with the columns expected by
+   * {@link SQLiteEventIterator}
+   */
+  private String buildEventsSQL(String eventIdsSQL) {
+    String eventId = dbNameResolver.getColumnName(ColumnName.EVENT_ID);
+    StringBuilder sql = new StringBuilder("SELECT e.").append(eventId)
+        .append(", e.").append(dbNameResolver.getColumnName(ColumnName.TIMESTMP))
+        .append(", e.").append(dbNameResolver.getColumnName(ColumnName.FORMATTED_MESSAGE));
+    if (compactSchema) {
+      sql.append(", l.").append(dbNameResolver.getColumnName(ColumnName.LOGGER_NAME))
+          .append(", e.").append(dbNameResolver.getColumnName(ColumnName.LEVEL_INT))
+          .append(", t.").append(dbNameResolver.getColumnName(ColumnName.THREAD_NAME))
+          .append(", c.").append(dbNameResolver.getColumnName(ColumnName.CALLER_FILENAME))
+          .append(", c.").append(dbNameResolver.getColumnName(ColumnName.CALLER_CLASS))
+          .append(", c.").append(dbNameResolver.getColumnName(ColumnName.CALLER_METHOD))
+          .append(", c.").append(dbNameResolver.getColumnName(ColumnName.CALLER_LINE))
+          .append(" FROM ").append(dbNameResolver.getTableName(TableName.LOGGING_EVENT)).append(" e");
+      appendLookupJoin(sql, TableName.LOGGING_LOGGER, "l", ColumnName.LOGGER_ID);
+      appendLookupJoin(sql, TableName.LOGGING_THREAD, "t", ColumnName.THREAD_ID);
+      appendLookupJoin(sql, TableName.LOGGING_CALLER, "c", ColumnName.CALLER_ID);
+    } else {
+      sql.append(", e.").append(dbNameResolver.getColumnName(ColumnName.LOGGER_NAME))
+          .append(", e.").append(dbNameResolver.getColumnName(ColumnName.LEVEL_STRING))
+          .append(", e.").append(dbNameResolver.getColumnName(ColumnName.THREAD_NAME))
+          .append(", e.").append(dbNameResolver.getColumnName(ColumnName.CALLER_FILENAME))
+          .append(", e.").append(dbNameResolver.getColumnName(ColumnName.CALLER_CLASS))
+          .append(", e.").append(dbNameResolver.getColumnName(ColumnName.CALLER_METHOD))
+          .append(", e.").append(dbNameResolver.getColumnName(ColumnName.CALLER_LINE))
+          .append(" FROM ").append(dbNameResolver.getTableName(TableName.LOGGING_EVENT)).append(" e");
+    }
+    sql.append(" WHERE e.").append(eventId).append(" IN (").append(eventIdsSQL).append(")")
+        .append(" ORDER BY e.").append(eventId);
+    return sql.toString();
+  }
+
+  private void appendLookupJoin(StringBuilder sql, TableName table, String alias, ColumnName idColumn) {
+    String id = dbNameResolver.getColumnName(idColumn);
+    sql.append(" LEFT JOIN ").append(dbNameResolver.getTableName(table)).append(' ').append(alias)
+        .append(" ON ").append(alias).append('.').append(id).append(" = e.").append(id);
+  }
+
+  private boolean hasTable(TableName table) {
+    return DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?",
+        new String[] { dbNameResolver.getTableName(table) }) > 0;
+  }
+
+  private boolean hasColumn(TableName table, ColumnName column) {
+    String name = dbNameResolver.getColumnName(column);
+    Cursor c = db.rawQuery("PRAGMA table_info(" + dbNameResolver.getTableName(table) + ")", null);
+    try {
+      int nameIndex = c.getColumnIndex("name");
+      while (c.moveToNext()) {
+        if (name.equals(c.getString(nameIndex))) {
+          return true;
+        }
+      }
+      return false;
+    } finally {
+      c.close();
+    }
+  }
+
+  private static void writeJson(Writer out, SQLiteLoggingEvent event) throws IOException {
+    out.write("{\"eventId\":");
+    out.write(Long.toString(event.getEventId()));
+    out.write(",\"timestamp\":");
+    out.write(Long.toString(event.getTimeStamp()));
+    writeJsonField(out, "level", String.valueOf(event.getLevel()));
+    writeJsonField(out, "logger", event.getLoggerName());
+    writeJsonField(out, "thread", event.getThreadName());
+    writeJsonField(out, "message", event.getFormattedMessage());
+    if (event.hasCallerData()) {
+      writeJsonField(out, "caller", event.getCallerData()[0].toString());
+    }
+    Map<String, String> properties = event.getMDCPropertyMap();
+    if (!properties.isEmpty()) {
+      out.write(",\"properties\":{");
+      String separator = "";
+      for (Map.Entry<String, String> property : properties.entrySet()) {
+        out.write(separator);
+        writeJsonString(out, property.getKey());
+        out.write(':');
+        writeJsonString(out, property.getValue());
+        separator = ",";
+      }
+      out.write('}');
+    }
+    IThrowableProxy tp = event.getThrowableProxy();
+    if (tp != null) {
+      writeJsonField(out, "throwable", ThrowableProxyUtil.asString(tp));
+    }
+    out.write('}');
+  }
+
+  private static void writeJsonField(Writer out, String name, String value) throws IOException {
+    if (value != null) {
+      out.write(",\"");
+      out.write(name);
+      out.write("\":");
+      writeJsonString(out, value);
+    }
+  }
+
+  private static void writeJsonString(Writer out, String value) throws IOException {
+    out.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          out.write("\\\"");
+          break;
+        case '\\':
+          out.write("\\\\");
+          break;
+        case '\n':
+          out.write("\\n");
+          break;
+        case '\r':
+          out.write("\\r");
+          break;
+        case '\t':
+          out.write("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            out.write(String.format("\\u%04x", (int) c));
+          } else {
+            out.write(c);
+          }
+      }
+    }
+    out.write('"');
+  }
+}
@@ -0,0 +1,172 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.classic.android;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Marker;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.CallerData;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+
+/**
+ * A logging event read back from the database of {@link SQLiteAppender} by
+ * {@link SQLiteLogReader}.
+ * <p>
+ * The message is the stored formatted message, so there are no arguments.
+ * The MDC property map holds the stored properties, which are the context
+ * properties merged with the MDC of the original event. Neither the logger
+ * context nor the marker are stored, so they are null.
+ */
+public class SQLiteLoggingEvent implements ILoggingEvent {
+
+  private long eventId;
+  private long timeStamp;
+  private String message;
+  private String loggerName;
+  private Level level;
+  private String threadName;
+  private StackTraceElement[] callerData = CallerData.EMPTY_CALLER_DATA_ARRAY;
+  private IThrowableProxy throwableProxy;
+  private Map<String, String> properties;
+
+  /**
+   * Gets the row ID of the event, which increases in the order events were
+   * written
+   */
+  public long getEventId() {
+    return eventId;
+  }
+
+  void setEventId(long eventId) {
+    this.eventId = eventId;
+  }
+
+  public long getTimeStamp() {
+    return timeStamp;
+  }
+
+  void setTimeStamp(long timeStamp) {
+    this.timeStamp = timeStamp;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public String getFormattedMessage() {
+    return message;
+  }
+
+  void setMessage(String message) {
+    this.message = message;
+  }
+
+  public Object[] getArgumentArray() {
+    return null;
+  }
+
+  public String getLoggerName() {
+    return loggerName;
+  }
+
+  void setLoggerName(String loggerName) {
+    this.loggerName = loggerName;
+  }
+
+  public Level getLevel() {
+    return level;
+  }
+
+  void setLevel(Level level) {
+    this.level = level;
+  }
+
+  public String getThreadName() {
+    return threadName;
+  }
+
+  void setThreadName(String threadName) {
+    this.threadName = threadName;
+  }
+
+  public StackTraceElement[] getCallerData() {
+    return callerData;
+  }
+
+  public boolean hasCallerData() {
+    return callerData.length > 0;
+  }
+
+  void setCallerData(StackTraceElement[] callerData) {
+    this.callerData = callerData;
+  }
+
+  public IThrowableProxy getThrowableProxy() {
+    return throwableProxy;
+  }
+
+  void setThrowableProxy(IThrowableProxy throwableProxy) {
+    this.throwableProxy = throwableProxy;
+  }
+
+  public Map<String, String> getMDCPropertyMap() {
+    if (properties == null) {
+      return Collections.emptyMap();
+    }
+    return properties;
+  }
+
+  /**
+   * Synonym for {@link #getMDCPropertyMap}
+   * @deprecated Replaced by {@link #getMDCPropertyMap}
+   */
+  @Deprecated
+  public Map<String, String> getMdc() {
+    return getMDCPropertyMap();
+  }
+
+  void putProperty(String key, String value) {
+    if (properties == null) {
+      properties = new HashMap<String, String>();
+    }
+    properties.put(key, value);
+  }
+
+  public LoggerContextVO getLoggerContextVO() {
+    return null;
+  }
+
+  public Marker getMarker() {
+    return null;
+  }
+
+  public void prepareForDeferredProcessing() {
+    // everything was read from the database already
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append('[');
+    sb.append(level).append("] ");
+    sb.append(getFormattedMessage());
+    return sb.toString();
+  }
+}
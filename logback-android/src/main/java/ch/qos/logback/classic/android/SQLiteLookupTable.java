@@ -0,0 +1,111 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.classic.android;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import ch.qos.logback.classic.db.SQLBuilder;
+import ch.qos.logback.classic.db.names.ColumnName;
+import ch.qos.logback.classic.db.names.DBNameResolver;
+import ch.qos.logback.classic.db.names.TableName;
+
+/**
+ * A lookup table of the compact SQLite schema, which stores each distinct
+ * value (or combination of values) once and lets event rows refer to it by an
+ * integer ID. IDs are cached in memory so that only the first occurrence of a
+ * value touches the table.
+ * <p>
+ * Not thread safe: {@link SQLiteAppender} only uses it under its write lock.
+ */
+class SQLiteLookupTable {
+
+  /**
+   * The cache is cleared when it reaches this size, which bounds memory for
+   * unbounded value sets such as the names of pooled threads.
+   */
+  static final int MAX_CACHED_IDS = 1024;
+
+  private final SQLiteStatement insertStatement;
+  private final SQLiteStatement selectStatement;
+  private final Map<Object, Long> ids = new HashMap<Object, Long>();
+
+  SQLiteLookupTable(SQLiteDatabase db, DBNameResolver dbNameResolver, TableName table, ColumnName idColumn,
+                    ColumnName... valueColumns) {
+    insertStatement = db.compileStatement(SQLBuilder.buildInsertLookupSQL(dbNameResolver, table, valueColumns));
+    selectStatement = db.compileStatement(
+        SQLBuilder.buildSelectLookupIdSQL(dbNameResolver, table, idColumn, valueColumns));
+  }
+
+  /**
+   * Gets the ID of a value, adding it to the table if needed
+   *
+   * @param value the value, or null for an empty string
+   * @return the ID of the value
+   */
+  long idOf(String value) {
+    String key = (value == null) ? "" : value;
+    Long id = ids.get(key);
+    return (id != null) ? id : lookup(key, key);
+  }
+
+  /**
+   * Gets the ID of a combination of values, adding it to the table if needed
+   *
+   * @param values the values, where null stands for an empty string
+   * @return the ID of the values
+   */
+  long idOf(String... values) {
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null) {
+        values[i] = "";
+      }
+    }
+    Object key = Arrays.asList(values);
+    Long id = ids.get(key);
+    return (id != null) ? id : lookup(key, values);
+  }
+
+  private long lookup(Object key, String... values) {
+    insertStatement.clearBindings();
+    selectStatement.clearBindings();
+    for (int i = 0; i < values.length; i++) {
+      insertStatement.bindString(i + 1, values[i]);
+      selectStatement.bindString(i + 1, values[i]);
+    }
+    insertStatement.executeInsert();
+    long id = selectStatement.simpleQueryForLong();
+    if (ids.size() >= MAX_CACHED_IDS) {
+      ids.clear();
+    }
+    ids.put(key, id);
+    return id;
+  }
+
+  /**
+   * Forgets the cached IDs, e.g. after a rollback that may have undone the
+   * insertion of some of them
+   */
+  void clearCache() {
+    ids.clear();
+  }
+
+  void close() {
+    insertStatement.close();
+    selectStatement.close();
+  }
+}
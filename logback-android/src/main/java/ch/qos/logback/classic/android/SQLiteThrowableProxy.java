@@ -0,0 +1,182 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.classic.android;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import ch.qos.logback.core.CoreConstants;
+
+/**
+ * An exception read back from the database of {@link SQLiteAppender}, parsed
+ * from its stored trace lines. Both the per-line rows of
+ * {@code logging_event_exception} and the rendered traces of
+ * {@code logging_trace} are understood.
+ */
+class SQLiteThrowableProxy implements IThrowableProxy {
+
+  private static final Pattern FRAME = Pattern.compile("at (.+)\\.([^.]+)\\((.*?)\\)(?: ~?\\[.*\\])?");
+  private static final Pattern COMMON_FRAMES = Pattern.compile("\\.\\.\\. (\\d+) common frames omitted");
+  private static final StackTraceElementProxy[] NO_FRAMES = new StackTraceElementProxy[0];
+  private static final IThrowableProxy[] NO_SUPPRESSED = new IThrowableProxy[0];
+
+  private String className;
+  private String message;
+  private final List<StackTraceElementProxy> frames = new ArrayList<StackTraceElementProxy>();
+  private int commonFrames;
+  private SQLiteThrowableProxy cause;
+  private final List<IThrowableProxy> suppressed = new ArrayList<IThrowableProxy>();
+  private SQLiteThrowableProxy enclosing;
+
+  public String getMessage() {
+    return message;
+  }
+
+  public String getClassName() {
+    return className;
+  }
+
+  public StackTraceElementProxy[] getStackTraceElementProxyArray() {
+    return frames.toArray(NO_FRAMES);
+  }
+
+  public int getCommonFrames() {
+    return commonFrames;
+  }
+
+  public IThrowableProxy getCause() {
+    return cause;
+  }
+
+  public IThrowableProxy[] getSuppressed() {
+    return suppressed.toArray(NO_SUPPRESSED);
+  }
+
+  /**
+   * Parses stored trace lines
+   *
+   * @param lines the lines, in order
+   * @return the outermost exception, or null if there are no lines
+   */
+  static SQLiteThrowableProxy parse(List<String> lines) {
+    SQLiteThrowableProxy root = null;
+    SQLiteThrowableProxy current = null;
+    // last exception of each indentation level, where causes are chained
+    Map<Integer, SQLiteThrowableProxy> chainTails = new HashMap<Integer, SQLiteThrowableProxy>();
+
+    for (String line : lines) {
+      int depth = 0;
+      while (depth < line.length() && line.charAt(depth) == CoreConstants.TAB) {
+        depth++;
+      }
+      String text = line.substring(depth);
+
+      Matcher frame = FRAME.matcher(text);
+      if (current != null && frame.matches()) {
+        current.frames.add(new StackTraceElementProxy(toStackTraceElement(frame)));
+        continue;
+      }
+      Matcher common = COMMON_FRAMES.matcher(text);
+      if (current != null && common.matches()) {
+        current.setCommonFrames(Integer.parseInt(common.group(1)));
+        continue;
+      }
+      if (current != null && current.frames.isEmpty() && !text.startsWith(CoreConstants.CAUSED_BY)
+          && !text.startsWith(CoreConstants.SUPPRESSED)) {
+        // continuation of a multi-line message
+        current.message = (current.message == null ? "" : current.message) + CoreConstants.LINE_SEPARATOR + line;
+        continue;
+      }
+
+      SQLiteThrowableProxy tp = new SQLiteThrowableProxy();
+      if (text.startsWith(CoreConstants.SUPPRESSED)) {
+        text = text.substring(CoreConstants.SUPPRESSED.length());
+        SQLiteThrowableProxy parent = chainTails.get(depth - 1);
+        if (parent != null) {
+          parent.suppressed.add(tp);
+          tp.enclosing = parent;
+        }
+      } else {
+        if (text.startsWith(CoreConstants.CAUSED_BY)) {
+          text = text.substring(CoreConstants.CAUSED_BY.length());
+        }
+        SQLiteThrowableProxy previous = chainTails.get(depth);
+        if (previous != null) {
+          previous.cause = tp;
+          tp.enclosing = previous;
+        }
+      }
+      tp.setFirstLine(text);
+      chainTails.put(depth, tp);
+      if (root == null) {
+        root = tp;
+      }
+      current = tp;
+    }
+    return root;
+  }
+
+  private void setFirstLine(String text) {
+    int separator = text.indexOf(": ");
+    if (separator < 0) {
+      className = text;
+      return;
+    }
+    className = text.substring(0, separator);
+    String msg = text.substring(separator + 2);
+    message = "null".equals(msg) ? null : msg;
+  }
+
+  /**
+   * Sets the number of frames shared with the enclosing exception, copying
+   * them from it since only the other frames are stored
+   */
+  private void setCommonFrames(int count) {
+    List<StackTraceElementProxy> enclosingFrames = (enclosing == null)
+        ? new ArrayList<StackTraceElementProxy>() : enclosing.frames;
+    int copied = Math.min(count, enclosingFrames.size());
+    frames.addAll(enclosingFrames.subList(enclosingFrames.size() - copied, enclosingFrames.size()));
+    commonFrames = copied;
+  }
+
+  private static StackTraceElement toStackTraceElement(Matcher frame) {
+    String declaringClass = frame.group(1);
+    // drop the class loader and module names of Java 9 traces
+    declaringClass = declaringClass.substring(declaringClass.lastIndexOf('/') + 1);
+    String source = frame.group(3);
+    String fileName = null;
+    int lineNumber = -1;
+    if ("Native Method".equals(source)) {
+      lineNumber = -2;
+    } else if (!"Unknown Source".equals(source)) {
+      int colon = source.lastIndexOf(':');
+      fileName = source;
+      if (colon > 0) {
+        try {
+          lineNumber = Integer.parseInt(source.substring(colon + 1));
+          fileName = source.substring(0, colon);
+        } catch (NumberFormatException e) {
+          // not a line number, keep the whole source as file name
+        }
+      }
+    }
+    return new StackTraceElement(declaringClass, frame.group(2), fileName, lineNumber);
+  }
+}
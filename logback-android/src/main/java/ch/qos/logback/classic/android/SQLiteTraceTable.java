@@ -0,0 +1,235 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.classic.android;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import ch.qos.logback.classic.db.SQLBuilder;
+import ch.qos.logback.classic.db.names.DBNameResolver;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+
+/**
+ * Content-addressed storage of exceptions for {@link SQLiteAppender}. Each
+ * distinct trace is stored once under a 64-bit key taken from the SHA-1
+ * digest of its rendered text, along with the number of events that logged
+ * it; events only refer to the key. Keys already stored are cached in memory,
+ * so a repeated exception is not stored again. The key of a recently seen
+ * exception is also cached, under the structure of its proxy chain, so a
+ * repeated exception is neither rendered nor digested again.
+ * <p>
+ * Not thread safe: {@link SQLiteAppender} only uses it under its write lock,
+ * and clears the cache whenever a transaction does not commit.
+ */
+class SQLiteTraceTable {
+
+  /** The cache of stored hashes is cleared when it reaches this size */
+  static final int MAX_CACHED_HASHES = 256;
+
+  private final SQLiteStatement insertTraceStatement;
+  private final SQLiteStatement incrementCountStatement;
+  private final SQLiteStatement insertEventTraceStatement;
+  private final Set<Long> storedHashes = new HashSet<Long>();
+  private final Map<TraceKey, Long> traceHashes = new HashMap<TraceKey, Long>();
+  private final MessageDigest digest = newDigest();
+
+  SQLiteTraceTable(SQLiteDatabase db, DBNameResolver dbNameResolver) {
+    insertTraceStatement = db.compileStatement(SQLBuilder.buildInsertTraceSQL(dbNameResolver));
+    incrementCountStatement = db.compileStatement(SQLBuilder.buildIncrementTraceCountSQL(dbNameResolver));
+    insertEventTraceStatement = db.compileStatement(SQLBuilder.buildInsertEventTraceSQL(dbNameResolver));
+  }
+
+  /**
+   * Records the exception of an event, storing its trace if not stored yet
+   *
+   * @param tp the exception
+   * @param eventId the row ID of the event
+   */
+  void insert(IThrowableProxy tp, long eventId) {
+    TraceKey key = new TraceKey(tp);
+    Long cachedHash = traceHashes.get(key);
+    String trace = null;
+    long hash;
+    if (cachedHash != null) {
+      hash = cachedHash;
+    } else {
+      trace = ThrowableProxyUtil.asString(tp);
+      hash = hashOf(digest, trace);
+      if (traceHashes.size() >= MAX_CACHED_HASHES) {
+        traceHashes.clear();
+      }
+      traceHashes.put(key, hash);
+    }
+    if (!storedHashes.contains(hash)) {
+      if (trace == null) {
+        trace = ThrowableProxyUtil.asString(tp);
+      }
+      insertTraceStatement.bindLong(1, hash);
+      insertTraceStatement.bindString(2, trace);
+      insertTraceStatement.executeInsert();
+      if (storedHashes.size() >= MAX_CACHED_HASHES) {
+        storedHashes.clear();
+      }
+      storedHashes.add(hash);
+    }
+    incrementCountStatement.bindLong(1, hash);
+    incrementCountStatement.execute();
+
+    insertEventTraceStatement.bindLong(1, eventId);
+    insertEventTraceStatement.bindLong(2, hash);
+    insertEventTraceStatement.executeInsert();
+  }
+
+  /**
+   * Forgets which traces are stored, e.g. after a rollback or after deleting
+   * unreferenced traces. The keys of recently seen exceptions do not depend on
+   * the database and are kept.
+   */
+  void clearCache() {
+    storedHashes.clear();
+  }
+
+  void close() {
+    insertTraceStatement.close();
+    incrementCountStatement.close();
+    insertEventTraceStatement.close();
+  }
+
+  /**
+   * Hashes what {@link ThrowableProxyUtil#asString(IThrowableProxy)} renders
+   *
+   * @param tp the exception
+   * @return the hash of its trace
+   */
+  static long hashOf(IThrowableProxy tp) {
+    return hashOf(newDigest(), ThrowableProxyUtil.asString(tp));
+  }
+
+  /**
+   * @return the first 64 bits of the SHA-1 digest of the trace
+   */
+  private static long hashOf(MessageDigest digest, String trace) {
+    byte[] bytes;
+    try {
+      bytes = digest.digest(trace.getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+    long hash = 0;
+    for (int i = 0; i < 8; i++) {
+      hash = (hash << 8) | (bytes[i] & 0xff);
+    }
+    return hash;
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Identifies an exception by everything {@link ThrowableProxyUtil#asString}
+   * renders of its proxy chain: class names, messages, frames with their
+   * packaging data, common frame counts, suppressed exceptions and causes.
+   * Equal keys render the same trace, without rendering either.
+   */
+  static final class TraceKey {
+    private final IThrowableProxy tp;
+    private final int hashCode;
+
+    TraceKey(IThrowableProxy tp) {
+      this.tp = tp;
+      this.hashCode = hashCodeOf(tp);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof TraceKey)) {
+        return false;
+      }
+      TraceKey other = (TraceKey) obj;
+      return hashCode == other.hashCode && sameTrace(tp, other.tp);
+    }
+
+    private static int hashCodeOf(IThrowableProxy tp) {
+      if (tp == null) {
+        return 0;
+      }
+      int result = tp.getClassName().hashCode();
+      result = 31 * result + (tp.getMessage() == null ? 0 : tp.getMessage().hashCode());
+      result = 31 * result + tp.getCommonFrames();
+      result = 31 * result + Arrays.hashCode(tp.getStackTraceElementProxyArray());
+      IThrowableProxy[] suppressed = tp.getSuppressed();
+      if (suppressed != null) {
+        for (IThrowableProxy current : suppressed) {
+          result = 31 * result + hashCodeOf(current);
+        }
+      }
+      return 31 * result + hashCodeOf(tp.getCause());
+    }
+
+    private static boolean sameTrace(IThrowableProxy a, IThrowableProxy b) {
+      if (a == b) {
+        return true;
+      }
+      if (a == null || b == null) {
+        return false;
+      }
+      if (!a.getClassName().equals(b.getClassName())
+          || (a.getMessage() == null ? b.getMessage() != null : !a.getMessage().equals(b.getMessage()))
+          || a.getCommonFrames() != b.getCommonFrames()) {
+        return false;
+      }
+      StackTraceElementProxy[] aSteps = a.getStackTraceElementProxyArray();
+      StackTraceElementProxy[] bSteps = b.getStackTraceElementProxyArray();
+      if (!Arrays.equals(aSteps, bSteps)) {
+        return false;
+      }
+      IThrowableProxy[] aSuppressed = a.getSuppressed();
+      IThrowableProxy[] bSuppressed = b.getSuppressed();
+      int aCount = aSuppressed == null ? 0 : aSuppressed.length;
+      int bCount = bSuppressed == null ? 0 : bSuppressed.length;
+      if (aCount != bCount) {
+        return false;
+      }
+      for (int i = 0; i < aCount; i++) {
+        if (!sameTrace(aSuppressed[i], bSuppressed[i])) {
+          return false;
+        }
+      }
+      return sameTrace(a.getCause(), b.getCause());
+    }
+  }
+}
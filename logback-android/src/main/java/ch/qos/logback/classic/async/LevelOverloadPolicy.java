@@ -0,0 +1,299 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.classic.async;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.async.OverloadPolicy;
+import ch.qos.logback.core.spi.ContextAwareBase;
+import ch.qos.logback.core.util.Duration;
+
+/**
+ * An {@link OverloadPolicy} for logging events that sheds load level by level as
+ * the queue of an {@link AsyncAppender} fills up.
+ *
+ * <p>Each level has a watermark, expressed as a percentage of the queue capacity.
+ * Once the queue is filled beyond the watermark of a level, events of that level
+ * are dropped. By default TRACE events are dropped above 50%, DEBUG above 60%,
+ * INFO above 80%, and WARN and ERROR events are never dropped by the policy.
+ * A watermark of 100 or more disables dropping for the level.</p>
+ *
+ * <p>With a non-zero {@code samplingRange}, dropping starts below the watermark:
+ * in the {@code samplingRange} percent below it, events are dropped with a
+ * probability that grows linearly from 0 to 1 as the queue fills.</p>
+ *
+ * <p>Once the queue is filled beyond {@code coalesceWatermark} (100 by default,
+ * i.e. disabled), an event with the same logger, level and formatted message as
+ * the previously queued one is dropped as a repetition.</p>
+ *
+ * <p>Every {@code summaryPeriod} (5 seconds by default), if anything was dropped,
+ * a WARN event such as "Dropped 1234 DEBUG, 56 INFO events in last 5 seconds" is
+ * logged through the appender under the {@code summaryLoggerName} logger.</p>
+ *
+ * <pre>
+ * &lt;appender name="ASYNC" class="ch.qos.logback.classic.AsyncAppender"&gt;
+ *   &lt;overloadPolicy class="ch.qos.logback.classic.async.LevelOverloadPolicy"&gt;
+ *     &lt;debugWatermark&gt;40&lt;/debugWatermark&gt;
+ *     &lt;samplingRange&gt;20&lt;/samplingRange&gt;
+ *     &lt;coalesceWatermark&gt;50&lt;/coalesceWatermark&gt;
+ *   &lt;/overloadPolicy&gt;
+ *   &lt;appender-ref ref="FILE" /&gt;
+ * &lt;/appender&gt;
+ * </pre>
+ *
+ * @since 1.3.0-3
+ */
+public class LevelOverloadPolicy extends ContextAwareBase implements OverloadPolicy<ILoggingEvent> {
+
+  static final String FQCN = LevelOverloadPolicy.class.getName();
+
+  public static final Duration DEFAULT_SUMMARY_PERIOD = Duration.buildBySeconds(5);
+
+  static final int NEVER = 100;
+
+  static final Level[] LEVELS = { Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR };
+
+  // watermarks in percent of the queue capacity, indexed as LEVELS
+  final int[] watermarks = { 50, 60, 80, NEVER, NEVER };
+  int samplingRange = 0;
+  int coalesceWatermark = NEVER;
+  Duration summaryPeriod = DEFAULT_SUMMARY_PERIOD;
+  String summaryLoggerName = AsyncAppender.class.getName();
+
+  private final AtomicLongArray dropped = new AtomicLongArray(LEVELS.length);
+  private final AtomicLong coalesced = new AtomicLong();
+  private volatile long lastSummaryTime;
+  private volatile Repetition lastQueued;
+  private Logger summaryLogger;
+  private boolean started;
+
+  private final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+    @Override
+    protected Random initialValue() {
+      return new Random();
+    }
+  };
+
+  public void start() {
+    if (!(context instanceof LoggerContext)) {
+      addError("LevelOverloadPolicy requires a LoggerContext");
+      return;
+    }
+    if (samplingRange < 0) {
+      addError("Invalid samplingRange [" + samplingRange + "]");
+      return;
+    }
+    summaryLogger = ((LoggerContext) context).getLogger(summaryLoggerName);
+    lastSummaryTime = System.currentTimeMillis();
+    started = true;
+  }
+
+  public void stop() {
+    started = false;
+  }
+
+  public boolean isStarted() {
+    return started;
+  }
+
+  public boolean admit(ILoggingEvent event, int queueDepth, int queueSize) {
+    int fill = (int) (100L * queueDepth / queueSize);
+    int index = indexOf(event.getLevel());
+    int watermark = watermarks[index];
+
+    if (watermark < NEVER && fill >= watermark - samplingRange) {
+      boolean drop = fill >= watermark
+          || random.get().nextInt(samplingRange) < fill - (watermark - samplingRange);
+      if (drop) {
+        dropped.incrementAndGet(index);
+        return false;
+      }
+    }
+
+    if (fill >= coalesceWatermark) {
+      Repetition last = lastQueued;
+      if (last != null && last.matches(event)) {
+        coalesced.incrementAndGet();
+        return false;
+      }
+      lastQueued = new Repetition(event);
+    }
+    return true;
+  }
+
+  public void rejected(ILoggingEvent event) {
+    dropped.incrementAndGet(indexOf(event.getLevel()));
+  }
+
+  public ILoggingEvent summarize() {
+    long now = System.currentTimeMillis();
+    long elapsed = now - lastSummaryTime;
+    lastSummaryTime = now;
+
+    StringBuilder sb = new StringBuilder("Dropped ");
+    boolean any = false;
+    for (int i = 0; i < LEVELS.length; i++) {
+      long count = dropped.getAndSet(i, 0);
+      if (count > 0) {
+        if (any) {
+          sb.append(", ");
+        }
+        sb.append(count).append(' ').append(LEVELS[i]);
+        any = true;
+      }
+    }
+    if (any) {
+      sb.append(" events");
+    }
+    long repetitions = coalesced.getAndSet(0);
+    if (repetitions > 0) {
+      sb.append(any ? " and " : "").append(repetitions).append(" repeated events");
+      any = true;
+    }
+    if (!any || summaryLogger == null) {
+      return null;
+    }
+    sb.append(" in last ").append(new Duration(elapsed));
+    return new LoggingEvent(FQCN, summaryLogger, Level.WARN, sb.toString(), null, null);
+  }
+
+  static int indexOf(Level level) {
+    switch (level.toInt()) {
+    case Level.TRACE_INT:
+      return 0;
+    case Level.DEBUG_INT:
+      return 1;
+    case Level.INFO_INT:
+      return 2;
+    case Level.WARN_INT:
+      return 3;
+    default:
+      return 4;
+    }
+  }
+
+  public int getTraceWatermark() {
+    return watermarks[0];
+  }
+
+  public void setTraceWatermark(int percent) {
+    watermarks[0] = percent;
+  }
+
+  public int getDebugWatermark() {
+    return watermarks[1];
+  }
+
+  public void setDebugWatermark(int percent) {
+    watermarks[1] = percent;
+  }
+
+  public int getInfoWatermark() {
+    return watermarks[2];
+  }
+
+  public void setInfoWatermark(int percent) {
+    watermarks[2] = percent;
+  }
+
+  public int getWarnWatermark() {
+    return watermarks[3];
+  }
+
+  public void setWarnWatermark(int percent) {
+    watermarks[3] = percent;
+  }
+
+  public int getErrorWatermark() {
+    return watermarks[4];
+  }
+
+  public void setErrorWatermark(int percent) {
+    watermarks[4] = percent;
+  }
+
+  public int getSamplingRange() {
+    return samplingRange;
+  }
+
+  /**
+   * Sets the width, in percent of the queue capacity, of the band below each
+   * watermark in which events are dropped with increasing probability.
+   *
+   * @param percent the sampling range, 0 for hard watermarks
+   */
+  public void setSamplingRange(int percent) {
+    this.samplingRange = percent;
+  }
+
+  public int getCoalesceWatermark() {
+    return coalesceWatermark;
+  }
+
+  /**
+   * Sets the queue fill percentage above which repetitions of the previously
+   * queued event are dropped.
+   *
+   * @param percent the watermark, 100 or more to disable coalescing
+   */
+  public void setCoalesceWatermark(int percent) {
+    this.coalesceWatermark = percent;
+  }
+
+  public Duration getSummaryPeriod() {
+    return summaryPeriod;
+  }
+
+  public void setSummaryPeriod(Duration summaryPeriod) {
+    this.summaryPeriod = summaryPeriod;
+  }
+
+  public String getSummaryLoggerName() {
+    return summaryLoggerName;
+  }
+
+  public void setSummaryLoggerName(String summaryLoggerName) {
+    this.summaryLoggerName = summaryLoggerName;
+  }
+
+  /**
+   * Identifies an event by logger, level and formatted message, the fields two
+   * events must share to count as repetitions of each other.
+   */
+  static class Repetition {
+    final String loggerName;
+    final Level level;
+    final String message;
+
+    Repetition(ILoggingEvent event) {
+      this.loggerName = event.getLoggerName();
+      this.level = event.getLevel();
+      this.message = event.getFormattedMessage();
+    }
+
+    boolean matches(ILoggingEvent event) {
+      return level == event.getLevel()
+          && loggerName.equals(event.getLoggerName())
+          && message != null && message.equals(event.getFormattedMessage());
+    }
+  }
+}
@@ -128,4 +128,260 @@ public class SQLBuilder {
             .append(";");
     return sqlBuilder.toString();
   }
+
+  /**
+   * Builds a WHERE clause matching the event IDs of at most {@code limit} of
+   * the oldest expired events, for deleting them in bounded chunks from the
+   * event table and its child tables.
+   */
+  public static String buildExpiredEventIdsWhereSQL(DBNameResolver dbNameResolver, long expiryMs, int limit) {
+    String eventId = dbNameResolver.getColumnName(ColumnName.EVENT_ID);
+    StringBuilder sqlBuilder = new StringBuilder(eventId)
+            .append(" IN (SELECT ").append(eventId)
+            .append(" FROM ").append(dbNameResolver.getTableName(TableName.LOGGING_EVENT))
+            .append(" WHERE ").append(dbNameResolver.getColumnName(ColumnName.TIMESTMP))
+            .append(" <= ").append(expiryMs)
+            .append(" ORDER BY ").append(eventId)
+            .append(" LIMIT ").append(limit).append(")");
+    return sqlBuilder.toString();
+  }
+
+  /**
+   * Builds a WHERE clause matching the rows of a child table (properties or
+   * exceptions) for at most {@code limit} events that no longer exist. Each
+   * row is looked up in the event table by its primary key.
+   */
+  public static String buildOrphanedRowsWhereSQL(DBNameResolver dbNameResolver, TableName childTable, int limit) {
+    String eventId = dbNameResolver.getColumnName(ColumnName.EVENT_ID);
+    StringBuilder sqlBuilder = new StringBuilder(eventId)
+            .append(" IN (SELECT DISTINCT c.").append(eventId)
+            .append(" FROM ").append(dbNameResolver.getTableName(childTable)).append(" c")
+            .append(" WHERE NOT EXISTS (SELECT 1")
+            .append(" FROM ").append(dbNameResolver.getTableName(TableName.LOGGING_EVENT)).append(" e")
+            .append(" WHERE e.").append(eventId).append(" = c.").append(eventId).append(")")
+            .append(" LIMIT ").append(limit).append(")");
+    return sqlBuilder.toString();
+  }
+
+  /**
+   * Builds a WHERE clause matching the event IDs of the {@code limit} oldest
+   * events, for evicting them from the event table and its child tables.
+   */
+  public static String buildOldestEventIdsWhereSQL(DBNameResolver dbNameResolver, int limit) {
+    String eventId = dbNameResolver.getColumnName(ColumnName.EVENT_ID);
+    StringBuilder sqlBuilder = new StringBuilder(eventId)
+            .append(" IN (SELECT ").append(eventId)
+            .append(" FROM ").append(dbNameResolver.getTableName(TableName.LOGGING_EVENT))
+            .append(" ORDER BY ").append(eventId)
+            .append(" LIMIT ").append(limit).append(")");
+    return sqlBuilder.toString();
+  }
+
+  /**
+   * Builds the INSERT statement of the compact schema, where the logger,
+   * thread and caller are IDs into lookup tables and the level is its integer
+   * value.
+   */
+  public static String buildInsertCompactSQL(DBNameResolver dbNameResolver) {
+    StringBuilder sqlBuilder = new StringBuilder("INSERT INTO ");
+    sqlBuilder.append(dbNameResolver.getTableName(TableName.LOGGING_EVENT)).append(" (")
+        .append(dbNameResolver.getColumnName(ColumnName.TIMESTMP)).append(", ")
+        .append(dbNameResolver.getColumnName(ColumnName.FORMATTED_MESSAGE)).append(", ")
+        .append(dbNameResolver.getColumnName(ColumnName.LOGGER_ID)).append(", ")
+        .append(dbNameResolver.getColumnName(ColumnName.LEVEL_INT)).append(", ")
+        .append(dbNameResolver.getColumnName(ColumnName.THREAD_ID)).append(", ")
+        .append(dbNameResolver.getColumnName(ColumnName.REFERENCE_FLAG)).append(", ")
+        .append(dbNameResolver.getColumnName(ColumnName.ARG0)).append(", ")
+        .append(dbNameResolver.getColumnName(ColumnName.ARG1)).append(", ")
+        .append(dbNameResolver.getColumnName(ColumnName.ARG2)).append(", ")
+        .append(dbNameResolver.getColumnName(ColumnName.ARG3)).append(", ")
+        .append(dbNameResolver.getColumnName(ColumnName.CALLER_ID)).append(") ")
+        .append("VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+    return sqlBuilder.toString();
+  }
+
+  public static String buildCreateCompactLoggingEventTableSQL(DBNameResolver dbNameResolver) {
+    StringBuilder sqlBuilder = new StringBuilder("CREATE TABLE IF NOT EXISTS ");
+    sqlBuilder.append(dbNameResolver.getTableName(TableName.LOGGING_EVENT)).append(" (")
+        .append(dbNameResolver.getColumnName(ColumnName.TIMESTMP)).append(" BIGINT NOT NULL, ")
+        .append(dbNameResolver.getColumnName(ColumnName.FORMATTED_MESSAGE)).append(" TEXT NOT NULL, ")
+        .append(dbNameResolver.getColumnName(ColumnName.LOGGER_ID)).append(" INTEGER NOT NULL, ")
+        .append(dbNameResolver.getColumnName(ColumnName.LEVEL_INT)).append(" INTEGER NOT NULL, ")
+        .append(dbNameResolver.getColumnName(ColumnName.THREAD_ID)).append(" INTEGER, ")
+        .append(dbNameResolver.getColumnName(ColumnName.REFERENCE_FLAG)).append(" SMALLINT, ")
+        .append(dbNameResolver.getColumnName(ColumnName.ARG0)).append(" VARCHAR(254), ")
+        .append(dbNameResolver.getColumnName(ColumnName.ARG1)).append(" VARCHAR(254), ")
+        .append(dbNameResolver.getColumnName(ColumnName.ARG2)).append(" VARCHAR(254), ")
+        .append(dbNameResolver.getColumnName(ColumnName.ARG3)).append(" VARCHAR(254), ")
+        .append(dbNameResolver.getColumnName(ColumnName.CALLER_ID)).append(" INTEGER, ")
+        .append(dbNameResolver.getColumnName(ColumnName.EVENT_ID)).append(" INTEGER NOT NULL PRIMARY KEY AUTOINCREMENT")
+        .append(")");
+    return sqlBuilder.toString();
+  }
+
+  public static String buildCreateLoggerTableSQL(DBNameResolver dbNameResolver) {
+    return buildCreateLookupTableSQL(dbNameResolver, TableName.LOGGING_LOGGER, ColumnName.LOGGER_ID,
+        ColumnName.LOGGER_NAME);
+  }
+
+  public static String buildCreateThreadTableSQL(DBNameResolver dbNameResolver) {
+    return buildCreateLookupTableSQL(dbNameResolver, TableName.LOGGING_THREAD, ColumnName.THREAD_ID,
+        ColumnName.THREAD_NAME);
+  }
+
+  public static String buildCreateCallerTableSQL(DBNameResolver dbNameResolver) {
+    return buildCreateLookupTableSQL(dbNameResolver, TableName.LOGGING_CALLER, ColumnName.CALLER_ID,
+        CALLER_COLUMNS);
+  }
+
+  /** Value columns of the caller lookup table */
+  public static final ColumnName[] CALLER_COLUMNS = { ColumnName.CALLER_FILENAME, ColumnName.CALLER_CLASS,
+      ColumnName.CALLER_METHOD, ColumnName.CALLER_LINE };
+
+  /**
+   * Builds a lookup table of the compact schema, holding each distinct value
+   * (or combination of values) once, under an integer ID.
+   */
+  static String buildCreateLookupTableSQL(DBNameResolver dbNameResolver, TableName table, ColumnName idColumn,
+                                          ColumnName... valueColumns) {
+    StringBuilder sqlBuilder = new StringBuilder("CREATE TABLE IF NOT EXISTS ");
+    sqlBuilder.append(dbNameResolver.getTableName(table)).append(" (")
+        .append(dbNameResolver.getColumnName(idColumn)).append(" INTEGER NOT NULL PRIMARY KEY, ");
+    for (ColumnName column : valueColumns) {
+      sqlBuilder.append(dbNameResolver.getColumnName(column)).append(" TEXT NOT NULL, ");
+    }
+    sqlBuilder.append("UNIQUE (");
+    appendColumnList(sqlBuilder, dbNameResolver, valueColumns);
+    sqlBuilder.append("))");
+    return sqlBuilder.toString();
+  }
+
+  /**
+   * Builds an INSERT that adds a value to a lookup table unless already there
+   */
+  public static String buildInsertLookupSQL(DBNameResolver dbNameResolver, TableName table,
+                                            ColumnName... valueColumns) {
+    StringBuilder sqlBuilder = new StringBuilder("INSERT OR IGNORE INTO ");
+    sqlBuilder.append(dbNameResolver.getTableName(table)).append(" (");
+    appendColumnList(sqlBuilder, dbNameResolver, valueColumns);
+    sqlBuilder.append(") VALUES (");
+    for (int i = 0; i < valueColumns.length; i++) {
+      sqlBuilder.append(i == 0 ? "?" : ", ?");
+    }
+    sqlBuilder.append(")");
+    return sqlBuilder.toString();
+  }
+
+  /**
+   * Builds a SELECT of the ID of a value in a lookup table
+   */
+  public static String buildSelectLookupIdSQL(DBNameResolver dbNameResolver, TableName table, ColumnName idColumn,
+                                              ColumnName... valueColumns) {
+    StringBuilder sqlBuilder = new StringBuilder("SELECT ");
+    sqlBuilder.append(dbNameResolver.getColumnName(idColumn))
+        .append(" FROM ").append(dbNameResolver.getTableName(table))
+        .append(" WHERE ");
+    for (int i = 0; i < valueColumns.length; i++) {
+      if (i > 0) {
+        sqlBuilder.append(" AND ");
+      }
+      sqlBuilder.append(dbNameResolver.getColumnName(valueColumns[i])).append(" = ?");
+    }
+    return sqlBuilder.toString();
+  }
+
+  /**
+   * Builds the table of deduplicated exceptions, holding each distinct
+   * rendered trace once under its hash, with the number of events that
+   * logged it.
+   */
+  public static String buildCreateTraceTableSQL(DBNameResolver dbNameResolver) {
+    StringBuilder sqlBuilder = new StringBuilder("CREATE TABLE IF NOT EXISTS ");
+    sqlBuilder.append(dbNameResolver.getTableName(TableName.LOGGING_TRACE)).append(" (")
+        .append(dbNameResolver.getColumnName(ColumnName.TRACE_HASH)).append(" INTEGER NOT NULL PRIMARY KEY, ")
+        .append(dbNameResolver.getColumnName(ColumnName.TRACE_COUNT)).append(" INTEGER NOT NULL, ")
+        .append(dbNameResolver.getColumnName(ColumnName.TRACE)).append(" TEXT NOT NULL")
+        .append(")");
+    return sqlBuilder.toString();
+  }
+
+  public static String buildCreateEventTraceTableSQL(DBNameResolver dbNameResolver) {
+    StringBuilder sqlBuilder = new StringBuilder("CREATE TABLE IF NOT EXISTS ");
+    sqlBuilder.append(dbNameResolver.getTableName(TableName.LOGGING_EVENT_TRACE)).append(" (")
+        .append(dbNameResolver.getColumnName(ColumnName.EVENT_ID)).append(" BIGINT NOT NULL PRIMARY KEY, ")
+        .append(dbNameResolver.getColumnName(ColumnName.TRACE_HASH)).append(" INTEGER NOT NULL, ")
+        .append("FOREIGN KEY (")
+        .append(dbNameResolver.getColumnName(ColumnName.EVENT_ID)).append(") ")
+        .append("REFERENCES ")
+        .append(dbNameResolver.getTableName(TableName.LOGGING_EVENT)).append(" (")
+        .append(dbNameResolver.getColumnName(ColumnName.EVENT_ID)).append(") ")
+        .append(")");
+    return sqlBuilder.toString();
+  }
+
+  /**
+   * Builds an INSERT that stores a trace with a zero count unless its hash is
+   * already there
+   */
+  public static String buildInsertTraceSQL(DBNameResolver dbNameResolver) {
+    StringBuilder sqlBuilder = new StringBuilder("INSERT OR IGNORE INTO ");
+    sqlBuilder.append(dbNameResolver.getTableName(TableName.LOGGING_TRACE)).append(" (")
+        .append(dbNameResolver.getColumnName(ColumnName.TRACE_HASH)).append(", ")
+        .append(dbNameResolver.getColumnName(ColumnName.TRACE_COUNT)).append(", ")
+        .append(dbNameResolver.getColumnName(ColumnName.TRACE)).append(") ")
+        .append("VALUES (?, 0, ?)");
+    return sqlBuilder.toString();
+  }
+
+  public static String buildIncrementTraceCountSQL(DBNameResolver dbNameResolver) {
+    String count = dbNameResolver.getColumnName(ColumnName.TRACE_COUNT);
+    StringBuilder sqlBuilder = new StringBuilder("UPDATE ");
+    sqlBuilder.append(dbNameResolver.getTableName(TableName.LOGGING_TRACE))
+        .append(" SET ").append(count).append(" = ").append(count).append(" + 1")
+        .append(" WHERE ").append(dbNameResolver.getColumnName(ColumnName.TRACE_HASH)).append(" = ?");
+    return sqlBuilder.toString();
+  }
+
+  public static String buildInsertEventTraceSQL(DBNameResolver dbNameResolver) {
+    StringBuilder sqlBuilder = new StringBuilder("INSERT INTO ");
+    sqlBuilder.append(dbNameResolver.getTableName(TableName.LOGGING_EVENT_TRACE)).append(" (")
+        .append(dbNameResolver.getColumnName(ColumnName.EVENT_ID)).append(", ")
+        .append(dbNameResolver.getColumnName(ColumnName.TRACE_HASH)).append(") ")
+        .append("VALUES (?, ?)");
+    return sqlBuilder.toString();
+  }
+
+  /**
+   * Builds a WHERE clause matching the traces no longer referenced by any
+   * event
+   */
+  public static String buildUnreferencedTracesWhereSQL(DBNameResolver dbNameResolver) {
+    String hash = dbNameResolver.getColumnName(ColumnName.TRACE_HASH);
+    StringBuilder sqlBuilder = new StringBuilder(hash)
+        .append(" NOT IN (SELECT ").append(hash)
+        .append(" FROM ").append(dbNameResolver.getTableName(TableName.LOGGING_EVENT_TRACE)).append(")");
+    return sqlBuilder.toString();
+  }
+
+  /**
+   * Builds an index on a column, named after its table and column
+   */
+  public static String buildCreateIndexSQL(DBNameResolver dbNameResolver, TableName table, ColumnName column) {
+    String tableName = dbNameResolver.getTableName(table);
+    String columnName = dbNameResolver.getColumnName(column);
+    StringBuilder sqlBuilder = new StringBuilder("CREATE INDEX IF NOT EXISTS ");
+    sqlBuilder.append(tableName).append('_').append(columnName).append("_idx")
+        .append(" ON ").append(tableName).append(" (").append(columnName).append(")");
+    return sqlBuilder.toString();
+  }
+
+  private static void appendColumnList(StringBuilder sqlBuilder, DBNameResolver dbNameResolver,
+                                       ColumnName... columns) {
+    for (int i = 0; i < columns.length; i++) {
+      if (i > 0) {
+        sqlBuilder.append(", ");
+      }
+      sqlBuilder.append(dbNameResolver.getColumnName(columns[i]));
+    }
+  }
 }
@@ -31,11 +31,22 @@ public enum ColumnName {
   CALLER_CLASS,
   CALLER_METHOD,
   CALLER_LINE,
-  
+
+  // compact schema
+  LEVEL_INT,
+  LOGGER_ID,
+  THREAD_ID,
+  CALLER_ID,
+
   // MDC
   MAPPED_KEY,
   MAPPED_VALUE,
 
   I,
-  TRACE_LINE;
+  TRACE_LINE,
+
+  // deduplicated exceptions
+  TRACE_HASH,
+  TRACE_COUNT,
+  TRACE;
 }
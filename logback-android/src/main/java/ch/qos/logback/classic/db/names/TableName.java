@@ -21,6 +21,15 @@ public enum TableName {
 
   LOGGING_EVENT,
   LOGGING_EVENT_PROPERTY,
-  LOGGING_EVENT_EXCEPTION
+  LOGGING_EVENT_EXCEPTION,
+
+  // lookup tables of the compact schema
+  LOGGING_LOGGER,
+  LOGGING_THREAD,
+  LOGGING_CALLER,
+
+  // deduplicated exceptions
+  LOGGING_TRACE,
+  LOGGING_EVENT_TRACE
 
 }
@@ -81,4 +81,9 @@ public class DateConverter extends ClassicConverter {
     long timestamp = le.getTimeStamp();
     return cachingDateFormatter.format(timestamp);
   }
+
+  @Override
+  protected void append(StringBuilder buf, ILoggingEvent le) {
+    cachingDateFormatter.format(le.getTimeStamp(), buf);
+  }
 }
@@ -26,4 +26,9 @@ public class LevelConverter extends ClassicConverter {
     return le.getLevel().toString();
   }
 
+  @Override
+  protected void append(StringBuilder buf, ILoggingEvent le) {
+    buf.append(le.getLevel().levelStr);
+  }
+
 }
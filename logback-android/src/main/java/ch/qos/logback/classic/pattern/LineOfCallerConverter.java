@@ -27,4 +27,14 @@ public class LineOfCallerConverter extends ClassicConverter {
     }
   }
 
+  @Override
+  protected void append(StringBuilder buf, ILoggingEvent le) {
+    StackTraceElement[] cda = le.getCallerData();
+    if (cda != null && cda.length > 0) {
+      buf.append(cda[0].getLineNumber());
+    } else {
+      buf.append(CallerData.NA);
+    }
+  }
+
 }
@@ -61,11 +61,26 @@ public class MDCConverter extends ClassicConverter {
     }
   }
 
+  @Override
+  protected void append(StringBuilder buf, ILoggingEvent event) {
+    Map<String, String> mdcPropertyMap = event.getMDCPropertyMap();
+    if (mdcPropertyMap != null && key == null) {
+      appendMDCForAllKeys(buf, mdcPropertyMap);
+    } else {
+      buf.append(convert(event));
+    }
+  }
+
   /**
    * if no key is specified, return all the values present in the MDC, in the format "k1=v1, k2=v2, ..."
    */
   private String outputMDCForAllKeys(Map<String, String> mdcPropertyMap) {
     StringBuilder buf = new StringBuilder();
+    appendMDCForAllKeys(buf, mdcPropertyMap);
+    return buf.toString();
+  }
+
+  private void appendMDCForAllKeys(StringBuilder buf, Map<String, String> mdcPropertyMap) {
     boolean first = true;
     for (Map.Entry<String, String> entry : mdcPropertyMap.entrySet()) {
       if (first) {
@@ -76,6 +91,5 @@ public class MDCConverter extends ClassicConverter {
       //format: key0=value0, key1=value1
       buf.append(entry.getKey()).append('=').append(entry.getValue());
     }
-    return buf.toString();
   }
 }
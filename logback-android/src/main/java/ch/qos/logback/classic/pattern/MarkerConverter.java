@@ -35,4 +35,12 @@ public class MarkerConverter extends ClassicConverter {
     }
   }
 
+  @Override
+  protected void append(StringBuilder buf, ILoggingEvent le) {
+    Marker marker = le.getMarker();
+    if (marker != null) {
+      buf.append(marker.toString());
+    }
+  }
+
 }
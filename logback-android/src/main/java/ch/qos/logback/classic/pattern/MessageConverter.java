@@ -26,4 +26,9 @@ public class MessageConverter extends ClassicConverter {
     return event.getFormattedMessage();
   }
 
+  @Override
+  protected void append(StringBuilder buf, ILoggingEvent event) {
+    buf.append(event.getFormattedMessage());
+  }
+
 }
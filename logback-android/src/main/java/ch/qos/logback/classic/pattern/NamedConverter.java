@@ -13,12 +13,27 @@
  */
 package ch.qos.logback.classic.pattern;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import ch.qos.logback.classic.spi.ILoggingEvent;
 
 public abstract class NamedConverter extends ClassicConverter {
 
+  /**
+   * Maximum number of abbreviations kept in the cache. The cache is cleared
+   * when full, which bounds memory even for an unbounded set of names such as
+   * caller class names.
+   */
+  static final int MAX_CACHE_SIZE = 512;
+
   Abbreviator abbreviator = null;
 
+  final ConcurrentHashMap<String, String> cache = new ConcurrentHashMap<String, String>();
+  // plain fields rather than atomics, to keep logging threads from contending
+  // on them; concurrent updates may be lost, so the counts are estimates
+  private long cacheHits;
+  private long cacheMisses;
+
   /**
    * Gets fully qualified name from event.
    * 
@@ -49,8 +64,45 @@ public abstract class NamedConverter extends ClassicConverter {
 
     if (abbreviator == null) {
       return fqn;
-    } else {
-      return abbreviator.abbreviate(fqn);
     }
+
+    String abbreviation = cache.get(fqn);
+    if (abbreviation != null) {
+      cacheHits++;
+      return abbreviation;
+    }
+    cacheMisses++;
+    abbreviation = abbreviator.abbreviate(fqn);
+    if (cache.size() >= MAX_CACHE_SIZE) {
+      cache.clear();
+    }
+    cache.put(fqn, abbreviation);
+    return abbreviation;
+  }
+
+  /**
+   * @return about the number of abbreviations served from the cache. Updates
+   * from concurrent logging threads may be lost, or not visible yet.
+   */
+  public long getCacheHits() {
+    return cacheHits;
+  }
+
+  /**
+   * @return about the number of abbreviations computed because they were
+   * not cached
+   */
+  public long getCacheMisses() {
+    return cacheMisses;
+  }
+
+  /**
+   * @return about the fraction of abbreviations served from the cache, or 0
+   * if no name has been abbreviated yet
+   */
+  public double getCacheHitRate() {
+    long hits = cacheHits;
+    long total = hits + cacheMisses;
+    return (total == 0) ? 0 : (double) hits / total;
   }
 }
@@ -32,4 +32,9 @@ public class RelativeTimeConverter extends ClassicConverter {
       return timesmapCache;
     }
   }
+
+  @Override
+  protected void append(StringBuilder buf, ILoggingEvent event) {
+    buf.append(event.getTimeStamp() - event.getLoggerContextVO().getBirthTime());
+  }
 }
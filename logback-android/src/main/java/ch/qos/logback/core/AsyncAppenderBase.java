@@ -13,13 +13,24 @@
  */
 package ch.qos.logback.core;
 
+import ch.qos.logback.core.async.AsyncAppenderMetrics;
+import ch.qos.logback.core.async.AsyncAppenderMetricsListener;
+import ch.qos.logback.core.async.DropReason;
+import ch.qos.logback.core.async.OverloadPolicy;
+import ch.qos.logback.core.async.RingBufferQueue;
+import ch.qos.logback.core.async.WaitStrategy;
 import ch.qos.logback.core.spi.AppenderAttachable;
 import ch.qos.logback.core.spi.AppenderAttachableImpl;
+import ch.qos.logback.core.util.Duration;
 import ch.qos.logback.core.util.InterruptUtil;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This appender and derived classes, log events asynchronously.  In order to avoid loss of logging events, this
@@ -29,6 +40,32 @@ import java.util.concurrent.BlockingQueue;
  * This appender buffers events in a {@link BlockingQueue}. {@link ch.qos.logback.core.AsyncAppenderBase.Worker} thread created by this appender takes
  * events from the head of the queue, and dispatches them to the single appender attached to this appender.
  * <p>
+ * By default the queue is an {@link ArrayBlockingQueue}. Setting the {@code ringBuffer} property to {@code true}
+ * replaces it with a preallocated, lock-free {@link RingBufferQueue} so that logging threads no longer contend on
+ * a single lock. How the worker and blocked producers wait on that queue is set by the {@code waitStrategy}
+ * property, one of {@code SPIN}, {@code YIELD} or {@code PARK} (the default):
+ * <pre>
+ * &lt;appender name="ASYNC" class="ch.qos.logback.classic.AsyncAppender"&gt;
+ *   &lt;ringBuffer&gt;true&lt;/ringBuffer&gt;
+ *   &lt;waitStrategy&gt;YIELD&lt;/waitStrategy&gt;
+ *   &lt;appender-ref ref="FILE" /&gt;
+ * &lt;/appender&gt;
+ * </pre>
+ * <p>
+ * When {@code maxBatchSize} is greater than one, the worker drains up to that many queued events at a time and
+ * hands them over in a single call to attached appenders implementing {@link BatchAppender}, such as
+ * {@link OutputStreamAppender} and its file-based subclasses. These then lock and flush once per batch instead of
+ * once per event.
+ * <p>
+ * An {@link OverloadPolicy} may be set with the {@code overloadPolicy} property. It then decides which events are
+ * dropped when the queue fills up, in place of {@code discardingThreshold} and {@link #isDiscardable(Object)}, and
+ * periodically queues a summary event describing what was dropped.
+ * <p>
+ * Setting {@code metrics} to {@code true} makes the appender keep {@link AsyncAppenderMetrics}: queued and dropped
+ * events, time spent blocked on a full queue, the queue depth high-water mark, end-to-end latency and batch sizes.
+ * They can be polled with {@link #getMetrics()} or pushed every {@code metricsReportPeriod} to the
+ * {@link AsyncAppenderMetricsListener}s added with {@code metricsListener}.
+ * <p>
  * Please refer to the <a href="http://logback.qos.ch/manual/appenders.html#AsyncAppender">logback manual</a> for
  * further information about this appender.</p>
  *
@@ -54,6 +91,22 @@ public class AsyncAppenderBase<E> extends UnsynchronizedAppenderBase<E> implemen
   int discardingThreshold = UNDEFINED;
   boolean neverBlock = false;
 
+  boolean ringBuffer = false;
+  WaitStrategy waitStrategy = WaitStrategy.PARK;
+
+  OverloadPolicy<E> overloadPolicy;
+  private ScheduledFuture<?> summaryFuture;
+
+  /**
+   * The default period at which metrics are reported to listeners.
+   */
+  public static final Duration DEFAULT_METRICS_REPORT_PERIOD = Duration.buildByMinutes(1);
+  boolean metricsEnabled = false;
+  Duration metricsReportPeriod = DEFAULT_METRICS_REPORT_PERIOD;
+  final List<AsyncAppenderMetricsListener> metricsListeners = new ArrayList<AsyncAppenderMetricsListener>();
+  volatile AsyncAppenderMetrics metrics;
+  private ScheduledFuture<?> metricsFuture;
+
   Worker worker = new Worker();
 
   /**
@@ -64,6 +117,13 @@ public class AsyncAppenderBase<E> extends UnsynchronizedAppenderBase<E> implemen
   public static final int DEFAULT_MAX_FLUSH_TIME = 1000;
   int maxFlushTime = DEFAULT_MAX_FLUSH_TIME;
 
+  /**
+   * The default maximum number of events handed to the attached appender in one
+   * call. A value of 1 disables batching.
+   */
+  public static final int DEFAULT_MAX_BATCH_SIZE = 1;
+  int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
   /**
    * Is the eventObject passed as parameter discardable? The base class's implementation of this method always returns
    * 'false' but sub-classes may (and do) override this method.
@@ -79,6 +139,17 @@ public class AsyncAppenderBase<E> extends UnsynchronizedAppenderBase<E> implemen
   }
 
 
+  /**
+   * The time stamp of the event, used to measure end-to-end latency when metrics are enabled. The base class's
+   * implementation returns -1, meaning unknown; sub-classes may override this method.
+   *
+   * @param eventObject the log event
+   * @return the event's creation time in milliseconds, or -1 if unknown
+   */
+  protected long getTimeStamp(E eventObject) {
+    return -1;
+  }
+
   /**
    * Pre-process the event prior to queueing. The base class does no pre-processing but sub-classes can
    * override this behavior.
@@ -102,16 +173,100 @@ public class AsyncAppenderBase<E> extends UnsynchronizedAppenderBase<E> implemen
       addError("Invalid queue size [" + queueSize + "]");
       return;
     }
-    blockingQueue = new ArrayBlockingQueue<E>(queueSize);
+    if (maxBatchSize < 1) {
+      addError("Invalid max batch size [" + maxBatchSize + "]");
+      return;
+    }
+    if (ringBuffer) {
+      if (waitStrategy == null) {
+        addError("No wait strategy set for the ring buffer");
+        return;
+      }
+      addInfo("Using lock-free ring buffer with wait strategy " + waitStrategy);
+      blockingQueue = new RingBufferQueue<E>(queueSize, waitStrategy);
+    } else {
+      blockingQueue = new ArrayBlockingQueue<E>(queueSize);
+    }
 
-    if (discardingThreshold == UNDEFINED)
-      discardingThreshold = queueSize / 5;
-    addInfo("Setting discardingThreshold to " + discardingThreshold);
+    if (overloadPolicy != null) {
+      if (!overloadPolicy.isStarted()) {
+        addError("Overload policy " + overloadPolicy + " is not started.");
+        return;
+      }
+      addInfo("Using overload policy " + overloadPolicy);
+    } else {
+      if (discardingThreshold == UNDEFINED)
+        discardingThreshold = queueSize / 5;
+      addInfo("Setting discardingThreshold to " + discardingThreshold);
+    }
     worker.setDaemon(true);
     worker.setName("AsyncAppender-Worker-" + getName());
     // make sure this instance is marked as "started" before staring the worker Thread
+    if (metricsEnabled) {
+      metrics = new AsyncAppenderMetrics(getName());
+    }
     super.start();
     worker.start();
+    scheduleSummaries();
+    scheduleMetricsReports();
+  }
+
+  private void scheduleMetricsReports() {
+    if (metrics == null || metricsListeners.isEmpty()) {
+      return;
+    }
+    if (metricsReportPeriod == null || metricsReportPeriod.getMilliseconds() <= 0) {
+      addWarn("No metrics report period set, metrics will not be reported to listeners.");
+      return;
+    }
+    long millis = metricsReportPeriod.getMilliseconds();
+    metricsFuture = context.getScheduledExecutorService().scheduleAtFixedRate(new Runnable() {
+      public void run() {
+        reportMetrics();
+      }
+    }, millis, millis, TimeUnit.MILLISECONDS);
+  }
+
+  void reportMetrics() {
+    AsyncAppenderMetrics m = metrics;
+    if (m == null) {
+      return;
+    }
+    for (AsyncAppenderMetricsListener listener : metricsListeners) {
+      try {
+        listener.report(m);
+      } catch (RuntimeException e) {
+        addError("Metrics listener " + listener + " failed.", e);
+      }
+    }
+  }
+
+  private void scheduleSummaries() {
+    if (overloadPolicy == null) {
+      return;
+    }
+    Duration period = overloadPolicy.getSummaryPeriod();
+    if (period == null || period.getMilliseconds() <= 0) {
+      return;
+    }
+    long millis = period.getMilliseconds();
+    summaryFuture = context.getScheduledExecutorService().scheduleAtFixedRate(new Runnable() {
+      public void run() {
+        queueSummary();
+      }
+    }, millis, millis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Queues the overload policy's summary of dropped events, if there is one.
+   * Never blocks: a summary that does not fit in the queue is lost.
+   */
+  void queueSummary() {
+    E summary = overloadPolicy.summarize();
+    if (summary != null) {
+      preprocess(summary);
+      blockingQueue.offer(summary);
+    }
   }
 
   @Override
@@ -119,6 +274,20 @@ public class AsyncAppenderBase<E> extends UnsynchronizedAppenderBase<E> implemen
     if (!isStarted())
       return;
 
+    if (metricsFuture != null) {
+      metricsFuture.cancel(false);
+      metricsFuture = null;
+    }
+
+    if (overloadPolicy != null) {
+      if (summaryFuture != null) {
+        summaryFuture.cancel(false);
+        summaryFuture = null;
+      }
+      // report what was dropped since the last summary
+      queueSummary();
+    }
+
     // mark this appender as stopped so that Worker can also processPriorToRemoval if it is invoking aii.appendLoopOnAppenders
     // and sub-appenders consume the interruption
     super.stop();
@@ -152,7 +321,13 @@ public class AsyncAppenderBase<E> extends UnsynchronizedAppenderBase<E> implemen
 
   @Override
   protected void append(E eventObject) {
-    if (isQueueBelowDiscardingThreshold() && isDiscardable(eventObject)) {
+    if (overloadPolicy != null) {
+      if (!overloadPolicy.admit(eventObject, blockingQueue.size(), queueSize)) {
+        recordDropped(DropReason.OVERLOAD_POLICY);
+        return;
+      }
+    } else if (isQueueBelowDiscardingThreshold() && isDiscardable(eventObject)) {
+      recordDropped(DropReason.DISCARDED);
       return;
     }
     preprocess(eventObject);
@@ -163,11 +338,38 @@ public class AsyncAppenderBase<E> extends UnsynchronizedAppenderBase<E> implemen
     return (blockingQueue.remainingCapacity() < discardingThreshold);
   }
 
+  private void recordDropped(DropReason reason) {
+    AsyncAppenderMetrics m = metrics;
+    if (m != null) {
+      m.recordDropped(reason);
+    }
+  }
+
   private void put(E eventObject) {
+    AsyncAppenderMetrics m = metrics;
     if (neverBlock) {
-      blockingQueue.offer(eventObject);
-    } else {
+      if (blockingQueue.offer(eventObject)) {
+        if (m != null) {
+          m.recordEnqueued();
+        }
+      } else {
+        if (overloadPolicy != null) {
+          overloadPolicy.rejected(eventObject);
+        }
+        if (m != null) {
+          m.recordDropped(DropReason.QUEUE_FULL);
+        }
+      }
+    } else if (m == null) {
       putUninterruptibly(eventObject);
+    } else {
+      // only time the put if the queue is actually full
+      if (!blockingQueue.offer(eventObject)) {
+        long start = System.nanoTime();
+        putUninterruptibly(eventObject);
+        m.recordBlocked(System.nanoTime() - start);
+      }
+      m.recordEnqueued();
     }
   }
 
@@ -205,6 +407,75 @@ public class AsyncAppenderBase<E> extends UnsynchronizedAppenderBase<E> implemen
     this.discardingThreshold = discardingThreshold;
   }
 
+  public OverloadPolicy<E> getOverloadPolicy() {
+    return overloadPolicy;
+  }
+
+  /**
+   * Sets the policy deciding which events to drop when the queue fills up. When
+   * set, {@code discardingThreshold} is ignored.
+   *
+   * @param overloadPolicy the overload policy
+   */
+  public void setOverloadPolicy(OverloadPolicy<E> overloadPolicy) {
+    this.overloadPolicy = overloadPolicy;
+  }
+
+  public boolean isMetrics() {
+    return metricsEnabled;
+  }
+
+  /**
+   * Whether to keep {@link AsyncAppenderMetrics}. Takes effect on {@link #start()}.
+   *
+   * @param metricsEnabled true to keep metrics
+   */
+  public void setMetrics(boolean metricsEnabled) {
+    this.metricsEnabled = metricsEnabled;
+  }
+
+  /**
+   * Returns the metrics of this appender.
+   *
+   * @return the metrics, or null if metrics are not enabled or the appender was
+   *         never started
+   */
+  public AsyncAppenderMetrics getMetrics() {
+    return metrics;
+  }
+
+  public Duration getMetricsReportPeriod() {
+    return metricsReportPeriod;
+  }
+
+  public void setMetricsReportPeriod(Duration metricsReportPeriod) {
+    this.metricsReportPeriod = metricsReportPeriod;
+  }
+
+  /**
+   * Adds a listener to which metrics are reported every
+   * {@link #setMetricsReportPeriod(Duration) metricsReportPeriod}.
+   *
+   * @param listener the listener
+   */
+  public void addMetricsListener(AsyncAppenderMetricsListener listener) {
+    metricsListeners.add(listener);
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /**
+   * Sets the maximum number of queued events the worker hands to the attached
+   * appender in one call.
+   *
+   * @param maxBatchSize the maximum batch size, 1 to disable batching
+   */
+  public void setMaxBatchSize(int maxBatchSize) {
+    this.maxBatchSize = maxBatchSize;
+  }
+
   public int getMaxFlushTime() {
     return maxFlushTime;
   }
@@ -230,6 +501,34 @@ public class AsyncAppenderBase<E> extends UnsynchronizedAppenderBase<E> implemen
     return neverBlock;
   }
 
+  /**
+   * Whether events are queued in a lock-free {@link RingBufferQueue} instead of
+   * an {@link ArrayBlockingQueue}. Takes effect on {@link #start()}.
+   *
+   * @param ringBuffer true to use the ring buffer
+   */
+  public void setRingBuffer(boolean ringBuffer) {
+    this.ringBuffer = ringBuffer;
+  }
+
+  public boolean isRingBuffer() {
+    return ringBuffer;
+  }
+
+  /**
+   * Sets how the worker and blocked producers wait on the ring buffer. Ignored
+   * unless {@link #setRingBuffer(boolean) ringBuffer} is set.
+   *
+   * @param waitStrategy the wait strategy
+   */
+  public void setWaitStrategy(WaitStrategy waitStrategy) {
+    this.waitStrategy = waitStrategy;
+  }
+
+  public WaitStrategy getWaitStrategy() {
+    return waitStrategy;
+  }
+
   /**
    * The remaining capacity available in the blocking queue.
    *
@@ -277,29 +576,88 @@ public class AsyncAppenderBase<E> extends UnsynchronizedAppenderBase<E> implemen
     return aai.detachAppender(name);
   }
 
+  /**
+   * Called by the worker thread once it has flushed the queue on exit. Detaches
+   * and stops the attached appender.
+   */
+  void releaseAppenders() {
+    aai.detachAndStopAllAppenders();
+  }
+
   class Worker extends Thread {
 
     public void run() {
       AsyncAppenderBase<E> parent = AsyncAppenderBase.this;
       AppenderAttachableImpl<E> aai = parent.aai;
+      int maxBatchSize = parent.maxBatchSize;
+      List<E> batch = maxBatchSize > 1 ? new ArrayList<E>(maxBatchSize) : null;
 
       // loop while the parent is started
       while (parent.isStarted()) {
         try {
           E e = parent.blockingQueue.take();
-          aai.appendLoopOnAppenders(e);
+          if (batch == null) {
+            recordBatch(1);
+            aai.appendLoopOnAppenders(e);
+            recordLatency(e);
+          } else {
+            batch.add(e);
+            parent.blockingQueue.drainTo(batch, maxBatchSize - 1);
+            recordBatch(batch.size());
+            appendBatch(aai, batch);
+          }
         } catch (InterruptedException ie) {
           break;
         }
       }
 
       addInfo("Worker thread will flush remaining events before exiting.");
-      for (E e : parent.blockingQueue) {
-        aai.appendLoopOnAppenders(e);
-        parent.blockingQueue.remove(e);
+      if (batch == null) {
+        E e;
+        while ((e = parent.blockingQueue.poll()) != null) {
+          recordBatch(1);
+          aai.appendLoopOnAppenders(e);
+          recordLatency(e);
+        }
+      } else {
+        while (parent.blockingQueue.drainTo(batch, maxBatchSize) > 0) {
+          recordBatch(batch.size());
+          appendBatch(aai, batch);
+        }
       }
 
-      aai.detachAndStopAllAppenders();
+      parent.releaseAppenders();
+    }
+
+    private void appendBatch(AppenderAttachableImpl<E> aai, List<E> batch) {
+      try {
+        aai.appendBatchLoopOnAppenders(batch);
+        if (metrics != null) {
+          for (int i = 0; i < batch.size(); i++) {
+            recordLatency(batch.get(i));
+          }
+        }
+      } finally {
+        batch.clear();
+      }
+    }
+
+    private void recordBatch(int batchSize) {
+      AsyncAppenderMetrics m = metrics;
+      if (m != null) {
+        // producers may have refilled the queue since the batch was taken
+        m.recordBatch(batchSize, Math.min(queueSize, batchSize + blockingQueue.size()));
+      }
+    }
+
+    private void recordLatency(E e) {
+      AsyncAppenderMetrics m = metrics;
+      if (m != null) {
+        long timeStamp = getTimeStamp(e);
+        if (timeStamp >= 0) {
+          m.recordLatency(System.currentTimeMillis() - timeStamp);
+        }
+      }
     }
   }
 }
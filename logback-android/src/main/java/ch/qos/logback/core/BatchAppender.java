@@ -0,0 +1,36 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core;
+
+import java.util.List;
+
+/**
+ * An {@link Appender} that can write several events at once, for example with a
+ * single lock acquisition and a single flush. {@link AsyncAppenderBase} hands
+ * events drained from its queue to such appenders in one call.
+ *
+ * @param <E> type of object to log
+ * @since 1.3.0-3
+ */
+public interface BatchAppender<E> extends Appender<E> {
+
+  /**
+   * Appends the given events, in list order. The outcome must be the same as
+   * calling {@link #doAppend(Object)} for each event in turn.
+   *
+   * @param events the events to append; the list must not be modified by the
+   *               appender and must not be retained after the call returns
+   */
+  void doAppendBatch(List<E> events) throws LogbackException;
+}
@@ -14,9 +14,13 @@
 package ch.qos.logback.core;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import ch.qos.logback.core.recovery.ResilientFileOutputStream;
@@ -56,6 +60,7 @@ public class FileAppender<E> extends OutputStreamAppender<E> {
   private boolean lazyInit = false;
 
   private FileSize bufferSize = new FileSize(DEFAULT_BUFFER_SIZE);
+  private FileSize mappedRegionSize;
 
   /**
    * The <b>File</b> property takes a string value which should be the name of
@@ -121,6 +126,17 @@ public class FileAppender<E> extends OutputStreamAppender<E> {
           setAppend(true);
           addWarn("Setting \"Append\" property to true on account of \"Prudent\" mode");
         }
+        if (isMemoryMapped()) {
+          mappedRegionSize = null;
+          addWarn("Prudent mode requires file locking, which memory mapping does not support. Not mapping the file.");
+        }
+      }
+      if (isMemoryMapped() && mappedRegionSize.getSize() > Integer.MAX_VALUE) {
+        mappedRegionSize = new FileSize(Integer.MAX_VALUE);
+        addWarn("mappedRegionSize is limited to " + Integer.MAX_VALUE + " bytes");
+      }
+      if (isMemoryMapped()) {
+        addInfo("Memory mapping the file [" + mappedRegionSize + "] at a time");
       }
 
       if (!lazyInit) {
@@ -209,19 +225,10 @@ public class FileAppender<E> extends OutputStreamAppender<E> {
    */
   protected boolean openFile(String filename) throws IOException {
     boolean successful = false;
-    filename = getAbsoluteFilePath(filename);
     lock.lock();
     try {
-      File file = new File(filename);
-      boolean result = FileUtil.createMissingParentDirectories(file);
-      if (!result) {
-        addError("Failed to create parent directories for ["
-                + file.getAbsolutePath() + "]");
-      }
-
-      ResilientFileOutputStream resilientFos = new ResilientFileOutputStream(file, append, bufferSize.getSize());
-      resilientFos.setContext(context);
-      setOutputStream(resilientFos);
+      ResilientFileOutputStream resilientFos = openResilientFileOutputStream(filename);
+      setOutputStream(decorateOutputStream(resilientFos));
       successful = true;
     } finally {
       lock.unlock();
@@ -229,6 +236,53 @@ public class FileAppender<E> extends OutputStreamAppender<E> {
     return successful;
   }
 
+  /**
+   * Opens a file with the append and buffer size settings of this appender,
+   * creating its parent directories if needed, without making it the output
+   * of this appender.
+   *
+   * @param filename The path to the file.
+   * @return the stream of the file
+   * @throws FileNotFoundException file could not be opened
+   */
+  protected ResilientFileOutputStream openResilientFileOutputStream(String filename) throws FileNotFoundException {
+    File file = new File(getAbsoluteFilePath(filename));
+    boolean result = FileUtil.createMissingParentDirectories(file);
+    if (!result) {
+      addError("Failed to create parent directories for ["
+              + file.getAbsolutePath() + "]");
+    }
+
+    if (append && file.isFile()) {
+      prepareForAppend(file);
+    }
+    ResilientFileOutputStream resilientFos = new ResilientFileOutputStream(file, append, bufferSize.getSize(),
+            isMemoryMapped() ? mappedRegionSize.getSize() : 0);
+    resilientFos.setContext(context);
+    return resilientFos;
+  }
+
+  /**
+   * Lets subclasses repair an existing file before it is opened for
+   * appending, e.g. to cut off a record that was only partly written. Does
+   * nothing by default.
+   *
+   * @param file the file about to be opened
+   */
+  protected void prepareForAppend(File file) {
+  }
+
+  /**
+   * Lets subclasses transform the bytes written to a newly opened file,
+   * e.g. to compress them. Returns the stream unchanged by default.
+   *
+   * @param resilientFos the stream of the file
+   * @return the stream to write to
+   */
+  protected OutputStream decorateOutputStream(ResilientFileOutputStream resilientFos) {
+    return resilientFos;
+  }
+
   /**
    * @see #setPrudent(boolean)
    *
@@ -277,44 +331,89 @@ public class FileAppender<E> extends OutputStreamAppender<E> {
     this.bufferSize = bufferSize;
   }
 
-  private void safeWrite(E event) throws IOException {
-    ResilientFileOutputStream resilientFOS = (ResilientFileOutputStream) getOutputStream();
-    FileChannel fileChannel = resilientFOS.getChannel();
-    if (fileChannel == null) {
-      return;
-    }
+  public FileSize getMappedRegionSize() {
+    return mappedRegionSize;
+  }
+
+  /**
+   * Writes the file through a memory mapping of this many bytes at a time,
+   * instead of a write buffer. Writing then makes no system call until the
+   * mapped region is full, and the OS page cache writes the bytes back to the
+   * file, even if the process dies. The file is truncated to the bytes written
+   * when closed, e.g. on rollover, or when opened again after the process
+   * died, by trimming the zero padding of its last region. A full disk is not
+   * reported as an error but kills the process with SIGBUS, so only use this
+   * on a volume with room to spare. Not supported in prudent mode.
+   *
+   * @param mappedRegionSize the size of the mapped regions, or null (the
+   * default) to write through a buffer
+   */
+  public void setMappedRegionSize(FileSize mappedRegionSize) {
+    this.mappedRegionSize = mappedRegionSize;
+  }
 
-    // Clear any current interrupt (see LOGBACK-875)
-    boolean interrupted = Thread.interrupted();
+  /**
+   * @return true if the file is written through a memory mapping
+   * @see #setMappedRegionSize(FileSize)
+   */
+  public boolean isMemoryMapped() {
+    return mappedRegionSize != null && mappedRegionSize.getSize() > 0;
+  }
 
-    FileLock fileLock = null;
+  /**
+   * Writes events at the end of the file while holding a lock on it, so that
+   * they do not interleave with what other processes write
+   */
+  private void safeWrite(List<E> events) {
+    // a JVM can hold only one lock per file, so threads take turns first
+    lock.lock();
     try {
-      fileLock = fileChannel.lock();
-      long position = fileChannel.position();
-      long size = fileChannel.size();
-      if (size != position) {
-        fileChannel.position(size);
-      }
-      super.writeOut(event);
-    } catch (IOException e) {
-      // Mainly to catch FileLockInterruptionExceptions (see LOGBACK-875)
-      resilientFOS.postIOFailure(e);
-    } finally {
-      if (fileLock != null && fileLock.isValid()) {
-        fileLock.release();
+      ResilientFileOutputStream resilientFOS = (ResilientFileOutputStream) getOutputStream();
+      FileChannel fileChannel = resilientFOS.getChannel();
+      if (fileChannel == null) {
+        return;
       }
 
-      // Re-interrupt if we started in an interrupted state (see LOGBACK-875)
-      if (interrupted) {
-        Thread.currentThread().interrupt();
+      // Clear any current interrupt (see LOGBACK-875)
+      boolean interrupted = Thread.interrupted();
+
+      FileLock fileLock = null;
+      try {
+        fileLock = fileChannel.lock();
+        long position = fileChannel.position();
+        long size = fileChannel.size();
+        if (size != position) {
+          fileChannel.position(size);
+        }
+        super.subAppendBatch(events);
+        // nothing may stay buffered once the lock is released
+        resilientFOS.flush();
+      } catch (IOException e) {
+        // Mainly to catch FileLockInterruptionExceptions (see LOGBACK-875)
+        resilientFOS.postIOFailure(e);
+      } finally {
+        if (fileLock != null && fileLock.isValid()) {
+          try {
+            fileLock.release();
+          } catch (IOException e) {
+            resilientFOS.postIOFailure(e);
+          }
+        }
+
+        // Re-interrupt if we started in an interrupted state (see LOGBACK-875)
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
       }
+    } finally {
+      lock.unlock();
     }
   }
 
   @Override
   protected void writeOut(E event) throws IOException {
     if (prudent) {
-      safeWrite(event);
+      safeWrite(Collections.singletonList(event));
     } else {
       super.writeOut(event);
     }
@@ -322,6 +421,28 @@ public class FileAppender<E> extends OutputStreamAppender<E> {
 
   @Override
   protected void subAppend(E event) {
+    lazyOpenFile();
+    if (prudent) {
+      safeWrite(Collections.singletonList(event));
+    } else {
+      super.subAppend(event);
+    }
+  }
+
+  /**
+   * In prudent mode, the whole batch is written under one file lock
+   */
+  @Override
+  protected void subAppendBatch(List<E> events) {
+    lazyOpenFile();
+    if (prudent) {
+      safeWrite(events);
+    } else {
+      super.subAppendBatch(events);
+    }
+  }
+
+  private void lazyOpenFile() {
     if (!initialized && lazyInit) {
       initialized = true;
 
@@ -338,8 +459,6 @@ public class FileAppender<E> extends OutputStreamAppender<E> {
         }
       }
     }
-
-    super.subAppend(event);
   }
 
   /**
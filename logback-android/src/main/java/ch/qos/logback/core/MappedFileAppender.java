@@ -0,0 +1,40 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2015, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core;
+
+import ch.qos.logback.core.util.FileSize;
+
+/**
+ * MappedFileAppender appends log events to a file through a memory mapping
+ * of the file, mapping {@value #DEFAULT_MAPPED_REGION_SIZE} bytes at a time
+ * unless the <b>MappedRegionSize</b> property says otherwise.
+ * <p>
+ * Encoded events are copied straight into the mapping instead of being
+ * written to the file, so logging makes no write system calls. The bytes
+ * reach the file through the OS page cache, which keeps them if the process
+ * dies, but not if the device loses power before they are written back.
+ * <p>
+ * To memory map the files of a {@link ch.qos.logback.core.rolling.RollingFileAppender},
+ * set its <b>MappedRegionSize</b> property.
+ *
+ * @see FileAppender#setMappedRegionSize(FileSize)
+ */
+public class MappedFileAppender<E> extends FileAppender<E> {
+
+  public static final long DEFAULT_MAPPED_REGION_SIZE = 1024 * 1024;
+
+  public MappedFileAppender() {
+    setMappedRegionSize(new FileSize(DEFAULT_MAPPED_REGION_SIZE));
+  }
+}
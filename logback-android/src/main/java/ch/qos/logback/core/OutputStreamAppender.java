@@ -17,23 +17,32 @@ import static ch.qos.logback.core.CoreConstants.CODES_URL;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.List;
 import java.util.concurrent.locks.ReentrantLock;
 
 import ch.qos.logback.core.encoder.Encoder;
 import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+import ch.qos.logback.core.encoder.StreamingEncoder;
 import ch.qos.logback.core.spi.DeferredProcessingAware;
 import ch.qos.logback.core.status.ErrorStatus;
 
 /**
  * OutputStreamAppender appends events to a {@link OutputStream}. This class
  * provides basic services that other appenders build upon.
+ * <p>
+ * Batches of events, as handed over by {@link AsyncAppenderBase}, are written
+ * under a single lock acquisition and flushed once per batch.
+ * <p>
+ * If the encoder is a {@link StreamingEncoder}, events are encoded straight into
+ * the output stream while holding the lock, without an intermediate byte array
+ * per event.
  *
  * For more information about this appender, please refer to the online manual
  * at http://logback.qos.ch/manual/appenders.html#OutputStreamAppender
  *
  * @author Ceki G&uuml;lc&uuml;
  */
-public class OutputStreamAppender<E> extends UnsynchronizedAppenderBase<E> {
+public class OutputStreamAppender<E> extends UnsynchronizedAppenderBase<E> implements BatchAppender<E> {
 
 
   /**
@@ -105,6 +114,15 @@ public class OutputStreamAppender<E> extends UnsynchronizedAppenderBase<E> {
     subAppend(eventObject);
   }
 
+  @Override
+  protected void appendBatch(List<E> events) {
+    if (!isStarted()) {
+      return;
+    }
+
+    subAppendBatch(events);
+  }
+
   /**
    * Stop this appender instance. The underlying stream or writer is also
    * closed.
@@ -194,6 +212,27 @@ public class OutputStreamAppender<E> extends UnsynchronizedAppenderBase<E> {
     }
   }
 
+  /**
+   * Makes the given stream the output of this appender without closing the
+   * previous one, e.g. so that it can be closed on another thread. The
+   * previous stream gets the encoder's footer and the new one its header.
+   *
+   * @param outputStream An already opened OutputStream.
+   * @return the previous stream, which the caller must close
+   */
+  protected OutputStream replaceOutputStream(OutputStream outputStream) {
+    lock.lock();
+    try {
+      encoderClose();
+      OutputStream previous = this.outputStream;
+      this.outputStream = outputStream;
+      encoderInit();
+      return previous;
+    } finally {
+      lock.unlock();
+    }
+  }
+
   protected void writeOut(E event) throws IOException {
     byte[] byteArray = this.encoder.encode(event);
     writeBytes(byteArray);
@@ -237,14 +276,84 @@ public class OutputStreamAppender<E> extends UnsynchronizedAppenderBase<E> {
       // are writing. It also prevents multiple threads from entering the same
       // converter. Converters assume that they are in a synchronized block.
       //lock.lock();
-      byte[] byteArray = this.encoder.encode(event);
-      writeBytes(byteArray);
+      StreamingEncoder<E> streamingEncoder = streamingEncoder();
+      if (streamingEncoder != null) {
+        streamOut(streamingEncoder, event);
+      } else {
+        byte[] byteArray = this.encoder.encode(event);
+        writeBytes(byteArray);
+      }
+
+    } catch (IOException ioe) {
+      // as soon as an exception occurs, move to non-started state
+      // and add a single ErrorStatus to the SM.
+      this.started = false;
+      addStatus(new ErrorStatus("IO failure in appender", this, ioe));
+    }
+  }
 
+  private StreamingEncoder<E> streamingEncoder() {
+    if (encoder instanceof StreamingEncoder) {
+      StreamingEncoder<E> streamingEncoder = (StreamingEncoder<E>) encoder;
+      if (streamingEncoder.isStreamingSupported()) {
+        return streamingEncoder;
+      }
+    }
+    return null;
+  }
+
+  private void streamOut(StreamingEncoder<E> streamingEncoder, E event) throws IOException {
+    lock.lock();
+    try {
+      streamingEncoder.encode(event, this.outputStream);
+      if (immediateFlush) {
+        this.outputStream.flush();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Batch counterpart of {@link #subAppend(Object)}: all events are encoded and
+   * written while holding the lock once, and the stream is flushed once at the
+   * end of the batch if {@link #isImmediateFlush() immediateFlush} is set.
+   *
+   * @param events the log events, in order
+   */
+  protected void subAppendBatch(List<E> events) {
+    if (!isStarted()) {
+      return;
+    }
+    StreamingEncoder<E> streamingEncoder = streamingEncoder();
+    lock.lock();
+    try {
+      final int len = events.size();
+      for (int i = 0; i < len; i++) {
+        E event = events.get(i);
+        // this step avoids LBCLASSIC-139
+        if (event instanceof DeferredProcessingAware) {
+          ((DeferredProcessingAware) event).prepareForDeferredProcessing();
+        }
+        if (streamingEncoder != null) {
+          streamingEncoder.encode(event, this.outputStream);
+        } else {
+          byte[] byteArray = this.encoder.encode(event);
+          if (byteArray != null && byteArray.length > 0) {
+            this.outputStream.write(byteArray);
+          }
+        }
+      }
+      if (immediateFlush) {
+        this.outputStream.flush();
+      }
     } catch (IOException ioe) {
       // as soon as an exception occurs, move to non-started state
       // and add a single ErrorStatus to the SM.
       this.started = false;
       addStatus(new ErrorStatus("IO failure in appender", this, ioe));
+    } finally {
+      lock.unlock();
     }
   }
 
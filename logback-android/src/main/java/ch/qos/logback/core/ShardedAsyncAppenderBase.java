@@ -0,0 +1,437 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core;
+
+import ch.qos.logback.core.async.AsyncAppenderMetrics;
+import ch.qos.logback.core.async.AsyncAppenderMetricsListener;
+import ch.qos.logback.core.async.WaitStrategy;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+import ch.qos.logback.core.util.Duration;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Like {@link AsyncAppenderBase}, this appender logs events asynchronously, but it spreads the work over several
+ * queues, each drained by its own worker thread.
+ * <p>
+ * Every attached appender gets {@code shardCount} queues of its own. A logging thread is always hashed to the same
+ * shard, so events from one thread reach each attached appender in the order they were logged, while events from
+ * different threads are written in parallel. Since every attached appender has its own queues, a slow appender
+ * (e.g. a database or socket appender) only ever fills its own queues and does not hold up the others.
+ * <p>
+ * The queueing options ({@code queueSize}, {@code discardingThreshold}, {@code neverBlock}, {@code maxBatchSize},
+ * {@code ringBuffer}, {@code waitStrategy} and {@code metrics}) apply to each queue individually. {@code maxFlushTime} bounds the
+ * total time spent flushing all queues on {@link #stop()}.
+ * <pre>
+ * &lt;appender name="ASYNC" class="ch.qos.logback.classic.ShardedAsyncAppender"&gt;
+ *   &lt;shardCount&gt;4&lt;/shardCount&gt;
+ *   &lt;appender-ref ref="FILE" /&gt;
+ *   &lt;appender-ref ref="SQLITE" /&gt;
+ * &lt;/appender&gt;
+ * </pre>
+ * Attached appenders receive events from several worker threads at once and must therefore be thread-safe, which
+ * is the case for all appenders shipped with logback.
+ *
+ * @param <E> type of object to log
+ * @since 1.3.0-3
+ */
+public class ShardedAsyncAppenderBase<E> extends UnsynchronizedAppenderBase<E> implements AppenderAttachable<E> {
+
+  AppenderAttachableImpl<E> aai = new AppenderAttachableImpl<E>();
+
+  /**
+   * The default number of shards per attached appender.
+   */
+  public static final int DEFAULT_SHARD_COUNT = 2;
+  int shardCount = DEFAULT_SHARD_COUNT;
+
+  int queueSize = AsyncAppenderBase.DEFAULT_QUEUE_SIZE;
+  int discardingThreshold = AsyncAppenderBase.UNDEFINED;
+  boolean neverBlock = false;
+  int maxFlushTime = AsyncAppenderBase.DEFAULT_MAX_FLUSH_TIME;
+  int maxBatchSize = AsyncAppenderBase.DEFAULT_MAX_BATCH_SIZE;
+  boolean ringBuffer = false;
+  WaitStrategy waitStrategy = WaitStrategy.PARK;
+  boolean metricsEnabled = false;
+  Duration metricsReportPeriod = AsyncAppenderBase.DEFAULT_METRICS_REPORT_PERIOD;
+  final List<AsyncAppenderMetricsListener> metricsListeners = new ArrayList<AsyncAppenderMetricsListener>();
+
+  // lanes[appenderIndex][shard]
+  Lane[][] lanes;
+
+  /** guards the release of the attached appenders by the lane workers */
+  private final Object releaseLock = new Object();
+  /** lanes still flushing after stop(), the last one stops the attached appenders */
+  private int unreleasedLanes;
+
+  /**
+   * Is the eventObject passed as parameter discardable? The base class's implementation of this method always returns
+   * 'false' but sub-classes may (and do) override this method.
+   *
+   * @param eventObject the log event
+   * @return - true if the event can be discarded, false otherwise
+   * @see AsyncAppenderBase#isDiscardable(Object)
+   */
+  protected boolean isDiscardable(E eventObject) {
+    return false;
+  }
+
+  /**
+   * Pre-process the event prior to queueing. Invoked once per event, no matter how many appenders are attached.
+   *
+   * @param eventObject the log event
+   */
+  protected void preprocess(E eventObject) {
+  }
+
+  /**
+   * The time stamp of the event, used to measure end-to-end latency when metrics are enabled.
+   *
+   * @param eventObject the log event
+   * @return the event's creation time in milliseconds, or -1 if unknown
+   * @see AsyncAppenderBase#getTimeStamp(Object)
+   */
+  protected long getTimeStamp(E eventObject) {
+    return -1;
+  }
+
+  @Override
+  public void start() {
+    if (isStarted()) {
+      return;
+    }
+    List<Appender<E>> appenders = new ArrayList<Appender<E>>();
+    Iterator<Appender<E>> it = aai.iteratorForAppenders();
+    while (it.hasNext()) {
+      appenders.add(it.next());
+    }
+    if (appenders.isEmpty()) {
+      addError("No attached appenders found.");
+      return;
+    }
+    if (shardCount < 1) {
+      addError("Invalid shard count [" + shardCount + "]");
+      return;
+    }
+
+    Lane[][] newLanes = newLaneArray(appenders.size());
+    for (int a = 0; a < newLanes.length; a++) {
+      Appender<E> appender = appenders.get(a);
+      for (int shard = 0; shard < shardCount; shard++) {
+        Lane lane = new Lane();
+        lane.setContext(context);
+        lane.setName(getName() + "-" + appender.getName() + "-" + shard);
+        lane.setQueueSize(queueSize);
+        lane.setDiscardingThreshold(discardingThreshold);
+        lane.setNeverBlock(neverBlock);
+        lane.setMaxBatchSize(maxBatchSize);
+        lane.setRingBuffer(ringBuffer);
+        lane.setWaitStrategy(waitStrategy);
+        lane.setMetrics(metricsEnabled);
+        lane.setMetricsReportPeriod(metricsReportPeriod);
+        for (AsyncAppenderMetricsListener listener : metricsListeners) {
+          lane.addMetricsListener(listener);
+        }
+        lane.addAppender(appender);
+        lane.start();
+        if (!lane.isStarted()) {
+          stopLanes(newLanes);
+          return;
+        }
+        newLanes[a][shard] = lane;
+      }
+    }
+    lanes = newLanes;
+    addInfo("Started " + shardCount + " shard(s) for each of " + appenders.size() + " appender(s)");
+    super.start();
+  }
+
+  @Override
+  public void stop() {
+    if (!isStarted())
+      return;
+
+    super.stop();
+    stopLanes(lanes);
+
+    // the attached appenders are shared by all lanes, and may only be stopped
+    // once every lane worker has flushed its queue
+    synchronized (releaseLock) {
+      unreleasedLanes = 0;
+      for (Lane[] shards : lanes) {
+        for (Lane lane : shards) {
+          if (!lane.released) {
+            unreleasedLanes++;
+          }
+        }
+      }
+      if (unreleasedLanes == 0) {
+        aai.detachAndStopAllAppenders();
+      } else {
+        addWarn(unreleasedLanes + " queue(s) still flushing, attached appenders will be stopped once they are done.");
+      }
+    }
+  }
+
+  private void laneReleased(Lane lane) {
+    synchronized (releaseLock) {
+      lane.released = true;
+      if (unreleasedLanes > 0 && --unreleasedLanes == 0) {
+        aai.detachAndStopAllAppenders();
+      }
+    }
+  }
+
+  // arrays of an inner class of a generic class can only be created raw
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private Lane[][] newLaneArray(int appenderCount) {
+    return new ShardedAsyncAppenderBase.Lane[appenderCount][shardCount];
+  }
+
+  private void stopLanes(Lane[][] lanesToStop) {
+    long deadline = System.currentTimeMillis() + maxFlushTime;
+    for (Lane[] shards : lanesToStop) {
+      for (Lane lane : shards) {
+        if (lane == null) {
+          continue;
+        }
+        if (maxFlushTime > 0) {
+          // share maxFlushTime among all lanes, 0 would mean waiting forever
+          long remaining = deadline - System.currentTimeMillis();
+          lane.setMaxFlushTime((int) Math.max(1, remaining));
+        } else {
+          lane.setMaxFlushTime(maxFlushTime);
+        }
+        lane.stop();
+      }
+    }
+  }
+
+  @Override
+  protected void append(E eventObject) {
+    preprocess(eventObject);
+    int shard = shardOf(Thread.currentThread());
+    for (Lane[] shards : lanes) {
+      shards[shard].append(eventObject);
+    }
+  }
+
+  int shardOf(Thread thread) {
+    long id = thread.getId();
+    int h = (int) (id ^ (id >>> 32));
+    // spread consecutive thread ids
+    h ^= (h >>> 16);
+    h *= 0x85ebca6b;
+    h ^= (h >>> 13);
+    return (h & Integer.MAX_VALUE) % shardCount;
+  }
+
+  public int getShardCount() {
+    return shardCount;
+  }
+
+  /**
+   * Sets the number of queues, and worker threads, per attached appender.
+   *
+   * @param shardCount number of shards
+   */
+  public void setShardCount(int shardCount) {
+    this.shardCount = shardCount;
+  }
+
+  public int getQueueSize() {
+    return queueSize;
+  }
+
+  public void setQueueSize(int queueSize) {
+    this.queueSize = queueSize;
+  }
+
+  public int getDiscardingThreshold() {
+    return discardingThreshold;
+  }
+
+  public void setDiscardingThreshold(int discardingThreshold) {
+    this.discardingThreshold = discardingThreshold;
+  }
+
+  public int getMaxFlushTime() {
+    return maxFlushTime;
+  }
+
+  public void setMaxFlushTime(int maxFlushTime) {
+    this.maxFlushTime = maxFlushTime;
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  public void setMaxBatchSize(int maxBatchSize) {
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  public void setNeverBlock(boolean neverBlock) {
+    this.neverBlock = neverBlock;
+  }
+
+  public boolean isNeverBlock() {
+    return neverBlock;
+  }
+
+  public void setRingBuffer(boolean ringBuffer) {
+    this.ringBuffer = ringBuffer;
+  }
+
+  public boolean isRingBuffer() {
+    return ringBuffer;
+  }
+
+  public void setWaitStrategy(WaitStrategy waitStrategy) {
+    this.waitStrategy = waitStrategy;
+  }
+
+  public WaitStrategy getWaitStrategy() {
+    return waitStrategy;
+  }
+
+  public boolean isMetrics() {
+    return metricsEnabled;
+  }
+
+  public void setMetrics(boolean metricsEnabled) {
+    this.metricsEnabled = metricsEnabled;
+  }
+
+  public Duration getMetricsReportPeriod() {
+    return metricsReportPeriod;
+  }
+
+  public void setMetricsReportPeriod(Duration metricsReportPeriod) {
+    this.metricsReportPeriod = metricsReportPeriod;
+  }
+
+  /**
+   * Adds a listener to which the metrics of every queue are reported.
+   *
+   * @param listener the listener
+   */
+  public void addMetricsListener(AsyncAppenderMetricsListener listener) {
+    metricsListeners.add(listener);
+  }
+
+  /**
+   * Returns the metrics of every queue, named after the appender, the attached
+   * appender and the shard.
+   *
+   * @return the metrics, empty if metrics are not enabled or the appender is not
+   *         started
+   */
+  public List<AsyncAppenderMetrics> getMetrics() {
+    List<AsyncAppenderMetrics> result = new ArrayList<AsyncAppenderMetrics>();
+    if (lanes == null) {
+      return result;
+    }
+    for (Lane[] shards : lanes) {
+      for (Lane lane : shards) {
+        AsyncAppenderMetrics m = lane.getMetrics();
+        if (m != null) {
+          result.add(m);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of elements currently queued, summed over all queues.
+   *
+   * @return number of elements currently queued
+   */
+  public int getNumberOfElementsInQueue() {
+    int count = 0;
+    if (lanes == null) {
+      return count;
+    }
+    for (Lane[] shards : lanes) {
+      for (Lane lane : shards) {
+        count += lane.getNumberOfElementsInQueue();
+      }
+    }
+    return count;
+  }
+
+  public void addAppender(Appender<E> newAppender) {
+    if (isStarted()) {
+      addWarn("Cannot attach appender named [" + newAppender.getName() + "] to started appender [" + getName() + "].");
+      return;
+    }
+    addInfo("Attaching appender named [" + newAppender.getName() + "] to " + getClass().getSimpleName() + ".");
+    aai.addAppender(newAppender);
+  }
+
+  public Iterator<Appender<E>> iteratorForAppenders() {
+    return aai.iteratorForAppenders();
+  }
+
+  public Appender<E> getAppender(String name) {
+    return aai.getAppender(name);
+  }
+
+  public boolean isAttached(Appender<E> eAppender) {
+    return aai.isAttached(eAppender);
+  }
+
+  public void detachAndStopAllAppenders() {
+    aai.detachAndStopAllAppenders();
+  }
+
+  public boolean detachAppender(Appender<E> eAppender) {
+    return aai.detachAppender(eAppender);
+  }
+
+  public boolean detachAppender(String name) {
+    return aai.detachAppender(name);
+  }
+
+  /**
+   * One queue and worker feeding one attached appender. Discarding decisions are
+   * delegated to the enclosing appender; the attached appender is shared with
+   * other lanes and is therefore stopped by the enclosing appender, not the lane.
+   */
+  class Lane extends AsyncAppenderBase<E> {
+
+    /** set once the worker has flushed the queue, guarded by releaseLock */
+    boolean released;
+
+    @Override
+    protected boolean isDiscardable(E eventObject) {
+      return ShardedAsyncAppenderBase.this.isDiscardable(eventObject);
+    }
+
+    @Override
+    protected long getTimeStamp(E eventObject) {
+      return ShardedAsyncAppenderBase.this.getTimeStamp(eventObject);
+    }
+
+    @Override
+    void releaseAppenders() {
+      // the appender is shared with other lanes
+      laneReleased(this);
+    }
+  }
+}
@@ -13,6 +13,7 @@
  */
 package ch.qos.logback.core;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import ch.qos.logback.core.filter.Filter;
@@ -98,6 +99,79 @@ abstract public class UnsynchronizedAppenderBase<E> extends ContextAwareBase imp
 
   abstract protected void append(E eventObject);
 
+  /**
+   * Batch counterpart of {@link #doAppend(Object)}. Events denied by the filter
+   * chain are left out before the remaining ones are handed to
+   * {@link #appendBatch(List)}. Appenders implementing {@link BatchAppender}
+   * expose this method through that interface.
+   *
+   * @param events the events to append, in order
+   */
+  public void doAppendBatch(List<E> events) {
+    // WARNING: The guard check MUST be the first statement in the
+    // doAppendBatch() method.
+
+    // prevent re-entry.
+    if (Boolean.TRUE.equals(guard.get())) {
+      return;
+    }
+
+    try {
+      guard.set(Boolean.TRUE);
+
+      if (!this.started) {
+        if (statusRepeatCount++ < ALLOWED_REPEATS) {
+          addStatus(new WarnStatus(
+              "Attempted to append to non started appender [" + name + "].",
+              this));
+        }
+        return;
+      }
+
+      List<E> accepted = null;
+      final int len = events.size();
+      for (int i = 0; i < len; i++) {
+        E eventObject = events.get(i);
+        if (getFilterChainDecision(eventObject) == FilterReply.DENY) {
+          if (accepted == null) {
+            // only copy the batch once an event is actually filtered out
+            accepted = new ArrayList<E>(events.subList(0, i));
+          }
+        } else if (accepted != null) {
+          accepted.add(eventObject);
+        }
+      }
+      if (accepted == null) {
+        accepted = events;
+      }
+
+      if (!accepted.isEmpty()) {
+        this.appendBatch(accepted);
+      }
+
+    } catch (Exception e) {
+      if (exceptionCount++ < ALLOWED_REPEATS) {
+        addError("Appender [" + name + "] failed to append.", e);
+      }
+    } finally {
+      guard.set(Boolean.FALSE);
+    }
+  }
+
+  /**
+   * Appends a batch of events that passed the filter chain. The default
+   * implementation calls {@link #append(Object)} for each event; derived
+   * classes may override it to amortize locking and flushing over the batch.
+   *
+   * @param events the events to append, in order
+   */
+  protected void appendBatch(List<E> events) {
+    final int len = events.size();
+    for (int i = 0; i < len; i++) {
+      append(events.get(i));
+    }
+  }
+
   /**
    * Set the name of this appender.
    */
@@ -0,0 +1,134 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.async;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Runtime counters and histograms of an asynchronous appender. All values are
+ * cumulative since the appender was started and may be read at any time from any
+ * thread.
+ *
+ * <ul>
+ * <li>events queued, and events dropped per {@link DropReason};</li>
+ * <li>how often and for how long logging threads were blocked on a full queue;</li>
+ * <li>the highest queue depth seen by the worker;</li>
+ * <li>the end-to-end latency, in milliseconds, from an event's time stamp to its
+ * hand-off to the attached appender (only for events carrying a time stamp);</li>
+ * <li>the number of events the worker handed over per call.</li>
+ * </ul>
+ *
+ * @since 1.3.0-3
+ */
+public class AsyncAppenderMetrics {
+
+  private final String appenderName;
+  private final AtomicLong enqueued = new AtomicLong();
+  private final AtomicLongArray dropped = new AtomicLongArray(DropReason.values().length);
+  private final AtomicLong blockedCount = new AtomicLong();
+  private final AtomicLong blockedNanos = new AtomicLong();
+  private volatile int queueDepthHighWaterMark;
+  private final Histogram latency = new Histogram();
+  private final Histogram batchSizes = new Histogram();
+
+  public AsyncAppenderMetrics(String appenderName) {
+    this.appenderName = appenderName;
+  }
+
+  public void recordEnqueued() {
+    enqueued.incrementAndGet();
+  }
+
+  public void recordDropped(DropReason reason) {
+    dropped.incrementAndGet(reason.ordinal());
+  }
+
+  public void recordBlocked(long nanos) {
+    blockedCount.incrementAndGet();
+    blockedNanos.addAndGet(nanos);
+  }
+
+  /**
+   * Records a hand-off by the worker. Must only be called by the worker thread.
+   *
+   * @param batchSize the number of events handed over
+   * @param queueDepth the queue depth when the worker took the events
+   */
+  public void recordBatch(int batchSize, int queueDepth) {
+    batchSizes.record(batchSize);
+    if (queueDepth > queueDepthHighWaterMark) {
+      queueDepthHighWaterMark = queueDepth;
+    }
+  }
+
+  public void recordLatency(long millis) {
+    latency.record(millis);
+  }
+
+  public String getAppenderName() {
+    return appenderName;
+  }
+
+  public long getEnqueued() {
+    return enqueued.get();
+  }
+
+  public long getDropped(DropReason reason) {
+    return dropped.get(reason.ordinal());
+  }
+
+  public long getDropped() {
+    long total = 0;
+    for (int i = 0; i < dropped.length(); i++) {
+      total += dropped.get(i);
+    }
+    return total;
+  }
+
+  public long getBlockedCount() {
+    return blockedCount.get();
+  }
+
+  public long getBlockedNanos() {
+    return blockedNanos.get();
+  }
+
+  public int getQueueDepthHighWaterMark() {
+    return queueDepthHighWaterMark;
+  }
+
+  public Histogram getLatency() {
+    return latency;
+  }
+
+  public Histogram getBatchSizes() {
+    return batchSizes;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("AsyncAppenderMetrics[").append(appenderName).append("] ");
+    sb.append("enqueued=").append(getEnqueued());
+    for (DropReason reason : DropReason.values()) {
+      sb.append(", dropped.").append(reason).append('=').append(getDropped(reason));
+    }
+    sb.append(", blocked=").append(getBlockedCount());
+    sb.append(", blockedMillis=").append(getBlockedNanos() / 1000000L);
+    sb.append(", queueDepthHighWaterMark=").append(getQueueDepthHighWaterMark());
+    sb.append(", latencyMillis={").append(latency).append('}');
+    sb.append(", batchSizes={").append(batchSizes).append('}');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,31 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.async;
+
+/**
+ * Receives the metrics of an asynchronous appender once per report period, for
+ * example to export them to a monitoring system.
+ *
+ * @since 1.3.0-3
+ */
+public interface AsyncAppenderMetricsListener {
+
+  /**
+   * Called periodically, on the context's scheduled executor, with the live
+   * metrics of an appender. Implementations must not block.
+   *
+   * @param metrics the appender's metrics
+   */
+  void report(AsyncAppenderMetrics metrics);
+}
@@ -0,0 +1,38 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.async;
+
+/**
+ * Why an asynchronous appender dropped an event.
+ *
+ * @since 1.3.0-3
+ */
+public enum DropReason {
+
+  /**
+   * Discarded because the queue was filled beyond the {@code discardingThreshold}
+   * and the event was deemed discardable.
+   */
+  DISCARDED,
+
+  /**
+   * Rejected by the appender's {@link OverloadPolicy}.
+   */
+  OVERLOAD_POLICY,
+
+  /**
+   * Lost because the queue was full and the appender is set to never block.
+   */
+  QUEUE_FULL
+}
@@ -0,0 +1,119 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.async;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values with power-of-two buckets.
+ * Bucket 0 counts zeros and bucket {@code i} counts values in
+ * {@code [2^(i-1), 2^i)}. Percentiles are therefore estimates, reported as the
+ * upper bound of the bucket they fall into.
+ *
+ * @since 1.3.0-3
+ */
+public class Histogram {
+
+  static final int BUCKET_COUNT = 64;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a value. Negative values are recorded as zero.
+   *
+   * @param value the value to record
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    buckets.incrementAndGet(bucketOf(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    long currentMax;
+    while (value > (currentMax = max.get())) {
+      if (max.compareAndSet(currentMax, value)) {
+        break;
+      }
+    }
+  }
+
+  static int bucketOf(long value) {
+    return 64 - Long.numberOfLeadingZeros(value);
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public long getSum() {
+    return sum.get();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public double getMean() {
+    long n = count.get();
+    return n == 0 ? 0 : (double) sum.get() / n;
+  }
+
+  /**
+   * Estimates the value below which the given fraction of the recorded values
+   * fall.
+   *
+   * @param fraction a fraction between 0 and 1, e.g. 0.99
+   * @return the upper bound of the bucket holding the percentile, 0 if nothing
+   *         was recorded
+   */
+  public long getPercentile(double fraction) {
+    long n = count.get();
+    if (n == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(fraction * n);
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += buckets.get(i);
+      if (seen >= rank) {
+        return i == 0 ? 0 : Math.min((1L << i) - 1, getMax());
+      }
+    }
+    return getMax();
+  }
+
+  /**
+   * Returns a copy of the bucket counts.
+   *
+   * @return the number of values recorded in each bucket
+   */
+  public long[] getBucketCounts() {
+    long[] copy = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      copy[i] = buckets.get(i);
+    }
+    return copy;
+  }
+
+  @Override
+  public String toString() {
+    return "count=" + getCount() + ", mean=" + Math.round(getMean()) + ", p50=" + getPercentile(0.5)
+        + ", p99=" + getPercentile(0.99) + ", max=" + getMax();
+  }
+}
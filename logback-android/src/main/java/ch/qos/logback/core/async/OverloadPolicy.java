@@ -0,0 +1,72 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.async;
+
+import ch.qos.logback.core.spi.LifeCycle;
+import ch.qos.logback.core.util.Duration;
+
+/**
+ * Decides which events an asynchronous appender drops when its queue fills up,
+ * and reports what was dropped.
+ *
+ * <p>When an overload policy is set on an {@link ch.qos.logback.core.AsyncAppenderBase},
+ * it replaces the appender's built-in {@code discardingThreshold} logic. Every
+ * event is first submitted to {@link #admit}; events rejected by a full queue in
+ * {@code neverBlock} mode are reported through {@link #rejected}. Every
+ * {@link #getSummaryPeriod() summary period} the appender asks the policy for a
+ * {@link #summarize() summary event}, and queues it like any other event so that
+ * the loss stays visible in the logs.</p>
+ *
+ * <p>Implementations are called concurrently by all logging threads and must be
+ * thread-safe.</p>
+ *
+ * @param <E> type of object to log
+ * @since 1.3.0-3
+ */
+public interface OverloadPolicy<E> extends LifeCycle {
+
+  /**
+   * Decides whether the event should be queued.
+   *
+   * @param event the event about to be queued
+   * @param queueDepth the number of events currently queued
+   * @param queueSize the capacity of the queue
+   * @return true to queue the event, false to drop it
+   */
+  boolean admit(E event, int queueDepth, int queueSize);
+
+  /**
+   * Notifies the policy that an admitted event was dropped because the queue was
+   * full and the appender does not block.
+   *
+   * @param event the dropped event
+   */
+  void rejected(E event);
+
+  /**
+   * How often {@link #summarize()} is called. A null or zero period disables
+   * periodic summaries.
+   *
+   * @return the summary period
+   */
+  Duration getSummaryPeriod();
+
+  /**
+   * Returns an event describing what was dropped since the previous call, and
+   * resets the policy's counters.
+   *
+   * @return the summary event, or null if nothing was dropped
+   */
+  E summarize();
+}
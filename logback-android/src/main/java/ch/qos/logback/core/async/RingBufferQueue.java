@@ -0,0 +1,257 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.async;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, preallocated, lock-free multi-producer/single-consumer queue.
+ *
+ * <p>Each slot of the ring carries a sequence number that tells producers and the
+ * consumer whose turn it is to use the slot: a slot is free for the producer of
+ * position {@code p} when its sequence is {@code 2p}, and holds that producer's
+ * element when it is {@code 2p + 1}. Producers claim a slot with a single
+ * compare-and-set on the tail counter and publish the element by advancing the
+ * slot's sequence; the consumer never contends with producers. How threads wait on
+ * a full or empty queue is decided by the {@link WaitStrategy}.</p>
+ *
+ * <p>Any number of threads may insert elements. Only one thread at a time may
+ * remove elements through {@link #poll()}, {@link #peek()}, {@link #take()} or the
+ * {@code drainTo} methods; this is the single worker thread of an asynchronous
+ * appender. {@link #size()} and {@link #remainingCapacity()} are estimates while
+ * other threads are operating on the queue, just like for other concurrent queues.
+ * The iterator is a weakly consistent snapshot and does not support removal.</p>
+ *
+ * @param <E> type of the queued elements
+ * @since 1.3.0-3
+ */
+public class RingBufferQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+  private final int capacity;
+  private final AtomicReferenceArray<E> items;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  private final WaitStrategy waitStrategy;
+
+  // only ever written by the consumer thread
+  private volatile long head;
+  private volatile Thread parkedConsumer;
+
+  public RingBufferQueue(int capacity, WaitStrategy waitStrategy) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Invalid capacity [" + capacity + "]");
+    }
+    if (waitStrategy == null) {
+      throw new NullPointerException("waitStrategy");
+    }
+    this.capacity = capacity;
+    this.waitStrategy = waitStrategy;
+    this.items = new AtomicReferenceArray<E>(capacity);
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, 2L * i);
+    }
+  }
+
+  public RingBufferQueue(int capacity) {
+    this(capacity, WaitStrategy.PARK);
+  }
+
+  public WaitStrategy getWaitStrategy() {
+    return waitStrategy;
+  }
+
+  private int indexOf(long position) {
+    return (int) (position % capacity);
+  }
+
+  public boolean offer(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    long position = tail.get();
+    while (true) {
+      int index = indexOf(position);
+      long delta = sequences.get(index) - 2 * position;
+      if (delta == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          items.lazySet(index, e);
+          // a full volatile write, so that the check for a parked consumer
+          // below cannot be reordered before the publication
+          sequences.set(index, 2 * position + 1);
+          Thread consumer = parkedConsumer;
+          if (consumer != null) {
+            LockSupport.unpark(consumer);
+          }
+          return true;
+        }
+      } else if (delta < 0) {
+        // the slot still holds the element from the previous lap
+        return false;
+      }
+      position = tail.get();
+    }
+  }
+
+  public void put(E e) throws InterruptedException {
+    int counter = 0;
+    while (!offer(e)) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      counter = waitStrategy.idle(counter);
+    }
+  }
+
+  public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    int counter = 0;
+    while (!offer(e)) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      if (System.nanoTime() - deadline >= 0) {
+        return false;
+      }
+      counter = waitStrategy.idle(counter);
+    }
+    return true;
+  }
+
+  public E poll() {
+    long position = head;
+    int index = indexOf(position);
+    if (sequences.get(index) != 2 * position + 1) {
+      return null;
+    }
+    E e = items.get(index);
+    items.lazySet(index, null);
+    // hand the slot over to the producer of the next lap
+    sequences.lazySet(index, 2 * (position + capacity));
+    head = position + 1;
+    return e;
+  }
+
+  public E peek() {
+    long position = head;
+    int index = indexOf(position);
+    if (sequences.get(index) != 2 * position + 1) {
+      return null;
+    }
+    return items.get(index);
+  }
+
+  public E take() throws InterruptedException {
+    int counter = 0;
+    E e;
+    while ((e = poll()) == null) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      counter = awaitProducer(counter);
+    }
+    return e;
+  }
+
+  public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    int counter = 0;
+    E e;
+    while ((e = poll()) == null) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      if (System.nanoTime() - deadline >= 0) {
+        return null;
+      }
+      counter = waitStrategy.idle(counter);
+    }
+    return e;
+  }
+
+  private int awaitProducer(int counter) {
+    if (!waitStrategy.shouldPark(counter)) {
+      return waitStrategy.idle(counter);
+    }
+    parkedConsumer = Thread.currentThread();
+    try {
+      // re-check after announcing ourselves, a producer may have published in between
+      if (peek() == null) {
+        LockSupport.park(this);
+      }
+    } finally {
+      parkedConsumer = null;
+    }
+    return counter;
+  }
+
+  public int drainTo(Collection<? super E> c) {
+    return drainTo(c, Integer.MAX_VALUE);
+  }
+
+  public int drainTo(Collection<? super E> c, int maxElements) {
+    if (c == null) {
+      throw new NullPointerException();
+    }
+    if (c == this) {
+      throw new IllegalArgumentException();
+    }
+    int n = 0;
+    E e;
+    while (n < maxElements && (e = poll()) != null) {
+      c.add(e);
+      n++;
+    }
+    return n;
+  }
+
+  @Override
+  public int size() {
+    long h = head;
+    long size = tail.get() - h;
+    if (size < 0) {
+      return 0;
+    }
+    return size > capacity ? capacity : (int) size;
+  }
+
+  public int remainingCapacity() {
+    return capacity - size();
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    List<E> snapshot = new ArrayList<E>(size());
+    long end = tail.get();
+    for (long position = head; position < end; position++) {
+      int index = indexOf(position);
+      E e = items.get(index);
+      if (e != null && sequences.get(index) == 2 * position + 1) {
+        snapshot.add(e);
+      }
+    }
+    return Collections.unmodifiableList(snapshot).iterator();
+  }
+}
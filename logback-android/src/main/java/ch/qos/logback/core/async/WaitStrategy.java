@@ -0,0 +1,93 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.async;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Determines how a thread waits on a {@link RingBufferQueue} that is full (producers)
+ * or empty (consumer). Strategies differ in how quickly they react to a state change
+ * and how much CPU they burn while doing so.
+ *
+ * <ul>
+ * <li>{@link #SPIN} busy-spins and reacts fastest, but keeps a core fully busy while
+ * waiting. Only use it when a core can be dedicated to the consumer.</li>
+ * <li>{@link #YIELD} spins briefly and then yields the processor between attempts.</li>
+ * <li>{@link #PARK} spins, then yields, then parks the waiting thread. An idle consumer
+ * costs no CPU and is woken up by the next producer. This is the default.</li>
+ * </ul>
+ *
+ * @since 1.3.0-3
+ */
+public enum WaitStrategy {
+
+  SPIN {
+    @Override
+    int idle(int counter) {
+      return counter + 1;
+    }
+  },
+
+  YIELD {
+    @Override
+    int idle(int counter) {
+      if (counter >= SPIN_TRIES) {
+        Thread.yield();
+      }
+      return counter + 1;
+    }
+  },
+
+  PARK {
+    @Override
+    int idle(int counter) {
+      if (counter >= SPIN_TRIES + YIELD_TRIES) {
+        LockSupport.parkNanos(PARK_NANOS);
+      } else if (counter >= SPIN_TRIES) {
+        Thread.yield();
+      }
+      return counter + 1;
+    }
+
+    @Override
+    boolean shouldPark(int counter) {
+      return counter >= SPIN_TRIES + YIELD_TRIES;
+    }
+  };
+
+  static final int SPIN_TRIES = 100;
+  static final int YIELD_TRIES = 100;
+  static final long PARK_NANOS = 100000L;
+
+  /**
+   * Waits for a short while. Called repeatedly for as long as the calling thread
+   * cannot make progress.
+   *
+   * @param counter the number of times this method was already called during the
+   *                current wait
+   * @return the counter to pass in on the next call
+   */
+  abstract int idle(int counter);
+
+  /**
+   * Whether a consumer that has been waiting for {@code counter} rounds should park
+   * until a producer wakes it up, rather than keep polling.
+   *
+   * @param counter the number of rounds the consumer has been waiting
+   * @return true if the consumer should park
+   */
+  boolean shouldPark(int counter) {
+    return false;
+  }
+}
@@ -13,14 +13,44 @@
  */
 package ch.qos.logback.core.encoder;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 
 import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.CoreConstants;
 import ch.qos.logback.core.Layout;
 import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.pattern.PatternLayoutBase;
 
-public class LayoutWrappingEncoder<E> extends EncoderBase<E> {
+/**
+ * Encodes events by converting the output of a {@link Layout} into bytes.
+ * <p>
+ * Besides {@link #encode(Object)}, which returns a new byte array per event, this
+ * encoder can write events directly to an output stream through a cached
+ * {@link CharsetEncoder} and reusable buffers, which saves the intermediate byte
+ * array and its garbage. Subclasses overriding {@link #encode(Object)} keep
+ * working: streaming is then disabled unless they also override
+ * {@link #encode(Object, OutputStream)}. When the layout is a
+ * {@link PatternLayoutBase} in {@link PatternLayoutBase#setOptimized optimized}
+ * mode, streamed events are rendered into a reusable builder and encoded from
+ * there, without an intermediate String.
+ */
+public class LayoutWrappingEncoder<E> extends EncoderBase<E> implements StreamingEncoder<E> {
+
+  static final int BYTE_BUFFER_SIZE = 8192;
+
+  /**
+   * Character buffers larger than this are not retained between events, so that
+   * a single huge message does not pin memory.
+   */
+  static final int MAX_RETAINED_CHAR_BUFFER_SIZE = 64 * 1024;
 
   protected Layout<E> layout;
 
@@ -36,6 +66,12 @@ public class LayoutWrappingEncoder<E> extends EncoderBase<E> {
   Appender<?> parent;
   Boolean immediateFlush = null;
 
+  private final boolean streamingSupported = !overridesEncode(getClass());
+  private CharsetEncoder charsetEncoder;
+  private ByteBuffer byteBuffer;
+  private CharBuffer charBuffer;
+  private StringBuilder layoutBuilder;
+
   public Layout<E> getLayout() {
     return layout;
   }
@@ -60,6 +96,7 @@ public class LayoutWrappingEncoder<E> extends EncoderBase<E> {
    */
   public void setCharset(Charset charset) {
     this.charset = charset;
+    this.charsetEncoder = null;
   }
 
   /**
@@ -116,6 +153,135 @@ public class LayoutWrappingEncoder<E> extends EncoderBase<E> {
     return convertToBytes(txt);
   }
 
+  public boolean isStreamingSupported() {
+    return streamingSupported;
+  }
+
+  public void encode(E event, OutputStream out) throws IOException {
+    if (layout instanceof PatternLayoutBase && ((PatternLayoutBase<E>) layout).isOptimized()) {
+      encodeRendered((PatternLayoutBase<E>) layout, event, out);
+      return;
+    }
+    writeChars(layout.doLayout(event), out);
+  }
+
+  private void encodeRendered(PatternLayoutBase<E> patternLayout, E event, OutputStream out) throws IOException {
+    StringBuilder buf = getLayoutBuilder();
+    try {
+      patternLayout.appendLayout(buf, event);
+      int len = buf.length();
+      if (len > 0) {
+        CharBuffer in = getCharBuffer(len);
+        buf.getChars(0, len, in.array(), 0);
+        writeChars(in, len, buf, out);
+      }
+    } finally {
+      buf.setLength(0);
+      if (buf.capacity() > MAX_RETAINED_CHAR_BUFFER_SIZE) {
+        layoutBuilder = null;
+      }
+    }
+  }
+
+  /**
+   * Encodes the characters with the cached {@link CharsetEncoder} and writes
+   * them to the stream through a reusable byte buffer.
+   */
+  private void writeChars(String txt, OutputStream out) throws IOException {
+    int len = txt.length();
+    if (len == 0) {
+      return;
+    }
+    CharBuffer in = getCharBuffer(len);
+    txt.getChars(0, len, in.array(), 0);
+    writeChars(in, len, txt, out);
+  }
+
+  private void writeChars(CharBuffer in, int len, CharSequence txt, OutputStream out) throws IOException {
+    in.clear();
+    in.limit(len);
+    CharsetEncoder ce = getCharsetEncoder();
+    ByteBuffer bb = getByteBuffer();
+    ce.reset();
+    bb.clear();
+    try {
+      boolean flushing = false;
+      while (true) {
+        CoderResult result = flushing ? ce.flush(bb) : ce.encode(in, bb, true);
+        if (result.isOverflow()) {
+          drain(bb, out);
+        } else if (result.isUnderflow()) {
+          if (flushing) {
+            break;
+          }
+          flushing = true;
+        } else {
+          result.throwException();
+        }
+      }
+      drain(bb, out);
+    } catch (CharacterCodingException e) {
+      // cannot happen with REPLACE actions, but do not lose the event if it does
+      out.write(convertToBytes(txt.toString()));
+    } finally {
+      if (charBuffer != null && charBuffer.capacity() > MAX_RETAINED_CHAR_BUFFER_SIZE) {
+        charBuffer = null;
+      }
+    }
+  }
+
+  private CharBuffer getCharBuffer(int len) {
+    if (charBuffer == null || charBuffer.capacity() < len) {
+      charBuffer = CharBuffer.allocate(Math.max(len, 256));
+    }
+    return charBuffer;
+  }
+
+  private StringBuilder getLayoutBuilder() {
+    if (layoutBuilder == null) {
+      layoutBuilder = new StringBuilder(256);
+    }
+    return layoutBuilder;
+  }
+
+  private static void drain(ByteBuffer bb, OutputStream out) throws IOException {
+    if (bb.position() > 0) {
+      out.write(bb.array(), 0, bb.position());
+      bb.clear();
+    }
+  }
+
+  private CharsetEncoder getCharsetEncoder() {
+    if (charsetEncoder == null) {
+      Charset cs = (charset == null) ? Charset.defaultCharset() : charset;
+      // same substitution behavior as String.getBytes()
+      charsetEncoder = cs.newEncoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+    return charsetEncoder;
+  }
+
+  private ByteBuffer getByteBuffer() {
+    if (byteBuffer == null) {
+      byteBuffer = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+    }
+    return byteBuffer;
+  }
+
+  private static boolean overridesEncode(Class<?> clazz) {
+    try {
+      Class<?> declaring = clazz.getMethod("encode", Object.class).getDeclaringClass();
+      if (declaring == LayoutWrappingEncoder.class) {
+        return false;
+      }
+      Class<?> streamingDeclaring = clazz.getMethod("encode", Object.class, OutputStream.class).getDeclaringClass();
+      return streamingDeclaring == LayoutWrappingEncoder.class;
+    } catch (NoSuchMethodException e) {
+      return true;
+    }
+  }
+
   public boolean isStarted() {
     return false;
   }
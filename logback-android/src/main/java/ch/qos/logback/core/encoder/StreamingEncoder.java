@@ -0,0 +1,51 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.encoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An {@link Encoder} that can write an encoded event straight to an
+ * {@link OutputStream}, without first returning it as a freshly allocated byte
+ * array. {@link ch.qos.logback.core.OutputStreamAppender} uses this method when
+ * its encoder supports it.
+ *
+ * @param <E> event type
+ * @since 1.3.0-3
+ */
+public interface StreamingEncoder<E> extends Encoder<E> {
+
+  /**
+   * Whether {@link #encode(Object, OutputStream)} can be used. When false,
+   * callers must fall back to {@link #encode(Object)}.
+   *
+   * @return true if streaming encoding is available
+   */
+  boolean isStreamingSupported();
+
+  /**
+   * Encodes an event and writes the resulting bytes to the given stream. The
+   * bytes written are the same as those returned by {@link #encode(Object)}.
+   * <p>
+   * Implementations may reuse internal buffers between calls and are therefore
+   * not required to be thread-safe; callers serialize access, typically by
+   * holding the appender's lock.
+   *
+   * @param event the log event
+   * @param out the stream to write to
+   * @throws IOException if writing to the stream fails
+   */
+  void encode(E event, OutputStream out) throws IOException;
+}
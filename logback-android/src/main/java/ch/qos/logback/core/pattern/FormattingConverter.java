@@ -34,13 +34,13 @@ abstract public class FormattingConverter<E> extends Converter<E> {
 
   @Override
   final public void write(StringBuilder buf, E event) {
-    String s = convert(event);
-    
     if(formattingInfo == null) {
-      buf.append(s);
+      append(buf, event);
       return;
     }
-    
+
+    String s = convert(event);
+
     int min = formattingInfo.getMin();
     int max = formattingInfo.getMax();
 
@@ -69,4 +69,17 @@ abstract public class FormattingConverter<E> extends Converter<E> {
       buf.append(s);
     }
   }
+
+  /**
+   * Appends the conversion of the event to the buffer. Used instead of
+   * {@link #convert(Object)} when no padding or truncation is configured, so
+   * that converters able to render straight into the buffer can skip the
+   * intermediate String by overriding this method.
+   *
+   * @param buf The buffer where data is appended
+   * @param event The event from where data is extracted
+   */
+  protected void append(StringBuilder buf, E event) {
+    buf.append(convert(event));
+  }
 }
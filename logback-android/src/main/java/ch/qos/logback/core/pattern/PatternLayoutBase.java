@@ -30,6 +30,12 @@ abstract public class PatternLayoutBase<E> extends LayoutBase<E> {
 
   static final int INTIAL_STRING_BUILDER_SIZE = 256;
 
+  /**
+   * Per-thread builders that grew beyond this capacity are discarded after use,
+   * so that a single large event does not pin memory.
+   */
+  static final int MAX_STRING_BUILDER_SIZE = 2048;
+
   Converter<E> head;
   String pattern;
   protected PostCompileProcessor<E> postCompileProcessor;
@@ -37,6 +43,9 @@ abstract public class PatternLayoutBase<E> extends LayoutBase<E> {
   Map<String, String> instanceConverterMap = new HashMap<String, String>();
   protected boolean outputPatternAsHeader = false;
 
+  boolean optimized = false;
+  private final ThreadLocal<WriteBuffer> writeBuffer = new ThreadLocal<WriteBuffer>();
+
   /**
    * Concrete implementations of this class are responsible for elaborating the
    * mapping between pattern words and converters.
@@ -89,6 +98,9 @@ abstract public class PatternLayoutBase<E> extends LayoutBase<E> {
       if (postCompileProcessor != null) {
         postCompileProcessor.process(context, head);
       }
+      if (optimized) {
+        this.head = mergeLiterals(head);
+      }
       ConverterUtil.setContextForConverters(getContext(), head);
       ConverterUtil.startConverters(this.head);
       super.start();
@@ -104,6 +116,36 @@ abstract public class PatternLayoutBase<E> extends LayoutBase<E> {
     this.postCompileProcessor = postCompileProcessor;
   }
 
+  /**
+   * Tells whether the compiled pattern consists only of literals and of
+   * converters of the given classes, in which case the layout depends on
+   * nothing but what those converters render.
+   *
+   * @param converterClasses the allowed converter classes
+   * @return true if the layout is started and uses no other converters
+   */
+  public boolean isComposedOf(Class<?>... converterClasses) {
+    if (head == null) {
+      return false;
+    }
+    for (Converter<E> c = head; c != null; c = c.getNext()) {
+      if (c instanceof LiteralConverter) {
+        continue;
+      }
+      boolean allowed = false;
+      for (Class<?> converterClass : converterClasses) {
+        if (converterClass.isInstance(c)) {
+          allowed = true;
+          break;
+        }
+      }
+      if (!allowed) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    *
    * @param head the head node of the converter chain
@@ -115,13 +157,90 @@ abstract public class PatternLayoutBase<E> extends LayoutBase<E> {
   }
 
   protected String writeLoopOnConverters(E event) {
-    StringBuilder strBuilder = new StringBuilder(INTIAL_STRING_BUILDER_SIZE);
+    if (!optimized) {
+      StringBuilder strBuilder = new StringBuilder(INTIAL_STRING_BUILDER_SIZE);
+      writeLoopOnConverters(strBuilder, event);
+      return strBuilder.toString();
+    }
+
+    WriteBuffer wb = writeBuffer.get();
+    if (wb == null) {
+      wb = new WriteBuffer();
+      writeBuffer.set(wb);
+    } else if (wb.inUse) {
+      // re-entrant call, e.g. a converter that logs: do not clobber the
+      // builder of the enclosing call
+      StringBuilder strBuilder = new StringBuilder(INTIAL_STRING_BUILDER_SIZE);
+      writeLoopOnConverters(strBuilder, event);
+      return strBuilder.toString();
+    }
+
+    wb.inUse = true;
+    try {
+      writeLoopOnConverters(wb.builder, event);
+      return wb.builder.toString();
+    } finally {
+      wb.release();
+    }
+  }
+
+  /**
+   * Appends the text {@link #doLayout} would return for the event to the given
+   * builder, without creating a String. Nothing is appended while the layout
+   * is not started.
+   *
+   * @param buf the builder to append to
+   * @param event the event to render
+   */
+  public void appendLayout(StringBuilder buf, E event) {
+    if (isStarted()) {
+      writeLoopOnConverters(buf, event);
+    }
+  }
+
+  private void writeLoopOnConverters(StringBuilder strBuilder, E event) {
     Converter<E> c = head;
     while (c != null) {
       c.write(strBuilder, event);
       c = c.getNext();
     }
-    return strBuilder.toString();
+  }
+
+  /**
+   * Replaces runs of adjacent {@link LiteralConverter}s, including those inside
+   * composite converters, with a single new converter, so that each run is
+   * appended in one step. The merged converters themselves are left unchanged.
+   *
+   * @return the head of the merged chain
+   */
+  static <E> Converter<E> mergeLiterals(Converter<E> head) {
+    Converter<E> newHead = head;
+    Converter<E> previous = null;
+    Converter<E> c = head;
+    while (c != null) {
+      if (c instanceof CompositeConverter) {
+        CompositeConverter<E> composite = (CompositeConverter<E>) c;
+        composite.setChildConverter(mergeLiterals(composite.getChildConverter()));
+      } else if (c instanceof LiteralConverter && c.next instanceof LiteralConverter) {
+        StringBuilder literal = new StringBuilder(((LiteralConverter<E>) c).literal);
+        Converter<E> next = c.next;
+        while (next instanceof LiteralConverter) {
+          literal.append(((LiteralConverter<E>) next).literal);
+          next = next.next;
+        }
+        Converter<E> merged = new LiteralConverter<E>(literal.toString());
+        merged.next = next;
+        if (previous == null) {
+          newHead = merged;
+        } else {
+          previous.next = merged;
+        }
+        c = merged;
+      }
+      previous = c;
+      c = c.next;
+    }
+    return newHead;
   }
 
   public String getPattern() {
@@ -132,6 +251,26 @@ abstract public class PatternLayoutBase<E> extends LayoutBase<E> {
     this.pattern = pattern;
   }
 
+  public boolean isOptimized() {
+    return optimized;
+  }
+
+  /**
+   * When true, events are rendered into a reusable per-thread builder instead
+   * of a new one, and adjacent literals of the pattern are merged when the
+   * layout starts. The rendered output is the same either way. A
+   * {@link ch.qos.logback.core.encoder.LayoutWrappingEncoder} streaming to an
+   * appender renders an optimized layout through {@link #appendLayout} into its
+   * own builder and skips the String entirely.
+   * <p>
+   * Default is false.
+   *
+   * @param optimized whether to use the optimized rendering mode
+   */
+  public void setOptimized(boolean optimized) {
+    this.optimized = optimized;
+  }
+
   public String toString() {
     return this.getClass().getName() + "(\"" + getPattern() + "\")";
   }
@@ -159,4 +298,18 @@ abstract public class PatternLayoutBase<E> extends LayoutBase<E> {
     else
       return super.getPresentationHeader();
   }
+
+  private static class WriteBuffer {
+    StringBuilder builder = new StringBuilder(INTIAL_STRING_BUILDER_SIZE);
+    boolean inUse;
+
+    void release() {
+      inUse = false;
+      if (builder.capacity() > MAX_STRING_BUILDER_SIZE) {
+        builder = new StringBuilder(INTIAL_STRING_BUILDER_SIZE);
+      } else {
+        builder.setLength(0);
+      }
+    }
+  }
 }
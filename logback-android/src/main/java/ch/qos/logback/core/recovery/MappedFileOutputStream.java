@@ -0,0 +1,228 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2015, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.recovery;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes to a file through a memory mapping, one region of the file at a
+ * time. Bytes are copied into the mapping, and the OS writes them back to
+ * the file, so writing and flushing make no system calls except to map the
+ * next region when the current one is full.
+ * <p>
+ * Regions start at multiples of the region size. The file is extended to
+ * the end of a region before mapping it, without writing to it, and
+ * truncated to the bytes actually written on {@link #close()}. If the
+ * process dies before then, the file keeps zero padding up to the end of
+ * its last region. When the file is next opened for appending, trailing
+ * zeros are trimmed from its last region only, and only if the file ends
+ * on a region boundary, which a closed file rarely does.
+ * <p>
+ * Since the pages of a region are only allocated on disk when the OS
+ * writes them back, a full disk is not reported as an IOException. Writing
+ * to the mapping then raises SIGBUS instead, which kills the process, so
+ * memory mapping is only suitable for files on a volume with room to spare.
+ * <p>
+ * Java has no API to unmap a region. When a region is full, and on close,
+ * it is unmapped right away through the buffer's cleaner (Java 8 and
+ * earlier) or {@code free()} (Android) where reflection allows it, so that a
+ * file holds one mapped region at a time. Elsewhere, a region stays mapped
+ * until its buffer is garbage collected, which takes address space,
+ * scarce in 32-bit processes, until a collection happens.
+ */
+class MappedFileOutputStream extends OutputStream {
+
+  private static final int READ_CHUNK_SIZE = 64 * 1024;
+
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private final long regionSize;
+  private MappedByteBuffer region;
+  // number of bytes written to the file, i.e. the position of the next write
+  private long position;
+
+  /**
+   * @param file the file to write to
+   * @param append whether to append to or truncate the file
+   * @param regionSize the number of bytes mapped at a time
+   * @throws FileNotFoundException file could not be opened
+   */
+  MappedFileOutputStream(File file, boolean append, long regionSize) throws FileNotFoundException {
+    if (regionSize <= 0 || regionSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("regionSize must be between 1 and " + Integer.MAX_VALUE);
+    }
+    this.file = new RandomAccessFile(file, "rw");
+    this.channel = this.file.getChannel();
+    this.regionSize = regionSize;
+    try {
+      if (append) {
+        position = lengthWithoutPadding();
+        if (position < channel.size()) {
+          channel.truncate(position);
+        }
+      } else {
+        channel.truncate(0);
+      }
+    } catch (IOException e) {
+      closeQuietly();
+      FileNotFoundException fnfe = new FileNotFoundException(file + " could not be opened: " + e.getMessage());
+      fnfe.initCause(e);
+      throw fnfe;
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureRemaining();
+    region.put((byte) b);
+    position++;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      ensureRemaining();
+      int n = Math.min(len, region.remaining());
+      region.put(b, off, n);
+      position += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Does nothing, since the bytes written are already in the OS page cache
+   */
+  @Override
+  public void flush() {
+  }
+
+  /**
+   * Truncates the file to the bytes written, and closes it
+   */
+  @Override
+  public void close() throws IOException {
+    if (!channel.isOpen()) {
+      return;
+    }
+    try {
+      releaseRegion();
+      channel.truncate(position);
+    } finally {
+      file.close();
+    }
+  }
+
+  /**
+   * Gets the number of bytes in the file, which is where the next byte goes
+   */
+  long getPosition() {
+    return position;
+  }
+
+  private void ensureRemaining() throws IOException {
+    if (region == null || !region.hasRemaining()) {
+      // from where the last region ends, or where appending starts, to the
+      // next region boundary
+      long end = (position / regionSize + 1) * regionSize;
+      releaseRegion();
+      if (file.length() < end) {
+        file.setLength(end);
+      }
+      region = channel.map(FileChannel.MapMode.READ_WRITE, position, end - position);
+    }
+  }
+
+  private void releaseRegion() {
+    if (region != null) {
+      MappedByteBuffer released = region;
+      region = null;
+      unmap(released);
+    }
+  }
+
+  /**
+   * Unmaps a region that is no longer used, if the platform lets us. The
+   * buffer must not be accessed afterwards.
+   */
+  static void unmap(MappedByteBuffer buffer) {
+    try {
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) {
+        Method clean = cleaner.getClass().getMethod("clean");
+        clean.setAccessible(true);
+        clean.invoke(cleaner);
+        return;
+      }
+    } catch (Exception e) {
+      // not Java 8 or earlier, or access denied
+    }
+    try {
+      Method free = buffer.getClass().getMethod("free");
+      free.setAccessible(true);
+      free.invoke(buffer);
+    } catch (Exception e) {
+      // not Android either: left to the garbage collector
+    }
+  }
+
+  /**
+   * Gets the length of the file without the zero padding of a last region
+   * that was not truncated
+   */
+  private long lengthWithoutPadding() throws IOException {
+    long size = channel.size();
+    if (size == 0 || size % regionSize != 0) {
+      return size;
+    }
+    long regionStart = size - regionSize;
+    ByteBuffer buf = ByteBuffer.allocate((int) Math.min(regionSize, READ_CHUNK_SIZE));
+    long end = size;
+    while (end > regionStart) {
+      long start = Math.max(regionStart, end - buf.capacity());
+      buf.clear();
+      buf.limit((int) (end - start));
+      while (buf.hasRemaining()) {
+        if (channel.read(buf, start + buf.position()) < 0) {
+          break;
+        }
+      }
+      for (int i = buf.position() - 1; i >= 0; i--) {
+        if (buf.get(i) != 0) {
+          return start + i + 1;
+        }
+      }
+      end = start;
+    }
+    return regionStart;
+  }
+
+  private void closeQuietly() {
+    try {
+      file.close();
+    } catch (IOException e) {
+      // ignore
+    }
+  }
+}
@@ -20,17 +20,44 @@ public class ResilientFileOutputStream extends ResilientOutputStreamBase {
 
   private File file;
   private FileOutputStream fos;
-
+  private CountingOutputStream counter;
+  private long mappedRegionSize;
 
   public ResilientFileOutputStream(File file, boolean append, long bufferSize) throws FileNotFoundException {
+    this(file, append, bufferSize, 0);
+  }
+
+  /**
+   * @param file the file to write to
+   * @param append whether to append to or truncate the file
+   * @param bufferSize the size of the write buffer
+   * @param mappedRegionSize if positive, the file is written through a memory
+   * mapping of this many bytes at a time instead of a write buffer, and
+   * {@link #getChannel()} returns null
+   * @throws FileNotFoundException file could not be opened
+   */
+  public ResilientFileOutputStream(File file, boolean append, long bufferSize, long mappedRegionSize) throws FileNotFoundException {
     this.file = file;
-    fos = new FileOutputStream(file, append);
-    this.os = new BufferedOutputStream(fos, (int) bufferSize);
+    this.mappedRegionSize = mappedRegionSize;
+    if (mappedRegionSize > 0) {
+      counter = openMapped(append);
+    } else {
+      long initialCount = append ? file.length() : 0;
+      fos = new FileOutputStream(file, append);
+      counter = new CountingOutputStream(new BufferedOutputStream(fos, (int) bufferSize), initialCount);
+    }
+    this.os = counter;
     this.presumedClean = true;
   }
 
+  private CountingOutputStream openMapped(boolean append) throws FileNotFoundException {
+    // counted from the length without the padding of an unclosed mapping
+    MappedFileOutputStream mapped = new MappedFileOutputStream(file, append, mappedRegionSize);
+    return new CountingOutputStream(mapped, mapped.getPosition());
+  }
+
   public FileChannel getChannel() {
-    if (os == null) {
+    if (os == null || fos == null) {
       return null;
     }
     return fos.getChannel();
@@ -40,6 +67,17 @@ public class ResilientFileOutputStream extends ResilientOutputStreamBase {
     return file;
   }
 
+  /**
+   * Gets the length of the file as of the bytes written through this stream,
+   * including bytes not flushed yet, without querying the file system. Bytes
+   * appended to the file by others are not included.
+   *
+   * @return the length of the file in bytes
+   */
+  public long getCount() {
+    return counter.getCount();
+  }
+
   @Override
   String getDescription() {
     return "file ["+file+"]";
@@ -48,8 +86,13 @@ public class ResilientFileOutputStream extends ResilientOutputStreamBase {
   @Override
   OutputStream openNewOutputStream() throws IOException {
     // see LOGBACK-765
+    if (mappedRegionSize > 0) {
+      counter = openMapped(true);
+      return counter;
+    }
     fos = new FileOutputStream(file, true);
-    return new BufferedOutputStream(fos);
+    counter = new CountingOutputStream(new BufferedOutputStream(fos), file.length());
+    return counter;
   }
   
   @Override
@@ -14,7 +14,14 @@
 package ch.qos.logback.core.rolling;
 
 import java.io.File;
+import java.io.FileFilter;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 import ch.qos.logback.core.CoreConstants;
 import ch.qos.logback.core.rolling.helper.*;
@@ -27,6 +34,13 @@ import static ch.qos.logback.core.CoreConstants.CODES_URL;
  *
  * For more information about this policy, please refer to the online manual at
  * http://logback.qos.ch/manual/appenders.html#FixedWindowRollingPolicy
+ * <p>
+ * With {@link #setAsynchronous asynchronous} rollover, the active file is
+ * only renamed to a temporary file on the logging thread. Shifting the window
+ * and compressing the temporary file into it happen on the context's
+ * executor, in the order of the rollovers. Temporary files left over by a
+ * previous run, e.g. when the process was killed before they were archived,
+ * are archived when the policy starts.
  *
  * @author Ceki G&uuml;lc&uuml;
  */
@@ -34,10 +48,16 @@ public class FixedWindowRollingPolicy extends RollingPolicyBase {
   static final String FNP_NOT_SET = "The \"FileNamePattern\" property must be set before using FixedWindowRollingPolicy. ";
   static final String PRUDENT_MODE_UNSUPPORTED = "See also "+CODES_URL+"#tbr_fnp_prudent_unsupported";
   static final String SEE_PARENT_FN_NOT_SET = "Please refer to "+CODES_URL+"#fwrp_parentFileName_not_set";
+  static final String TMP_SUFFIX = ".tmp";
   int maxIndex;
   int minIndex;
   RenameUtil util = new RenameUtil();
   Compressor compressor;
+  boolean asynchronous = false;
+  // temporary files of asynchronous rollovers not yet moved into the window
+  private final Queue<PendingArchive> pendingArchives = new ConcurrentLinkedQueue<PendingArchive>();
+  private final Object archiveLock = new Object();
+  volatile Future<?> archiveFuture;
 
   public static final String ZIP_ENTRY_DATE_PATTERN = "yyyy-MM-dd_HHmm";
 
@@ -101,11 +121,41 @@ public class FixedWindowRollingPolicy extends RollingPolicyBase {
       String zipEntryFileNamePatternStr = transformFileNamePatternFromInt2Date(fileNamePatternStr);
       zipEntryFileNamePattern = new FileNamePattern(zipEntryFileNamePatternStr, context);
     }
-    compressor = new Compressor(compressionMode);
-    compressor.setContext(this.context);
+    compressor = createCompressor();
+    archiveLeftoverFiles();
     super.start();
   }
 
+  /**
+   * Queues the temporary files of asynchronous rollovers that were never
+   * archived, oldest first, ahead of any new rollover
+   */
+  private void archiveLeftoverFiles() {
+    File activeFile = new File(getActiveFileName()).getAbsoluteFile();
+    final Pattern tmpPattern = Pattern.compile(Pattern.quote(activeFile.getName()) + "-?\\d+" + Pattern.quote(TMP_SUFFIX));
+    File[] leftovers = activeFile.getParentFile().listFiles(new FileFilter() {
+      public boolean accept(File file) {
+        return tmpPattern.matcher(file.getName()).matches();
+      }
+    });
+    if (leftovers == null || leftovers.length == 0) {
+      return;
+    }
+    // nanoTime suffixes are not comparable across runs
+    Arrays.sort(leftovers, new Comparator<File>() {
+      public int compare(File f1, File f2) {
+        long t1 = f1.lastModified();
+        long t2 = f2.lastModified();
+        return t1 < t2 ? -1 : (t1 == t2 ? f1.getName().compareTo(f2.getName()) : 1);
+      }
+    });
+    for (File leftover : leftovers) {
+      addInfo("Archiving [" + leftover + "] left over by an earlier rollover");
+      pendingArchives.add(new PendingArchive(leftover.getPath(), new Date(leftover.lastModified())));
+    }
+    archiveFuture = context.getScheduledExecutorService().submit(new ArchiveRunnable());
+  }
+
   /**
    * Subclasses can override this method to increase the max window size, if required.  This is to
    * address LOGBACK-266.
@@ -121,47 +171,117 @@ public class FixedWindowRollingPolicy extends RollingPolicyBase {
     return stemOfFileNamePattern.replace("%i", "%d{"+ZIP_ENTRY_DATE_PATTERN+"}");
   }
 
+  @Override
+  public void stop() {
+    if (!isStarted())
+      return;
+    waitForAsynchronousJobToStop(archiveFuture, "rollover");
+    super.stop();
+  }
+
   public void rollover() throws RolloverFailure {
 
     // Inside this method it is guaranteed that the hereto active log file is
     // closed.
     // If maxIndex <= 0, then there is no file renaming to be done.
     if (maxIndex >= 0) {
-      // Delete the oldest file, to keep Windows happy.
-      File file = new File(fileNamePattern.convertInt(maxIndex));
+      if (asynchronous) {
+        String tmpTarget = getActiveFileName() + System.nanoTime() + TMP_SUFFIX;
+        util.rename(getActiveFileName(), tmpTarget);
+        // the rename only warns on failure, leaving the window as it is
+        if (new File(tmpTarget).exists()) {
+          pendingArchives.add(new PendingArchive(tmpTarget, new Date()));
+          archiveFuture = context.getScheduledExecutorService().submit(new ArchiveRunnable());
+        }
+      } else {
+        // after any leftover files still queued, which are older
+        synchronized (archiveLock) {
+          archivePending();
+          archive(getActiveFileName(), new Date());
+        }
+      }
+    }
+  }
+
+  /**
+   * Shifts the window and moves the given file to its minimum index
+   *
+   * @param fileName the file to archive
+   * @param date the time of the rollover, to name the zip entry
+   */
+  private void archive(String fileName, Date date) throws RolloverFailure {
+    // Delete the oldest file, to keep Windows happy.
+    File file = new File(fileNamePattern.convertInt(maxIndex));
 
-      if (file.exists()) {
-        file.delete();
+    if (file.exists()) {
+      file.delete();
+    }
+
+    // Map {(maxIndex - 1), ..., minIndex} to {maxIndex, ..., minIndex+1}
+    for (int i = maxIndex - 1; i >= minIndex; i--) {
+      String toRenameStr = fileNamePattern.convertInt(i);
+      File toRename = new File(toRenameStr);
+      // no point in trying to rename an inexistent file
+      if (toRename.exists()) {
+        util.rename(toRenameStr, fileNamePattern.convertInt(i + 1));
+      } else {
+        addInfo("Skipping roll-over for inexistent file " + toRenameStr);
       }
+    }
 
-      // Map {(maxIndex - 1), ..., minIndex} to {maxIndex, ..., minIndex+1}
-      for (int i = maxIndex - 1; i >= minIndex; i--) {
-        String toRenameStr = fileNamePattern.convertInt(i);
-        File toRename = new File(toRenameStr);
-        // no point in trying to rename an inexistent file
-        if (toRename.exists()) {
-          util.rename(toRenameStr, fileNamePattern.convertInt(i + 1));
-        } else {
-          addInfo("Skipping roll-over for inexistent file " + toRenameStr);
-        }
+    // move file to min
+    switch (compressionMode) {
+    case NONE:
+      util.rename(fileName, fileNamePattern
+          .convertInt(minIndex));
+      break;
+    case GZ:
+      compressor.compress(fileName, fileNamePattern.convertInt(minIndex), null);
+      break;
+    case ZIP:
+      compressor.compress(fileName, fileNamePattern.convertInt(minIndex), zipEntryFileNamePattern.convert(date));
+      break;
+    }
+  }
+
+  /**
+   * Archives the files of all pending rollovers, oldest first. Every rollover
+   * submits one of these, so a rollover arriving while an earlier one is
+   * still archived is picked up by the running job or by its own.
+   */
+  class ArchiveRunnable implements Runnable {
+    public void run() {
+      synchronized (archiveLock) {
+        archivePending();
       }
+    }
+  }
 
-      // move active file name to min
-      switch (compressionMode) {
-      case NONE:
-        util.rename(getActiveFileName(), fileNamePattern
-            .convertInt(minIndex));
-        break;
-      case GZ:
-        compressor.compress(getActiveFileName(), fileNamePattern.convertInt(minIndex), null);
-        break;
-      case ZIP:
-        compressor.compress(getActiveFileName(), fileNamePattern.convertInt(minIndex), zipEntryFileNamePattern.convert(new Date()));
-        break;
+  /**
+   * Archives the files of all pending rollovers, oldest first. Must be called
+   * holding the archive lock.
+   */
+  private void archivePending() {
+    PendingArchive pending;
+    while ((pending = pendingArchives.poll()) != null) {
+      try {
+        archive(pending.fileName, pending.date);
+      } catch (RolloverFailure e) {
+        addError("Failed to archive [" + pending.fileName + "]", e);
       }
     }
   }
 
+  static class PendingArchive {
+    final String fileName;
+    final Date date;
+
+    PendingArchive(String fileName, Date date) {
+      this.fileName = fileName;
+      this.date = date;
+    }
+  }
+
   /**
    * Return the value of the parent's RawFile property.
    */
@@ -184,4 +304,19 @@ public class FixedWindowRollingPolicy extends RollingPolicyBase {
   public void setMinIndex(int minIndex) {
     this.minIndex = minIndex;
   }
+
+  public boolean isAsynchronous() {
+    return asynchronous;
+  }
+
+  /**
+   * Sets whether the window is shifted and the active file compressed in the
+   * background, so that logging threads do not wait for them during rollover
+   *
+   * @param asynchronous true to roll over asynchronously; false (the default)
+   * to do all of it on the logging thread
+   */
+  public void setAsynchronous(boolean asynchronous) {
+    this.asynchronous = asynchronous;
+  }
 }
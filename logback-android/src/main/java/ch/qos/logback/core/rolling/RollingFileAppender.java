@@ -15,13 +15,25 @@ package ch.qos.logback.core.rolling;
 
 import ch.qos.logback.core.CoreConstants;
 import ch.qos.logback.core.FileAppender;
+import ch.qos.logback.core.recovery.ResilientFileOutputStream;
 import ch.qos.logback.core.rolling.helper.CompressionMode;
 import ch.qos.logback.core.rolling.helper.FileNamePattern;
+import ch.qos.logback.core.rolling.helper.FlushableGZIPOutputStream;
 import ch.qos.logback.core.util.ContextUtil;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import static ch.qos.logback.core.CoreConstants.CODES_URL;
 
@@ -40,6 +52,14 @@ public class RollingFileAppender<E> extends FileAppender<E> {
   File currentlyActiveFile;
   TriggeringPolicy<E> triggeringPolicy;
   RollingPolicy rollingPolicy;
+  private ResilientFileOutputStream activeFileStream;
+  boolean lowLatencyRollover = false;
+  // the files opened ahead of rollover, by name
+  private final Map<String, ResilientFileOutputStream> nextFiles = new LinkedHashMap<String, ResilientFileOutputStream>();
+  // closing previous files and archiving them, in low latency mode
+  private final List<Future<?>> pendingRollovers = new ArrayList<Future<?>>();
+  // runs the rollovers of low latency mode one at a time
+  private final Object rolloverJobLock = new Object();
 
   static private String RFA_NO_TP_URL = CODES_URL + "#rfa_no_tp";
   static private String RFA_NO_RP_URL = CODES_URL + "#rfa_no_rp";
@@ -96,9 +116,127 @@ public class RollingFileAppender<E> extends FileAppender<E> {
       }
     }
 
+    if (lowLatencyRollover && (isPrudent() || rawFileProperty() != null
+            || !(rollingPolicy instanceof TimeBasedRollingPolicy))) {
+      addWarn("Low latency rollover requires a TimeBasedRollingPolicy and the File property left unset. Rolling over synchronously.");
+      lowLatencyRollover = false;
+    }
+
     currentlyActiveFile = new File(getFile());
     addInfo("Active log file name: " + getFile());
+    if (triggeringPolicy instanceof SizeBasedTriggeringPolicy) {
+      ((SizeBasedTriggeringPolicy<E>) triggeringPolicy).setAppender(this);
+    }
     super.start();
+
+    if (lowLatencyRollover && isStarted()) {
+      final List<String> fileNames = ((TimeBasedRollingPolicy<?>) rollingPolicy).getNextActiveFileNames();
+      lock.lock();
+      try {
+        submitRolloverJob(new Runnable() {
+          public void run() {
+            openNextFiles(fileNames);
+          }
+        });
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Gets the size of the active file, counted as bytes are written to it
+   * (including buffered bytes), so that size-based triggering policies need
+   * not query the file system.
+   *
+   * @return the size in bytes, or -1 if unknown, e.g. in prudent mode where
+   *         other processes append to the file too
+   */
+  public long getActiveFileLength() {
+    ResilientFileOutputStream rfos = activeFileStream;
+    if (isPrudent() || rfos == null) {
+      return -1;
+    }
+    return rfos.getCount();
+  }
+
+  /**
+   * Compresses the bytes written to the active file if the rolling policy
+   * asks for {@link TimeBasedRollingPolicy#setStreamingCompression streaming
+   * compression}
+   */
+  @Override
+  protected OutputStream decorateOutputStream(ResilientFileOutputStream resilientFos) {
+    activeFileStream = resilientFos;
+    if (isStreamingCompression()) {
+      return new FlushableGZIPOutputStream(resilientFos, FlushableGZIPOutputStream.DEFAULT_MAX_MEMBER_SIZE);
+    }
+    return resilientFos;
+  }
+
+  /**
+   * Moves the incomplete gzip member a crash may have left at the end of a
+   * streamed file to a file of its own, next to it. Members appended after it
+   * could not be read otherwise, while gzip readers can still recover most of
+   * it on its own.
+   */
+  @Override
+  protected void prepareForAppend(File file) {
+    if (!isStreamingCompression()) {
+      return;
+    }
+    try {
+      long length = FlushableGZIPOutputStream.completeMembersLength(file);
+      if (length < file.length()) {
+        File tailFile = incompleteTailFile(file);
+        moveTail(file, length, tailFile);
+        addWarn("Moved the incomplete gzip member at the end of [" + file + "] to [" + tailFile + "]");
+      }
+    } catch (IOException e) {
+      addError("Could not move the incomplete gzip member at the end of [" + file + "] aside", e);
+    }
+  }
+
+  /**
+   * @return a new file for the incomplete end of the given file, e.g.
+   * {@code app.log-incomplete-1476712800000.gz} for {@code app.log.gz}
+   */
+  static File incompleteTailFile(File file) {
+    String name = file.getPath();
+    if (name.endsWith(".gz")) {
+      name = name.substring(0, name.length() - 3);
+    }
+    long time = System.currentTimeMillis();
+    File tailFile = new File(name + "-incomplete-" + time + ".gz");
+    while (tailFile.exists()) {
+      tailFile = new File(name + "-incomplete-" + (++time) + ".gz");
+    }
+    return tailFile;
+  }
+
+  private static void moveTail(File file, long offset, File tailFile) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      FileOutputStream out = new FileOutputStream(tailFile);
+      try {
+        byte[] buf = new byte[8192];
+        raf.seek(offset);
+        int n;
+        while ((n = raf.read(buf)) != -1) {
+          out.write(buf, 0, n);
+        }
+      } finally {
+        out.close();
+      }
+      raf.setLength(offset);
+    } finally {
+      raf.close();
+    }
+  }
+
+  private boolean isStreamingCompression() {
+    return rollingPolicy instanceof TimeBasedRollingPolicy
+            && ((TimeBasedRollingPolicy<?>) rollingPolicy).isStreamingCompression();
   }
 
   private boolean checkForFileAndPatternCollisions() {
@@ -147,6 +285,13 @@ public class RollingFileAppender<E> extends FileAppender<E> {
 
   @Override
   public void stop() {
+    awaitPendingRollovers();
+    lock.lock();
+    try {
+      discardNextFiles(removeNextFilesExcept(Collections.<String>emptyList()));
+    } finally {
+      lock.unlock();
+    }
     super.stop();
     if (rollingPolicy != null) rollingPolicy.stop();
     if (triggeringPolicy != null) triggeringPolicy.stop();
@@ -177,6 +322,10 @@ public class RollingFileAppender<E> extends FileAppender<E> {
    * Implemented by delegating most of the rollover work to a rolling policy.
    */
   public void rollover() {
+    if (lowLatencyRollover) {
+      lowLatencyRollover();
+      return;
+    }
     lock.lock();
     try {
       // Note: This method needs to be synchronized because it needs exclusive
@@ -192,6 +341,210 @@ public class RollingFileAppender<E> extends FileAppender<E> {
     }
   }
 
+  /**
+   * Switches to the file opened ahead of rollover, if it is the new active
+   * file. Closing the previous file, the rolling policy's rollover and
+   * opening the following files run on the context's executor.
+   */
+  private void lowLatencyRollover() {
+    lock.lock();
+    try {
+      String filename = rollingPolicy.getActiveFileName();
+      final TimeBasedRollingPolicy<?> tbrp = (TimeBasedRollingPolicy<?>) rollingPolicy;
+      final OutputStream previous;
+      final TimeBasedRollingPolicy.RolloverSnapshot snapshot;
+      ResilientFileOutputStream nextFileStream = nextFiles.remove(filename);
+      if (nextFileStream != null) {
+        currentlyActiveFile = new File(filename);
+        previous = replaceOutputStream(decorateOutputStream(nextFileStream));
+        // the triggering policy moves on with the next event, so archive
+        // the period that just elapsed as it is known now
+        snapshot = tbrp.snapshotRollover();
+      } else {
+        // the next file was predicted wrong or is not open yet
+        this.closeOutputStream();
+        // not while a rollover job archives an earlier period
+        synchronized (rolloverJobLock) {
+          attemptRollover();
+        }
+        attemptOpenFile();
+        previous = null;
+        snapshot = null;
+      }
+
+      final List<String> followingFileNames = tbrp.getNextActiveFileNames();
+      final Map<String, ResilientFileOutputStream> staleFiles = removeNextFilesExcept(followingFileNames);
+      submitRolloverJob(new Runnable() {
+        public void run() {
+          lock.lock();
+          try {
+            discardNextFiles(staleFiles);
+          } finally {
+            lock.unlock();
+          }
+          if (previous != null) {
+            try {
+              previous.close();
+            } catch (IOException e) {
+              addError("Could not close the previous active file", e);
+            }
+            synchronized (rolloverJobLock) {
+              try {
+                tbrp.rollover(snapshot);
+              } catch (RolloverFailure rf) {
+                addWarn("RolloverFailure occurred. Could not archive [" + snapshot.elapsedPeriodsFileName + "].");
+              }
+            }
+          }
+          openNextFiles(followingFileNames);
+        }
+      });
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Runs a job of low latency rollover on the context's executor. Must be
+   * called holding the lock.
+   */
+  private void submitRolloverJob(Runnable job) {
+    Iterator<Future<?>> it = pendingRollovers.iterator();
+    while (it.hasNext()) {
+      if (it.next().isDone()) {
+        it.remove();
+      }
+    }
+    pendingRollovers.add(context.getScheduledExecutorService().submit(job));
+  }
+
+  /**
+   * Opens the files that may become active on the next rollover, unless they
+   * are open already
+   */
+  private void openNextFiles(List<String> filenames) {
+    if (filenames == null) {
+      return;
+    }
+    for (String filename : filenames) {
+      if (filename.equals(rollingPolicy.getActiveFileName())) {
+        continue;
+      }
+      lock.lock();
+      try {
+        if (nextFiles.containsKey(filename)) {
+          continue;
+        }
+      } finally {
+        lock.unlock();
+      }
+      ResilientFileOutputStream stream;
+      try {
+        stream = openResilientFileOutputStream(filename);
+      } catch (IOException e) {
+        addError("Failed to open the next file [" + filename + "] ahead of rollover", e);
+        continue;
+      }
+      lock.lock();
+      try {
+        if (new File(filename).equals(currentlyActiveFile) || nextFiles.containsKey(filename)) {
+          // opened too late, after the appender rolled over to it by itself
+          discardNextFile(filename, stream);
+        } else {
+          nextFiles.put(filename, stream);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Takes the files opened ahead of rollover that are no longer expected to
+   * become active. Must be called holding the lock.
+   */
+  private Map<String, ResilientFileOutputStream> removeNextFilesExcept(List<String> filenames) {
+    Map<String, ResilientFileOutputStream> removed = new LinkedHashMap<String, ResilientFileOutputStream>();
+    Iterator<Map.Entry<String, ResilientFileOutputStream>> it = nextFiles.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String, ResilientFileOutputStream> entry = it.next();
+      if (filenames == null || !filenames.contains(entry.getKey())) {
+        removed.put(entry.getKey(), entry.getValue());
+        it.remove();
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Must be called holding the lock
+   */
+  private void discardNextFiles(Map<String, ResilientFileOutputStream> files) {
+    for (Map.Entry<String, ResilientFileOutputStream> entry : files.entrySet()) {
+      discardNextFile(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Closes a file opened ahead of rollover, deleting it if it is still empty
+   * and not the active file
+   */
+  private void discardNextFile(String filename, ResilientFileOutputStream stream) {
+    try {
+      stream.close();
+    } catch (IOException e) {
+      addError("Could not close the next file [" + filename + "]", e);
+    }
+    File file = new File(filename);
+    if (!file.equals(currentlyActiveFile) && file.length() == 0) {
+      file.delete();
+    }
+  }
+
+  /**
+   * Waits for the jobs of low latency rollover to complete
+   */
+  private void awaitPendingRollovers() {
+    List<Future<?>> futures;
+    lock.lock();
+    try {
+      futures = new ArrayList<Future<?>>(pendingRollovers);
+      pendingRollovers.clear();
+    } finally {
+      lock.unlock();
+    }
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        addError("Rollover failed", e.getCause());
+      }
+    }
+  }
+
+  public boolean isLowLatencyRollover() {
+    return lowLatencyRollover;
+  }
+
+  /**
+   * Should rollover avoid stalling logging threads? If so, the next active
+   * file is opened ahead of rollover, and at rollover it replaces the
+   * current one at once. Closing the previous file and archiving it then
+   * happen on the context's executor. Requires a TimeBasedRollingPolicy,
+   * or SizeAndTimeBasedRollingPolicy, with the File property left unset,
+   * so that the next active file has its own name. If the next file is not
+   * open yet at rollover, e.g. because the executor is busy, that rollover
+   * happens synchronously. Default is false.
+   *
+   * @param lowLatencyRollover true for low latency rollover
+   */
+  public void setLowLatencyRollover(boolean lowLatencyRollover) {
+    this.lowLatencyRollover = lowLatencyRollover;
+  }
+
   private void attemptOpenFile() {
     String filename = rollingPolicy.getActiveFileName();
     try {
@@ -234,6 +587,51 @@ public class RollingFileAppender<E> extends FileAppender<E> {
     super.subAppend(event);
   }
 
+  /**
+   * Writes the batch in runs delimited by triggering events, so that rollover
+   * happens before the same event as it would with one event at a time. This
+   * holds only for triggers that do not depend on the bytes written, i.e.
+   * purely time-based ones, so with any other trigger the events are written
+   * one at a time.
+   */
+  @Override
+  protected void subAppendBatch(List<E> events) {
+    if (!isTimeTriggered()) {
+      for (E event : events) {
+        subAppend(event);
+      }
+      return;
+    }
+
+    int from = 0;
+    final int len = events.size();
+    for (int i = 0; i < len; i++) {
+      synchronized (triggeringPolicy) {
+        if (triggeringPolicy.isTriggeringEvent(currentlyActiveFile, events.get(i))) {
+          if (i > from) {
+            super.subAppendBatch(events.subList(from, i));
+            from = i;
+          }
+          rollover();
+        }
+      }
+    }
+    if (from < len) {
+      super.subAppendBatch(events.subList(from, len));
+    }
+  }
+
+  /**
+   * Is rollover triggered by time only, and never by the size of the file?
+   */
+  private boolean isTimeTriggered() {
+    if (!(triggeringPolicy instanceof TimeBasedRollingPolicy)) {
+      return false;
+    }
+    TimeBasedRollingPolicy<?> tbrp = (TimeBasedRollingPolicy<?>) triggeringPolicy;
+    return !(tbrp.getTimeBasedFileNamingAndTriggeringPolicy() instanceof SizeAndTimeBasedFNATP);
+  }
+
   public RollingPolicy getRollingPolicy() {
     return rollingPolicy;
   }
@@ -13,8 +13,15 @@
  */
 package ch.qos.logback.core.rolling;
 
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.Deflater;
+
+import ch.qos.logback.core.CoreConstants;
 import ch.qos.logback.core.FileAppender;
 import ch.qos.logback.core.rolling.helper.CompressionMode;
+import ch.qos.logback.core.rolling.helper.Compressor;
 import ch.qos.logback.core.rolling.helper.FileNamePattern;
 import ch.qos.logback.core.spi.ContextAwareBase;
 
@@ -38,6 +45,10 @@ public abstract class RollingPolicyBase extends ContextAwareBase implements
   FileNamePattern zipEntryFileNamePattern;
   private boolean started;
 
+  private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+  private String compressionStrategy = "DEFAULT";
+  private int compressionThreads = 1;
+
   /**
    * Given the FileNamePattern string, this method determines the compression
    * mode depending on last letters of the fileNamePatternStr. Patterns ending
@@ -58,6 +69,73 @@ public abstract class RollingPolicyBase extends ContextAwareBase implements
     }
   }
 
+  /**
+   * Creates the compressor of archives, with the compression settings of
+   * this policy
+   */
+  protected Compressor createCompressor() {
+    Compressor compressor = new Compressor(compressionMode);
+    compressor.setContext(context);
+
+    if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+      addWarn("Invalid compressionLevel [" + compressionLevel + "]. Using the default level.");
+    } else {
+      compressor.setLevel(compressionLevel);
+    }
+
+    if ("FILTERED".equalsIgnoreCase(compressionStrategy)) {
+      compressor.setStrategy(Deflater.FILTERED);
+    } else if ("HUFFMAN_ONLY".equalsIgnoreCase(compressionStrategy)) {
+      compressor.setStrategy(Deflater.HUFFMAN_ONLY);
+    } else if (!"DEFAULT".equalsIgnoreCase(compressionStrategy)) {
+      addWarn("Unknown compressionStrategy [" + compressionStrategy + "]. Using the default strategy.");
+    }
+
+    if (compressionThreads < 1) {
+      addWarn("compressionThreads must be at least 1. Compressing on one thread.");
+    } else {
+      compressor.setThreads(compressionThreads);
+    }
+    return compressor;
+  }
+
+  public int getCompressionLevel() {
+    return compressionLevel;
+  }
+
+  /**
+   * Sets the deflate level of archives, from 0 (fastest) to 9 (smallest),
+   * or -1 (the default) for zlib's default level, currently 6
+   */
+  public void setCompressionLevel(int compressionLevel) {
+    this.compressionLevel = compressionLevel;
+  }
+
+  public String getCompressionStrategy() {
+    return compressionStrategy;
+  }
+
+  /**
+   * Sets the deflate strategy of gz archives: DEFAULT, FILTERED or
+   * HUFFMAN_ONLY, which is the fastest
+   */
+  public void setCompressionStrategy(String compressionStrategy) {
+    this.compressionStrategy = compressionStrategy;
+  }
+
+  public int getCompressionThreads() {
+    return compressionThreads;
+  }
+
+  /**
+   * Sets the number of threads compressing a gz archive, 1 by default. With
+   * more than one, the file is split in blocks compressed in parallel, and
+   * stored as members of a multi-member gzip file.
+   */
+  public void setCompressionThreads(int compressionThreads) {
+    this.compressionThreads = compressionThreads;
+  }
+
   public void setFileNamePattern(String fnp) {
     fileNamePatternStr = fnp;
   }
@@ -93,4 +171,25 @@ public abstract class RollingPolicyBase extends ContextAwareBase implements
   public String getParentsRawFileProperty() {
     return parent.rawFileProperty();
   }
+
+  /**
+   * Gets the size of the parent's active file, as counted by the parent
+   *
+   * @return the size in bytes, or -1 if the parent does not count it
+   */
+  public long getParentsActiveFileLength() {
+    return (parent instanceof RollingFileAppender) ? ((RollingFileAppender<?>) parent).getActiveFileLength() : -1;
+  }
+
+  protected void waitForAsynchronousJobToStop(Future<?> aFuture, String jobDescription) {
+    if (aFuture != null) {
+      try {
+        aFuture.get(CoreConstants.SECONDS_TO_WAIT_FOR_COMPRESSION_JOBS, TimeUnit.SECONDS);
+      } catch (TimeoutException e) {
+        addError("Timeout while waiting for " + jobDescription + " job to finish", e);
+      } catch (Exception e) {
+        addError("Unexpected exception while waiting for " + jobDescription + " job to finish", e);
+      }
+    }
+  }
 }
@@ -14,7 +14,9 @@
 package ch.qos.logback.core.rolling;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import ch.qos.logback.core.CoreConstants;
 import ch.qos.logback.core.joran.spi.NoAutoStart;
@@ -115,7 +117,9 @@ public class SizeAndTimeBasedFNATP<E> extends
     File file = new File(getCurrentPeriodsFileNameWithoutCompressionSuffix());
     File parentDir = file.getParentFile();
 
-    File[] matchingFileArray = FileFilterUtil
+    // listing the folder through the index of the archive remover saves
+    // listing it again on the first clean up
+    File[] matchingFileArray = archiveRemover.getArchiveIndex()
             .filesInFolderMatchingStemRegex(parentDir, stemRegex);
 
     if (matchingFileArray == null || matchingFileArray.length == 0) {
@@ -148,8 +152,10 @@ public class SizeAndTimeBasedFNATP<E> extends
       return true;
     }
 
-    // next check for roll-over based on size
-    if (invocationGate.isTooSoon(time)) {
+    // next check for roll-over based on size, on every event if the
+    // appender counts the size, otherwise querying the file at a limited rate
+    long length = tbrp.getParentsActiveFileLength();
+    if (length < 0 && invocationGate.isTooSoon(time)) {
       return false;
     }
 
@@ -161,7 +167,10 @@ public class SizeAndTimeBasedFNATP<E> extends
       addWarn("maxFileSize = null");
       return false;
     }
-    if (activeFile.length() >= maxFileSize.getSize()) {
+    if (length < 0) {
+      length = activeFile.length();
+    }
+    if (length >= maxFileSize.getSize()) {
       elapsedPeriodsFileName = tbrp.fileNamePatternWithoutCompSuffix.convertMultipleArguments(dateInCurrentPeriod, currentPeriodsCounter);
       currentPeriodsCounter++;
       return true;
@@ -175,6 +184,18 @@ public class SizeAndTimeBasedFNATP<E> extends
     return tbrp.fileNamePatternWithoutCompSuffix.convertMultipleArguments(dateInCurrentPeriod, currentPeriodsCounter);
   }
 
+  /**
+   * Predicts both a rollover on size, to the next file of the current period,
+   * and a rollover on time, to the first file of the next period
+   */
+  @Override
+  public List<String> getNextFileNamesWithoutCompressionSuffix() {
+    List<String> fileNames = new ArrayList<String>(2);
+    fileNames.add(tbrp.fileNamePatternWithoutCompSuffix.convertMultipleArguments(dateInCurrentPeriod, currentPeriodsCounter + 1));
+    fileNames.add(tbrp.fileNamePatternWithoutCompSuffix.convertMultipleArguments(new Date(nextCheck), 0));
+    return fileNames;
+  }
+
   public void setMaxFileSize(FileSize aMaxFileSize) {
     this.maxFileSize = aMaxFileSize;
   }
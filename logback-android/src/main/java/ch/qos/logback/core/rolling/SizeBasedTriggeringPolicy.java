@@ -45,14 +45,31 @@ public class SizeBasedTriggeringPolicy<E> extends TriggeringPolicyBase<E> {
   }
 
   private InvocationGate invocationGate = new DefaultInvocationGate();
+  private RollingFileAppender<?> appender;
 
+  /**
+   * Checks the size of the active file. The size counted by the appender is
+   * exact and free, so it is checked on every event; otherwise the file
+   * length is queried, at a rate limited by an invocation gate.
+   */
   public boolean isTriggeringEvent(final File activeFile, final E event) {
-    long now = System.currentTimeMillis();
-    if (invocationGate.isTooSoon(now)) {
-      return false;
+    long length = (appender != null) ? appender.getActiveFileLength() : -1;
+    if (length < 0) {
+      long now = System.currentTimeMillis();
+      if (invocationGate.isTooSoon(now)) {
+        return false;
+      }
+      length = activeFile.length();
     }
 
-    return (activeFile.length() >= maxFileSize.getSize());
+    return (length >= maxFileSize.getSize());
+  }
+
+  /**
+   * Sets the appender that counts the size of the active file
+   */
+  void setAppender(RollingFileAppender<?> appender) {
+    this.appender = appender;
   }
 
   public FileSize getMaxFileSize() {
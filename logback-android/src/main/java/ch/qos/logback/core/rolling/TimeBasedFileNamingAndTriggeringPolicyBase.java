@@ -14,7 +14,9 @@
 package ch.qos.logback.core.rolling;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 import ch.qos.logback.core.rolling.helper.ArchiveRemover;
@@ -110,6 +112,16 @@ abstract public class TimeBasedFileNamingAndTriggeringPolicyBase<E> extends
     return tbrp.fileNamePatternWithoutCompSuffix.convert(dateInCurrentPeriod);
   }
 
+  /**
+   * Predicts the names the file following the current one may have, so that
+   * it can be opened ahead of rollover
+   *
+   * @return the names, without compression suffix
+   */
+  public List<String> getNextFileNamesWithoutCompressionSuffix() {
+    return Collections.singletonList(tbrp.fileNamePatternWithoutCompSuffix.convert(new Date(nextCheck)));
+  }
+
   public void setCurrentTime(long timeInMillis) {
     artificialCurrentTime = timeInMillis;
   }
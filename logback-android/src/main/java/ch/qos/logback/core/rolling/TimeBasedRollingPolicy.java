@@ -14,10 +14,10 @@
 package ch.qos.logback.core.rolling;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 import ch.qos.logback.core.CoreConstants;
 import ch.qos.logback.core.rolling.helper.*;
@@ -39,14 +39,15 @@ import static ch.qos.logback.core.CoreConstants.UNBOUND_HISTORY;
 public class TimeBasedRollingPolicy<E> extends RollingPolicyBase implements
     TriggeringPolicy<E> {
   static final String FNP_NOT_SET = "The FileNamePattern option must be set before using TimeBasedRollingPolicy. ";
+  static final String GZ_SUFFIX = ".gz";
 
   // WCS: without compression suffix
   FileNamePattern fileNamePatternWithoutCompSuffix;
 
   private Compressor compressor;
   private RenameUtil renameUtil = new RenameUtil();
-  Future<?> compressionFuture;
-  Future<?> cleanUpFuture;
+  volatile Future<?> compressionFuture;
+  volatile Future<?> cleanUpFuture;
 
   private int maxHistory = UNBOUND_HISTORY;
   protected FileSize totalSizeCap = new FileSize(UNBOUNDED_TOTAL_SIZE_CAP);
@@ -56,6 +57,7 @@ public class TimeBasedRollingPolicy<E> extends RollingPolicyBase implements
   TimeBasedFileNamingAndTriggeringPolicy<E> timeBasedFileNamingAndTriggeringPolicy;
 
   boolean cleanHistoryOnStart = false;
+  boolean streamingCompression = false;
 
   public void start() {
     // set the LR for our utility object
@@ -72,8 +74,12 @@ public class TimeBasedRollingPolicy<E> extends RollingPolicyBase implements
           + CoreConstants.SEE_FNP_NOT_SET);
     }
 
-    compressor = new Compressor(compressionMode);
-    compressor.setContext(context);
+    if (streamingCompression && compressionMode != CompressionMode.GZ) {
+      addWarn("Streaming compression requires a FileNamePattern ending with .gz. Ignoring it.");
+      streamingCompression = false;
+    }
+
+    compressor = createCompressor();
 
     // wcs : without compression suffix
     fileNamePatternWithoutCompSuffix = new FileNamePattern(Compressor.computeFileNameStrWithoutCompSuffix(fileNamePatternStr, compressionMode), this.context);
@@ -104,6 +110,7 @@ public class TimeBasedRollingPolicy<E> extends RollingPolicyBase implements
       archiveRemover = timeBasedFileNamingAndTriggeringPolicy.getArchiveRemover();
       archiveRemover.setMaxHistory(maxHistory);
       archiveRemover.setTotalSizeCap(totalSizeCap.getSize());
+      compressor.setArchiveIndex(archiveRemover.getArchiveIndex());
       if(cleanHistoryOnStart) {
         addInfo("Cleaning on start up");
         Date now = new Date(timeBasedFileNamingAndTriggeringPolicy.getCurrentTime());
@@ -129,18 +136,6 @@ public class TimeBasedRollingPolicy<E> extends RollingPolicyBase implements
     super.stop();
   }
 
-  private void waitForAsynchronousJobToStop(Future<?> aFuture, String jobDescription) {
-    if (aFuture != null) {
-      try {
-        aFuture.get(CoreConstants.SECONDS_TO_WAIT_FOR_COMPRESSION_JOBS, TimeUnit.SECONDS);
-      } catch (TimeoutException e) {
-        addError("Timeout while waiting for " + jobDescription + " job to finish", e);
-      } catch (Exception e) {
-        addError("Unexpected exception while waiting for " + jobDescription + " job to finish", e);
-      }
-    }
-  }
-
   private String transformFileNamePattern2ZipEntry(String fileNamePatternStr) {
     String slashified = FileFilterUtil.slashify(fileNamePatternStr);
     return FileFilterUtil.afterLastSlash(slashified);
@@ -160,15 +155,37 @@ public class TimeBasedRollingPolicy<E> extends RollingPolicyBase implements
     // when rollover is called the elapsed period's file has
     // been already closed. This is a working assumption of this method.
 
-    String elapsedPeriodsFileName = timeBasedFileNamingAndTriggeringPolicy
-        .getElapsedPeriodsFileName();
+    rollover(snapshotRollover());
+  }
+
+  /**
+   * Captures what {@link #rollover()} needs to know about the period that
+   * just elapsed, so that it can archive that period later, after the
+   * triggering policy has moved on to later periods
+   */
+  RolloverSnapshot snapshotRollover() {
+    return new RolloverSnapshot(timeBasedFileNamingAndTriggeringPolicy.getElapsedPeriodsFileName(),
+            new Date(timeBasedFileNamingAndTriggeringPolicy.getCurrentTime()));
+  }
+
+  /**
+   * Same as {@link #rollover()}, for the period captured by
+   * {@link #snapshotRollover()}
+   */
+  void rollover(RolloverSnapshot snapshot) throws RolloverFailure {
+    String elapsedPeriodsFileName = snapshot.elapsedPeriodsFileName;
 
     String elapsedPeriodStem = FileFilterUtil.afterLastSlash(elapsedPeriodsFileName);
 
-    if (compressionMode == CompressionMode.NONE) {
+    if (compressionMode == CompressionMode.NONE || streamingCompression) {
+      // with streaming compression, the active file is compressed already
+      String archiveFileName = streamingCompression ? elapsedPeriodsFileName + GZ_SUFFIX : elapsedPeriodsFileName;
       if (getParentsRawFileProperty() != null) {
-        renameUtil.rename(getParentsRawFileProperty(), elapsedPeriodsFileName);
-      } // else { nothing to do if CompressionMode == NONE and parentsRawFileProperty == null }
+        renameUtil.rename(getParentsRawFileProperty(), archiveFileName);
+      } // else { nothing to do if the active file is the archive already }
+      if (archiveRemover != null) {
+        archiveRemover.getArchiveIndex().add(new File(archiveFileName));
+      }
     } else {
       if (getParentsRawFileProperty() == null) {
         compressionFuture = compressor.asyncCompress(elapsedPeriodsFileName, elapsedPeriodsFileName, elapsedPeriodStem);
@@ -178,8 +195,7 @@ public class TimeBasedRollingPolicy<E> extends RollingPolicyBase implements
     }
 
     if (archiveRemover != null) {
-      Date now = new Date(timeBasedFileNamingAndTriggeringPolicy.getCurrentTime());
-      cleanUpFuture = archiveRemover.cleanAsynchronously(now);
+      cleanUpFuture = archiveRemover.cleanAsynchronously(snapshot.now);
     }
   }
 
@@ -216,9 +232,34 @@ public class TimeBasedRollingPolicy<E> extends RollingPolicyBase implements
     if (parentsRawFileProperty != null) {
       return parentsRawFileProperty;
     } else {
-      return timeBasedFileNamingAndTriggeringPolicy
+      String fileName = timeBasedFileNamingAndTriggeringPolicy
           .getCurrentPeriodsFileNameWithoutCompressionSuffix();
+      return streamingCompression ? fileName + GZ_SUFFIX : fileName;
+    }
+  }
+
+  /**
+   * Predicts the names the next active file may have, so that
+   * RollingFileAppender can open them ahead of rollover
+   *
+   * @return the names, or null if the File property is set, since the next
+   * active file then has the same name as the current one
+   */
+  public List<String> getNextActiveFileNames() {
+    if (getParentsRawFileProperty() != null
+        || !(timeBasedFileNamingAndTriggeringPolicy instanceof TimeBasedFileNamingAndTriggeringPolicyBase)) {
+      return null;
     }
+    List<String> fileNames = ((TimeBasedFileNamingAndTriggeringPolicyBase<E>) timeBasedFileNamingAndTriggeringPolicy)
+        .getNextFileNamesWithoutCompressionSuffix();
+    if (streamingCompression) {
+      List<String> compressedFileNames = new ArrayList<String>(fileNames.size());
+      for (String fileName : fileNames) {
+        compressedFileNames.add(fileName + GZ_SUFFIX);
+      }
+      return compressedFileNames;
+    }
+    return fileNames;
   }
 
   public boolean isTriggeringEvent(File activeFile, final E event) {
@@ -257,6 +298,29 @@ public class TimeBasedRollingPolicy<E> extends RollingPolicyBase implements
     this.cleanHistoryOnStart = cleanHistoryOnStart;
   }
 
+  public boolean isStreamingCompression() {
+    return streamingCompression;
+  }
+
+  /**
+   * Should the active file be written compressed, straight into its gzip
+   * archive? Rollover then only renames the active file, if the
+   * <b>File</b> property is set, instead of compressing it afterwards. Each
+   * flush completes a gzip member, and so does every 256 KB of uncompressed
+   * output. After a crash, the readable file ends at the last complete member,
+   * and the incomplete one is moved to a file of its own when the appender
+   * reopens the file. Leaving <b>immediateFlush</b> on keeps that incomplete
+   * member small, at the cost of compression ratio; turning it off compresses
+   * better, but leaves up to 256 KB of output in the incomplete member,
+   * besides what is still buffered in memory. Requires a FileNamePattern
+   * ending with .gz. Default is false.
+   *
+   * @param streamingCompression true to compress the active file while writing it
+   */
+  public void setStreamingCompression(boolean streamingCompression) {
+    this.streamingCompression = streamingCompression;
+  }
+
   @Override
   public String toString() {
     return "c.q.l.core.rolling.TimeBasedRollingPolicy@" + this.hashCode();
@@ -266,4 +330,14 @@ public class TimeBasedRollingPolicy<E> extends RollingPolicyBase implements
     addInfo("setting totalSizeCap to "+totalSizeCap.toString());
     this.totalSizeCap = totalSizeCap;
   }
+
+  static class RolloverSnapshot {
+    final String elapsedPeriodsFileName;
+    final Date now;
+
+    RolloverSnapshot(String elapsedPeriodsFileName, Date now) {
+      this.elapsedPeriodsFileName = elapsedPeriodsFileName;
+      this.now = now;
+    }
+  }
 }
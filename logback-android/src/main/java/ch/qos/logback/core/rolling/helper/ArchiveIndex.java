@@ -0,0 +1,189 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2015, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.rolling.helper;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory index of archived log files and their sizes.
+ * <p>
+ * A folder is listed from disk the first time it is looked up. After that,
+ * {@link #add}, {@link #remove} and {@link #removeFolder} keep the index up
+ * to date as archives are created and deleted. This way, cleaning up does
+ * not scan the whole folder every time it runs. Only the sizes recorded by
+ * {@link #add} are kept; other files found in a listing, such as the active
+ * log file, may still be growing and are read from disk each time. The
+ * files that match a stem regex are cached for the
+ * {@value #MAX_CACHED_REGEXES} most recently used regexes. There is usually
+ * one such regex per period.
+ */
+public class ArchiveIndex {
+
+  static final int MAX_CACHED_REGEXES = 1024;
+  static final long UNKNOWN_SIZE = -1;
+
+  // sizes of the files of each folder listed, by name
+  private final Map<File, Map<String, Long>> folders = new HashMap<File, Map<String, Long>>();
+  // names of the files matching a stem regex, by folder and regex
+  private final Map<String, Matches> matchesByRegex = new LinkedHashMap<String, Matches>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Matches> eldest) {
+      return size() > MAX_CACHED_REGEXES;
+    }
+  };
+
+  /**
+   * Same as {@link FileFilterUtil#filesInFolderMatchingStemRegex}, from the
+   * index
+   */
+  public synchronized File[] filesInFolderMatchingStemRegex(File folder, String stemRegex) {
+    if (folder == null) {
+      return new File[0];
+    }
+    File dir = folder.getAbsoluteFile();
+    String key = dir.getPath() + File.separatorChar + stemRegex;
+    Matches matches = matchesByRegex.get(key);
+    if (matches == null) {
+      matches = new Matches(dir, Pattern.compile(stemRegex));
+      for (String name : listing(dir).keySet()) {
+        matches.addIfMatching(name);
+      }
+      matchesByRegex.put(key, matches);
+    }
+
+    File[] files = new File[matches.names.size()];
+    int i = 0;
+    for (String name : matches.names) {
+      files[i++] = new File(folder, name);
+    }
+    return files;
+  }
+
+  public synchronized boolean exists(File file) {
+    return listingOf(file).containsKey(file.getName());
+  }
+
+  /**
+   * Gets the size of a file. Only files recorded by {@link #add} are not
+   * read from disk.
+   *
+   * @return the size in bytes, or 0 if the file is not in the index
+   */
+  public synchronized long length(File file) {
+    Long size = listingOf(file).get(file.getName());
+    if (size == null) {
+      return 0;
+    }
+    if (size == UNKNOWN_SIZE) {
+      return file.length();
+    }
+    return size;
+  }
+
+  /**
+   * Records a new or updated archive, with its current size. Call this once
+   * the archive is complete.
+   */
+  public synchronized void add(File file) {
+    if (!file.isFile()) {
+      remove(file);
+      return;
+    }
+    String name = file.getName();
+    listingOf(file).put(name, file.length());
+    File dir = file.getAbsoluteFile().getParentFile();
+    for (Matches matches : matchesByRegex.values()) {
+      if (matches.folder.equals(dir)) {
+        matches.addIfMatching(name);
+      }
+    }
+  }
+
+  /**
+   * Forgets a deleted archive
+   */
+  public synchronized void remove(File file) {
+    String name = file.getName();
+    listingOf(file).remove(name);
+    File dir = file.getAbsoluteFile().getParentFile();
+    for (Matches matches : matchesByRegex.values()) {
+      if (matches.folder.equals(dir)) {
+        matches.names.remove(name);
+      }
+    }
+  }
+
+  /**
+   * Forgets a deleted folder, along with the files it contained
+   */
+  public synchronized void removeFolder(File folder) {
+    File dir = folder.getAbsoluteFile();
+    folders.remove(dir);
+    Iterator<Matches> it = matchesByRegex.values().iterator();
+    while (it.hasNext()) {
+      if (it.next().folder.equals(dir)) {
+        it.remove();
+      }
+    }
+    Map<String, Long> parentListing = folders.get(dir.getParentFile());
+    if (parentListing != null) {
+      parentListing.remove(dir.getName());
+    }
+  }
+
+  private Map<String, Long> listingOf(File file) {
+    return listing(file.getAbsoluteFile().getParentFile());
+  }
+
+  private Map<String, Long> listing(File dir) {
+    Map<String, Long> listing = folders.get(dir);
+    if (listing == null) {
+      listing = new HashMap<String, Long>();
+      String[] names = dir.list();
+      if (names != null) {
+        for (String name : names) {
+          listing.put(name, UNKNOWN_SIZE);
+        }
+      }
+      folders.put(dir, listing);
+    }
+    return listing;
+  }
+
+  private static class Matches {
+    final File folder;
+    final Pattern pattern;
+    final Set<String> names = new HashSet<String>();
+
+    Matches(File folder, Pattern pattern) {
+      this.folder = folder;
+      this.pattern = pattern;
+    }
+
+    void addIfMatching(String name) {
+      if (pattern.matcher(name).matches()) {
+        names.add(name);
+      }
+    }
+  }
+}
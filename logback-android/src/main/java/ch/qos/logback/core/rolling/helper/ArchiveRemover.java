@@ -28,4 +28,10 @@ public interface ArchiveRemover extends ContextAware {
   void setMaxHistory(int maxHistory);
   void setTotalSizeCap(long totalSizeCap);
   Future<?> cleanAsynchronously(Date now);
+
+  /**
+   * Gets the index of the archives, which the rolling policy updates as it
+   * creates archives
+   */
+  ArchiveIndex getArchiveIndex();
 } 
\ No newline at end of file
@@ -14,13 +14,20 @@
 package ch.qos.logback.core.rolling.helper;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -28,19 +35,33 @@ import ch.qos.logback.core.rolling.RolloverFailure;
 import ch.qos.logback.core.spi.ContextAwareBase;
 import ch.qos.logback.core.status.ErrorStatus;
 import ch.qos.logback.core.status.WarnStatus;
+import ch.qos.logback.core.util.ExecutorServiceUtil;
 import ch.qos.logback.core.util.FileUtil;
 
 /**
  * The <code>Compression</code> class implements ZIP and GZ file
  * compression/decompression methods.
+ * <p>
+ * The deflate level and strategy are configurable, and deflaters are
+ * reused between files. GZ compression can split a file into blocks of
+ * {@value #BLOCK_SIZE} bytes. It compresses them on several threads and
+ * writes each block as a member of a multi-member gzip file, which gunzip
+ * reads as a single stream.
  *
  * @author Ceki G&uuml;lc&uuml;
  */
 public class Compressor extends ContextAwareBase {
 
   final CompressionMode compressionMode;
+  private ArchiveIndex archiveIndex;
+  private int level = Deflater.DEFAULT_COMPRESSION;
+  private int strategy = Deflater.DEFAULT_STRATEGY;
+  private int threads = 1;
+  // idle deflaters, reset
+  private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<Deflater>();
 
-  static final int BUFFER_SIZE = 8192;
+  static final int BUFFER_SIZE = 65536;
+  static final int BLOCK_SIZE = 1024 * 1024;
 
   public Compressor(CompressionMode compressionMode) {
     this.compressionMode = compressionMode;
@@ -101,6 +122,7 @@ public class Compressor extends ContextAwareBase {
     try {
       bis = new BufferedInputStream(new FileInputStream(nameOfFile2zip));
       zos = new ZipOutputStream(new FileOutputStream(nameOfZippedFile));
+      zos.setLevel(level);
 
       ZipEntry zipEntry = computeZipEntry(innerEntryName);
       zos.putNextEntry(zipEntry);
@@ -137,6 +159,9 @@ public class Compressor extends ContextAwareBase {
       addStatus(new WarnStatus("Could not delete [" + nameOfFile2zip + "].",
               this));
     }
+    if (archiveIndex != null) {
+      archiveIndex.add(zippedFile);
+    }
   }
 
   // http://jira.qos.ch/browse/LBCORE-98
@@ -190,34 +215,33 @@ public class Compressor extends ContextAwareBase {
     addInfo("GZ compressing [" + file2gz + "] as ["+gzedFile+"]");
     createMissingTargetDirsIfNecessary(gzedFile);
 
-    BufferedInputStream bis = null;
-    GZIPOutputStream gzos = null;
+    InputStream in = null;
+    OutputStream out = null;
     try {
-      bis = new BufferedInputStream(new FileInputStream(nameOfFile2gz));
-      gzos = new GZIPOutputStream(new FileOutputStream(nameOfgzedFile));
-      byte[] inbuf = new byte[BUFFER_SIZE];
-      int n;
-
-      while ((n = bis.read(inbuf)) != -1) {
-        gzos.write(inbuf, 0, n);
+      in = new FileInputStream(nameOfFile2gz);
+      out = new FileOutputStream(nameOfgzedFile);
+      if (threads > 1) {
+        parallelGzip(in, out);
+      } else {
+        gzip(in, out);
       }
 
-      addInfo("Done ZIP compressing [" + file2gz + "] as [" + gzedFile + "]");
+      addInfo("Done GZ compressing [" + file2gz + "] as [" + gzedFile + "]");
 
     } catch (Exception e) {
       addStatus(new ErrorStatus("Error occurred while compressing ["
               + nameOfFile2gz + "] into [" + nameOfgzedFile + "].", this, e));
     } finally {
-      if (bis != null) {
+      if (in != null) {
         try {
-          bis.close();
+          in.close();
         } catch (IOException e) {
           // ignore
         }
       }
-      if (gzos != null) {
+      if (out != null) {
         try {
-          gzos.close();
+          out.close();
         } catch (IOException e) {
           // ignore
         }
@@ -228,6 +252,147 @@ public class Compressor extends ContextAwareBase {
       addStatus(new WarnStatus("Could not delete [" + nameOfFile2gz + "].",
               this));
     }
+    if (archiveIndex != null) {
+      archiveIndex.add(gzedFile);
+    }
+  }
+
+  private void gzip(InputStream in, OutputStream out) throws IOException {
+    Deflater deflater = acquireDeflater();
+    try {
+      FlushableGZIPOutputStream gzos = new FlushableGZIPOutputStream(out, deflater);
+      byte[] inbuf = new byte[BUFFER_SIZE];
+      int n;
+
+      while ((n = in.read(inbuf)) != -1) {
+        gzos.write(inbuf, 0, n);
+      }
+      gzos.finish();
+    } finally {
+      releaseDeflater(deflater);
+    }
+  }
+
+  /**
+   * Compresses blocks on a pool of threads, keeping at most two blocks per
+   * thread in memory, and writes them in order
+   */
+  private void parallelGzip(InputStream in, OutputStream out) throws Exception {
+    ExecutorService executorService = ExecutorServiceUtil.newFixedExecutorService(threads);
+    try {
+      Queue<Future<byte[]>> pendingBlocks = new LinkedList<Future<byte[]>>();
+      byte[] block = readBlock(in);
+      if (block == null) {
+        block = new byte[0];
+      }
+      while (block != null) {
+        pendingBlocks.add(executorService.submit(new BlockCompression(block)));
+        if (pendingBlocks.size() >= 2 * threads) {
+          out.write(pendingBlocks.remove().get());
+        }
+        block = readBlock(in);
+      }
+      while (!pendingBlocks.isEmpty()) {
+        out.write(pendingBlocks.remove().get());
+      }
+    } finally {
+      ExecutorServiceUtil.shutdown(executorService);
+    }
+  }
+
+  /**
+   * Reads up to {@link #BLOCK_SIZE} bytes
+   *
+   * @return the bytes read, or null at the end of the stream
+   */
+  private static byte[] readBlock(InputStream in) throws IOException {
+    byte[] block = new byte[BLOCK_SIZE];
+    int len = 0;
+    int n;
+    while (len < block.length && (n = in.read(block, len, block.length - len)) != -1) {
+      len += n;
+    }
+    if (len == 0) {
+      return null;
+    }
+    if (len < block.length) {
+      byte[] shortBlock = new byte[len];
+      System.arraycopy(block, 0, shortBlock, 0, len);
+      return shortBlock;
+    }
+    return block;
+  }
+
+  class BlockCompression implements Callable<byte[]> {
+    final byte[] block;
+
+    BlockCompression(byte[] block) {
+      this.block = block;
+    }
+
+    public byte[] call() throws IOException {
+      Deflater deflater = acquireDeflater();
+      try {
+        ByteArrayOutputStream member = new ByteArrayOutputStream(block.length / 2 + 64);
+        FlushableGZIPOutputStream gzos = new FlushableGZIPOutputStream(member, deflater);
+        gzos.write(block);
+        gzos.finish();
+        return member.toByteArray();
+      } finally {
+        releaseDeflater(deflater);
+      }
+    }
+  }
+
+  private Deflater acquireDeflater() {
+    Deflater deflater = deflaters.poll();
+    if (deflater == null) {
+      deflater = new Deflater(level, true);
+      deflater.setStrategy(strategy);
+    }
+    return deflater;
+  }
+
+  // keeps at most one idle deflater per thread
+  private void releaseDeflater(Deflater deflater) {
+    deflater.reset();
+    if (deflaters.size() < threads) {
+      deflaters.offer(deflater);
+    } else {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Sets the deflate level, from 0 (no compression) to 9 (best
+   * compression), or -1 for the default
+   */
+  public void setLevel(int level) {
+    this.level = level;
+  }
+
+  /**
+   * Sets the deflate strategy, one of {@link Deflater#DEFAULT_STRATEGY},
+   * {@link Deflater#FILTERED} and {@link Deflater#HUFFMAN_ONLY}. Ignored by
+   * ZIP compression.
+   */
+  public void setStrategy(int strategy) {
+    this.strategy = strategy;
+  }
+
+  /**
+   * Sets the number of threads of GZ compression. With more than one, the
+   * file is compressed in independent blocks.
+   */
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  /**
+   * Sets the index to record compressed files in, once they are complete
+   */
+  public void setArchiveIndex(ArchiveIndex archiveIndex) {
+    this.archiveIndex = archiveIndex;
   }
 
   static public String computeFileNameStrWithoutCompSuffix(String fileNamePatternStr, CompressionMode compressionMode) {
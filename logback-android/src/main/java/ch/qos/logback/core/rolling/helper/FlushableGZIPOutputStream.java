@@ -0,0 +1,394 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2015, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.rolling.helper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses the bytes written to it in gzip format, where every
+ * {@link #flush()} completes a gzip member. A maximum member size may also
+ * be given, so that members are completed regularly without flushing.
+ * <p>
+ * A gzip file may hold several members, which decompress as one stream,
+ * so the file written stays readable up to the last complete member even if
+ * the process dies while writing it. Before appending to such a file, remove
+ * whatever follows its {@link #completeMembersLength complete members}, since
+ * gzip readers stop at an incomplete one. Each member costs about 20 bytes and
+ * compresses independently of the others, so larger members compress better.
+ */
+public class FlushableGZIPOutputStream extends OutputStream {
+
+  static final int BUFFER_SIZE = 8192;
+
+  /**
+   * A member size, in uncompressed bytes, that keeps the cost of members low
+   * while bounding how much a crash can leave in an incomplete one
+   */
+  public static final int DEFAULT_MAX_MEMBER_SIZE = 256 * 1024;
+
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+
+  // header with no modification time, file name or extra fields
+  private static final byte[] HEADER = {
+      (byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+  private final OutputStream out;
+  private final Deflater deflater;
+  private final boolean ownsDeflater;
+  private final int maxMemberSize;
+  private final CRC32 crc = new CRC32();
+  private final byte[] buf = new byte[BUFFER_SIZE];
+  private int memberLength;
+  private boolean inMember;
+  private boolean anyMember;
+
+  public FlushableGZIPOutputStream(OutputStream out) {
+    this(out, 0);
+  }
+
+  /**
+   * @param out the stream to write the gzip members to
+   * @param maxMemberSize the number of uncompressed bytes after which a
+   * member is completed even if the stream is not flushed, or 0 for no limit
+   */
+  public FlushableGZIPOutputStream(OutputStream out, int maxMemberSize) {
+    this(out, new Deflater(Deflater.DEFAULT_COMPRESSION, true), true, maxMemberSize);
+  }
+
+  /**
+   * @param out the stream to write the gzip members to
+   * @param deflater a deflater producing raw deflate data, i.e. created with
+   * {@code nowrap} set. It is reset after each member but not ended, so that
+   * the caller can reuse it.
+   */
+  public FlushableGZIPOutputStream(OutputStream out, Deflater deflater) {
+    this(out, deflater, false, 0);
+  }
+
+  private FlushableGZIPOutputStream(OutputStream out, Deflater deflater, boolean ownsDeflater, int maxMemberSize) {
+    if (maxMemberSize < 0) {
+      throw new IllegalArgumentException("maxMemberSize cannot be negative");
+    }
+    this.out = out;
+    this.deflater = deflater;
+    this.ownsDeflater = ownsDeflater;
+    this.maxMemberSize = maxMemberSize;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] { (byte) b }, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return;
+    }
+    startMember();
+    crc.update(b, off, len);
+    memberLength += len;
+    deflater.setInput(b, off, len);
+    while (!deflater.needsInput()) {
+      deflate();
+    }
+    if (maxMemberSize > 0 && memberLength >= maxMemberSize) {
+      finishMember();
+    }
+  }
+
+  /**
+   * Completes the current gzip member, if any, and flushes it
+   */
+  @Override
+  public void flush() throws IOException {
+    finishMember();
+    out.flush();
+  }
+
+  /**
+   * Completes the current gzip member without flushing. If no member was
+   * written at all, writes an empty one, since a gzip file holds at least
+   * one member.
+   */
+  public void finish() throws IOException {
+    if (!anyMember) {
+      startMember();
+    }
+    finishMember();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      finishMember();
+    } finally {
+      if (ownsDeflater) {
+        deflater.end();
+      }
+      out.close();
+    }
+  }
+
+  private void startMember() throws IOException {
+    if (!inMember) {
+      out.write(HEADER);
+      inMember = true;
+      anyMember = true;
+    }
+  }
+
+  private void finishMember() throws IOException {
+    if (!inMember) {
+      return;
+    }
+    deflater.finish();
+    while (!deflater.finished()) {
+      deflate();
+    }
+    writeInt((int) crc.getValue());
+    writeInt(memberLength);
+    deflater.reset();
+    crc.reset();
+    memberLength = 0;
+    inMember = false;
+  }
+
+  private void deflate() throws IOException {
+    int len = deflater.deflate(buf, 0, buf.length);
+    if (len > 0) {
+      out.write(buf, 0, len);
+    }
+  }
+
+  // little-endian, as gzip trailers are
+  private void writeInt(int i) throws IOException {
+    out.write(i & 0xff);
+    out.write((i >> 8) & 0xff);
+    out.write((i >> 16) & 0xff);
+    out.write((i >> 24) & 0xff);
+  }
+
+  /**
+   * Gets the length of the complete gzip members at the start of a file.
+   * Anything after them, e.g. a member the process died while writing, is
+   * not readable.
+   * <p>
+   * Only the end of the file is read when its members start with the header
+   * this class writes: the last member headers are searched backwards from
+   * the end, and the members following the closest one are checked. Other
+   * files are read from the start.
+   *
+   * @param file a gzip file
+   * @return the offset right after the last complete member
+   * @throws IOException file could not be read
+   */
+  public static long completeMembersLength(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      byte[] block = new byte[BUFFER_SIZE + HEADER.length - 1];
+      long blockEnd = raf.length();
+      while (blockEnd > 0) {
+        long blockStart = Math.max(0, blockEnd - BUFFER_SIZE);
+        // overlap the next block, for headers across both
+        int len = (int) (Math.min(raf.length(), blockEnd + HEADER.length - 1) - blockStart);
+        raf.seek(blockStart);
+        raf.readFully(block, 0, len);
+        for (int i = len - HEADER.length; i >= 0; i--) {
+          if (isHeaderAt(block, i)) {
+            long start = blockStart + i;
+            long end = completeMembersEnd(file, start);
+            if (end > start) {
+              return end;
+            }
+          }
+        }
+        blockEnd = blockStart;
+      }
+    } finally {
+      raf.close();
+    }
+    return completeMembersEnd(file, 0);
+  }
+
+  private static boolean isHeaderAt(byte[] b, int offset) {
+    for (int i = 0; i < HEADER.length; i++) {
+      if (b[offset + i] != HEADER[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the offset right after the complete members found from the given
+   * offset on, or that offset if there are none
+   */
+  private static long completeMembersEnd(File file, long offset) throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    MemberReader reader = new MemberReader(in, offset);
+    try {
+      in.getChannel().position(offset);
+      long end = offset;
+      while (reader.readMember()) {
+        end = reader.position();
+      }
+      return end;
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static class MemberReader {
+    private final InputStream in;
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private final byte[] inflated = new byte[BUFFER_SIZE];
+    private long bufOffset;
+    private int pos;
+    private int limit;
+
+    MemberReader(InputStream in, long offset) {
+      this.in = in;
+      this.bufOffset = offset;
+    }
+
+    long position() {
+      return bufOffset + pos;
+    }
+
+    /**
+     * @return true if a complete, valid member was read
+     */
+    boolean readMember() throws IOException {
+      if (readByte() != 0x1f || readByte() != 0x8b || readByte() != Deflater.DEFLATED) {
+        return false;
+      }
+      int flags = readByte();
+      if (flags < 0 || !skip(6)) {
+        return false;
+      }
+      if ((flags & FEXTRA) != 0) {
+        int lo = readByte();
+        int hi = readByte();
+        if (hi < 0 || !skip(lo | (hi << 8))) {
+          return false;
+        }
+      }
+      if ((flags & FNAME) != 0 && !skipString()) {
+        return false;
+      }
+      if ((flags & FCOMMENT) != 0 && !skipString()) {
+        return false;
+      }
+      if ((flags & FHCRC) != 0 && !skip(2)) {
+        return false;
+      }
+      return inflateMember() && readInt() == (int) crc.getValue() && readInt() == (int) inflater.getBytesWritten();
+    }
+
+    private boolean inflateMember() throws IOException {
+      inflater.reset();
+      crc.reset();
+      try {
+        while (!inflater.finished()) {
+          if (inflater.needsInput()) {
+            if (pos == limit && !fill()) {
+              return false;
+            }
+            inflater.setInput(buf, pos, limit - pos);
+            pos = limit;
+          }
+          int n = inflater.inflate(inflated);
+          if (n == 0 && inflater.needsDictionary()) {
+            return false;
+          }
+          crc.update(inflated, 0, n);
+        }
+      } catch (DataFormatException e) {
+        return false;
+      }
+      // give back what follows the deflate data
+      pos -= inflater.getRemaining();
+      return true;
+    }
+
+    private int readByte() throws IOException {
+      if (pos == limit && !fill()) {
+        return -1;
+      }
+      return buf[pos++] & 0xff;
+    }
+
+    // little-endian, or out of the int range at the end of the file
+    private long readInt() throws IOException {
+      long value = 0;
+      for (int i = 0; i < 4; i++) {
+        int b = readByte();
+        if (b < 0) {
+          return -1L << 32;
+        }
+        value |= (long) b << (8 * i);
+      }
+      return (int) value;
+    }
+
+    private boolean skip(int n) throws IOException {
+      for (int i = 0; i < n; i++) {
+        if (readByte() < 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private boolean skipString() throws IOException {
+      int b;
+      while ((b = readByte()) > 0) {
+        // zero-terminated
+      }
+      return b == 0;
+    }
+
+    private boolean fill() throws IOException {
+      bufOffset += limit;
+      pos = 0;
+      limit = 0;
+      int n = in.read(buf);
+      if (n <= 0) {
+        return false;
+      }
+      limit = n;
+      return true;
+    }
+
+    void close() throws IOException {
+      inflater.end();
+      in.close();
+    }
+  }
+}
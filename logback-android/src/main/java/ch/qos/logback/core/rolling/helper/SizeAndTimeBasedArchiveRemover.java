@@ -32,7 +32,7 @@ public class SizeAndTimeBasedArchiveRemover extends TimeBasedArchiveRemover {
     File archive0 = new File(fileNamePattern.convertMultipleArguments(dateOfPeriodToClean, 0));
     File parentDir = getParentDir(archive0);
     String stemRegex = createStemRegex(dateOfPeriodToClean);
-    File[] matchingFileArray = FileFilterUtil.filesInFolderMatchingStemRegex(parentDir, stemRegex);
+    File[] matchingFileArray = archiveIndex.filesInFolderMatchingStemRegex(parentDir, stemRegex);
     return matchingFileArray;
   }
 
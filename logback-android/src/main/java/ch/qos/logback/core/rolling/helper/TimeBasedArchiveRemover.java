@@ -40,6 +40,7 @@ public class TimeBasedArchiveRemover extends ContextAwareBase implements Archive
   private int maxHistory = CoreConstants.UNBOUND_HISTORY;
   private long totalSizeCap = UNBOUNDED_TOTAL_SIZE_CAP;
   final boolean parentClean;
+  final ArchiveIndex archiveIndex = new ArchiveIndex();
   long lastHeartBeat = UNINITIALIZED;
 
   public TimeBasedArchiveRemover(FileNamePattern fileNamePattern, RollingCalendar rc) {
@@ -67,23 +68,20 @@ public class TimeBasedArchiveRemover extends ContextAwareBase implements Archive
     String filenameToDelete = fileNamePattern.convert(dateOfPeriodToClean);
     File file2Delete = new File(filenameToDelete);
 
-    if (fileExistsAndIsFile(file2Delete)) {
+    if (archiveIndex.exists(file2Delete)) {
       return new File[] { file2Delete };
     } else {
       return new File[0];
     }
   }
 
-  private boolean fileExistsAndIsFile(File file2Delete) {
-    return file2Delete.exists() && file2Delete.isFile();
-  }
-
   public void cleanPeriod(Date dateOfPeriodToClean) {
     File[] matchingFileArray = getFilesInPeriod(dateOfPeriodToClean);
 
     for (File f : matchingFileArray) {
       addInfo("deleting " + f);
       f.delete();
+      archiveIndex.remove(f);
     }
 
     if (parentClean && matchingFileArray.length > 0) {
@@ -100,11 +98,12 @@ public class TimeBasedArchiveRemover extends ContextAwareBase implements Archive
       File[] matchingFileArray = getFilesInPeriod(date);
       descendingSort(matchingFileArray, date);
       for (File f : matchingFileArray) {
-        long size = f.length();
+        long size = archiveIndex.length(f);
         if (totalSize + size > totalSizeCap) {
           addInfo("Deleting [" + f + "]" + " of size " + new FileSize(size));
           totalRemoved += size;
           f.delete();
+          archiveIndex.remove(f);
         }
         totalSize += size;
       }
@@ -193,6 +192,7 @@ public class TimeBasedArchiveRemover extends ContextAwareBase implements Archive
     if (dir.isDirectory() && FileFilterUtil.isEmptyDirectory(dir)) {
       addInfo("deleting folder [" + dir + "]");
       dir.delete();
+      archiveIndex.removeFolder(dir);
       removeFolderIfEmpty(dir.getParentFile(), depth + 1);
     }
   }
@@ -209,6 +209,10 @@ public class TimeBasedArchiveRemover extends ContextAwareBase implements Archive
     this.totalSizeCap = totalSizeCap;
   }
 
+  public ArchiveIndex getArchiveIndex() {
+    return archiveIndex;
+  }
+
   public String toString() {
     return "c.q.l.core.rolling.helper.TimeBasedArchiveRemover";
   }
@@ -19,45 +19,209 @@ import java.util.Locale;
 import java.util.TimeZone;
 
 /**
- * A synchronized implementation of  SimpleDateFormat which uses caching internally.
+ * A thread-safe, caching wrapper around {@link SimpleDateFormat}.
+ * <p>
+ * When the pattern contains no millisecond field, or a single {@code SSS}
+ * field, the text surrounding the milliseconds is formatted once per second
+ * and published in an immutable entry through a volatile field. Formatting a
+ * timestamp within the cached second then only appends the millisecond
+ * digits, without locking. Other patterns are cached per millisecond. In both
+ * cases, a cache miss formats under a lock since {@link SimpleDateFormat} is
+ * not thread safe.
  *
  * @author Ceki G&uuml;c&uuml;
  * @since 0.9.29
  */
 public class CachingDateFormatter {
 
+  static final int MILLIS_LENGTH = 3;
 
-  long lastTimestamp = -1;
-  String cachedStr = null;
   final SimpleDateFormat sdf;
 
+  /**
+   * Formatters for the text before and after the {@code SSS} field, or null if
+   * the pattern cannot be split at the milliseconds.
+   */
+  final SimpleDateFormat prefixFormat;
+  final SimpleDateFormat suffixFormat;
+
+  /** true if the output depends only on the second of the timestamp */
+  final boolean perSecond;
+
+  private volatile CacheEntry cacheEntry;
+  private volatile CacheEntry lastFormatted;
+
+  /**
+   * Incremented by {@link #setTimeZone(TimeZone)}. Cache entries formatted
+   * with an earlier time zone carry an older version and are ignored, even if
+   * a concurrent {@link #format(long)} publishes one after the change.
+   */
+  private volatile int zoneVersion;
+
   public CachingDateFormatter(String pattern) {
     this(pattern, Locale.US);
   }
 
   public CachingDateFormatter(String pattern, Locale locale) {
     sdf = new SimpleDateFormat(pattern, locale);
+    int[] millisField = findMillisField(pattern);
+    if (millisField == null
+        || (millisField.length != 0 && !rendersAsciiMillis(locale))) {
+      perSecond = false;
+      prefixFormat = suffixFormat = null;
+    } else if (millisField.length == 0) {
+      perSecond = true;
+      prefixFormat = suffixFormat = null;
+    } else {
+      perSecond = true;
+      prefixFormat = new SimpleDateFormat(pattern.substring(0, millisField[0]), locale);
+      suffixFormat = new SimpleDateFormat(pattern.substring(millisField[1]), locale);
+    }
+  }
+
+  /**
+   * Locates the millisecond field of a {@link SimpleDateFormat} pattern,
+   * skipping quoted text.
+   *
+   * @return an empty array if there is no millisecond field, the start and end
+   * of the field if it is a single {@code SSS}, or null otherwise
+   */
+  static int[] findMillisField(String pattern) {
+    int[] field = new int[0];
+    boolean quoted = false;
+    int len = pattern.length();
+    for (int i = 0; i < len; i++) {
+      char c = pattern.charAt(i);
+      if (c == '\'') {
+        quoted = !quoted;
+      } else if (!quoted && c == 'S') {
+        int end = i;
+        while (end < len && pattern.charAt(end) == 'S') {
+          end++;
+        }
+        if (field.length != 0 || end - i != MILLIS_LENGTH) {
+          return null;
+        }
+        field = new int[] { i, end };
+        i = end - 1;
+      }
+    }
+    return field;
+  }
+
+  /**
+   * Checks that {@code SSS} renders as three ASCII digits, which some locales
+   * and platforms do not guarantee.
+   */
+  private static boolean rendersAsciiMillis(Locale locale) {
+    SimpleDateFormat millisFormat = new SimpleDateFormat("SSS", locale);
+    millisFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    return "012".equals(millisFormat.format(new Date(12)));
   }
 
   public final String format(long now) {
+    int version = zoneVersion;
+    CacheEntry last = lastFormatted;
+    if (last != null && last.key == now && last.zoneVersion == version) {
+      return last.prefix;
+    }
+    String str;
+    if (prefixFormat == null) {
+      str = cacheEntryFor(now).prefix;
+    } else {
+      StringBuilder buf = new StringBuilder();
+      format(now, buf);
+      str = buf.toString();
+    }
+    lastFormatted = new CacheEntry(now, str, null, version);
+    return str;
+  }
 
+  /**
+   * Appends the formatted timestamp to the buffer. Within a cached second
+   * this method neither locks nor allocates.
+   *
+   * @param now the timestamp to format
+   * @param buf the buffer to append to
+   */
+  public final void format(long now, StringBuilder buf) {
+    CacheEntry entry = cacheEntryFor(now);
+    buf.append(entry.prefix);
+    if (entry.suffix != null) {
+      int millis = (int) (now - entry.key * 1000);
+      if (millis < 100) {
+        buf.append('0');
+        if (millis < 10) {
+          buf.append('0');
+        }
+      }
+      buf.append(millis);
+      buf.append(entry.suffix);
+    }
+  }
+
+  private CacheEntry cacheEntryFor(long now) {
+    long key = perSecond ? secondOf(now) : now;
+    CacheEntry entry = cacheEntry;
+    if (entry != null && entry.key == key && entry.zoneVersion == zoneVersion) {
+      return entry;
+    }
     // SimpleDateFormat is not thread safe.
 
     // See also the discussion in http://jira.qos.ch/browse/LBCLASSIC-36
     // DateFormattingThreadedThroughputCalculator and SelectiveDateFormattingRunnable
     // are also note worthy
-
-    // The now == lastTimestamp guard minimizes synchronization
     synchronized (this) {
-      if (now != lastTimestamp) {
-        lastTimestamp = now;
-        cachedStr = sdf.format(new Date(now));
+      entry = cacheEntry;
+      int version = zoneVersion;
+      if (entry == null || entry.key != key || entry.zoneVersion != version) {
+        if (prefixFormat == null) {
+          entry = new CacheEntry(key, sdf.format(new Date(now)), null, version);
+        } else {
+          Date date = new Date(now);
+          entry = new CacheEntry(key, prefixFormat.format(date), suffixFormat.format(date), version);
+        }
+        cacheEntry = entry;
       }
-      return cachedStr;
+      return entry;
     }
   }
 
+  private static long secondOf(long millis) {
+    // floor division, so that timestamps before 1970 round down as well
+    long second = millis / 1000;
+    return (millis % 1000 < 0) ? second - 1 : second;
+  }
+
   public void setTimeZone(TimeZone tz) {
-    sdf.setTimeZone(tz);
+    synchronized (this) {
+      sdf.setTimeZone(tz);
+      if (prefixFormat != null) {
+        prefixFormat.setTimeZone(tz);
+        suffixFormat.setTimeZone(tz);
+      }
+      zoneVersion++;
+      cacheEntry = null;
+      lastFormatted = null;
+    }
+  }
+
+  /**
+   * Immutable cache entry: the formatted text before and after the
+   * milliseconds for a given second, or the whole text for a given key, as
+   * formatted with the time zone of the given version.
+   */
+  private static final class CacheEntry {
+    final long key;
+    final String prefix;
+    final String suffix;
+    final int zoneVersion;
+
+    CacheEntry(long key, String prefix, String suffix, int zoneVersion) {
+      this.key = key;
+      this.prefix = prefix;
+      this.suffix = suffix;
+      this.zoneVersion = zoneVersion;
+    }
   }
 }
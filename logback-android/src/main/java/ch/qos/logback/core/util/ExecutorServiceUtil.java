@@ -65,6 +65,16 @@ public class ExecutorServiceUtil {
         THREAD_FACTORY);
   }
 
+  /**
+   * Creates an executor service with a fixed number of daemon threads, for
+   * logback components to split work between
+   * @param threads the number of threads
+   * @return executor service
+   */
+  static public ExecutorService newFixedExecutorService(int threads) {
+    return Executors.newFixedThreadPool(threads, THREAD_FACTORY);
+  }
+
   /**
    * Shuts down an executor service.
    * <p>
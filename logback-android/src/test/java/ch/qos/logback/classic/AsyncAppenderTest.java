@@ -67,6 +67,19 @@ public class AsyncAppenderTest {
     assertFalse(e.hasCallerData());
   }
 
+  @Test
+  public void metricsMeasureLatencyFromEventTimeStamp() {
+    asyncAppender.addAppender(listAppender);
+    asyncAppender.setMetrics(true);
+    asyncAppender.start();
+
+    asyncAppender.doAppend(builder.build(diff));
+    asyncAppender.stop();
+
+    assertEquals(1, listAppender.list.size());
+    assertEquals(1, asyncAppender.getMetrics().getLatency().getCount());
+  }
+
   @Test
   public void settingIncludeCallerDataPropertyCausedCallerDataToBeIncluded() {
     asyncAppender.addAppender(listAppender);
@@ -250,4 +250,65 @@ public class PatternLayoutTest extends AbstractPatternLayoutBaseTest<ILoggingEve
     assertEquals(1, sla.strList.size());
     assertEquals("A\n\tC", sla.strList.get(0));
   }
+
+  @Test
+  public void optimizedModeRendersSameOutput() {
+    MDC.put("k", "v");
+    try {
+      ILoggingEvent event = makeLoggingEvent(aMessage, new Exception("Bogus exception"));
+      String[] patterns = {
+          "%-5level [%t] %logger{20} - %m%n",
+          "%X %X{k} %X{none:-dflt} %L %-6L|%.1L",
+          "%-30(%le %lo{10}) x%replace(%m){'m', 'M'}y",
+          "[\\%] %m",
+      };
+      for (String pattern : patterns) {
+        PatternLayout reference = new PatternLayout();
+        reference.setContext(lc);
+        reference.setPattern(pattern);
+        reference.start();
+
+        PatternLayout optimized = new PatternLayout();
+        optimized.setContext(lc);
+        optimized.setPattern(pattern);
+        optimized.setOptimized(true);
+        optimized.start();
+
+        String expected = reference.doLayout(event);
+        assertEquals(pattern, expected, optimized.doLayout(event));
+        assertEquals(pattern, expected, optimized.doLayout(event));
+      }
+    } finally {
+      MDC.remove("k");
+    }
+  }
+
+  @Test
+  public void optimizedModeDoesNotLeakLargeEventsIntoLaterOnes() {
+    pl.setPattern("%m");
+    pl.setOptimized(true);
+    pl.start();
+    StringBuilder big = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      big.append("0123456789");
+    }
+    assertEquals(big.toString(), pl.doLayout(makeLoggingEvent(big.toString(), null)));
+    assertEquals("small", pl.doLayout(makeLoggingEvent("small", null)));
+  }
+
+  @Test
+  public void optimizedModeSupportsReentrantLayout() {
+    pl.setPattern("[%m]");
+    pl.setOptimized(true);
+    pl.start();
+    final ILoggingEvent inner = makeLoggingEvent("inner", null);
+    Object arg = new Object() {
+      @Override
+      public String toString() {
+        return pl.doLayout(inner);
+      }
+    };
+    ILoggingEvent outer = new LoggingEvent(PatternLayoutTest.class.getName(), logger, Level.INFO, "outer {}", null, new Object[] { arg });
+    assertEquals("[outer [inner]]", pl.doLayout(outer));
+  }
 }
@@ -26,11 +26,13 @@ import org.robolectric.shadows.ShadowLog;
 
 import java.util.List;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
 import ch.qos.logback.classic.spi.LoggingEvent;
 import ch.qos.logback.classic.spi.ThrowableProxy;
+import ch.qos.logback.core.util.Duration;
 
 /**
  * Tests the {@link LogcatAppender} class
@@ -98,6 +100,113 @@ public class LogcatAppenderTest {
     assertThat(TAG, is(actualTag));
   }
 
+  @Test
+  public void tagIsCachedPerLoggerForLoggerOnlyPattern() {
+    setTagPattern("<%logger{0}>", false);
+    Logger foo = context.getLogger("a.b.Foo");
+    Logger bar = context.getLogger("a.b.Bar");
+    LoggingEvent fooEvent = new LoggingEvent(null, foo, Level.INFO, "1", null, null);
+
+    String tag = logcatAppender.getTag(fooEvent);
+    assertThat(tag, is("<Foo>"));
+    assertThat(logcatAppender.getTag(new LoggingEvent(null, foo, Level.INFO, "2", null, null)), is(sameInstance(tag)));
+    assertThat(logcatAppender.getTag(new LoggingEvent(null, bar, Level.INFO, "3", null, null)), is("<Bar>"));
+  }
+
+  @Test
+  public void tagIsNotCachedForPatternUsingOtherFields() {
+    setTagPattern("%logger{0}-%msg", false);
+    Logger foo = context.getLogger("a.b.Foo");
+
+    assertThat(logcatAppender.getTag(new LoggingEvent(null, foo, Level.INFO, "1", null, null)), is("Foo-1"));
+    assertThat(logcatAppender.getTag(new LoggingEvent(null, foo, Level.INFO, "2", null, null)), is("Foo-2"));
+  }
+
+  @Test
+  public void isLoggableResultIsReusedWithinInterval() {
+    setTagPattern("cached", true);
+    ShadowLog.setLoggable("cached", Log.WARN);
+    root.addAppender(logcatAppender);
+
+    root.info("first");
+    ShadowLog.setLoggable("cached", Log.VERBOSE);
+    root.info("second");
+    assertThat(ShadowLog.getLogsForTag("cached"), is(empty()));
+
+    logcatAppender.setLoggableCheckInterval(Duration.buildByMilliseconds(0));
+    root.info("third");
+    assertThat(ShadowLog.getLogsForTag("cached").size(), is(1));
+  }
+
+  @Test
+  public void longMessageIsSplitAtLineBreaks() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 10; i++) {
+      sb.append(i > 0 ? "\n" : "").append(repeat((char) ('0' + i), 1000));
+    }
+    List<ShadowLog.LogItem> logs = logToTag("chunked", sb.toString());
+
+    assertThat(logs.size(), is(4));
+    assertThat(logs.get(0).msg, is(sb.substring(0, 3002)));
+    assertThat(logs.get(3).msg, is(repeat('9', 1000)));
+    StringBuilder joined = new StringBuilder();
+    for (ShadowLog.LogItem item : logs) {
+      joined.append(joined.length() > 0 ? "\n" : "").append(item.msg);
+      assertThat(item.type, is(Log.INFO));
+    }
+    assertThat(joined.toString(), is(sb.toString()));
+  }
+
+  @Test
+  public void longLineIsSplitWithinSizeLimit() {
+    List<ShadowLog.LogItem> logs = logToTag("chunked", repeat('x', 9000));
+
+    assertThat(logs.size(), is(3));
+    assertThat(logs.get(0).msg.length(), is(4000));
+    assertThat(logs.get(2).msg.length(), is(1000));
+  }
+
+  @Test
+  public void chunkSizeCountsUtf8Bytes() {
+    String twoByteChars = repeat('\u00e9', 3000);
+    assertThat(LogcatAppender.chunkEnd(twoByteChars, 0, 4000), is(2000));
+    assertThat(LogcatAppender.chunkEnd(twoByteChars, 2000, 4000), is(3000));
+
+    // does not split a surrogate pair
+    assertThat(LogcatAppender.chunkEnd("ab\ud83d\ude00", 0, 4), is(2));
+  }
+
+  @Test
+  public void messageIsNotSplitIfChunkingDisabled() {
+    logcatAppender.setMaxChunkSize(0);
+    assertThat(logToTag("chunked", repeat('x', 9000)).size(), is(1));
+  }
+
+  @Test
+  public void tooSmallChunkSizeIsRaised() {
+    logcatAppender.setMaxChunkSize(2);
+    List<ShadowLog.LogItem> logs = logToTag("chunked", "abcdefgh");
+
+    assertThat(logcatAppender.getMaxChunkSize(), is(4));
+    assertThat(logs.size(), is(2));
+    assertThat(logs.get(1).msg, is("efgh"));
+  }
+
+  private List<ShadowLog.LogItem> logToTag(String tag, String message) {
+    setTagPattern(tag, false);
+    root.addAppender(logcatAppender);
+    root.info(message);
+    return ShadowLog.getLogsForTag(tag);
+  }
+
+  private static String repeat(char c, int count) {
+    StringBuilder sb = new StringBuilder(count);
+    for (int i = 0; i < count; i++) {
+      sb.append(c);
+    }
+    return sb.toString();
+  }
+
   private void setTagPattern(String tag, boolean checkLoggable) {
     logcatAppender.stop();
     logcatAppender.setCheckLoggable(checkLoggable);
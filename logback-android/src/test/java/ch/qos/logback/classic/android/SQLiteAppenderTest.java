@@ -13,7 +13,9 @@
  */
 package ch.qos.logback.classic.android;
 
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 
 import org.junit.After;
 import org.junit.Before;
@@ -23,14 +25,20 @@ import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.slf4j.Logger;
+import org.slf4j.MDC;
 
 import java.io.File;
 import java.io.IOException;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.spi.ThrowableProxy;
 import ch.qos.logback.core.CoreConstants;
 import ch.qos.logback.core.util.CoreTestConstants;
 import ch.qos.logback.core.util.Duration;
+import ch.qos.logback.core.util.FileSize;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
@@ -38,8 +46,10 @@ import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(RobolectricTestRunner.class)
 public class SQLiteAppenderTest {
@@ -47,6 +57,7 @@ public class SQLiteAppenderTest {
   private static final String TEST_SQLITE_FILENAME = CoreTestConstants.OUTPUT_DIR_PREFIX + "SQLiteAppenderTest/logback.db";
   private static final long EXPIRY_MS = 500;
   private static final long NO_EXPIRY = 0;
+  private static final long CLEANUP_TIMEOUT_MS = 2000;
 
   @Rule
   public TemporaryFolder tmp = new TemporaryFolder();
@@ -75,12 +86,14 @@ public class SQLiteAppenderTest {
   @After
   public void teardown() {
     new File(TEST_SQLITE_FILENAME).delete();
+    new File(TEST_SQLITE_FILENAME + "-wal").delete();
+    new File(TEST_SQLITE_FILENAME + "-shm").delete();
   }
 
   @Test
   public void cleanuOccursAtAppenderStartup() {
     addAppenderToContext("1 hour");
-    verify(logCleaner, times(1)).performLogCleanup(any(SQLiteDatabase.class), any(Duration.class));
+    verify(logCleaner, timeout(CLEANUP_TIMEOUT_MS).times(1)).performLogCleanup(any(SQLiteDatabase.class), any(Duration.class));
   }
 
   @Test
@@ -91,7 +104,7 @@ public class SQLiteAppenderTest {
 
     // log-cleanup normally called between logging events if expiry time
     // exceeded, but no expiration here, so call-count should still be 1
-    verify(logCleaner, times(1)).performLogCleanup(any(SQLiteDatabase.class), any(Duration.class));
+    verify(logCleaner, timeout(CLEANUP_TIMEOUT_MS).times(1)).performLogCleanup(any(SQLiteDatabase.class), any(Duration.class));
   }
 
   @Test
@@ -103,7 +116,104 @@ public class SQLiteAppenderTest {
     final int expectedCallCount = (int)Math.ceil((double)(delayMs * count)/EXPIRY_MS);
     addLogEvents(count, delayMs);
 
-    verify(logCleaner, times(expectedCallCount)).performLogCleanup(any(SQLiteDatabase.class), any(Duration.class));
+    verify(logCleaner, timeout(CLEANUP_TIMEOUT_MS).times(expectedCallCount)).performLogCleanup(any(SQLiteDatabase.class), any(Duration.class));
+  }
+
+  @Test
+  public void defaultCleanerDeletesExpiredEventsWithTheirDetails() {
+    appender.setMaxHistory("1 hour");
+    appender.start();
+    ch.qos.logback.classic.Logger log = context.getLogger(SQLiteAppenderTest.class);
+    log.addAppender(appender);
+
+    log.error("old", new Exception("old"));
+    log.info("old");
+    mockTimeMs += 2 * 60 * 60 * 1000L;
+    LoggingEvent newEvent = new LoggingEvent(SQLiteAppenderTest.class.getName(), log, Level.INFO, "new", null, null);
+    newEvent.setTimeStamp(mockTimeMs);
+    appender.doAppend(newEvent);
+
+    long deadline = System.currentTimeMillis() + CLEANUP_TIMEOUT_MS;
+    while (countRowsWhenIdle("logging_event") != 1 && System.currentTimeMillis() < deadline) {
+      sleep(10);
+    }
+    appender.stop();
+
+    assertThat(countRows("logging_event"), is(1L));
+    assertThat(countRows("logging_event WHERE formatted_message = 'new'"), is(1L));
+    // only the context property of the remaining event
+    assertThat(countRows("logging_event_property"), is(1L));
+    assertThat(countRows("logging_event_exception"), is(0L));
+  }
+
+  @Test
+  public void maxDatabaseSizeEvictsOldestEventsAndShrinksFile() {
+    appender.setMaxDatabaseSize(FileSize.valueOf("64 KB"));
+    appender.start();
+    ch.qos.logback.classic.Logger log = context.getLogger(SQLiteAppenderTest.class);
+    log.addAppender(appender);
+
+    StringBuilder padding = new StringBuilder();
+    for (int i = 0; i < 50; i++) {
+      padding.append("0123456789");
+    }
+    int count = 400;
+    for (int i = 0; i < count; i++) {
+      log.info("event {} {}", i, padding);
+    }
+    appender.enforceMaxDatabaseSize();
+    appender.stop();
+
+    long remaining = countRows("logging_event");
+    assertThat(remaining > 0 && remaining < count, is(true));
+    assertThat(countRows("logging_event WHERE arg0 = '" + (count - 1) + "'"), is(1L));
+    assertThat(countRows("logging_event WHERE arg0 = '0'"), is(0L));
+    assertThat(countRows("logging_event_property"), is(remaining));
+    assertThat(new File(TEST_SQLITE_FILENAME).length() <= 64 * 1024, is(true));
+  }
+
+  @Test
+  public void pragmasAreAppliedAtOpen() {
+    appender.setJournalMode("wal");
+    appender.setSynchronous("NORMAL");
+    appender.setCacheSize(-512);
+    appender.setPageSize(8192);
+    appender.setTempStore("MEMORY");
+    appender.setWalAutocheckpoint(100);
+    appender.start();
+    assertThat(appender.isStarted(), is(true));
+
+    assertThat(appender.queryPragma("journal_mode"), is("wal"));
+    assertThat(appender.queryPragma("synchronous"), is("1"));
+    assertThat(appender.queryPragma("cache_size"), is("-512"));
+    assertThat(appender.queryPragma("page_size"), is("8192"));
+    assertThat(appender.queryPragma("temp_store"), is("2"));
+    assertThat(appender.queryPragma("wal_autocheckpoint"), is("100"));
+    appender.stop();
+  }
+
+  @Test
+  public void checkpointTruncatesWriteAheadLog() {
+    appender.setJournalMode("WAL");
+    appender.setWalAutocheckpoint(0);
+    addAppenderToContext("1 hour");
+    addLogEvents(20, NO_EXPIRY);
+
+    File wal = new File(TEST_SQLITE_FILENAME + "-wal");
+    long walLength = wal.length();
+    assertThat(walLength > 0, is(true));
+    appender.checkpoint();
+    // the WAL restarts (and shrinks, on SQLite without TRUNCATE) on the next write
+    addLogEvents(1, NO_EXPIRY);
+    assertThat(wal.length() < walLength, is(true));
+    appender.stop();
+  }
+
+  @Test
+  public void invalidPragmaValuePreventsStart() {
+    appender.setSynchronous("SOMETIMES");
+    appender.start();
+    assertThat(appender.isStarted(), is(false));
   }
 
   @Test
@@ -182,6 +292,321 @@ public class SQLiteAppenderTest {
     assertThat(appender.getMaxHistoryMs(), is(0L));
   }
 
+  @Test
+  public void writesEachEventWithoutBatching() {
+    addAppenderToContext("1 hour");
+    addLogEvents(3, NO_EXPIRY);
+    assertThat(countRows("logging_event"), is(3L));
+    appender.stop();
+  }
+
+  @Test
+  public void batchIsWrittenWhenFull() {
+    appender.setBatchSize(3);
+    appender.setMaxBatchDelay(Duration.buildByHours(1));
+    addAppenderToContext("1 hour");
+
+    addLogEvents(2, NO_EXPIRY);
+    assertThat(countRows("logging_event"), is(0L));
+
+    addLogEvents(1, NO_EXPIRY);
+    waitForRows(3);
+    assertThat(countRows("logging_event"), is(3L));
+    appender.stop();
+  }
+
+  @Test
+  public void batchIsWrittenAfterMaxBatchDelay() {
+    appender.setBatchSize(100);
+    appender.setMaxBatchDelay(Duration.buildByMilliseconds(50));
+    addAppenderToContext("1 hour");
+
+    addLogEvents(2, NO_EXPIRY);
+    waitForRows(2);
+    assertThat(countRows("logging_event"), is(2L));
+    appender.stop();
+  }
+
+  @Test
+  public void pendingEventsAreWrittenOnStop() {
+    appender.setBatchSize(100);
+    appender.setMaxBatchDelay(Duration.buildByHours(1));
+    addAppenderToContext("1 hour");
+
+    Logger log = context.getLogger(SQLiteAppenderTest.class);
+    MDC.put("k", "v");
+    try {
+      log.info("with property");
+    } finally {
+      MDC.remove("k");
+    }
+    log.info("plain");
+    log.error("with exception", new Exception("test"));
+    appender.stop();
+
+    assertThat(countRows("logging_event"), is(3L));
+    assertThat(countRows("logging_event_property WHERE mapped_key = 'k'"), is(1L));
+    assertThat(countRows("logging_event_exception") > 0, is(true));
+    assertThat(countRows("logging_event WHERE arg0 IS NOT NULL"), is(0L));
+  }
+
+  @Test
+  public void failingEventDoesNotDropTheRestOfItsBatch() {
+    appender.setBatchSize(100);
+    appender.setMaxBatchDelay(Duration.buildByHours(1));
+    addAppenderToContext("1 hour");
+
+    ch.qos.logback.classic.Logger log = context.getLogger(SQLiteAppenderTest.class);
+    final IThrowableProxy poisoned = mock(IThrowableProxy.class);
+    when(poisoned.getClassName()).thenThrow(new IllegalStateException("poisoned"));
+    LoggingEvent failing = new LoggingEvent(SQLiteAppenderTest.class.getName(), log, Level.ERROR, "failing", null, null) {
+      @Override
+      public IThrowableProxy getThrowableProxy() {
+        return poisoned;
+      }
+    };
+    log.info("before");
+    appender.doAppend(failing);
+    log.info("after");
+    appender.stop();
+
+    assertThat(countRows("logging_event"), is(2L));
+    assertThat(countRows("logging_event WHERE formatted_message = 'failing'"), is(0L));
+  }
+
+  @Test
+  public void invalidBatchSizePreventsStart() {
+    appender.setBatchSize(0);
+    appender.start();
+    assertThat(appender.isStarted(), is(false));
+  }
+
+  @Test
+  public void compactSchemaStoresNamesInLookupTables() {
+    appender.setCompactSchema(true);
+    appender.start();
+    ch.qos.logback.classic.Logger log = context.getLogger(SQLiteAppenderTest.class);
+    log.addAppender(appender);
+    for (int i = 0; i < 3; i++) {
+      log.warn("i={}", i);
+    }
+    appender.stop();
+
+    assertThat(countRows("logging_event"), is(3L));
+    assertThat(countRows("logging_logger"), is(1L));
+    assertThat(countRows("logging_thread"), is(1L));
+    assertThat(countRows("logging_caller"), is(1L));
+    assertThat(countRows("logging_event e JOIN logging_logger l ON e.logger_id = l.logger_id"
+        + " JOIN logging_caller c ON e.caller_id = c.caller_id"
+        + " WHERE l.logger_name = '" + SQLiteAppenderTest.class.getName() + "'"
+        + " AND c.caller_class = '" + SQLiteAppenderTest.class.getName() + "'"
+        + " AND e.level_int = " + Level.WARN.toInt()), is(3L));
+  }
+
+  @Test
+  public void compactSchemaRewritesLookupRowsAfterRollback() {
+    appender.setCompactSchema(true);
+    appender.setBatchSize(100);
+    appender.setMaxBatchDelay(Duration.buildByHours(1));
+    appender.start();
+    ch.qos.logback.classic.Logger log = context.getLogger(SQLiteAppenderTest.class);
+    log.addAppender(appender);
+
+    final IThrowableProxy poisoned = mock(IThrowableProxy.class);
+    when(poisoned.getClassName()).thenThrow(new IllegalStateException("poisoned"));
+    LoggingEvent failing = new LoggingEvent(SQLiteAppenderTest.class.getName(), log, Level.ERROR, "failing", null, null) {
+      @Override
+      public IThrowableProxy getThrowableProxy() {
+        return poisoned;
+      }
+    };
+    // the logger row inserted with the first event is rolled back with the batch
+    log.info("before");
+    appender.doAppend(failing);
+    appender.stop();
+
+    assertThat(countRows("logging_event"), is(1L));
+    assertThat(countRows("logging_event e JOIN logging_logger l ON e.logger_id = l.logger_id"
+        + " JOIN logging_thread t ON e.thread_id = t.thread_id"
+        + " JOIN logging_caller c ON e.caller_id = c.caller_id"), is(1L));
+  }
+
+  @Test
+  public void compactSchemaDoesNotStartOnDefaultSchemaDatabase() {
+    appender.start();
+    appender.stop();
+
+    SQLiteAppender compact = new SQLiteAppender();
+    compact.setFilename(TEST_SQLITE_FILENAME);
+    compact.setContext(context);
+    compact.setCompactSchema(true);
+    compact.start();
+    assertThat(compact.isStarted(), is(false));
+  }
+
+  @Test
+  public void repeatedExceptionIsStoredOnce() {
+    appender.setDeduplicateExceptions(true);
+    appender.start();
+    ch.qos.logback.classic.Logger log = context.getLogger(SQLiteAppenderTest.class);
+    log.addAppender(appender);
+    for (int i = 0; i < 5; i++) {
+      log.error("crash", new IllegalStateException("boom"));
+    }
+    log.error("other", new IllegalArgumentException("bang"));
+    appender.stop();
+
+    assertThat(countRows("logging_event"), is(6L));
+    assertThat(countRows("logging_event_exception"), is(0L));
+    assertThat(countRows("logging_event_trace"), is(6L));
+    assertThat(countRows("logging_trace"), is(2L));
+    assertThat(countRows("logging_trace WHERE trace_count = 5 AND trace LIKE '%IllegalStateException: boom%'"), is(1L));
+    assertThat(countRows("logging_event e JOIN logging_event_trace r ON e.event_id = r.event_id"
+        + " JOIN logging_trace t ON r.trace_hash = t.trace_hash"
+        + " WHERE e.formatted_message = 'other' AND t.trace LIKE '%bang%'"), is(1L));
+  }
+
+  @Test
+  public void traceHashDependsOnContentOnly() {
+    Exception[] same = new Exception[2];
+    for (int i = 0; i < same.length; i++) {
+      same[i] = new IllegalStateException("boom", new IOException("io"));
+    }
+    long hash = SQLiteTraceTable.hashOf(new ThrowableProxy(same[0]));
+    assertThat(SQLiteTraceTable.hashOf(new ThrowableProxy(same[1])), is(hash));
+    assertThat(SQLiteTraceTable.hashOf(new ThrowableProxy(new IllegalStateException("boom"))) == hash, is(false));
+    assertThat(SQLiteTraceTable.hashOf(new ThrowableProxy(new IllegalStateException("bang",
+        new IOException("io")))) == hash, is(false));
+  }
+
+  @Test
+  public void traceHashDoesNotCollideOnStringHashCodes() {
+    String[] messages = { "Aa", "BB" };
+    assertThat(messages[0].hashCode(), is(messages[1].hashCode()));
+    long[] hashes = new long[messages.length];
+    for (int i = 0; i < messages.length; i++) {
+      hashes[i] = SQLiteTraceTable.hashOf(new ThrowableProxy(new IllegalStateException(messages[i])));
+    }
+    assertThat(hashes[0] == hashes[1], is(false));
+  }
+
+  @Test
+  public void traceKeyComparesProxyChains() {
+    Exception[] same = new Exception[2];
+    for (int i = 0; i < same.length; i++) {
+      same[i] = new IllegalStateException("boom", new IOException("io"));
+    }
+    SQLiteTraceTable.TraceKey key = new SQLiteTraceTable.TraceKey(new ThrowableProxy(same[0]));
+    assertThat(new SQLiteTraceTable.TraceKey(new ThrowableProxy(same[1])), is(key));
+    assertThat(new SQLiteTraceTable.TraceKey(new ThrowableProxy(same[1])).hashCode(), is(key.hashCode()));
+    assertThat(new SQLiteTraceTable.TraceKey(new ThrowableProxy(new IllegalStateException("boom",
+        new IOException("other")))).equals(key), is(false));
+    assertThat(new SQLiteTraceTable.TraceKey(new ThrowableProxy(new IllegalStateException("boom")))
+        .equals(key), is(false));
+
+    // same frames, and messages with the same String hash code
+    String[] messages = { "Aa", "BB" };
+    SQLiteTraceTable.TraceKey[] keys = new SQLiteTraceTable.TraceKey[messages.length];
+    for (int i = 0; i < messages.length; i++) {
+      keys[i] = new SQLiteTraceTable.TraceKey(new ThrowableProxy(new IllegalStateException(messages[i])));
+    }
+    assertThat(keys[0].hashCode(), is(keys[1].hashCode()));
+    assertThat(keys[0].equals(keys[1]), is(false));
+  }
+
+  @Test
+  public void traceIsStoredAgainAfterRollback() {
+    appender.setDeduplicateExceptions(true);
+    appender.setBatchSize(100);
+    appender.setMaxBatchDelay(Duration.buildByHours(1));
+    appender.start();
+    ch.qos.logback.classic.Logger log = context.getLogger(SQLiteAppenderTest.class);
+    log.addAppender(appender);
+
+    final IThrowableProxy poisoned = mock(IThrowableProxy.class);
+    when(poisoned.getClassName()).thenThrow(new IllegalStateException("poisoned"));
+    LoggingEvent failing = new LoggingEvent(SQLiteAppenderTest.class.getName(), log, Level.ERROR, "failing", null, null) {
+      @Override
+      public IThrowableProxy getThrowableProxy() {
+        return poisoned;
+      }
+    };
+    // the trace stored with the first event is rolled back with the batch
+    log.error("crash", new IllegalStateException("boom"));
+    appender.doAppend(failing);
+    appender.stop();
+
+    assertThat(countRows("logging_event e JOIN logging_event_trace r ON e.event_id = r.event_id"
+        + " JOIN logging_trace t ON r.trace_hash = t.trace_hash"
+        + " WHERE e.formatted_message = 'crash' AND t.trace LIKE '%boom%'"), is(1L));
+  }
+
+  @Test
+  public void defaultCleanerDeletesUnreferencedTraces() {
+    appender.setDeduplicateExceptions(true);
+    appender.setMaxHistory("1 hour");
+    appender.start();
+    ch.qos.logback.classic.Logger log = context.getLogger(SQLiteAppenderTest.class);
+    log.addAppender(appender);
+
+    log.error("old", new Exception("old"));
+    mockTimeMs += 2 * 60 * 60 * 1000L;
+    LoggingEvent newEvent = new LoggingEvent(SQLiteAppenderTest.class.getName(), log, Level.ERROR, "new",
+        new Exception("new"), null);
+    newEvent.setTimeStamp(mockTimeMs);
+    appender.doAppend(newEvent);
+
+    long deadline = System.currentTimeMillis() + CLEANUP_TIMEOUT_MS;
+    while (countRowsWhenIdle("logging_trace") != 1 && System.currentTimeMillis() < deadline) {
+      sleep(10);
+    }
+    appender.stop();
+
+    assertThat(countRows("logging_event"), is(1L));
+    assertThat(countRows("logging_event_trace"), is(1L));
+    assertThat(countRows("logging_trace WHERE trace LIKE '%Exception: new%'"), is(1L));
+    assertThat(countRows("logging_trace"), is(1L));
+  }
+
+  private long countRows(String table) {
+    SQLiteDatabase db = SQLiteDatabase.openDatabase(TEST_SQLITE_FILENAME, null, SQLiteDatabase.OPEN_READONLY);
+    try {
+      Cursor c = db.rawQuery("SELECT COUNT(*) FROM " + table, null);
+      try {
+        c.moveToFirst();
+        return c.getLong(0);
+      } finally {
+        c.close();
+      }
+    } finally {
+      db.close();
+    }
+  }
+
+  /** Counts rows, or returns -1 if the appender is writing */
+  private long countRowsWhenIdle(String table) {
+    try {
+      return countRows(table);
+    } catch (SQLiteException e) {
+      return -1;
+    }
+  }
+
+  private void waitForRows(long expected) {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (countRowsWhenIdle("logging_event") < expected && System.currentTimeMillis() < deadline) {
+      sleep(10);
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   private long addLogEvents(int count, long delayMs) {
     Logger log = context.getLogger(SQLiteAppenderTest.class);
     final long startTimeMs = mockTimeMs;
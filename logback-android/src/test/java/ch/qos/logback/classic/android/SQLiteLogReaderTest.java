@@ -0,0 +1,252 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ * <p>
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ * <p>
+ * or (per the licensee's choosing)
+ * <p>
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.classic.android;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.slf4j.MDC;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.util.CoreTestConstants;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class SQLiteLogReaderTest {
+
+  private static final String TEST_SQLITE_FILENAME = CoreTestConstants.OUTPUT_DIR_PREFIX + "SQLiteLogReaderTest/logback.db";
+
+  private LoggerContext context;
+  private SQLiteAppender appender;
+  private SQLiteDatabase db;
+  private Exception exception;
+
+  @Before
+  public void setup() {
+    context = new LoggerContext();
+    appender = new SQLiteAppender();
+    appender.setFilename(TEST_SQLITE_FILENAME);
+    appender.setContext(context);
+    exception = new IllegalStateException("outer", new IllegalArgumentException("inner"));
+  }
+
+  @After
+  public void teardown() {
+    if (db != null) {
+      db.close();
+    }
+    MDC.clear();
+    new File(TEST_SQLITE_FILENAME).delete();
+  }
+
+  @Test
+  public void readsBackEventsOfDefaultSchema() {
+    writeEvents();
+    assertEventsReadBack();
+  }
+
+  @Test
+  public void readsBackEventsOfCompactSchemaWithDeduplicatedExceptions() {
+    appender.setCompactSchema(true);
+    appender.setDeduplicateExceptions(true);
+    writeEvents();
+    assertEventsReadBack();
+  }
+
+  @Test
+  public void filtersByLevelLoggerAndTime() {
+    writeEvents();
+    assertFilteredByLevelLoggerAndTime();
+  }
+
+  @Test
+  public void filtersByLevelLoggerAndTimeWithCompactSchema() {
+    appender.setCompactSchema(true);
+    writeEvents();
+    assertFilteredByLevelLoggerAndTime();
+  }
+
+  private void assertFilteredByLevelLoggerAndTime() {
+    SQLiteLogReader reader = openReader();
+
+    SQLiteLogQuery query = new SQLiteLogQuery();
+    query.setMinLevel(Level.WARN);
+    assertThat(messages(reader.readPage(query, -1, 100)), is("[warn, error]"));
+
+    query = new SQLiteLogQuery();
+    query.setLoggerName("com.example");
+    assertThat(messages(reader.readPage(query, -1, 100)), is("[debug, info, warn]"));
+
+    query.setLoggerName("com.example.app");
+    assertThat(messages(reader.readPage(query, -1, 100)), is("[info]"));
+
+    long warnTime = reader.readPage(new SQLiteLogQuery(), -1, 100).get(2).getTimeStamp();
+    query = new SQLiteLogQuery();
+    query.setFromTime(warnTime);
+    assertThat(messages(reader.readPage(query, -1, 100)), is("[warn, error]"));
+    query = new SQLiteLogQuery();
+    query.setToTime(warnTime);
+    assertThat(messages(reader.readPage(query, -1, 100)), is("[debug, info]"));
+  }
+
+  @Test
+  public void readsPagesAfterLastEventId() {
+    writeEvents();
+    SQLiteLogReader reader = openReader();
+    SQLiteLogQuery query = new SQLiteLogQuery();
+
+    List<SQLiteLoggingEvent> page = reader.readPage(query, -1, 3);
+    assertThat(messages(page), is("[debug, info, warn]"));
+    page = reader.readPage(query, page.get(2).getEventId(), 3);
+    assertThat(messages(page), is("[error]"));
+  }
+
+  @Test
+  public void exportsGzippedJsonLines() throws IOException {
+    writeEvents();
+    File file = new File(CoreTestConstants.OUTPUT_DIR_PREFIX + "SQLiteLogReaderTest/export.json.gz");
+    try {
+      assertThat(openReader().export(new SQLiteLogQuery(), file), is(4L));
+
+      List<String> lines = new ArrayList<String>();
+      BufferedReader in = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file)), "UTF-8"));
+      try {
+        String line;
+        while ((line = in.readLine()) != null) {
+          lines.add(line);
+        }
+      } finally {
+        in.close();
+      }
+      assertThat(lines.size(), is(4));
+      assertThat(lines.get(0), containsString("\"level\":\"DEBUG\",\"logger\":\"com.example.Main\""));
+      assertThat(lines.get(1), containsString("\"properties\":{\"user\":\"alice\"}"));
+      assertThat(lines.get(3), containsString("\"throwable\":\"java.lang.IllegalStateException: outer\\n"));
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void createsIndexes() {
+    writeEvents();
+    openReader().createIndexes();
+    openReader().createIndexes();
+    assertThat(DatabaseUtils.longForQuery(db,
+        "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND name LIKE '%_idx'", null), is(3L));
+  }
+
+  @Test
+  public void parsedExceptionRendersAsOriginal() {
+    Exception e = new Exception("top", exception);
+    String trace = ThrowableProxyUtil.asString(new ThrowableProxy(e));
+    List<String> lines = new ArrayList<String>();
+    for (String line : trace.split("\r?\n")) {
+      lines.add(line);
+    }
+    assertThat(ThrowableProxyUtil.asString(SQLiteThrowableProxy.parse(lines)), is(trace));
+  }
+
+  private void writeEvents() {
+    appender.start();
+    Logger main = context.getLogger("com.example.Main");
+    Logger app = context.getLogger("com.example.app.Service");
+    Logger other = context.getLogger("com.examples.Other");
+    main.addAppender(appender);
+    app.addAppender(appender);
+    other.addAppender(appender);
+    main.setLevel(Level.DEBUG);
+
+    main.debug("debug");
+    MDC.put("user", "alice");
+    app.info("info");
+    MDC.clear();
+    sleep();
+    main.warn("warn");
+    other.error("error", exception);
+    appender.stop();
+  }
+
+  private void assertEventsReadBack() {
+    SQLiteEventIterator it = openReader().iterate(new SQLiteLogQuery());
+    List<SQLiteLoggingEvent> events = new ArrayList<SQLiteLoggingEvent>();
+    while (it.hasNext()) {
+      events.add(it.next());
+    }
+    assertThat(messages(events), is("[debug, info, warn, error]"));
+
+    SQLiteLoggingEvent info = events.get(1);
+    assertThat(info.getLevel(), is(Level.INFO));
+    assertThat(info.getLoggerName(), is("com.example.app.Service"));
+    assertThat(info.getThreadName(), is(Thread.currentThread().getName()));
+    assertThat(info.getMDCPropertyMap().get("user"), is("alice"));
+    assertThat(info.getCallerData()[0].getClassName(), is(SQLiteLogReaderTest.class.getName()));
+    assertThat(info.getCallerData()[0].getMethodName(), is("writeEvents"));
+    assertThat(info.getThrowableProxy(), is(nullValue()));
+
+    IThrowableProxy tp = events.get(3).getThrowableProxy();
+    assertThat(tp.getClassName(), is(IllegalStateException.class.getName()));
+    assertThat(tp.getMessage(), is("outer"));
+    assertThat(tp.getStackTraceElementProxyArray()[0].getStackTraceElement().getMethodName(), is("setup"));
+    assertThat(tp.getCause().getClassName(), is(IllegalArgumentException.class.getName()));
+    assertThat(tp.getCause().getMessage(), is("inner"));
+  }
+
+  private SQLiteLogReader openReader() {
+    if (db == null) {
+      db = SQLiteDatabase.openDatabase(TEST_SQLITE_FILENAME, null, SQLiteDatabase.OPEN_READWRITE);
+    }
+    return new SQLiteLogReader(db);
+  }
+
+  private static String messages(List<SQLiteLoggingEvent> events) {
+    List<String> messages = new ArrayList<String>();
+    for (SQLiteLoggingEvent event : events) {
+      messages.add(event.getMessage());
+    }
+    return messages.toString();
+  }
+
+  /** Separates the time stamps of the events logged before and after */
+  private static void sleep() {
+    try {
+      Thread.sleep(5);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
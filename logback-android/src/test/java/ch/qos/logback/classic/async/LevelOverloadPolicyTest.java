@@ -0,0 +1,140 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.classic.async;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import ch.qos.logback.core.testUtil.DelayingListAppender;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LevelOverloadPolicyTest {
+
+  LoggerContext context = new LoggerContext();
+  Logger logger = context.getLogger(LevelOverloadPolicyTest.class);
+  LevelOverloadPolicy policy = new LevelOverloadPolicy();
+
+  @Before
+  public void setUp() {
+    policy.setContext(context);
+  }
+
+  @Test
+  public void dropsLevelsAboveTheirWatermark() {
+    policy.start();
+    assertTrue(policy.admit(event(Level.DEBUG, "m"), 59, 100));
+    assertFalse(policy.admit(event(Level.DEBUG, "m"), 60, 100));
+    assertTrue(policy.admit(event(Level.INFO, "m"), 60, 100));
+    assertFalse(policy.admit(event(Level.INFO, "m"), 80, 100));
+    assertTrue(policy.admit(event(Level.WARN, "m"), 99, 100));
+    assertTrue(policy.admit(event(Level.ERROR, "m"), 99, 100));
+  }
+
+  @Test
+  public void samplingDropsSomeEventsBelowWatermark() {
+    policy.setSamplingRange(40);
+    policy.start();
+    int admitted = 0;
+    for (int i = 0; i < 1000; i++) {
+      if (policy.admit(event(Level.INFO, "m"), 60, 100)) {
+        admitted++;
+      }
+    }
+    // halfway through the sampling range, about half of the events are dropped
+    assertTrue("admitted " + admitted, admitted > 300 && admitted < 700);
+    assertTrue(policy.admit(event(Level.INFO, "m"), 39, 100));
+  }
+
+  @Test
+  public void coalescesRepeatedMessages() {
+    policy.setCoalesceWatermark(50);
+    policy.start();
+    assertTrue(policy.admit(event(Level.WARN, "same"), 10, 100));
+    assertTrue(policy.admit(event(Level.WARN, "same"), 10, 100));
+    assertTrue(policy.admit(event(Level.WARN, "same"), 50, 100));
+    assertFalse(policy.admit(event(Level.WARN, "same"), 50, 100));
+    assertFalse(policy.admit(event(Level.WARN, "same"), 50, 100));
+    assertTrue(policy.admit(event(Level.WARN, "other"), 50, 100));
+
+    ILoggingEvent summary = policy.summarize();
+    assertEquals("Dropped 2 repeated events in last 0 milliseconds", summary.getFormattedMessage().replaceAll("in last \\d+", "in last 0"));
+  }
+
+  @Test
+  public void summaryReportsAndResetsDropCounts() {
+    policy.start();
+    assertNull(policy.summarize());
+    policy.admit(event(Level.DEBUG, "m"), 90, 100);
+    policy.admit(event(Level.DEBUG, "m"), 90, 100);
+    policy.admit(event(Level.INFO, "m"), 90, 100);
+    policy.rejected(event(Level.ERROR, "m"));
+
+    ILoggingEvent summary = policy.summarize();
+    assertEquals(Level.WARN, summary.getLevel());
+    assertEquals(AsyncAppender.class.getName(), summary.getLoggerName());
+    assertTrue(summary.getFormattedMessage(), summary.getFormattedMessage().startsWith("Dropped 2 DEBUG, 1 INFO, 1 ERROR events in last "));
+    assertNull(policy.summarize());
+  }
+
+  @Test(timeout = 5000)
+  public void asyncAppenderLogsSummaryOnStop() {
+    DelayingListAppender<ILoggingEvent> listAppender = new DelayingListAppender<ILoggingEvent>();
+    listAppender.setContext(context);
+    listAppender.setName("list");
+    listAppender.setDelay(10);
+    listAppender.start();
+    policy.setDebugWatermark(0);
+    policy.start();
+
+    AsyncAppender asyncAppender = new AsyncAppender();
+    asyncAppender.setContext(context);
+    asyncAppender.setOverloadPolicy(policy);
+    asyncAppender.addAppender(listAppender);
+    asyncAppender.start();
+    for (int i = 0; i < 10; i++) {
+      asyncAppender.doAppend(event(Level.DEBUG, "m" + i));
+    }
+    asyncAppender.doAppend(event(Level.INFO, "i"));
+    asyncAppender.stop();
+
+    assertEquals(2, listAppender.list.size());
+    assertEquals("i", listAppender.list.get(0).getFormattedMessage());
+    assertTrue(listAppender.list.get(1).getFormattedMessage().startsWith("Dropped 10 DEBUG events"));
+  }
+
+  @Test
+  public void asyncAppenderRequiresStartedPolicy() {
+    ListAppender<ILoggingEvent> listAppender = new ListAppender<ILoggingEvent>();
+    AsyncAppender asyncAppender = new AsyncAppender();
+    asyncAppender.setContext(context);
+    asyncAppender.setOverloadPolicy(policy);
+    asyncAppender.addAppender(listAppender);
+    asyncAppender.start();
+    assertFalse(asyncAppender.isStarted());
+  }
+
+  private ILoggingEvent event(Level level, String message) {
+    return new LoggingEvent(LevelOverloadPolicyTest.class.getName(), logger, level, message, null, null);
+  }
+}
@@ -169,6 +169,42 @@ public class ConverterTest {
     }
   }
 
+  @Test
+  public void abbreviationsAreCached() {
+    NamedConverter converter = new LoggerConverter();
+    this.optionList.add("20");
+    converter.setOptionList(this.optionList);
+    converter.start();
+    String first = converter.convert(le);
+    for (int i = 0; i < 4; i++) {
+      StringBuilder buf = new StringBuilder();
+      converter.write(buf, le);
+      assertEquals("c.q.l.c.p.ConverterTest", buf.toString());
+    }
+    assertEquals(1, converter.cache.size());
+    assertSame(first, converter.convert(le));
+    assertEquals(5, converter.getCacheHits());
+    assertEquals(1, converter.getCacheMisses());
+    assertEquals(5.0 / 6, converter.getCacheHitRate(), 0.001);
+  }
+
+  @Test
+  public void abbreviationCacheIsBounded() {
+    NamedConverter converter = new LoggerConverter();
+    this.optionList.add("5");
+    converter.setOptionList(this.optionList);
+    converter.start();
+    for (int i = 0; i < NamedConverter.MAX_CACHE_SIZE * 3; i++) {
+      Logger logger = lc.getLogger("a.b.c" + i);
+      LoggingEvent event = new LoggingEvent(this.getClass().getName(), logger, Level.INFO, "x", null, null);
+      StringBuilder buf = new StringBuilder();
+      converter.write(buf, event);
+      assertEquals("a.b.c" + i, buf.toString());
+      assertTrue(converter.cache.size() <= NamedConverter.MAX_CACHE_SIZE);
+    }
+    assertEquals(0, converter.getCacheHits());
+  }
+
   @Test
   public void testVeryLongLoggerName() {
     ClassicConverter converter = new LoggerConverter();
@@ -339,6 +375,22 @@ public class ConverterTest {
     assertEquals(buf0.toString(), buf1.toString());
   }
 
+  @Test
+  public void writeWithoutFormattingMatchesConvert() {
+    le.setMarker(MarkerFactory.getMarker("aMarker"));
+    List<DynamicConverter<ILoggingEvent>> converters = new ArrayList<DynamicConverter<ILoggingEvent>>();
+    converters.add(new MessageConverter());
+    converters.add(new LevelConverter());
+    converters.add(new ThreadConverter());
+    converters.add(new RelativeTimeConverter());
+    converters.add(new MarkerConverter());
+    for (DynamicConverter<ILoggingEvent> converter : converters) {
+      StringBuilder buf = new StringBuilder();
+      converter.write(buf, le);
+      assertEquals(converter.convert(le), buf.toString());
+    }
+  }
+
   @Test
   public void testSyslogStart() throws Exception {
     DynamicConverter<ILoggingEvent> converter = new SyslogStartConverter();
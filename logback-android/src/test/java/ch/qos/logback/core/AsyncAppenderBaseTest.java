@@ -13,16 +13,25 @@
  */
 package ch.qos.logback.core;
 
+import ch.qos.logback.core.async.AsyncAppenderMetrics;
+import ch.qos.logback.core.async.AsyncAppenderMetricsListener;
+import ch.qos.logback.core.async.DropReason;
+import ch.qos.logback.core.async.RingBufferQueue;
+import ch.qos.logback.core.async.WaitStrategy;
 import ch.qos.logback.core.helpers.NOPAppender;
 import ch.qos.logback.core.read.ListAppender;
 import ch.qos.logback.core.testUtil.DelayingListAppender;
 import ch.qos.logback.core.status.StatusChecker;
 import ch.qos.logback.core.testUtil.NPEAppender;
+import ch.qos.logback.core.util.Duration;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.concurrent.CountDownLatch;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -114,6 +123,122 @@ public class AsyncAppenderBaseTest {
     verify(delayingListAppender, loopLen);
   }
 
+  @Test(timeout = 2000)
+  public void noEventLossWithRingBuffer() {
+    int bufferSize = 10;
+    int loopLen = bufferSize * 2;
+    asyncAppenderBase.addAppender(delayingListAppender);
+    asyncAppenderBase.setQueueSize(bufferSize);
+    asyncAppenderBase.setRingBuffer(true);
+    asyncAppenderBase.start();
+    assertTrue(asyncAppenderBase.blockingQueue instanceof RingBufferQueue);
+    for (int i = 0; i < loopLen; i++) {
+      asyncAppenderBase.doAppend(i);
+    }
+    asyncAppenderBase.stop();
+    verify(delayingListAppender, loopLen);
+    for (int i = 0; i < loopLen; i++) {
+      assertEquals(Integer.valueOf(i), delayingListAppender.list.get(i));
+    }
+  }
+
+  @Test(timeout = 2000)
+  public void lossyAppenderWithRingBufferShouldOnlyLoseCertainEvents() {
+    int bufferSize = 5;
+    int loopLen = bufferSize * 2;
+    lossyAsyncAppender.addAppender(delayingListAppender);
+    lossyAsyncAppender.setQueueSize(bufferSize);
+    lossyAsyncAppender.setDiscardingThreshold(1);
+    lossyAsyncAppender.setRingBuffer(true);
+    lossyAsyncAppender.setWaitStrategy(WaitStrategy.YIELD);
+    lossyAsyncAppender.start();
+    for (int i = 0; i < loopLen; i++) {
+      lossyAsyncAppender.doAppend(i);
+    }
+    lossyAsyncAppender.stop();
+    verify(delayingListAppender, loopLen - 2);
+  }
+
+  @Test(timeout = 2000)
+  public void noEventLossWithBatching() {
+    int bufferSize = 10;
+    int loopLen = bufferSize * 5;
+    asyncAppenderBase.addAppender(delayingListAppender);
+    asyncAppenderBase.setQueueSize(bufferSize);
+    asyncAppenderBase.setMaxBatchSize(4);
+    asyncAppenderBase.start();
+    for (int i = 0; i < loopLen; i++) {
+      asyncAppenderBase.doAppend(i);
+    }
+    asyncAppenderBase.stop();
+    verify(delayingListAppender, loopLen);
+    for (int i = 0; i < loopLen; i++) {
+      assertEquals(Integer.valueOf(i), delayingListAppender.list.get(i));
+    }
+  }
+
+  @Test
+  public void invalidMaxBatchSizeShouldResultInNonStartedAppender() {
+    asyncAppenderBase.addAppender(new NOPAppender<Integer>());
+    asyncAppenderBase.setMaxBatchSize(0);
+    asyncAppenderBase.start();
+    assertFalse(asyncAppenderBase.isStarted());
+    statusChecker.assertContainsMatch("Invalid max batch size");
+  }
+
+  @Test(timeout = 2000)
+  public void metricsCountQueuedAndDiscardedEvents() {
+    int bufferSize = 5;
+    int loopLen = bufferSize * 2;
+    lossyAsyncAppender.addAppender(delayingListAppender);
+    lossyAsyncAppender.setQueueSize(bufferSize);
+    lossyAsyncAppender.setDiscardingThreshold(1);
+    lossyAsyncAppender.setMetrics(true);
+    lossyAsyncAppender.start();
+    for (int i = 0; i < loopLen; i++) {
+      lossyAsyncAppender.doAppend(i);
+    }
+    lossyAsyncAppender.stop();
+    verify(delayingListAppender, loopLen - 2);
+
+    AsyncAppenderMetrics metrics = lossyAsyncAppender.getMetrics();
+    assertEquals(loopLen - 2, metrics.getEnqueued());
+    assertEquals(2, metrics.getDropped(DropReason.DISCARDED));
+    assertEquals(2, metrics.getDropped());
+    assertTrue(metrics.getQueueDepthHighWaterMark() <= bufferSize);
+    assertTrue(metrics.getBatchSizes().getCount() > 0);
+    // the base class does not know the time stamp of its events
+    assertEquals(0, metrics.getLatency().getCount());
+  }
+
+  @Test(timeout = 2000)
+  public void metricsAreReportedToListeners() throws InterruptedException {
+    final CountDownLatch reported = new CountDownLatch(1);
+    asyncAppenderBase.addAppender(listAppender);
+    asyncAppenderBase.setMetrics(true);
+    asyncAppenderBase.setMetricsReportPeriod(Duration.buildByMilliseconds(10));
+    asyncAppenderBase.addMetricsListener(new AsyncAppenderMetricsListener() {
+      public void report(AsyncAppenderMetrics metrics) {
+        if (metrics.getEnqueued() == 1) {
+          reported.countDown();
+        }
+      }
+    });
+    asyncAppenderBase.start();
+    asyncAppenderBase.doAppend(0);
+    reported.await();
+    asyncAppenderBase.stop();
+  }
+
+  @Test
+  public void noMetricsByDefault() {
+    asyncAppenderBase.addAppender(listAppender);
+    asyncAppenderBase.start();
+    asyncAppenderBase.doAppend(0);
+    asyncAppenderBase.stop();
+    assertNull(asyncAppenderBase.getMetrics());
+  }
+
   @Test(timeout = 2000)
    public void eventLossIfNeverBlock() {
     int bufferSize = 10;
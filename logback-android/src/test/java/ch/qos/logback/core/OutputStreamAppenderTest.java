@@ -14,15 +14,21 @@
 package ch.qos.logback.core;
 
 
+import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertTrue;
 
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import ch.qos.logback.core.encoder.DummyEncoder;
 import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+import ch.qos.logback.core.filter.Filter;
+import ch.qos.logback.core.spi.FilterReply;
 import ch.qos.logback.core.pattern.parser.SamplePatternLayout;
 
 public class OutputStreamAppenderTest {
@@ -82,6 +88,59 @@ public class OutputStreamAppenderTest {
     headerFooterCheck(FILE_HEADER, PRESENTATION_HEADER, PRESENTATION_FOOTER, FILE_FOOTER);
   }
   
+  @Test
+  public void batchIsWrittenWithSingleFlush() {
+    OutputStreamAppender<Object> wa = new OutputStreamAppender<Object>();
+    wa.setContext(context);
+    FlushCountingOutputStream out = new FlushCountingOutputStream();
+    wa.setEncoder(new DummyEncoder<Object>("x"));
+    wa.setOutputStream(out);
+    wa.start();
+    int flushesBeforeBatch = out.flushCount;
+
+    List<Object> batch = new ArrayList<Object>();
+    for (int i = 0; i < 10; i++) {
+      batch.add(i);
+    }
+    wa.doAppendBatch(batch);
+
+    assertEquals("xxxxxxxxxx", out.toString());
+    assertEquals(flushesBeforeBatch + 1, out.flushCount);
+  }
+
+  @Test
+  public void batchHonorsFilters() {
+    OutputStreamAppender<Integer> wa = new OutputStreamAppender<Integer>();
+    wa.setContext(context);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    wa.setEncoder(new DummyEncoder<Integer>("x"));
+    wa.setOutputStream(baos);
+    wa.addFilter(new Filter<Integer>() {
+      public FilterReply decide(Integer i) {
+        return i % 2 == 0 ? FilterReply.DENY : FilterReply.NEUTRAL;
+      }
+    });
+    wa.start();
+
+    List<Integer> batch = new ArrayList<Integer>();
+    for (int i = 0; i < 10; i++) {
+      batch.add(i);
+    }
+    wa.doAppendBatch(batch);
+
+    assertEquals("xxxxx", baos.toString());
+    assertEquals(10, batch.size());
+  }
+
+  static class FlushCountingOutputStream extends ByteArrayOutputStream {
+    int flushCount;
+
+    @Override
+    public void flush() {
+      flushCount++;
+    }
+  }
+
   public void headerFooterCheck(String fileHeader, String presentationHeader, String presentationFooter, String fileFooter) {
     OutputStreamAppender<Object> wa = new OutputStreamAppender<Object>();
     wa.setContext(context);
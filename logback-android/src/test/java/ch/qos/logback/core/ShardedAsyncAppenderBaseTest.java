@@ -0,0 +1,170 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core;
+
+import ch.qos.logback.core.read.ListAppender;
+import ch.qos.logback.core.status.StatusChecker;
+import ch.qos.logback.core.testUtil.DelayingListAppender;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedAsyncAppenderBaseTest {
+
+  Context context = new ContextBase();
+  ShardedAsyncAppenderBase<int[]> shardedAppender = new ShardedAsyncAppenderBase<int[]>();
+  ListAppender<int[]> listAppender = new ListAppender<int[]>();
+  ListAppender<int[]> otherListAppender = new ListAppender<int[]>();
+  StatusChecker statusChecker = new StatusChecker(context);
+
+  @Before
+  public void setUp() {
+    shardedAppender.setContext(context);
+    shardedAppender.setName("sharded");
+    listAppender.setContext(context);
+    listAppender.setName("list");
+    listAppender.start();
+    otherListAppender.setContext(context);
+    otherListAppender.setName("other");
+    otherListAppender.start();
+  }
+
+  @Test
+  public void noAttachedAppenderShouldResultInNonStartedAppender() {
+    shardedAppender.start();
+    assertFalse(shardedAppender.isStarted());
+    statusChecker.assertContainsMatch("No attached appenders found.");
+  }
+
+  @Test
+  public void invalidShardCountShouldResultInNonStartedAppender() {
+    shardedAppender.addAppender(listAppender);
+    shardedAppender.setShardCount(0);
+    shardedAppender.start();
+    assertFalse(shardedAppender.isStarted());
+    statusChecker.assertContainsMatch("Invalid shard count");
+  }
+
+  @Test(timeout = 5000)
+  public void everyAppenderGetsAllEventsInPerThreadOrder() throws InterruptedException {
+    final int threadCount = 4;
+    final int perThread = 500;
+    shardedAppender.setShardCount(3);
+    shardedAppender.setQueueSize(16);
+    shardedAppender.addAppender(listAppender);
+    shardedAppender.addAppender(otherListAppender);
+    shardedAppender.start();
+    assertTrue(shardedAppender.isStarted());
+
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < threadCount; t++) {
+      final int id = t;
+      Thread thread = new Thread() {
+        public void run() {
+          for (int i = 0; i < perThread; i++) {
+            shardedAppender.doAppend(new int[] { id, i });
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    shardedAppender.stop();
+
+    assertFalse(listAppender.isStarted());
+    assertFalse(otherListAppender.isStarted());
+    verifyPerThreadOrder(listAppender, threadCount, perThread);
+    verifyPerThreadOrder(otherListAppender, threadCount, perThread);
+    statusChecker.assertIsErrorFree();
+  }
+
+  @Test(timeout = 2000)
+  public void slowAppenderDoesNotStallOthers() {
+    DelayingListAppender<int[]> slowAppender = new DelayingListAppender<int[]>();
+    slowAppender.setContext(context);
+    slowAppender.setName("slow");
+    slowAppender.setDelay(5000); // something greater than the test timeout
+    slowAppender.start();
+
+    int loopLen = 100;
+    shardedAppender.setShardCount(1);
+    shardedAppender.setQueueSize(10);
+    shardedAppender.setNeverBlock(true);
+    shardedAppender.setMaxFlushTime(50);
+    shardedAppender.addAppender(slowAppender);
+    shardedAppender.addAppender(listAppender);
+    shardedAppender.start();
+    for (int i = 0; i < loopLen; i++) {
+      shardedAppender.doAppend(new int[] { 0, i });
+    }
+    // give the fast worker a chance to catch up before stopping
+    while (shardedAppender.lanes[1][0].getNumberOfElementsInQueue() > 0) {
+      Thread.yield();
+    }
+    shardedAppender.stop();
+    assertTrue(listAppender.list.size() > 0);
+    assertTrue(slowAppender.list.size() <= 1);
+  }
+
+  @Test(timeout = 5000)
+  public void appendersAreStoppedOnlyOnceEveryQueueIsFlushed() throws InterruptedException {
+    DelayingListAppender<int[]> slowAppender = new DelayingListAppender<int[]>();
+    slowAppender.setContext(context);
+    slowAppender.setName("slow");
+    slowAppender.setDelay(50);
+    slowAppender.start();
+
+    int loopLen = 10;
+    shardedAppender.setShardCount(1);
+    shardedAppender.setQueueSize(loopLen);
+    shardedAppender.setMaxFlushTime(10);
+    shardedAppender.addAppender(slowAppender);
+    shardedAppender.start();
+    for (int i = 0; i < loopLen; i++) {
+      shardedAppender.doAppend(new int[] { 0, i });
+    }
+    shardedAppender.stop();
+    assertTrue(slowAppender.isStarted());
+    statusChecker.assertContainsMatch("1 queue\\(s\\) still flushing");
+
+    while (slowAppender.isStarted()) {
+      Thread.sleep(10);
+    }
+    assertEquals(loopLen, slowAppender.list.size());
+  }
+
+  @Test
+  public void numberOfElementsInQueueIsZeroBeforeStart() {
+    shardedAppender.addAppender(listAppender);
+    assertEquals(0, shardedAppender.getNumberOfElementsInQueue());
+  }
+
+  private void verifyPerThreadOrder(ListAppender<int[]> la, int threadCount, int perThread) {
+    assertEquals(threadCount * perThread, la.list.size());
+    int[] next = new int[threadCount];
+    for (int[] e : la.list) {
+      assertEquals(next[e[0]], e[1]);
+      next[e[0]]++;
+    }
+  }
+}
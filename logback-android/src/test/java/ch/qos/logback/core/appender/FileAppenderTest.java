@@ -19,6 +19,9 @@ import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertNull;
 
 import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
 import java.util.List;
 
 import ch.qos.logback.core.recovery.ResilientFileOutputStream;
@@ -28,6 +31,7 @@ import org.junit.Test;
 
 import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.FileAppender;
+import ch.qos.logback.core.MappedFileAppender;
 import ch.qos.logback.core.NOPOutputStream;
 import ch.qos.logback.core.encoder.DummyEncoder;
 import ch.qos.logback.core.encoder.NopEncoder;
@@ -100,6 +104,43 @@ public class FileAppenderTest extends AbstractAppenderTest<Object> {
     assertTrue("failed to delete " + parent.getAbsolutePath(), parent.delete());
   }
 
+  @Test
+  public void mappedFileAppender() {
+    String filename = CoreTestConstants.OUTPUT_DIR_PREFIX + diff + "fat-mapped.log";
+    File file = new File(filename);
+    MappedFileAppender<Object> appender = new MappedFileAppender<Object>();
+    appender.setEncoder(new DummyEncoder<Object>());
+    appender.setAppend(false);
+    appender.setFile(filename);
+    appender.setName("mapped");
+    appender.setContext(context);
+    appender.start();
+    assertTrue(appender.isMemoryMapped());
+    for (int i = 0; i < 3; i++) {
+      appender.doAppend(new Object());
+    }
+    appender.stop();
+
+    assertEquals(3 * DummyEncoder.DUMMY.length(), file.length());
+    assertTrue("failed to delete " + file.getAbsolutePath(), file.delete());
+  }
+
+  @Test
+  public void memoryMappingIsDisabledInPrudentMode() {
+    String filename = CoreTestConstants.OUTPUT_DIR_PREFIX + diff + "fat-mappedPrudent.log";
+    MappedFileAppender<Object> appender = new MappedFileAppender<Object>();
+    appender.setEncoder(new DummyEncoder<Object>());
+    appender.setFile(filename);
+    appender.setName("mappedPrudent");
+    appender.setContext(context);
+    appender.setPrudent(true);
+    appender.start();
+    assertTrue(appender.isStarted());
+    assertFalse(appender.isMemoryMapped());
+    appender.stop();
+    new File(filename).delete();
+  }
+
   @Test
   public void testPrudentModeLogicalImplications() {
     String filename = CoreTestConstants.OUTPUT_DIR_PREFIX + diff + "fat-testPrudentModeLogicalImplications.txt";
@@ -134,6 +175,30 @@ public class FileAppenderTest extends AbstractAppenderTest<Object> {
     assertTrue("failed to delete " + file.getAbsolutePath(), file.delete());
   }
 
+  @Test
+  public void prudentBatchIsWrittenUnderFileLock() throws Exception {
+    String filename = CoreTestConstants.OUTPUT_DIR_PREFIX + diff + "fat-prudentBatch.log";
+    File file = new File(filename);
+    FileAppender<Object> fa = getFileAppender(filename);
+    fa.start();
+
+    RandomAccessFile other = new RandomAccessFile(file, "rw");
+    FileLock held = other.getChannel().lock();
+    try {
+      // the lock is held in this JVM, so the appender fails to take it
+      // instead of waiting for it
+      fa.doAppendBatch(Arrays.<Object>asList("a", "b"));
+      assertEquals(0, file.length());
+    } finally {
+      held.release();
+      other.close();
+    }
+
+    fa.doAppendBatch(Arrays.<Object>asList("a", "b"));
+    fa.stop();
+    assertTrue(file.length() > 0);
+  }
+
   private FileAppenderFriend<Object> getFileAppender(String filename) {
     FileAppenderFriend<Object> fa = new FileAppenderFriend<Object>();
     fa.setEncoder(new DummyEncoder<Object>());
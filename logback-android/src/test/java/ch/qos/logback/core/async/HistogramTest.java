@@ -0,0 +1,65 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.async;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HistogramTest {
+
+  Histogram histogram = new Histogram();
+
+  @Test
+  public void emptyHistogram() {
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getPercentile(0.99));
+    assertEquals(0.0, histogram.getMean(), 0.0);
+  }
+
+  @Test
+  public void valuesLandInPowerOfTwoBuckets() {
+    histogram.record(0);
+    histogram.record(1);
+    histogram.record(2);
+    histogram.record(3);
+    histogram.record(1000);
+    long[] buckets = histogram.getBucketCounts();
+    assertEquals(1, buckets[0]);
+    assertEquals(1, buckets[1]);
+    assertEquals(2, buckets[2]);
+    assertEquals(1, buckets[10]);
+    assertEquals(5, histogram.getCount());
+    assertEquals(1006, histogram.getSum());
+    assertEquals(1000, histogram.getMax());
+  }
+
+  @Test
+  public void percentilesAreBucketUpperBounds() {
+    for (int i = 0; i < 99; i++) {
+      histogram.record(5);
+    }
+    histogram.record(100);
+    assertEquals(7, histogram.getPercentile(0.5));
+    assertEquals(7, histogram.getPercentile(0.99));
+    assertEquals(100, histogram.getPercentile(1.0));
+  }
+
+  @Test
+  public void negativeValuesCountAsZero() {
+    histogram.record(-5);
+    assertEquals(1, histogram.getBucketCounts()[0]);
+    assertEquals(0, histogram.getMax());
+  }
+}
@@ -0,0 +1,146 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.async;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferQueueTest {
+
+  @Test
+  public void offerAndPollAreFifo() {
+    RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>(3);
+    for (int lap = 0; lap < 5; lap++) {
+      assertTrue(queue.offer(1));
+      assertTrue(queue.offer(2));
+      assertTrue(queue.offer(3));
+      assertFalse(queue.offer(4));
+      assertEquals(3, queue.size());
+      assertEquals(0, queue.remainingCapacity());
+      assertEquals(Integer.valueOf(1), queue.peek());
+      assertEquals(Integer.valueOf(1), queue.poll());
+      assertEquals(Integer.valueOf(2), queue.poll());
+      assertEquals(Integer.valueOf(3), queue.poll());
+      assertNull(queue.poll());
+      assertEquals(3, queue.remainingCapacity());
+    }
+  }
+
+  @Test
+  public void drainToHonorsMaxElements() {
+    RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>(10);
+    for (int i = 0; i < 7; i++) {
+      queue.offer(i);
+    }
+    List<Integer> drained = new ArrayList<Integer>();
+    assertEquals(5, queue.drainTo(drained, 5));
+    assertEquals(2, queue.drainTo(drained));
+    assertEquals(7, drained.size());
+    for (int i = 0; i < 7; i++) {
+      assertEquals(Integer.valueOf(i), drained.get(i));
+    }
+  }
+
+  @Test
+  public void iteratorIsSnapshotOfQueuedElements() {
+    RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>(4);
+    queue.offer(1);
+    queue.offer(2);
+    queue.poll();
+    queue.offer(3);
+    List<Integer> seen = new ArrayList<Integer>();
+    for (Integer i : queue) {
+      seen.add(i);
+    }
+    assertEquals(2, seen.size());
+    assertEquals(Integer.valueOf(2), seen.get(0));
+    assertEquals(Integer.valueOf(3), seen.get(1));
+  }
+
+  @Test(timeout = 2000)
+  public void timedOperationsExpire() throws InterruptedException {
+    RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>(1, WaitStrategy.YIELD);
+    assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    assertTrue(queue.offer(1, 10, TimeUnit.MILLISECONDS));
+    assertFalse(queue.offer(2, 10, TimeUnit.MILLISECONDS));
+  }
+
+  @Test(timeout = 2000)
+  public void takeIsInterruptible() throws InterruptedException {
+    final RingBufferQueue<Integer> queue = new RingBufferQueue<Integer>(1);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    Thread consumer = new Thread() {
+      public void run() {
+        try {
+          queue.take();
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+        }
+      }
+    };
+    consumer.start();
+    consumer.interrupt();
+    assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+  }
+
+  @Test(timeout = 10000)
+  public void concurrentProducersLoseNothingAndKeepPerProducerOrder() throws InterruptedException {
+    // SPIN is left out on purpose: busy-spinning producers and consumer starve
+    // each other on machines with fewer cores than threads
+    concurrentProducers(WaitStrategy.YIELD);
+    concurrentProducers(WaitStrategy.PARK);
+  }
+
+  private void concurrentProducers(WaitStrategy waitStrategy) throws InterruptedException {
+    final int producerCount = 4;
+    final int perProducer = 20000;
+    final RingBufferQueue<int[]> queue = new RingBufferQueue<int[]>(64, waitStrategy);
+    Thread[] producers = new Thread[producerCount];
+    for (int p = 0; p < producerCount; p++) {
+      final int id = p;
+      producers[p] = new Thread() {
+        public void run() {
+          for (int i = 0; i < perProducer; i++) {
+            try {
+              queue.put(new int[] { id, i });
+            } catch (InterruptedException e) {
+              return;
+            }
+          }
+        }
+      };
+      producers[p].start();
+    }
+
+    int[] next = new int[producerCount];
+    for (int n = 0; n < producerCount * perProducer; n++) {
+      int[] e = queue.take();
+      assertEquals(waitStrategy.toString(), next[e[0]], e[1]);
+      next[e[0]]++;
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    assertNull(queue.poll());
+  }
+}
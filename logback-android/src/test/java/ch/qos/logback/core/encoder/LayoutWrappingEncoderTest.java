@@ -0,0 +1,149 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import ch.qos.logback.core.Context;
+import ch.qos.logback.core.ContextBase;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.layout.DummyLayout;
+import ch.qos.logback.core.pattern.parser.SamplePatternLayout;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LayoutWrappingEncoderTest {
+
+  Context context = new ContextBase();
+
+  @Test
+  public void streamingMatchesByteArrayEncoding() throws IOException {
+    char[] big = new char[3 * LayoutWrappingEncoder.BYTE_BUFFER_SIZE];
+    Arrays.fill(big, '\u00e9');
+    String[] messages = { "", "hello\n", "\u00e9t\u00e9 \u65e5\u672c \ud83d\ude00", new String(big), "broken \ud800 surrogate" };
+    String[] charsets = { "UTF-8", "ISO-8859-1", "US-ASCII", "UTF-16" };
+    for (String charsetName : charsets) {
+      for (String message : messages) {
+        LayoutWrappingEncoder<Object> encoder = encoderFor(message, Charset.forName(charsetName));
+        assertTrue(encoder.isStreamingSupported());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // twice, to make sure reused buffers are reset
+        encoder.encode(null, out);
+        encoder.encode(null, out);
+        byte[] once = encoder.encode(null);
+        byte[] expected = new byte[2 * once.length];
+        System.arraycopy(once, 0, expected, 0, once.length);
+        System.arraycopy(once, 0, expected, once.length, once.length);
+        assertArrayEquals(charsetName + " " + message.length(), expected, out.toByteArray());
+      }
+    }
+  }
+
+  @Test
+  public void optimizedPatternLayoutStreamsSameBytes() throws IOException {
+    char[] big = new char[LayoutWrappingEncoder.MAX_RETAINED_CHAR_BUFFER_SIZE + 1];
+    Arrays.fill(big, 'x');
+    String[] patterns = { "%hello %OTT \u00e9t\u00e9 \ud83d\ude00%n", new String(big) + "%OTT" };
+    for (String pattern : patterns) {
+      SamplePatternLayout<Object> layout = new SamplePatternLayout<Object>();
+      layout.setContext(context);
+      layout.setPattern(pattern);
+      layout.setOptimized(true);
+      layout.start();
+      LayoutWrappingEncoder<Object> encoder = new LayoutWrappingEncoder<Object>();
+      encoder.setContext(context);
+      encoder.setLayout(layout);
+      encoder.setCharset(Charset.forName("UTF-8"));
+      encoder.start();
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      // twice, to make sure the reused builder is reset
+      encoder.encode(null, out);
+      encoder.encode(null, out);
+      String once = layout.doLayout(null);
+      assertEquals(once + once, new String(out.toByteArray(), "UTF-8"));
+    }
+  }
+
+  @Test
+  public void overridingEncodeDisablesStreaming() {
+    LayoutWrappingEncoder<Object> encoder = new LayoutWrappingEncoder<Object>() {
+      @Override
+      public byte[] encode(Object event) {
+        return "custom".getBytes();
+      }
+    };
+    assertFalse(encoder.isStreamingSupported());
+
+    encoder.setContext(context);
+    OutputStreamAppender<Object> appender = new OutputStreamAppender<Object>();
+    appender.setContext(context);
+    appender.setEncoder(encoder);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    appender.setOutputStream(out);
+    appender.start();
+    appender.doAppend(new Object());
+    assertEquals("custom", out.toString());
+  }
+
+  @Test
+  public void overridingBothEncodeMethodsKeepsStreaming() {
+    LayoutWrappingEncoder<Object> encoder = new LayoutWrappingEncoder<Object>() {
+      @Override
+      public byte[] encode(Object event) {
+        return "custom".getBytes();
+      }
+
+      @Override
+      public void encode(Object event, OutputStream out) throws IOException {
+        out.write(encode(event));
+      }
+    };
+    assertTrue(encoder.isStreamingSupported());
+  }
+
+  @Test
+  public void appenderWritesThroughStreamingEncoder() {
+    OutputStreamAppender<Object> appender = new OutputStreamAppender<Object>();
+    appender.setContext(context);
+    appender.setEncoder(encoderFor("x\n", Charset.forName("UTF-8")));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    appender.setOutputStream(out);
+    appender.start();
+    appender.doAppend(new Object());
+    appender.doAppend(new Object());
+    assertEquals("x\nx\n", out.toString());
+  }
+
+  private LayoutWrappingEncoder<Object> encoderFor(String message, Charset charset) {
+    DummyLayout<Object> layout = new DummyLayout<Object>(message);
+    layout.setContext(context);
+    layout.start();
+    LayoutWrappingEncoder<Object> encoder = new LayoutWrappingEncoder<Object>();
+    encoder.setContext(context);
+    encoder.setLayout(layout);
+    encoder.setCharset(charset);
+    encoder.start();
+    return encoder;
+  }
+}
@@ -0,0 +1,60 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2013, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PatternLayoutBaseTest {
+
+  @Test
+  public void mergeLiteralsJoinsAdjacentLiterals() {
+    Converter<Object> head = new LiteralConverter<Object>("a");
+    Converter<Object> b = new LiteralConverter<Object>("b");
+    Converter<Object> hello = new ConverterHello();
+    Converter<Object> c = new LiteralConverter<Object>("c");
+    Converter<Object> d = new LiteralConverter<Object>("d");
+    head.setNext(b);
+    b.setNext(hello);
+    hello.setNext(c);
+    c.setNext(d);
+
+    Converter<Object> merged = PatternLayoutBase.mergeLiterals(head);
+
+    assertEquals("ab", merged.convert(null));
+    assertTrue(merged.getNext() == hello);
+    assertEquals("cd", hello.getNext().convert(null));
+    assertNull(hello.getNext().getNext());
+    // the original converters are left as they were
+    assertEquals("a", head.convert(null));
+    assertEquals("c", c.convert(null));
+  }
+
+  @Test
+  public void mergeLiteralsDescendsIntoCompositeConverters() {
+    CompositeConverter<Object> composite = new IdentityCompositeConverter<Object>();
+    Converter<Object> child = new LiteralConverter<Object>("x");
+    child.setNext(new LiteralConverter<Object>("y"));
+    composite.setChildConverter(child);
+
+    assertTrue(PatternLayoutBase.mergeLiterals(composite) == composite);
+
+    assertEquals("xy", composite.getChildConverter().convert(null));
+    assertNull(composite.getChildConverter().getNext());
+    assertEquals("x", child.convert(null));
+  }
+}
@@ -22,8 +22,14 @@ import ch.qos.logback.core.util.CoreTestConstants;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 
@@ -41,6 +47,93 @@ public class ResilientOutputStreamTest {
     file.mkdirs();
   }
 
+  @Test
+  public void countStartsAtFileLengthAndIncludesBufferedBytes() throws Exception {
+    File file = new File(CoreTestConstants.OUTPUT_DIR_PREFIX+"resilient-count"+diff+".log");
+    ResilientFileOutputStream rfos = new ResilientFileOutputStream(file, true, FileAppender.DEFAULT_BUFFER_SIZE);
+    rfos.setContext(context);
+    rfos.write("0123456789".getBytes());
+    rfos.close();
+
+    rfos = new ResilientFileOutputStream(file, true, FileAppender.DEFAULT_BUFFER_SIZE);
+    rfos.setContext(context);
+    assertEquals(10, rfos.getCount());
+    rfos.write("abcde".getBytes());
+    rfos.write('f');
+    assertEquals(16, rfos.getCount());
+    assertEquals(10, file.length());
+    rfos.close();
+
+    rfos = new ResilientFileOutputStream(file, false, FileAppender.DEFAULT_BUFFER_SIZE);
+    assertEquals(0, rfos.getCount());
+    rfos.close();
+  }
+
+  @Test
+  public void mappedStreamWritesAcrossRegionsAndTruncatesOnClose() throws Exception {
+    File file = new File(CoreTestConstants.OUTPUT_DIR_PREFIX+"resilient-mapped"+diff+".log");
+    ResilientFileOutputStream rfos = new ResilientFileOutputStream(file, false, FileAppender.DEFAULT_BUFFER_SIZE, 8);
+    rfos.setContext(context);
+    assertNull(rfos.getChannel());
+    rfos.write("0123456789".getBytes());
+    rfos.write('a');
+    // mapping extends the file to the end of the second region
+    assertEquals(16, file.length());
+    rfos.close();
+    assertEquals(11, file.length());
+
+    rfos = new ResilientFileOutputStream(file, true, FileAppender.DEFAULT_BUFFER_SIZE, 8);
+    rfos.setContext(context);
+    rfos.write("bcdefghijklmnopqrstuvwxyz".getBytes());
+    assertEquals(36, rfos.getCount());
+    rfos.close();
+    assertEquals("0123456789abcdefghijklmnopqrstuvwxyz", new String(readFully(file)));
+  }
+
+  @Test
+  public void mappedStreamTrimsPaddingLeftByCrash() throws Exception {
+    File file = new File(CoreTestConstants.OUTPUT_DIR_PREFIX+"resilient-mapped-crash"+diff+".log");
+    // as left by a process that died with its second region mapped
+    FileOutputStream fos = new FileOutputStream(file);
+    fos.write("0123456789".getBytes());
+    fos.write(new byte[6]);
+    fos.close();
+
+    ResilientFileOutputStream rfos = new ResilientFileOutputStream(file, true, FileAppender.DEFAULT_BUFFER_SIZE, 8);
+    rfos.setContext(context);
+    assertEquals(10, rfos.getCount());
+    rfos.write("abc".getBytes());
+    rfos.close();
+    assertEquals("0123456789abc", new String(readFully(file)));
+  }
+
+  @Test
+  public void mappedStreamKeepsTrailingZerosWrittenBeforeClose() throws Exception {
+    File file = new File(CoreTestConstants.OUTPUT_DIR_PREFIX+"resilient-mapped-zeros"+diff+".log");
+    ResilientFileOutputStream rfos = new ResilientFileOutputStream(file, false, FileAppender.DEFAULT_BUFFER_SIZE, 8);
+    rfos.setContext(context);
+    rfos.write(new byte[] { 'a', 'b', 'c', 0, 0 });
+    rfos.close();
+
+    rfos = new ResilientFileOutputStream(file, true, FileAppender.DEFAULT_BUFFER_SIZE, 8);
+    rfos.setContext(context);
+    assertEquals(5, rfos.getCount());
+    rfos.write(new byte[] { 0, 'd' });
+    rfos.close();
+    assertEquals("abc\0\0\0d", new String(readFully(file)));
+  }
+
+  private static byte[] readFully(File file) throws IOException {
+    byte[] bytes = new byte[(int) file.length()];
+    DataInputStream in = new DataInputStream(new FileInputStream(file));
+    try {
+      in.readFully(bytes);
+    } finally {
+      in.close();
+    }
+    return bytes;
+  }
+
   @Test
   public void verifyRecuperationAfterFailure() throws Exception {
     File file = new File(CoreTestConstants.OUTPUT_DIR_PREFIX+"resilient"+diff+".log");
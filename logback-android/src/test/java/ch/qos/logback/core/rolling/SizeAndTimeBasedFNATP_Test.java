@@ -24,12 +24,14 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class SizeAndTimeBasedFNATP_Test extends ScaffoldingForRollingTests {
   private SizeAndTimeBasedFNATP<Object> sizeAndTimeBasedFNATP = null;
@@ -94,6 +96,41 @@ public class SizeAndTimeBasedFNATP_Test extends ScaffoldingForRollingTests {
   }
 
 
+  @Test
+  public void predictsNextFileOnSizeAndOnTime() {
+    initRollingFileAppender(rfa1, null);
+    initPolicies(rfa1, tbrp1, randomOutputDir + "predict-%d{" + DATE_PATTERN_WITH_SECONDS + "}-%i.txt", 100, currentTime, 0);
+
+    List<String> expected = new ArrayList<String>();
+    expected.add(randomOutputDir + "predict-" + SDF.format(getMillisOfCurrentPeriodsStart()) + "-1.txt");
+    expected.add(randomOutputDir + "predict-" + SDF.format(getMillisOfCurrentPeriodsStart() + 1000) + "-0.txt");
+    assertEquals(expected, tbrp1.getNextActiveFileNames());
+  }
+
+  @Test
+  public void lowLatencyRollover() throws IOException {
+    initRollingFileAppender(rfa1, null);
+    rfa1.setLowLatencyRollover(true);
+    initPolicies(rfa1, tbrp1, randomOutputDir + "lowLatency-%d{" + DATE_PATTERN_WITH_SECONDS + "}-%i.txt", 50, currentTime, 0);
+
+    // rollovers both on size and on time
+    int runLength = 40;
+    String prefix = "Hello---";
+    for (int i = 0; i < runLength; i++) {
+      rfa1.doAppend(prefix + i);
+      incCurrentTime(150);
+      tbrp1.timeBasedFileNamingAndTriggeringPolicy.setCurrentTime(currentTime);
+    }
+    rfa1.stop();
+    tbrp1.stop();
+
+    // the files opened ahead of rollover but not used are gone
+    for (File file : getFilesInDirectory(randomOutputDir)) {
+      assertTrue(file.getName(), file.length() > 0);
+    }
+    sortedContentCheck(randomOutputDir, runLength, prefix);
+  }
+
   void generic(String testId, String stem, boolean withSecondPhase, String compressionSuffix) throws IOException, InterruptedException, ExecutionException {
     String file = (stem != null) ? randomOutputDir + stem : null;
     initRollingFileAppender(rfa1, file);
@@ -13,16 +13,28 @@
  */
 package ch.qos.logback.core.rolling;
 
+import ch.qos.logback.core.CoreConstants;
 import ch.qos.logback.core.encoder.EchoEncoder;
+import ch.qos.logback.core.rolling.helper.RenameUtil;
 import ch.qos.logback.core.util.CoreTestConstants;
 import ch.qos.logback.core.util.FileSize;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 
 public class SizeBasedRollingTest extends ScaffoldingForRollingTests {
 
@@ -64,6 +76,11 @@ public class SizeBasedRollingTest extends ScaffoldingForRollingTests {
 
 
   void generic(String testName, String fileName, String filenamePattern, List<String> expectedFilenameList) throws InterruptedException, IOException {
+    generic(testName, fileName, filenamePattern, expectedFilenameList, 40, 10);
+  }
+
+  void generic(String testName, String fileName, String filenamePattern, List<String> expectedFilenameList,
+               int runLength, long pause) throws InterruptedException, IOException {
     rfa.setName("ROLLING");
     initRFA(randomOutputDir + fileName);
 
@@ -78,10 +95,9 @@ public class SizeBasedRollingTest extends ScaffoldingForRollingTests {
     sizeBasedTriggeringPolicy.start();
     rfa.start();
 
-    int runLength = 40;
     String prefix = "hello";
     for (int i = 0; i < runLength; i++){
-      Thread.sleep(10);
+      Thread.sleep(pause);
       rfa.doAppend(prefix + i);
     }
     rfa.stop();
@@ -90,6 +106,51 @@ public class SizeBasedRollingTest extends ScaffoldingForRollingTests {
     reverseSortedContentCheck(randomOutputDir, runLength, prefix);
   }
 
+  @Test
+  public void rolloverHappensAtExactSizeWithoutDelay() {
+    exactSizeTest(false);
+  }
+
+  @Test
+  public void rolloverHappensAtExactSizeInBatch() {
+    exactSizeTest(true);
+  }
+
+  void exactSizeTest(boolean batch) {
+    rfa.setName("ROLLING");
+    initRFA(randomOutputDir + "a-sizeBased-exact.log");
+    sizeBasedTriggeringPolicy.setMaxFileSize(new FileSize(100));
+    fwrp.setMinIndex(0);
+    fwrp.setFileNamePattern(randomOutputDir + "sizeBased-exact.%i");
+    rfa.triggeringPolicy = sizeBasedTriggeringPolicy;
+    rfa.rollingPolicy = fwrp;
+    fwrp.start();
+    sizeBasedTriggeringPolicy.start();
+    rfa.start();
+
+    // no pauses between events: the size is checked on every one of them
+    List<Object> events = new ArrayList<Object>();
+    for (int i = 0; i < 40; i++) {
+      events.add("hello" + i);
+    }
+    if (batch) {
+      rfa.doAppendBatch(events);
+    } else {
+      for (Object event : events) {
+        rfa.doAppend(event);
+      }
+    }
+    assertEquals(rfa.getActiveFileLength(), new File(randomOutputDir + "a-sizeBased-exact.log").length());
+    rfa.stop();
+
+    assertFalse(new File(randomOutputDir + "sizeBased-exact.2").exists());
+    for (int i = 0; i < 2; i++) {
+      long length = new File(randomOutputDir + "sizeBased-exact." + i).length();
+      // at least maxFileSize, plus at most one event
+      assertTrue("length=" + length, length >= 100 && length < 100 + "hello39\n".length());
+    }
+  }
+
   @Test
   public void smoke() throws IOException, InterruptedException {
     expectedFilenameList.add(randomOutputDir + "a-sizeBased-smoke.log");
@@ -117,4 +178,124 @@ public class SizeBasedRollingTest extends ScaffoldingForRollingTests {
     List<String> zipFiles = filterElementsInListBySuffix(".zip");
     zipEntryNameCheck(zipFiles, "sbr-zipped.20\\d{2}-\\d{2}-\\d{2}_\\d{4}");
   }
+
+  @Test
+  public void asynchronousGz() throws IOException, InterruptedException {
+    fwrp.setAsynchronous(true);
+    expectedFilenameList.add(randomOutputDir + "a-sbr-async-gzed.log");
+    expectedFilenameList.add(randomOutputDir + "sbr-async-gzed.0.gz");
+    expectedFilenameList.add(randomOutputDir + "sbr-async-gzed.1.gz");
+    generic("async-gzed", "a-sbr-async-gzed.log", "sbr-async-gzed.%i.gz", expectedFilenameList);
+  }
+
+  @Test
+  public void asynchronousZippedBackToBackRollovers() throws IOException, InterruptedException {
+    fwrp.setAsynchronous(true);
+    expectedFilenameList.add(randomOutputDir + "a-sbr-async-zipped.log");
+    for (int i = 0; i < 4; i++) {
+      expectedFilenameList.add(randomOutputDir + "sbr-async-zipped." + i + ".zip");
+    }
+    // rollovers follow each other while earlier ones may still be compressed
+    generic("async-zipped", "a-sbr-async-zipped.log", "sbr-async-zipped.%i.zip", expectedFilenameList, 60, 0);
+
+    assertEquals(expectedFilenameList.size(), new File(randomOutputDir).listFiles().length);
+  }
+
+  @Test
+  public void leftoverTemporaryFilesAreArchivedOnStart() throws Exception {
+    String activeFileName = randomOutputDir + "a-sbr-leftover.log";
+    new File(randomOutputDir).mkdirs();
+    // as left by asynchronous rollovers of a killed process
+    File older = writeFile(activeFileName + "1000.tmp", "older\n");
+    older.setLastModified(System.currentTimeMillis() - 2000);
+    writeFile(activeFileName + "-500.tmp", "newer\n");
+
+    initRFA(activeFileName);
+    fwrp.setMinIndex(0);
+    fwrp.setFileNamePattern(randomOutputDir + "sbr-leftover.%i");
+    fwrp.start();
+    fwrp.archiveFuture.get();
+
+    assertEquals(2, new File(randomOutputDir).listFiles().length);
+    assertEquals("newer\n", readFile(randomOutputDir + "sbr-leftover.0"));
+    assertEquals("older\n", readFile(randomOutputDir + "sbr-leftover.1"));
+  }
+
+  @Test
+  public void synchronousRolloverArchivesLeftoverFilesFirst() throws Exception {
+    String activeFileName = randomOutputDir + "a-sbr-leftover-sync.log";
+    new File(randomOutputDir).mkdirs();
+    writeFile(activeFileName + "1000.tmp", "older\n");
+
+    // keep the archive job submitted by start() from running
+    final CountDownLatch started = new CountDownLatch(CoreConstants.SCHEDULED_EXECUTOR_POOL_SIZE);
+    final CountDownLatch release = new CountDownLatch(1);
+    for (int i = 0; i < CoreConstants.SCHEDULED_EXECUTOR_POOL_SIZE; i++) {
+      context.getScheduledExecutorService().submit(new Callable<Void>() {
+        public Void call() throws InterruptedException {
+          started.countDown();
+          release.await();
+          return null;
+        }
+      });
+    }
+    started.await();
+
+    initRFA(activeFileName);
+    fwrp.setMinIndex(0);
+    fwrp.setFileNamePattern(randomOutputDir + "sbr-leftover-sync.%i");
+    try {
+      fwrp.start();
+      writeFile(activeFileName, "newer\n");
+      fwrp.rollover();
+    } finally {
+      release.countDown();
+    }
+    fwrp.archiveFuture.get();
+
+    assertEquals("newer\n", readFile(randomOutputDir + "sbr-leftover-sync.0"));
+    assertEquals("older\n", readFile(randomOutputDir + "sbr-leftover-sync.1"));
+  }
+
+  @Test
+  public void failedRenameIsNotQueued() throws IOException {
+    fwrp.setAsynchronous(true);
+    initRFA(randomOutputDir + "a-sbr-unrenamed.log");
+    fwrp.setMinIndex(0);
+    fwrp.setFileNamePattern(randomOutputDir + "sbr-unrenamed.%i");
+    fwrp.start();
+    // like a failed File.renameTo, which is only reported as a warning
+    fwrp.util = new RenameUtil() {
+      public void rename(String src, String target) {
+      }
+    };
+
+    fwrp.rollover();
+    assertNull(fwrp.archiveFuture);
+  }
+
+  private static File writeFile(String fileName, String content) throws IOException {
+    File file = new File(fileName);
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+
+  private static String readFile(String fileName) throws IOException {
+    FileInputStream in = new FileInputStream(fileName);
+    try {
+      byte[] buf = new byte[(int) new File(fileName).length()];
+      int n = 0;
+      while (n < buf.length) {
+        n += in.read(buf, n, buf.length - n);
+      }
+      return new String(buf, "UTF-8");
+    } finally {
+      in.close();
+    }
+  }
 }
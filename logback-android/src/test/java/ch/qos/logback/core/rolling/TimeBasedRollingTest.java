@@ -13,16 +13,32 @@
  */
 package ch.qos.logback.core.rolling;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilenameFilter;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import ch.qos.logback.core.CoreConstants;
 import ch.qos.logback.core.encoder.EchoEncoder;
+import ch.qos.logback.core.rolling.helper.FileFilterUtil;
+import ch.qos.logback.core.rolling.helper.FlushableGZIPOutputStream;
 import ch.qos.logback.core.testUtil.EnvUtilForTests;
+import ch.qos.logback.core.util.FileSize;
 import ch.qos.logback.core.util.StatusPrinter;
 
 /**
@@ -209,6 +225,200 @@ public class TimeBasedRollingTest extends ScaffoldingForRollingTests {
     defaultTest("test8", "%d{yyyy-MM-dd, aux}/", ".zip", FILE_OPTION_SET, NO_RESTART);
   }
 
+  @Test
+  public void streamingCompression_FileBlank() throws IOException {
+    streamingCompressionTest(null);
+  }
+
+  @Test
+  public void streamingCompression_FileSet() throws IOException {
+    streamingCompressionTest(randomOutputDir + "streaming.log.gz");
+  }
+
+  void streamingCompressionTest(String fileName) throws IOException {
+    initRFA(rfa1, fileName);
+    tbrp1.setStreamingCompression(true);
+    initTRBP(rfa1, tbrp1, randomOutputDir + "streaming-%d{" + DATE_PATTERN_WITH_SECONDS + "}.log.gz", currentTime);
+
+    int runLength = 6;
+    for (int i = 0; i < runLength; i++) {
+      rfa1.doAppend("Hello---" + i);
+      incCurrentTime(500);
+      tbrp1.timeBasedFileNamingAndTriggeringPolicy.setCurrentTime(currentTime);
+    }
+    rfa1.stop();
+
+    // nothing is left to compress after rollover
+    assertNull(tbrp1.compressionFuture);
+    File[] files = getFilesInDirectory(randomOutputDir);
+    assertTrue(files.length >= 3);
+    for (File file : files) {
+      assertTrue(file.getName(), file.getName().endsWith(".gz"));
+    }
+    // the active file, if named by the File property, sorts last
+    FileFilterUtil.sortFileArrayByName(files);
+    fileContentCheck(files, runLength, "Hello---");
+  }
+
+  @Test
+  public void streamingCompressionMovesIncompleteMemberAside() throws IOException {
+    String fileName = randomOutputDir + "crashed.log.gz";
+    new File(randomOutputDir).mkdirs();
+    // a complete member, followed by one the process died while writing
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    FlushableGZIPOutputStream gzos = new FlushableGZIPOutputStream(bytes);
+    gzos.write(("Hello---0" + CoreConstants.LINE_SEPARATOR).getBytes("UTF-8"));
+    gzos.flush();
+    int completeLength = bytes.size();
+    gzos.write("lost".getBytes("UTF-8"));
+    gzos.close();
+    byte[] crashed = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 4);
+    FileOutputStream fos = new FileOutputStream(fileName);
+    fos.write(crashed);
+    fos.close();
+    assertEquals(completeLength, FlushableGZIPOutputStream.completeMembersLength(new File(fileName)));
+
+    initRFA(rfa1, fileName);
+    tbrp1.setStreamingCompression(true);
+    initTRBP(rfa1, tbrp1, randomOutputDir + "crashed-%d{" + DATE_PATTERN_WITH_SECONDS + "}.log.gz", currentTime);
+    rfa1.doAppend("Hello---1");
+    rfa1.stop();
+
+    fileContentCheck(new File[] { new File(fileName) }, 2, "Hello---");
+    File[] tails = new File(randomOutputDir).listFiles(new FilenameFilter() {
+      public boolean accept(File dir, String name) {
+        return name.startsWith("crashed.log-incomplete-") && name.endsWith(".gz");
+      }
+    });
+    assertEquals(1, tails.length);
+    assertArrayEquals(Arrays.copyOfRange(crashed, completeLength, crashed.length), readFully(tails[0]));
+  }
+
+  private static byte[] readFully(File file) throws IOException {
+    FileInputStream in = new FileInputStream(file);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buf = new byte[1024];
+      int n;
+      while ((n = in.read(buf)) != -1) {
+        out.write(buf, 0, n);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test
+  public void lowLatencyRollover() throws IOException {
+    lowLatencyRolloverTest("");
+  }
+
+  @Test
+  public void lowLatencyRollover_GZ() throws IOException {
+    lowLatencyRolloverTest(".gz");
+  }
+
+  void lowLatencyRolloverTest(String compressionSuffix) throws IOException {
+    initRFA(rfa1, null);
+    rfa1.setLowLatencyRollover(true);
+    initTRBP(rfa1, tbrp1, randomOutputDir + "lowLatency-%d{" + DATE_PATTERN_WITH_SECONDS + "}.log" + compressionSuffix, currentTime);
+    assertTrue(rfa1.isLowLatencyRollover());
+
+    int runLength = 6;
+    for (int i = 0; i < runLength; i++) {
+      rfa1.doAppend("Hello---" + i);
+      incCurrentTime(500);
+      tbrp1.timeBasedFileNamingAndTriggeringPolicy.setCurrentTime(currentTime);
+    }
+    rfa1.stop();
+    tbrp1.stop();
+
+    File[] files = getFilesInDirectory(randomOutputDir);
+    assertTrue(files.length >= 3);
+    // the next file opened ahead of the last rollover is gone
+    for (File file : files) {
+      assertTrue(file.getName(), file.length() > 0);
+    }
+    FileFilterUtil.sortFileArrayByName(files);
+    fileContentCheck(files, runLength, "Hello---");
+  }
+
+  @Test(timeout = 10000)
+  public void lowLatencyRollover_BusyExecutor() throws Exception {
+    initRFA(rfa1, null);
+    rfa1.setLowLatencyRollover(true);
+    initTRBP(rfa1, tbrp1, randomOutputDir + "lowLatency-%d{" + DATE_PATTERN_WITH_SECONDS + "}.log", currentTime);
+
+    // once every thread of the executor runs one of these, the next file
+    // has been opened, and rollover jobs cannot run until released
+    final CountDownLatch started = new CountDownLatch(CoreConstants.SCHEDULED_EXECUTOR_POOL_SIZE);
+    final CountDownLatch release = new CountDownLatch(1);
+    for (int i = 0; i < CoreConstants.SCHEDULED_EXECUTOR_POOL_SIZE; i++) {
+      context.getScheduledExecutorService().submit(new Callable<Void>() {
+        public Void call() throws InterruptedException {
+          started.countDown();
+          release.await();
+          return null;
+        }
+      });
+    }
+    started.await();
+
+    int runLength = 6;
+    try {
+      // logging carries on through rollovers without waiting for the executor
+      for (int i = 0; i < runLength; i++) {
+        rfa1.doAppend("Hello---" + i);
+        incCurrentTime(500);
+        tbrp1.timeBasedFileNamingAndTriggeringPolicy.setCurrentTime(currentTime);
+      }
+    } finally {
+      release.countDown();
+    }
+    rfa1.stop();
+    tbrp1.stop();
+
+    File[] files = getFilesInDirectory(randomOutputDir);
+    assertTrue(files.length >= 3);
+    for (File file : files) {
+      assertTrue(file.getName(), file.length() > 0);
+    }
+    FileFilterUtil.sortFileArrayByName(files);
+    fileContentCheck(files, runLength, "Hello---");
+  }
+
+  @Test
+  public void lowLatencyRollover_FileSet() throws IOException {
+    initRFA(rfa1, randomOutputDir + "lowLatency.log");
+    rfa1.setLowLatencyRollover(true);
+    initTRBP(rfa1, tbrp1, randomOutputDir + "lowLatency-%d{" + DATE_PATTERN_WITH_SECONDS + "}.log", currentTime);
+    assertTrue(rfa1.isStarted());
+    assertFalse(rfa1.isLowLatencyRollover());
+  }
+
+  @Test
+  public void memoryMapped() throws IOException {
+    initRFA(rfa1, randomOutputDir + "mapped.log");
+    rfa1.setMappedRegionSize(new FileSize(16));
+    initTRBP(rfa1, tbrp1, randomOutputDir + "mapped-%d{" + DATE_PATTERN_WITH_SECONDS + "}.log", currentTime);
+    assertTrue(rfa1.isMemoryMapped());
+
+    int runLength = 6;
+    for (int i = 0; i < runLength; i++) {
+      rfa1.doAppend("Hello---" + i);
+      incCurrentTime(500);
+      tbrp1.timeBasedFileNamingAndTriggeringPolicy.setCurrentTime(currentTime);
+    }
+    rfa1.stop();
+
+    // archives are truncated to the bytes written on rollover
+    File[] files = getFilesInDirectory(randomOutputDir);
+    assertTrue(files.length >= 3);
+    FileFilterUtil.sortFileArrayByName(files);
+    fileContentCheck(files, runLength, "Hello---");
+  }
+
   @Test
   public void failed_rename() throws IOException {
     if (!EnvUtilForTests.isWindows())
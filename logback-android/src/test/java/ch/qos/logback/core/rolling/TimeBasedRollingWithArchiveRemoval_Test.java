@@ -283,7 +283,14 @@ public class TimeBasedRollingWithArchiveRemoval_Test extends ScaffoldingForRolli
 //      }
 //    });
 //    System.out.print(foundFiles);
-    checkFileCount(expectedFileCount - 1);
+    // Rollover happens as soon as a file reaches fileSize, so a full archive
+    // holds 46 lines (3450 bytes), while the last archive of each day only
+    // holds what is left of the day's 17000 bytes (2400 bytes). At the last
+    // clean up, which runs right after a rollover while the new active file
+    // is still empty, the 10 newest archives (two of them partial) therefore
+    // add up to 32400 bytes, which is within sizeCap. The active file grows
+    // afterwards but is only counted at the next rollover.
+    checkFileCount(expectedFileCount + 1);
   }
 
   @Test
@@ -0,0 +1,128 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2015, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.rolling.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.qos.logback.core.util.CoreTestConstants;
+import ch.qos.logback.core.testUtil.RandomUtil;
+
+public class ArchiveIndexTest {
+
+  static final String STEM_REGEX = "app-2016-01-01\\.(\\d+)\\.log";
+
+  File folder;
+  ArchiveIndex index = new ArchiveIndex();
+
+  @Before
+  public void setUp() {
+    folder = new File(CoreTestConstants.OUTPUT_DIR_PREFIX + "archiveIndex-" + RandomUtil.getPositiveInt());
+    folder.mkdirs();
+  }
+
+  @Test
+  public void listsFolderOnceAndFollowsChanges() throws IOException {
+    File archive0 = write("app-2016-01-01.0.log", 10);
+    write("app-2016-01-02.0.log", 10);
+    assertFiles("[app-2016-01-01.0.log]", index.filesInFolderMatchingStemRegex(folder, STEM_REGEX));
+
+    // files created behind the index's back are not seen
+    File archive1 = write("app-2016-01-01.1.log", 10);
+    assertFalse(index.exists(archive1));
+    assertFiles("[app-2016-01-01.0.log]", index.filesInFolderMatchingStemRegex(folder, STEM_REGEX));
+
+    index.add(archive1);
+    assertTrue(index.exists(archive1));
+    assertFiles("[app-2016-01-01.0.log, app-2016-01-01.1.log]", index.filesInFolderMatchingStemRegex(folder, STEM_REGEX));
+
+    archive0.delete();
+    index.remove(archive0);
+    assertFalse(index.exists(archive0));
+    assertFiles("[app-2016-01-01.1.log]", index.filesInFolderMatchingStemRegex(folder, STEM_REGEX));
+  }
+
+  @Test
+  public void keepsOnlySizesOfAddedFiles() throws IOException {
+    // e.g. the active file, which keeps growing
+    File active = write("app-2016-01-01.0.log", 10);
+    assertEquals(10, index.length(active));
+    write("app-2016-01-01.0.log", 20);
+    assertEquals(20, index.length(active));
+
+    File archive = write("app-2016-01-01.1.log", 10);
+    index.add(archive);
+    write("app-2016-01-01.1.log", 20);
+    assertEquals(10, index.length(archive));
+
+    assertEquals(0, index.length(new File(folder, "missing.log")));
+  }
+
+  @Test
+  public void forgetsRemovedFolder() throws IOException {
+    File subFolder = new File(folder, "2016-01-01");
+    subFolder.mkdirs();
+    assertTrue(index.exists(subFolder));
+    File archive = write("2016-01-01/app-2016-01-01.0.log", 10);
+    assertFiles("[app-2016-01-01.0.log]", index.filesInFolderMatchingStemRegex(subFolder, STEM_REGEX));
+
+    archive.delete();
+    subFolder.delete();
+    index.removeFolder(subFolder);
+    assertFalse(index.exists(subFolder));
+
+    // a folder re-created later is listed again
+    subFolder.mkdirs();
+    write("2016-01-01/app-2016-01-01.1.log", 10);
+    assertFiles("[app-2016-01-01.1.log]", index.filesInFolderMatchingStemRegex(subFolder, STEM_REGEX));
+  }
+
+  @Test
+  public void addingMissingFileRemovesIt() throws IOException {
+    File archive = write("app-2016-01-01.0.log", 10);
+    assertTrue(index.exists(archive));
+    archive.delete();
+    index.add(archive);
+    assertFalse(index.exists(archive));
+  }
+
+  private File write(String name, int length) throws IOException {
+    File file = new File(folder, name);
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(new byte[length]);
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+
+  private static void assertFiles(String expectedNames, File[] files) {
+    String[] names = new String[files.length];
+    for (int i = 0; i < files.length; i++) {
+      names[i] = files[i].getName();
+    }
+    Arrays.sort(names);
+    assertEquals(expectedNames, Arrays.toString(names));
+  }
+}
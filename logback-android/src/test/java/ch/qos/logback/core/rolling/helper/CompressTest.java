@@ -13,14 +13,20 @@
  */
 package ch.qos.logback.core.rolling.helper;
 
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -125,6 +131,81 @@ public class CompressTest {
     // + "witness/compress3.txt.zip"));
   }
 
+  @Test
+  public void parallelGzIsOneGzipStream() throws Exception {
+    File source = new File(CoreTestConstants.OUTPUT_DIR_PREFIX + "compress-parallel.txt");
+    File target = new File(CoreTestConstants.OUTPUT_DIR_PREFIX + "compress-parallel.txt.gz");
+    target.delete();
+    // spans several blocks, the last one short
+    byte[] content = writeLines(source, 2 * Compressor.BLOCK_SIZE + 1000);
+
+    Compressor compressor = new Compressor(CompressionMode.GZ);
+    compressor.setContext(context);
+    compressor.setThreads(3);
+    compressor.compress(source.getPath(), target.getPath(), null);
+
+    StatusChecker checker = new StatusChecker(context);
+    assertTrue(checker.isErrorFree(0));
+    assertFalse(source.exists());
+    assertTrue(Arrays.equals(content, gunzip(target)));
+  }
+
+  @Test
+  public void parallelGzOfEmptyFile() throws Exception {
+    File source = new File(CoreTestConstants.OUTPUT_DIR_PREFIX + "compress-empty.txt");
+    File target = new File(CoreTestConstants.OUTPUT_DIR_PREFIX + "compress-empty.txt.gz");
+    target.delete();
+    writeLines(source, 0);
+
+    Compressor compressor = new Compressor(CompressionMode.GZ);
+    compressor.setContext(context);
+    compressor.setThreads(2);
+    compressor.compress(source.getPath(), target.getPath(), null);
+
+    assertEquals(0, gunzip(target).length);
+  }
+
+  @Test
+  public void levelIsApplied() throws Exception {
+    File source = new File(CoreTestConstants.OUTPUT_DIR_PREFIX + "compress-level.txt");
+    File target = new File(CoreTestConstants.OUTPUT_DIR_PREFIX + "compress-level.txt.gz");
+    target.delete();
+    byte[] content = writeLines(source, 100000);
+
+    Compressor compressor = new Compressor(CompressionMode.GZ);
+    compressor.setContext(context);
+    compressor.setLevel(Deflater.NO_COMPRESSION);
+    compressor.compress(source.getPath(), target.getPath(), null);
+
+    assertTrue(target.length() > content.length);
+    assertTrue(Arrays.equals(content, gunzip(target)));
+  }
+
+  private static byte[] writeLines(File file, int length) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(length);
+    for (int i = 0; bytes.size() < length; i++) {
+      bytes.write(("line " + i + "\n").getBytes("UTF-8"));
+    }
+    byte[] content = Arrays.copyOf(bytes.toByteArray(), length);
+    file.getParentFile().mkdirs();
+    OutputStream out = new FileOutputStream(file);
+    out.write(content);
+    out.close();
+    return content;
+  }
+
+  private static byte[] gunzip(File file) throws IOException {
+    InputStream in = new GZIPInputStream(new FileInputStream(file));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[8192];
+    int len;
+    while ((len = in.read(buf)) > 0) {
+      out.write(buf, 0, len);
+    }
+    in.close();
+    return out.toByteArray();
+  }
+
   private void copy(File src, File dst) throws IOException {
     InputStream in = new FileInputStream(src);
     OutputStream out = new FileOutputStream(dst);
@@ -0,0 +1,150 @@
+/**
+ * Logback: the reliable, generic, fast and flexible logging framework.
+ * Copyright (C) 1999-2015, QOS.ch. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 2.1
+ * as published by the Free Software Foundation.
+ */
+package ch.qos.logback.core.rolling.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import ch.qos.logback.core.testUtil.RandomUtil;
+import ch.qos.logback.core.util.CoreTestConstants;
+
+public class FlushableGZIPOutputStreamTest {
+
+  ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+  FlushableGZIPOutputStream gzos = new FlushableGZIPOutputStream(bytes);
+
+  @Test
+  public void membersDecompressAsOneStream() throws IOException {
+    gzos.write("hello ".getBytes("UTF-8"));
+    gzos.flush();
+    gzos.flush();
+    gzos.write("gzip".getBytes("UTF-8"));
+    gzos.write(' ');
+    gzos.flush();
+    gzos.write("world".getBytes("UTF-8"));
+    gzos.close();
+
+    assertEquals("hello gzip world", gunzip(bytes.toByteArray()));
+  }
+
+  @Test
+  public void flushedMembersAreReadableWithoutTheRest() throws IOException {
+    gzos.write("complete".getBytes("UTF-8"));
+    gzos.flush();
+    int flushedLength = bytes.size();
+    gzos.write(" but lost".getBytes("UTF-8"));
+    gzos.close();
+
+    assertEquals("complete", gunzip(Arrays.copyOf(bytes.toByteArray(), flushedLength)));
+  }
+
+  @Test
+  public void compressesAcrossWritesOfOneMember() throws IOException {
+    byte[] line = "the same line, over and over\n".getBytes("UTF-8");
+    for (int i = 0; i < 1000; i++) {
+      gzos.write(line);
+    }
+    gzos.close();
+
+    assertEquals(1000 * line.length, gunzip(bytes.toByteArray()).length());
+    assertTrue(bytes.size() < line.length * 10);
+  }
+
+  @Test
+  public void measuresCompleteMembersOfFile() throws IOException {
+    gzos.write("first".getBytes("UTF-8"));
+    gzos.flush();
+    int firstLength = bytes.size();
+    gzos.write("second".getBytes("UTF-8"));
+    gzos.close();
+    byte[] gzipped = bytes.toByteArray();
+
+    assertEquals(gzipped.length, completeMembersLength(gzipped, gzipped.length));
+    for (int length = firstLength; length < gzipped.length; length++) {
+      assertEquals(firstLength, completeMembersLength(gzipped, length));
+    }
+    assertEquals(0, completeMembersLength(gzipped, firstLength - 1));
+    assertEquals(0, completeMembersLength(new byte[] { 'n', 'o', 't', ' ', 'g', 'z' }, 6));
+  }
+
+  @Test
+  public void completesMembersOfMaxSizeWithoutFlush() throws IOException {
+    FlushableGZIPOutputStream bounded = new FlushableGZIPOutputStream(bytes, 100);
+    StringBuilder written = new StringBuilder();
+    for (int i = 0; i < 25; i++) {
+      String chunk = "chunk-" + (char) ('a' + i) + "..\n";
+      bounded.write(chunk.getBytes("UTF-8"));
+      written.append(chunk);
+    }
+    // members complete after 100 and 200 bytes; the rest is still deflating
+    assertEquals(written.substring(0, 200), gunzip(bytes.toByteArray()));
+    bounded.close();
+    assertEquals(written.toString(), gunzip(bytes.toByteArray()));
+  }
+
+  @Test
+  public void measuresCompleteMembersAtEndOfLongFile() throws IOException {
+    int lastStart = 0;
+    for (int i = 0; i < 2000; i++) {
+      lastStart = bytes.size();
+      gzos.write(("line " + i + " " + RandomUtil.getPositiveInt()).getBytes("UTF-8"));
+      gzos.flush();
+    }
+    byte[] gzipped = bytes.toByteArray();
+    assertTrue(gzipped.length > 2 * FlushableGZIPOutputStream.BUFFER_SIZE);
+
+    assertEquals(gzipped.length, completeMembersLength(gzipped, gzipped.length));
+    assertEquals(lastStart, completeMembersLength(gzipped, gzipped.length - 1));
+    assertEquals(lastStart, completeMembersLength(gzipped, lastStart + 5));
+  }
+
+  private static long completeMembersLength(byte[] bytes, int length) throws IOException {
+    File file = new File(CoreTestConstants.OUTPUT_DIR_PREFIX + "gzipMembers-" + RandomUtil.getPositiveInt() + ".gz");
+    file.getParentFile().mkdirs();
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(bytes, 0, length);
+    } finally {
+      out.close();
+    }
+    try {
+      return FlushableGZIPOutputStream.completeMembersLength(file);
+    } finally {
+      file.delete();
+    }
+  }
+
+  private static String gunzip(byte[] gzipped) throws IOException {
+    InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[1024];
+    int n;
+    while ((n = in.read(buf)) != -1) {
+      out.write(buf, 0, n);
+    }
+    in.close();
+    return out.toString("UTF-8");
+  }
+}
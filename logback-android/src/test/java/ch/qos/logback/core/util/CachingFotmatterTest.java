@@ -1,10 +1,12 @@
 package ch.qos.logback.core.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Locale;
 import java.util.TimeZone;
 
 import org.junit.Before;
@@ -37,4 +39,46 @@ public class CachingFotmatterTest {
     // AWST (Perth) is 8 hours ahead of UTC
     assertEquals("2015-03-26T17:49", result);
   }
+
+  @Test
+  public void matchesSimpleDateFormatAcrossSeconds() {
+    String[] patterns = { "yyyy-MM-dd HH:mm:ss,SSS", "HH:mm:ss.SSS", "SSS 'S' ss", "HH:mm:ss", "ss.S", "ss.SSS SSS" };
+    long[] starts = { 1427363340998L, -2001L, 0L };
+    for (String pattern : patterns) {
+      SimpleDateFormat reference = new SimpleDateFormat(pattern, Locale.US);
+      reference.setTimeZone(perthTZ);
+      CachingDateFormatter cdf = new CachingDateFormatter(pattern);
+      cdf.setTimeZone(perthTZ);
+      for (long start : starts) {
+        for (long t = start; t < start + 2500; t += 7) {
+          String expected = reference.format(new Date(t));
+          assertEquals(pattern + " at " + t, expected, cdf.format(t));
+          StringBuilder buf = new StringBuilder("x");
+          cdf.format(t, buf);
+          assertEquals(pattern + " at " + t, "x" + expected, buf.toString());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void findMillisField() {
+    assertEquals(0, CachingDateFormatter.findMillisField("HH:mm:ss").length);
+    assertEquals(0, CachingDateFormatter.findMillisField("HH 'SSS'").length);
+    int[] field = CachingDateFormatter.findMillisField("ss,SSS 'S'");
+    assertEquals(3, field[0]);
+    assertEquals(6, field[1]);
+    assertNull(CachingDateFormatter.findMillisField("ss.S"));
+    assertNull(CachingDateFormatter.findMillisField("ss.SSSS"));
+    assertNull(CachingDateFormatter.findMillisField("SSS SSS"));
+  }
+
+  @Test
+  public void timeZoneChangeInvalidatesCache() {
+    CachingDateFormatter cdf = new CachingDateFormatter("HH:mm:ss.SSS");
+    cdf.setTimeZone(utcTZ);
+    assertEquals("00:00:01.234", cdf.format(1234));
+    cdf.setTimeZone(perthTZ);
+    assertEquals("08:00:01.234", cdf.format(1234));
+  }
 }